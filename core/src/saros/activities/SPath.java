@@ -34,6 +34,9 @@ public class SPath {
   /** The project relative path of the resource this SPath represents. */
   private final IPath projectRelativePath;
 
+  /** The hash code, computed on first use. SPaths are hash keys of many per document maps. */
+  private int hash;
+
   /**
    * Default constructor, initializing this SPath as a reference to the resource identified by the
    * given path in the given project.
@@ -110,10 +113,16 @@ public class SPath {
 
   @Override
   public int hashCode() {
-    final int prime = 31;
-    int result = 1;
-    result = prime * result + Objects.hashCode(project);
-    result = prime * result + Objects.hashCode(projectRelativePath);
+    int result = hash;
+
+    if (result == 0) {
+      final int prime = 31;
+      result = 1;
+      result = prime * result + Objects.hashCode(project);
+      result = prime * result + Objects.hashCode(projectRelativePath);
+      hash = result;
+    }
+
     return result;
   }
 
@@ -127,6 +136,8 @@ public class SPath {
 
     SPath other = (SPath) obj;
 
+    if (hashCode() != other.hashCode()) return false;
+
     return Objects.equals(project, other.project)
         && Objects.equals(projectRelativePath, other.projectRelativePath);
   }
@@ -46,6 +46,7 @@ import saros.activities.TargetedFileActivity;
 import saros.activities.TextSelectionActivity;
 import saros.activities.ViewportActivity;
 import saros.concurrent.jupiter.internal.JupiterVectorTime;
+import saros.concurrent.jupiter.internal.text.CompoundOperation;
 import saros.concurrent.jupiter.internal.text.DeleteOperation;
 import saros.concurrent.jupiter.internal.text.InsertOperation;
 import saros.concurrent.jupiter.internal.text.NoOperation;
@@ -117,10 +118,31 @@ public class ActivitiesExtension extends SarosSessionPacketExtension {
    * and add some of these? You can take a look at other activity classes for inspiration.
    */
 
-  /** */
+  /**
+   * The provider of the activities extension. The activities refer to users and paths of a session,
+   * so the {@link saros.misc.xstream.UserConverter} and {@link saros.misc.xstream.SPathConverter}
+   * of a session are registered at the provider of this session only, see {@link
+   * #createSessionProvider()}. {@link #PROVIDER} is installed at the Smack ProviderManager but has
+   * no session-dependent converters.
+   */
   public static class Provider extends SarosSessionPacketExtension.Provider<ActivitiesExtension> {
+
+    /**
+     * Creates a provider for a single session that is not installed at the Smack ProviderManager.
+     * Several sessions in the same process, e.g. of the tenants of a server, each use their own
+     * provider, so their converters do not replace each other.
+     */
+    public static Provider createSessionProvider() {
+      return new Provider(false);
+    }
+
     private Provider() {
+      this(true);
+    }
+
+    private Provider(boolean install) {
       super(
+          install,
           "ados",
           ActivitiesExtension.class,
 
@@ -130,6 +152,7 @@ public class ActivitiesExtension extends SarosSessionPacketExtension {
 
           // Jupiter classes
 
+          CompoundOperation.class,
           DeleteOperation.class,
           InsertOperation.class,
           JupiterVectorTime.class,
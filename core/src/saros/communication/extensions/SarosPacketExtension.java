@@ -38,6 +38,10 @@ public abstract class SarosPacketExtension {
       super(EXTENSION_NAMESPACE, elementName, classes);
     }
 
+    protected Provider(boolean install, String elementName, Class<?>... classes) {
+      super(install, EXTENSION_NAMESPACE, elementName, classes);
+    }
+
     @Override
     public PacketFilter getPacketFilter() {
 
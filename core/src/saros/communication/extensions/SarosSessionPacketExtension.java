@@ -33,6 +33,10 @@ public abstract class SarosSessionPacketExtension extends SarosPacketExtension {
       super(elementName, classes);
     }
 
+    protected Provider(boolean install, String elementName, Class<?>... classes) {
+      super(install, elementName, classes);
+    }
+
     public PacketFilter getPacketFilter(final String sessionID) {
 
       return new AndFilter(
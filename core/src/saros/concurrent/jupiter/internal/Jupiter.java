@@ -34,6 +34,7 @@ import saros.concurrent.jupiter.InclusionTransformation;
 import saros.concurrent.jupiter.Operation;
 import saros.concurrent.jupiter.Timestamp;
 import saros.concurrent.jupiter.TransformationException;
+import saros.concurrent.jupiter.internal.text.CompoundOperation;
 import saros.concurrent.jupiter.internal.text.GOTOInclusionTransformation;
 import saros.concurrent.jupiter.internal.text.NoOperation;
 import saros.concurrent.jupiter.internal.text.TimestampOperation;
@@ -44,6 +45,9 @@ public class Jupiter implements Algorithm {
 
   private static final Logger log = Logger.getLogger(Jupiter.class);
 
+  /** Number of acknowledgements the {@link #roundTripTime} is taken from at least. */
+  private static final int ROUND_TRIP_TIME_WINDOW = 16;
+
   /** The inclusion transformation function used to transform operations. */
   protected InclusionTransformation inclusion;
 
@@ -63,6 +67,31 @@ public class Jupiter implements Algorithm {
    */
   protected final List<OperationWrapper> ackJupiterActivityList;
 
+  /**
+   * The number of operations received since the last JupiterActivity was generated. Every generated
+   * JupiterActivity acknowledges all received operations, so these are the operations the other
+   * site still waits to be acknowledged. {@link NoOperation}s are not counted, otherwise the
+   * heartbeats of both sites would acknowledge each other forever.
+   */
+  protected int unacknowledgedRemoteOperationCount;
+
+  /** The {@link System#nanoTime()} the oldest unacknowledged remote operation was received. */
+  protected long unacknowledgedRemoteOperationsSince;
+
+  /**
+   * The smallest delay in nanoseconds between generating a local operation and receiving its
+   * acknowledgement within the recent acknowledgements, or <code>-1</code> if no operation was
+   * acknowledged yet. As the other site may delay its acknowledgement this is an upper bound of the
+   * round trip time.
+   */
+  protected long roundTripTime = -1;
+
+  private long previousWindowRoundTripTime = Long.MAX_VALUE;
+
+  private long currentWindowRoundTripTime = Long.MAX_VALUE;
+
+  private int currentWindowSamples;
+
   /**
    * Class constructor that creates a new Jupiter algorithm.
    *
@@ -79,15 +108,22 @@ public class Jupiter implements Algorithm {
   public JupiterActivity generateJupiterActivity(Operation op, User source, SPath editor) {
 
     // send(op, myMsgs, otherMsgs);
-    JupiterActivity jupiterActivity = new JupiterActivity(this.vectorTime, op, source, editor);
+    // peers of older versions do not know compound operations, only their split form
+    final Operation sent =
+        op instanceof CompoundOperation ? ((CompoundOperation) op).toSplitOperation() : op;
+
+    JupiterActivity jupiterActivity = new JupiterActivity(this.vectorTime, sent, source, editor);
 
     // add(op, myMsgs) to outgoing;
     this.ackJupiterActivityList.add(
-        new OperationWrapper(op, this.vectorTime.getLocalOperationCount()));
+        new OperationWrapper(op, this.vectorTime.getLocalOperationCount(), System.nanoTime()));
 
     // myMsgs = myMsgs + 1;
     this.vectorTime = this.vectorTime.incrementLocalOperationCount();
 
+    // the activity carries otherMsgs and so acknowledges all received operations
+    this.unacknowledgedRemoteOperationCount = 0;
+
     return jupiterActivity;
   }
 
@@ -160,6 +196,11 @@ public class Jupiter implements Algorithm {
 
     Operation newOp = transform(jupiterActivity.getOperation());
     this.vectorTime = this.vectorTime.incrementRemoteOperationCount();
+
+    if (!(jupiterActivity.getOperation() instanceof NoOperation)
+        && this.unacknowledgedRemoteOperationCount++ == 0)
+      this.unacknowledgedRemoteOperationsSince = System.nanoTime();
+
     return newOp;
   }
 
@@ -205,18 +246,40 @@ public class Jupiter implements Algorithm {
    * @param time the remote JupiterVectorTime
    */
   protected void discardAcknowledgedOperations(JupiterVectorTime time) {
+    OperationWrapper lastAcknowledged = null;
+
     Iterator<OperationWrapper> iter = this.ackJupiterActivityList.iterator();
     while (iter.hasNext()) {
       OperationWrapper wrap = iter.next();
       if (wrap.getLocalOperationCount() < time.getRemoteOperationCount()) {
+        lastAcknowledged = wrap;
         iter.remove();
       }
     }
+
+    if (lastAcknowledged != null)
+      updateRoundTripTime(System.nanoTime() - lastAcknowledged.getSentTime());
     // ASSERT msg.myMsgs == otherMsgs
     assert time.getLocalOperationCount() == this.vectorTime.getRemoteOperationCount()
         : "msg.myMsgs != otherMsgs !!";
   }
 
+  /**
+   * Updates the {@link #roundTripTime} with the acknowledgement delay of the most recent
+   * acknowledged operation. The minimum of a window of samples filters the delays the other site
+   * added before acknowledging.
+   */
+  private void updateRoundTripTime(long sample) {
+    currentWindowRoundTripTime = Math.min(currentWindowRoundTripTime, sample);
+    roundTripTime = Math.min(previousWindowRoundTripTime, currentWindowRoundTripTime);
+
+    if (++currentWindowSamples < ROUND_TRIP_TIME_WINDOW) return;
+
+    previousWindowRoundTripTime = currentWindowRoundTripTime;
+    currentWindowRoundTripTime = Long.MAX_VALUE;
+    currentWindowSamples = 0;
+  }
+
   /**
    * Transforms an operation with the operations in the outgoing queue {@link
    * #ackJupiterActivityList}.
@@ -243,7 +306,7 @@ public class Jupiter implements Algorithm {
       }
       this.ackJupiterActivityList.set(
           ackJupiterActivityListCnt,
-          new OperationWrapper(existingOp, wrap.getLocalOperationCount()));
+          new OperationWrapper(existingOp, wrap.getLocalOperationCount(), wrap.getSentTime()));
 
       newOp = transformedOp;
     }
@@ -293,9 +356,12 @@ public class Jupiter implements Algorithm {
 
     protected final int count;
 
-    OperationWrapper(Operation op, int count) {
+    protected final long sentTime;
+
+    OperationWrapper(Operation op, int count, long sentTime) {
       this.op = op;
       this.count = count;
+      this.sentTime = sentTime;
     }
 
     Operation getOperation() {
@@ -306,6 +372,10 @@ public class Jupiter implements Algorithm {
       return this.count;
     }
 
+    long getSentTime() {
+      return this.sentTime;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
@@ -336,6 +406,39 @@ public class Jupiter implements Algorithm {
     return this.vectorTime;
   }
 
+  /**
+   * Returns the number of local operations that were not acknowledged by the other site yet, i.e.
+   * the size of the outgoing queue every received operation has to be transformed against.
+   */
+  public int getUnacknowledgedLocalOperationCount() {
+    return this.ackJupiterActivityList.size();
+  }
+
+  /**
+   * Returns the number of received operations that were not acknowledged yet by generating a
+   * JupiterActivity. {@link NoOperation}s are not counted.
+   */
+  public int getUnacknowledgedRemoteOperationCount() {
+    return this.unacknowledgedRemoteOperationCount;
+  }
+
+  /**
+   * Returns the {@link System#nanoTime()} the oldest unacknowledged remote operation was received.
+   * Only valid if {@link #getUnacknowledgedRemoteOperationCount()} is greater than zero.
+   */
+  public long getUnacknowledgedRemoteOperationsSince() {
+    return this.unacknowledgedRemoteOperationsSince;
+  }
+
+  /**
+   * Returns an estimation of the round trip time to the other site in nanoseconds, based on the
+   * delay between generating local operations and receiving their acknowledgement, or <code>-1
+   * </code> if no operation was acknowledged yet.
+   */
+  public long getRoundTripTime() {
+    return this.roundTripTime;
+  }
+
   /**
    * Checks if this algorithm locates client side.
    *
@@ -0,0 +1,333 @@
+package saros.concurrent.jupiter.internal.text;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import saros.activities.SPath;
+import saros.activities.TextEditActivity;
+import saros.concurrent.jupiter.Operation;
+import saros.session.User;
+
+/**
+ * The CompoundOperation contains a sequence of text operations to be performed after each other.
+ * Unlike nested {@link SplitOperation}s it stores the operations in a flat array, so a compound of
+ * any length is traversed, transformed and converted to text edits without recursion or
+ * intermediate lists.
+ *
+ * <p>A CompoundOperation is normalized: it contains at least two operations, all of them {@link
+ * InsertOperation}s or {@link DeleteOperation}s. Nested compound and split operations are flattened
+ * and {@link NoOperation}s are dropped when it is {@link #of(Operation...) created}.
+ *
+ * @see Operation
+ */
+@XStreamAlias("compoundOp")
+public class CompoundOperation implements Operation {
+
+  /** The operations in the order they are performed. */
+  private final ITextOperation[] operations;
+
+  /** Creates a compound of the given operations, which must be normalized already. */
+  CompoundOperation(ITextOperation[] operations) {
+    assert operations.length >= 2;
+
+    this.operations = operations;
+  }
+
+  /**
+   * Returns an operation that performs the given operations after each other.
+   *
+   * @return a CompoundOperation, or the operation itself if only one text operation remains after
+   *     normalizing, or a NoOperation if none remains
+   */
+  public static Operation of(Operation... operations) {
+    final Builder builder = new Builder(operations.length);
+
+    for (final Operation operation : operations) builder.add(operation);
+
+    return builder.build();
+  }
+
+  /** Returns the number of text operations of this compound. */
+  public int size() {
+    return operations.length;
+  }
+
+  /** Returns the text operation at the given index of the sequence. */
+  public ITextOperation get(int index) {
+    return operations[index];
+  }
+
+  @Override
+  public List<ITextOperation> getTextOperations() {
+    return Collections.unmodifiableList(Arrays.asList(operations));
+  }
+
+  /**
+   * Returns the equivalent operation of nested {@link SplitOperation}s. Peers that do not know the
+   * CompoundOperation only accept split operations, so this is the form that is sent. The splits
+   * are balanced, so their depth grows logarithmically with the size of the compound.
+   */
+  public SplitOperation toSplitOperation() {
+    return (SplitOperation) toSplitOperation(0, operations.length);
+  }
+
+  private Operation toSplitOperation(final int from, final int to) {
+    if (to - from == 1) return operations[from];
+
+    final int middle = (from + to) >>> 1;
+
+    return new SplitOperation(toSplitOperation(from, middle), toSplitOperation(middle, to));
+  }
+
+  @Override
+  public List<TextEditActivity> toTextEdit(SPath path, User source) {
+
+    /*
+     * same result as SplitOperation.toTextEdit, but consecutive operations
+     * are combined in a builder instead of concatenating their texts
+     */
+    final List<Run> runs = new ArrayList<Run>();
+
+    Run last = null;
+
+    for (final ITextOperation operation : operations) {
+      if (last == null || !last.combine(operation)) {
+        last = new Run(operation);
+        runs.add(last);
+      }
+    }
+
+    final List<TextEditActivity> result = new ArrayList<TextEditActivity>(runs.size());
+
+    for (int i = 0; i < runs.size(); i++) {
+      final Run run = runs.get(i);
+      final Run next = i + 1 < runs.size() ? runs.get(i + 1) : null;
+
+      // Del(8,"abc") + Ins(8,"ghijk") -> Replace "abc" with "ghijk"
+      if (!run.insert && next != null && next.insert && run.position == next.position) {
+        result.add(
+            new TextEditActivity(
+                source, run.position, next.text.toString(), run.text.toString(), path));
+        i++;
+      } else if (run.insert) {
+        result.add(new TextEditActivity(source, run.position, run.text.toString(), "", path));
+      } else {
+        result.add(new TextEditActivity(source, run.position, "", run.text.toString(), path));
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  public Operation invert() {
+    final ITextOperation[] inverted = new ITextOperation[operations.length];
+
+    for (int i = 0; i < operations.length; i++)
+      inverted[operations.length - 1 - i] = (ITextOperation) operations[i].invert();
+
+    return new CompoundOperation(inverted);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder("Compound(");
+
+    for (int i = 0; i < operations.length; i++) {
+      if (i > 0) builder.append(", ");
+
+      builder.append(operations[i]);
+    }
+
+    return builder.append(")").toString();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) return true;
+    if (obj == null) return false;
+    if (getClass() != obj.getClass()) return false;
+    return Arrays.equals(operations, ((CompoundOperation) obj).operations);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(operations);
+  }
+
+  /**
+   * Collects text operations in a growing array. Compound and split operations are flattened,
+   * NoOperations are dropped.
+   */
+  static final class Builder {
+
+    private ITextOperation[] operations;
+
+    private int size;
+
+    Builder(int expectedSize) {
+      operations = new ITextOperation[Math.max(2, expectedSize)];
+    }
+
+    /** Appends the text operations of the given operation. */
+    void add(Operation operation) {
+      if (operation instanceof ITextOperation) {
+        append((ITextOperation) operation);
+      } else if (operation instanceof CompoundOperation) {
+        final ITextOperation[] other = ((CompoundOperation) operation).operations;
+
+        ensureCapacity(size + other.length);
+        System.arraycopy(other, 0, operations, size, other.length);
+        size += other.length;
+      } else if (operation instanceof SplitOperation) {
+        addSplit((SplitOperation) operation);
+      } else if (!(operation instanceof NoOperation)) {
+        throw new IllegalArgumentException("Unsupported Operation type: " + operation);
+      }
+    }
+
+    /** Returns the number of text operations added so far. */
+    int size() {
+      return size;
+    }
+
+    /** Returns the text operation at the given index. */
+    ITextOperation get(int index) {
+      return operations[index];
+    }
+
+    /** Returns the normalized operation of all text operations added so far. */
+    Operation build() {
+      switch (size) {
+        case 0:
+          return new NoOperation();
+        case 1:
+          return operations[0];
+        default:
+          return new CompoundOperation(
+              size == operations.length ? operations : Arrays.copyOf(operations, size));
+      }
+    }
+
+    /** Flattens the given split tree in order without recursion, the trees may be deep. */
+    private void addSplit(SplitOperation split) {
+      final Deque<Operation> pending = new ArrayDeque<Operation>();
+
+      pending.push(split);
+
+      while (!pending.isEmpty()) {
+        final Operation operation = pending.pop();
+
+        if (operation instanceof SplitOperation) {
+          pending.push(((SplitOperation) operation).getSecond());
+          pending.push(((SplitOperation) operation).getFirst());
+        } else {
+          add(operation);
+        }
+      }
+    }
+
+    private void append(ITextOperation operation) {
+      ensureCapacity(size + 1);
+      operations[size++] = operation;
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (capacity > operations.length)
+        operations = Arrays.copyOf(operations, Math.max(capacity, operations.length * 2));
+    }
+  }
+
+  /** Consecutive text operations that were combined to a single insert or delete. */
+  private static final class Run {
+    private boolean insert;
+    private int position;
+    private final StringBuilder text;
+
+    private Run(ITextOperation operation) {
+      insert = operation instanceof InsertOperation;
+      position = operation.getPosition();
+      text = new StringBuilder(operation.getText());
+    }
+
+    /**
+     * Combines the given operation into this run, using the rules of {@link
+     * SplitOperation#combine(ITextOperation, ITextOperation)}.
+     *
+     * @return <code>true</code> if the operation was combined, <code>false</code> otherwise
+     */
+    private boolean combine(ITextOperation operation) {
+      final boolean otherInsert = operation instanceof InsertOperation;
+      final int otherPosition = operation.getPosition();
+      final String otherText = operation.getText();
+
+      if (insert && !otherInsert) {
+        if (position != otherPosition) return false;
+
+        // Ins(5,"ab") + Del(5,"abcd") -> Del(5,"cd")
+        if (otherText.startsWith(text.toString())) {
+          final int length = text.length();
+          text.setLength(0);
+          text.append(otherText, length, otherText.length());
+          insert = false;
+          return true;
+        }
+
+        // Ins(5,"abcd") + Del(5,"ab") -> Ins(5,"cd")
+        if (startsWith(text, otherText)) {
+          text.delete(0, otherText.length());
+          return true;
+        }
+
+        return false;
+      }
+
+      if (insert != otherInsert) return false;
+
+      if (insert) {
+        // Ins(2,"ab") + Ins(4,"cd") -> Ins(2,"abcd")
+        if (position + text.length() == otherPosition) {
+          text.append(otherText);
+          return true;
+        }
+
+        if (position == otherPosition + otherText.length()) {
+          text.insert(0, otherText);
+          position = otherPosition;
+          return true;
+        }
+
+        return false;
+      }
+
+      // Del(5,"ab") + Del(5,"cde") -> Del(5,"abcde")
+      if (position == otherPosition) {
+        text.append(otherText);
+        return true;
+      }
+
+      // Del(8,"c") + Del(6,"ab") -> Del(6,"abc")
+      if (position == otherPosition + otherText.length()) {
+        text.insert(0, otherText);
+        position = otherPosition;
+        return true;
+      }
+
+      return false;
+    }
+
+    private static boolean startsWith(StringBuilder text, String prefix) {
+      if (prefix.length() > text.length()) return false;
+
+      for (int i = 0; i < prefix.length(); i++)
+        if (text.charAt(i) != prefix.charAt(i)) return false;
+
+      return true;
+    }
+  }
+}
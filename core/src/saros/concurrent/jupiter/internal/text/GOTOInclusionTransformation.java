@@ -63,10 +63,11 @@ public class GOTOInclusionTransformation implements InclusionTransformation {
       return op1;
     }
 
-    if (op1 instanceof SplitOperation) {
+    if (op1 instanceof CompoundOperation || op1 instanceof SplitOperation) {
       /**
-       * Given two operations s1 and s2 to be transformed in the context of op2, we need to
-       * calculate s1' as t(s1, op2) and s2' as t(s2, op2') where op2' is t(op2, s1) <code>
+       * Given operations s1 ... sn to be transformed in the context of op2, we need to calculate
+       * s1' as t(s1, op2) and each following si' as t(si, op2') where op2' is the context op2
+       * transformed against all previous operations <code>
        *          O
        *     s1 /   \ op2
        *      O       O
@@ -76,15 +77,12 @@ public class GOTOInclusionTransformation implements InclusionTransformation {
        *      O
        * </code>
        */
-      SplitOperation s = (SplitOperation) op1;
-      return new SplitOperation(
-          transform(s.getFirst(), op2, param),
-          transform(s.getSecond(), transform(op2, s.getFirst(), !privileged), param));
+      return transformSequence(toBuilder(op1), op2, privileged);
     }
-    if (op2 instanceof SplitOperation) {
+    if (op2 instanceof CompoundOperation || op2 instanceof SplitOperation) {
       /**
-       * Given an operation op1 to be transformed in the context of two operations s1 and s2, we
-       * need to calculate op1' as t(op1', s2) where op1' is t(op1, s1) <code>
+       * Given an operation op1 to be transformed in the context of operations s1 ... sn, we need to
+       * calculate op1' as t(op1', s2) where op1' is t(op1, s1), and so on <code>
        *           O
        *      s1 /   \ op1
        *       O       O
@@ -94,8 +92,13 @@ public class GOTOInclusionTransformation implements InclusionTransformation {
        *       O
        *      </code>
        */
-      SplitOperation s = (SplitOperation) op2;
-      return transform(transform(op1, s.getFirst(), param), s.getSecond(), param);
+      final CompoundOperation.Builder context = toBuilder(op2);
+
+      Operation result = op1;
+
+      for (int i = 0; i < context.size(); i++) result = transform(result, context.get(i), param);
+
+      return result;
     }
 
     if (op1 instanceof InsertOperation) {
@@ -119,7 +122,11 @@ public class GOTOInclusionTransformation implements InclusionTransformation {
 
   @Override
   public int transformIndex(int index, Operation op, Object param) {
-    if (op instanceof SplitOperation) {
+    if (op instanceof CompoundOperation) {
+      CompoundOperation c = (CompoundOperation) op;
+      for (int i = c.size() - 1; i >= 0; i--) index = transformIndex(index, c.get(i), param);
+      return index;
+    } else if (op instanceof SplitOperation) {
       SplitOperation s = (SplitOperation) op;
       index = transformIndex(index, s.getSecond(), param);
       index = transformIndex(index, s.getFirst(), param);
@@ -145,6 +152,36 @@ public class GOTOInclusionTransformation implements InclusionTransformation {
     }
   }
 
+  /**
+   * Transforms the given sequence of operations in the context of the given operation. The context
+   * is transformed along the sequence, so every operation is transformed exactly once.
+   */
+  private Operation transformSequence(
+      CompoundOperation.Builder sequence, Operation context, boolean privileged) {
+
+    final CompoundOperation.Builder result = new CompoundOperation.Builder(sequence.size());
+
+    for (int i = 0; i < sequence.size(); i++) {
+      final ITextOperation operation = sequence.get(i);
+
+      result.add(transform(operation, context, privileged));
+
+      if (i + 1 < sequence.size()) context = transform(context, operation, !privileged);
+    }
+
+    return result.build();
+  }
+
+  private static CompoundOperation.Builder toBuilder(Operation operation) {
+    final CompoundOperation.Builder builder =
+        new CompoundOperation.Builder(
+            operation instanceof CompoundOperation ? ((CompoundOperation) operation).size() : 2);
+
+    builder.add(operation);
+
+    return builder;
+  }
+
   protected Operation transform(
       InsertOperation insA, InsertOperation insB, boolean isTransformPrivileged) {
 
@@ -220,7 +257,7 @@ public class GOTOInclusionTransformation implements InclusionTransformation {
       DeleteOperation del1 = new DeleteOperation(posA, delA.getText().substring(0, posB - posA));
       DeleteOperation del2 =
           new DeleteOperation(posA + lenB, delA.getText().substring(posB - posA, lenA));
-      return new SplitOperation(del1, del2);
+      return new CompoundOperation(new ITextOperation[] {del1, del2});
     }
   }
 
@@ -2,6 +2,7 @@ package saros.concurrent.management;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import org.apache.log4j.Logger;
 import saros.activities.ChecksumActivity;
 import saros.activities.IActivity;
@@ -203,6 +204,14 @@ public class ConcurrentDocumentClient implements Startable {
     }
   }
 
+  /**
+   * Returns the acknowledgement state of the Jupiter documents of the local user, e.g. how many
+   * operations wait for their acknowledgement.
+   */
+  public Map<SPath, JupiterDocumentMetrics> getDocumentMetrics() {
+    return jupiterClient.getMetrics();
+  }
+
   // Package-private function for HeartbeatDispatcher
   JupiterClient getJupiterClient() {
     return jupiterClient;
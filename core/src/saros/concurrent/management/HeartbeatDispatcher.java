@@ -1,23 +1,21 @@
 package saros.concurrent.management;
 
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 import saros.activities.JupiterActivity;
 import saros.activities.SPath;
-import saros.concurrent.jupiter.Algorithm;
-import saros.concurrent.jupiter.internal.Jupiter;
-import saros.concurrent.jupiter.internal.text.NoOperation;
 import saros.repackaged.picocontainer.Startable;
 import saros.session.AbstractActivityProducer;
 import saros.session.ISarosSession;
-import saros.session.User;
 import saros.synchronize.UISynchronizer;
 import saros.util.NamedThreadFactory;
+import saros.util.ThreadUtils;
 
 /**
- * This class generates and sends periodically Jupiter-NoOperations to acknowledge operations.
+ * This class generates and sends Jupiter-NoOperations to acknowledge operations.
  *
  * <p>See
  * https://www.researchgate.net/publication/220876978_High-Latency_Low-Bandwidth_Windowing_in_the_Jupiter_Collaboration_System
@@ -28,11 +26,34 @@ import saros.util.NamedThreadFactory;
  * traffic to a window to be one-sided (e.g., for a status display window being periodically
  * updated). Therefore, each side must periodically generate explicit acknowledgments (i.e. no-op
  * messages) to prevent the outgoing queues from growing forever.
+ *
+ * <p>A heartbeat is therefore only sent for documents with received operations that were not
+ * acknowledged by a JupiterActivity of the local user in the meantime. The longer the list of
+ * unacknowledged operations gets, the shorter the heartbeat is delayed, see {@link
+ * #getHeartbeatDelay(int, long)}. Idle documents produce no traffic at all.
  */
 public class HeartbeatDispatcher extends AbstractActivityProducer implements Startable {
 
   private static final Logger log = Logger.getLogger(HeartbeatDispatcher.class);
 
+  /** Interval in milliseconds in which the documents are checked for due heartbeats. */
+  private static final long CHECK_INTERVAL = 500;
+
+  /** Minimum delay of a heartbeat in milliseconds. */
+  static final long MIN_HEARTBEAT_DELAY = 1000;
+
+  /** Maximum delay of a heartbeat in milliseconds, the former fixed heartbeat interval. */
+  static final long MAX_HEARTBEAT_DELAY = 60 * 1000;
+
+  /** Number of unacknowledged operations that halves the heartbeat delay. */
+  static final int HALVING_BACKLOG = 16;
+
+  /**
+   * The heartbeat delay in round trip times at least. An acknowledgement takes effect only about a
+   * round trip later, so on a high-latency link heartbeats are sent less often.
+   */
+  static final int MIN_ROUND_TRIPS = 4;
+
   private final ISarosSession session;
   private final UISynchronizer uiSynchronizer;
   private final JupiterClient jupiterClient;
@@ -57,35 +78,62 @@ public class HeartbeatDispatcher extends AbstractActivityProducer implements Sta
     heartbeatScheduledExecutor =
         new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("JupiterHeartbeat"));
 
-    /* Schedule the heart-beat once per minute, this should be absolutely sufficient.
-     * NOTE: This might even be to frequent for a lot of open documents, but
-     * that likely causes other performance problems anyway.
-     * Suggestion: store a map of the documents. Invoke the heart-beat more frequently but only fire heart-beats for a subset of documents so
-     * that we do not produce too much traffic at once.
-     * E.G: We have 50 documents, on the first interval fire changes for the first 10 documents.
-     * On the next interval fire changes for the next 10 documents on so on.
-     */
-
-    // client documents should only be accessed by the main thread
     heartbeatScheduledExecutor.scheduleWithFixedDelay(
-        () -> uiSynchronizer.syncExec(this::dispatchHeartbeats), 1, 1, TimeUnit.MINUTES);
+        ThreadUtils.wrapSafe(log, this::checkHeartbeats),
+        CHECK_INTERVAL,
+        CHECK_INTERVAL,
+        TimeUnit.MILLISECONDS);
   }
 
-  private void dispatchHeartbeats() {
+  /**
+   * Returns the delay in milliseconds after which received operations have to be acknowledged by a
+   * heartbeat.
+   *
+   * @param unacknowledgedOperations the number of unacknowledged operations
+   * @param roundTripTime the round trip time in milliseconds or <code>-1</code> if unknown
+   */
+  static long getHeartbeatDelay(int unacknowledgedOperations, long roundTripTime) {
+    long delay =
+        MAX_HEARTBEAT_DELAY * HALVING_BACKLOG / (HALVING_BACKLOG + unacknowledgedOperations);
 
-    assert uiSynchronizer.isUIThread() : "invalid thread access";
+    if (roundTripTime > 0) delay = Math.max(delay, MIN_ROUND_TRIPS * roundTripTime);
+
+    return Math.min(MAX_HEARTBEAT_DELAY, Math.max(MIN_HEARTBEAT_DELAY, delay));
+  }
+
+  private void checkHeartbeats() {
+    final List<SPath> due = new ArrayList<SPath>();
 
-    final User localUser = session.getLocalUser();
+    for (final JupiterDocumentMetrics metrics : jupiterClient.getMetrics().values()) {
+      final int unacknowledgedOperations = metrics.getUnacknowledgedOperations();
 
-    for (Entry<SPath, Jupiter> entry : jupiterClient.getClientDocs().entrySet()) {
+      if (unacknowledgedOperations == 0) continue;
 
-      final SPath path = entry.getKey();
-      final Algorithm jupiterAlgorithm = entry.getValue();
+      final long delay =
+          getHeartbeatDelay(unacknowledgedOperations, metrics.getRoundTripTimeMillis());
+
+      if (metrics.getUnacknowledgedMillis() < delay) continue;
+
+      if (log.isTraceEnabled()) log.trace("heartbeat due for " + metrics);
+
+      due.add(metrics.getPath());
+    }
+
+    if (due.isEmpty()) return;
+
+    // client documents should only be accessed by the main thread
+    uiSynchronizer.syncExec(() -> dispatchHeartbeats(due));
+  }
+
+  private void dispatchHeartbeats(final List<SPath> paths) {
+
+    assert uiSynchronizer.isUIThread() : "invalid thread access";
 
-      final JupiterActivity heartbeat =
-          jupiterAlgorithm.generateJupiterActivity(new NoOperation(), localUser, path);
+    for (final SPath path : paths) {
+      // null if a local edit acknowledged the operations meanwhile
+      final JupiterActivity heartbeat = jupiterClient.generateHeartbeat(path);
 
-      fireActivity(heartbeat);
+      if (heartbeat != null) fireActivity(heartbeat);
     }
   }
 
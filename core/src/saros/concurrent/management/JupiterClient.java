@@ -1,6 +1,6 @@
 package saros.concurrent.management;
 
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import saros.activities.ChecksumActivity;
@@ -10,9 +10,16 @@ import saros.activities.TextEditActivity;
 import saros.concurrent.jupiter.Operation;
 import saros.concurrent.jupiter.TransformationException;
 import saros.concurrent.jupiter.internal.Jupiter;
+import saros.concurrent.jupiter.internal.text.NoOperation;
 import saros.session.ISarosSession;
 
-/** A JupiterClient manages Jupiter client docs for a single user with several paths */
+/**
+ * A JupiterClient manages Jupiter client docs for a single user with several paths.
+ *
+ * <p>Every document is guarded by its own {@link Jupiter} instance, so operations on different
+ * documents do not block each other. Operations on the same document are serialized, a reset of a
+ * document waits for the operations currently running on it.
+ */
 public class JupiterClient {
 
   protected ISarosSession sarosSession;
@@ -25,53 +32,111 @@ public class JupiterClient {
    * Jupiter instances for each local editor.
    *
    * @host and @client
-   *     <p>Note: This needs to be a *Concurrent*HashMap, because it is periodically iterated by the
-   *     HeartbeatDispatcher class.
    */
   private final ConcurrentHashMap<SPath, Jupiter> clientDocs = new ConcurrentHashMap<>();
 
   /** @host and @client */
-  protected synchronized Jupiter get(SPath path) {
+  protected Jupiter get(SPath path) {
     return clientDocs.computeIfAbsent(path, (key) -> new Jupiter(true));
   }
 
-  public synchronized Operation receive(JupiterActivity jupiterActivity)
-      throws TransformationException {
-    return get(jupiterActivity.getPath()).receiveJupiterActivity(jupiterActivity);
+  public Operation receive(JupiterActivity jupiterActivity) throws TransformationException {
+    return apply(
+        jupiterActivity.getPath(), jupiter -> jupiter.receiveJupiterActivity(jupiterActivity));
   }
 
-  public synchronized boolean isCurrent(ChecksumActivity checksumActivity)
-      throws TransformationException {
-
-    return get(checksumActivity.getPath()).isCurrent(checksumActivity.getTimestamp());
+  public boolean isCurrent(ChecksumActivity checksumActivity) throws TransformationException {
+    return apply(
+        checksumActivity.getPath(), jupiter -> jupiter.isCurrent(checksumActivity.getTimestamp()));
   }
 
-  public synchronized void reset(SPath path) {
-    this.clientDocs.remove(path);
+  public void reset(SPath path) {
+    final Jupiter jupiter = clientDocs.get(path);
+
+    if (jupiter == null) return;
+
+    synchronized (jupiter) {
+      clientDocs.remove(path, jupiter);
+    }
   }
 
-  public synchronized void reset() {
-    this.clientDocs.clear();
+  public void reset() {
+    for (final SPath path : clientDocs.keySet()) reset(path);
   }
 
-  public synchronized JupiterActivity generate(TextEditActivity textEdit) {
+  public JupiterActivity generate(TextEditActivity textEdit) {
+    final SPath path = textEdit.getPath();
 
-    SPath path = textEdit.getPath();
-    return get(path)
-        .generateJupiterActivity(textEdit.toOperation(), sarosSession.getLocalUser(), path);
+    return apply(
+        path,
+        jupiter ->
+            jupiter.generateJupiterActivity(
+                textEdit.toOperation(), sarosSession.getLocalUser(), path));
   }
 
   /**
    * Given a checksum, this method will return a new ChecksumActivity with the timestamp set to the
    * VectorTime of the Jupiter algorithm used for managing the document addressed by the checksum.
    */
-  public synchronized ChecksumActivity withTimestamp(ChecksumActivity checksumActivity) {
+  public ChecksumActivity withTimestamp(ChecksumActivity checksumActivity) {
+    return apply(checksumActivity.getPath(), jupiter -> jupiter.withTimestamp(checksumActivity));
+  }
 
-    return get(checksumActivity.getPath()).withTimestamp(checksumActivity);
+  /**
+   * Returns a snapshot of the acknowledgement state of every client document. The documents are
+   * captured one after another, so the snapshot is consistent per document only.
+   */
+  public Map<SPath, JupiterDocumentMetrics> getMetrics() {
+    final long now = System.nanoTime();
+    final Map<SPath, JupiterDocumentMetrics> metrics = new HashMap<>();
+
+    clientDocs.forEach(
+        (path, jupiter) -> {
+          synchronized (jupiter) {
+            metrics.put(path, new JupiterDocumentMetrics(path, jupiter, now));
+          }
+        });
+
+    return metrics;
   }
 
+  /**
+   * Generates a Jupiter-NoOperation that acknowledges the received operations of the given
+   * document. Returns <code>null</code> if there is nothing to acknowledge, e.g. because the
+   * acknowledgement was already piggy-backed on a JupiterActivity generated for a local edit.
+   */
   // Package-private function for the HeartbeatDispatcher
-  Map<SPath, Jupiter> getClientDocs() {
-    return Collections.unmodifiableMap(clientDocs);
+  JupiterActivity generateHeartbeat(SPath path) {
+    final Jupiter jupiter = clientDocs.get(path);
+
+    if (jupiter == null) return null;
+
+    synchronized (jupiter) {
+      /* the document was reset meanwhile, the new instance has nothing to acknowledge */
+      if (clientDocs.get(path) != jupiter || jupiter.getUnacknowledgedRemoteOperationCount() == 0)
+        return null;
+
+      return jupiter.generateJupiterActivity(new NoOperation(), sarosSession.getLocalUser(), path);
+    }
+  }
+
+  /**
+   * Applies the given function to the Jupiter instance of the given path while holding its lock. If
+   * the document is reset while waiting for the lock, the function is applied to the new instance
+   * instead.
+   */
+  private <T, E extends Exception> T apply(SPath path, JupiterFunction<T, E> function) throws E {
+    while (true) {
+      final Jupiter jupiter = get(path);
+
+      synchronized (jupiter) {
+        if (clientDocs.get(path) == jupiter) return function.apply(jupiter);
+      }
+    }
+  }
+
+  @FunctionalInterface
+  private interface JupiterFunction<T, E extends Exception> {
+    T apply(Jupiter jupiter) throws E;
   }
 }
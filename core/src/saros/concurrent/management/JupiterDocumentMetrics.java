@@ -0,0 +1,88 @@
+package saros.concurrent.management;
+
+import saros.activities.SPath;
+import saros.concurrent.jupiter.internal.Jupiter;
+
+/**
+ * A snapshot of the acknowledgement state of a Jupiter client document.
+ *
+ * @see JupiterClient#getMetrics()
+ */
+public final class JupiterDocumentMetrics {
+
+  private final SPath path;
+
+  private final int backlog;
+
+  private final int unacknowledgedOperations;
+
+  private final long unacknowledgedMillis;
+
+  private final long roundTripTimeMillis;
+
+  JupiterDocumentMetrics(SPath path, Jupiter jupiter, long now) {
+    this.path = path;
+    this.backlog = jupiter.getUnacknowledgedLocalOperationCount();
+    this.unacknowledgedOperations = jupiter.getUnacknowledgedRemoteOperationCount();
+
+    this.unacknowledgedMillis =
+        unacknowledgedOperations == 0
+            ? 0
+            : (now - jupiter.getUnacknowledgedRemoteOperationsSince()) / 1000000;
+
+    final long roundTripTime = jupiter.getRoundTripTime();
+
+    this.roundTripTimeMillis = roundTripTime < 0 ? -1 : roundTripTime / 1000000;
+  }
+
+  /** Returns the path of the document. */
+  public SPath getPath() {
+    return path;
+  }
+
+  /**
+   * Returns the number of local operations the host did not acknowledge yet. Every operation
+   * received for the document is transformed against these operations.
+   */
+  public int getBacklog() {
+    return backlog;
+  }
+
+  /** Returns the number of received operations the local user did not acknowledge yet. */
+  public int getUnacknowledgedOperations() {
+    return unacknowledgedOperations;
+  }
+
+  /**
+   * Returns for how many milliseconds the oldest of the {@linkplain #getUnacknowledgedOperations()
+   * unacknowledged operations} is waiting for its acknowledgement.
+   */
+  public long getUnacknowledgedMillis() {
+    return unacknowledgedMillis;
+  }
+
+  /**
+   * Returns the estimated round trip time to the host in milliseconds or <code>-1</code> if it is
+   * not known yet.
+   *
+   * @see Jupiter#getRoundTripTime()
+   */
+  public long getRoundTripTimeMillis() {
+    return roundTripTimeMillis;
+  }
+
+  @Override
+  public String toString() {
+    return "JupiterDocumentMetrics [path="
+        + path
+        + ", backlog="
+        + backlog
+        + ", unacknowledgedOperations="
+        + unacknowledgedOperations
+        + ", unacknowledgedMillis="
+        + unacknowledgedMillis
+        + ", roundTripTimeMillis="
+        + roundTripTimeMillis
+        + "]";
+  }
+}
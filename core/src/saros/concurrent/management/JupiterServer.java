@@ -1,9 +1,9 @@
 package saros.concurrent.management;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import saros.activities.ChecksumActivity;
 import saros.activities.JupiterActivity;
 import saros.activities.SPath;
@@ -16,6 +16,10 @@ import saros.session.User;
  * A JupiterServer manages Jupiter server instances for a number of users AND number of paths.
  *
  * <p>(in contrast to a JupiterDocumentServer which only handles a single path)
+ *
+ * <p>Activities are transformed under the lock of their JupiterDocumentServer only, so activities
+ * for different documents are transformed concurrently. The lock of the JupiterServer guards the
+ * set of clients and the creation of new JupiterDocumentServers.
  */
 public class JupiterServer {
 
@@ -24,9 +28,10 @@ public class JupiterServer {
    *
    * @host
    */
-  private final HashMap<SPath, JupiterDocumentServer> concurrentDocuments =
-      new HashMap<SPath, JupiterDocumentServer>();
+  private final Map<SPath, JupiterDocumentServer> concurrentDocuments =
+      new ConcurrentHashMap<SPath, JupiterDocumentServer>();
 
+  /** Guarded by <code>this</code>. */
   private final Set<User> currentClients = new HashSet<User>();
 
   private final ISarosSession sarosSession;
@@ -35,7 +40,7 @@ public class JupiterServer {
     this.sarosSession = sarosSession;
   }
 
-  public synchronized void removePath(final SPath path) {
+  public void removePath(final SPath path) {
     concurrentDocuments.remove(path);
   }
 
@@ -66,7 +71,16 @@ public class JupiterServer {
    * SarosSessionMapper to also track the resources and not just the projects
    * that are already shared for every user individually.
    */
-  private synchronized JupiterDocumentServer getServer(final SPath path) {
+  private JupiterDocumentServer getServer(final SPath path) {
+
+    final JupiterDocumentServer docServer = concurrentDocuments.get(path);
+
+    if (docServer != null) return docServer;
+
+    return createServer(path);
+  }
+
+  private synchronized JupiterDocumentServer createServer(final SPath path) {
 
     JupiterDocumentServer docServer = concurrentDocuments.get(path);
 
@@ -92,11 +106,11 @@ public class JupiterServer {
     return docServer;
   }
 
-  public synchronized void reset(final SPath path, final User user) {
+  public void reset(final SPath path, final User user) {
     getServer(path).reset(user);
   }
 
-  public synchronized Map<User, JupiterActivity> transform(final JupiterActivity activity)
+  public Map<User, JupiterActivity> transform(final JupiterActivity activity)
       throws TransformationException {
 
     final JupiterDocumentServer docServer = getServer(activity.getPath());
@@ -104,7 +118,7 @@ public class JupiterServer {
     return docServer.transformJupiterActivity(activity);
   }
 
-  public synchronized Map<User, ChecksumActivity> withTimestamp(final ChecksumActivity activity)
+  public Map<User, ChecksumActivity> withTimestamp(final ChecksumActivity activity)
       throws TransformationException {
 
     final JupiterDocumentServer docServer = getServer(activity.getPath());
@@ -0,0 +1,126 @@
+package saros.concurrent.watchdog;
+
+import saros.session.User;
+
+/**
+ * Decides when the checksum of a document has to be broadcast by the {@link
+ * ConsistencyWatchdogServer}.
+ *
+ * <p>A document that was edited since the last broadcast is broadcast after the current interval.
+ * If the edits were made by more than one user the interval is halved down to the minimum interval,
+ * otherwise it is reset to the default interval. After edits stopped the checksum is broadcast once
+ * more so that clients that were not up to date with the last checksum can verify the final
+ * content. From then on the document is idle and the interval is doubled after every broadcast up
+ * to the maximum interval.
+ *
+ * <p>This class is not thread safe.
+ */
+final class ChecksumBroadcastSchedule {
+
+  private final DocumentChecksum checksum;
+
+  private final long minInterval;
+  private final long defaultInterval;
+  private final long maxInterval;
+
+  private long interval;
+  private long nextBroadcast;
+
+  private int edits;
+  private User lastEditor;
+  private boolean concurrentEdits;
+
+  /** <code>true</code> if the last broadcast was done while the document was edited */
+  private boolean settling;
+
+  /**
+   * Creates a new schedule for the given checksum which is due immediately.
+   *
+   * @param checksum the checksum to broadcast
+   * @param now the current time in milliseconds
+   * @param minInterval the interval used during concurrent edits
+   * @param defaultInterval the interval used when a document is edited by a single user
+   * @param maxInterval the interval an idle document backs off to
+   */
+  ChecksumBroadcastSchedule(
+      final DocumentChecksum checksum,
+      final long now,
+      final long minInterval,
+      final long defaultInterval,
+      final long maxInterval) {
+    this.checksum = checksum;
+    this.minInterval = minInterval;
+    this.defaultInterval = defaultInterval;
+    this.maxInterval = maxInterval;
+    this.interval = defaultInterval;
+    this.nextBroadcast = now;
+  }
+
+  DocumentChecksum getChecksum() {
+    return checksum;
+  }
+
+  /** Returns the time in milliseconds the checksum has to be broadcast next. */
+  long getNextBroadcast() {
+    return nextBroadcast;
+  }
+
+  /** Returns the current broadcast interval in milliseconds. */
+  long getInterval() {
+    return interval;
+  }
+
+  /**
+   * Records an edit of the document. If the document is idle its next broadcast is brought forward
+   * to at most the default interval.
+   *
+   * @param source the user who edited the document
+   * @param now the current time in milliseconds
+   */
+  void edited(final User source, final long now) {
+    edits++;
+
+    if (lastEditor != null && !lastEditor.equals(source)) concurrentEdits = true;
+
+    lastEditor = source;
+
+    nextBroadcast = Math.min(nextBroadcast, now + Math.min(interval, defaultInterval));
+  }
+
+  /** Makes the checksum due immediately, e.g because a new user has to receive it. */
+  void broadcastNow(final long now) {
+    nextBroadcast = Math.min(nextBroadcast, now);
+  }
+
+  /** Returns whether the checksum has to be broadcast at the given time. */
+  boolean isDue(final long now) {
+    return now >= nextBroadcast;
+  }
+
+  /**
+   * Records that the checksum was broadcast and calculates the time of the next broadcast.
+   *
+   * @param now the current time in milliseconds
+   */
+  void broadcasted(final long now) {
+    if (edits > 0) {
+      interval =
+          concurrentEdits
+              ? Math.max(minInterval, Math.min(interval, defaultInterval) / 2)
+              : defaultInterval;
+
+      settling = true;
+    } else if (settling) {
+      interval = defaultInterval;
+      settling = false;
+    } else {
+      interval = Math.min(maxInterval, interval * 2);
+    }
+
+    edits = 0;
+    lastEditor = null;
+    concurrentEdits = false;
+
+    nextBroadcast = now + interval;
+  }
+}
@@ -20,6 +20,8 @@ import saros.editor.remote.UserEditorStateManager;
 import saros.repackaged.picocontainer.Startable;
 import saros.session.AbstractActivityProducer;
 import saros.session.ISarosSession;
+import saros.session.ISessionListener;
+import saros.session.User;
 import saros.synchronize.Blockable;
 import saros.synchronize.StopManager;
 import saros.synchronize.UISynchronizer;
@@ -32,6 +34,10 @@ import saros.util.ThreadUtils;
  * session. It then sends these checksums to all watchdog clients, which can compare them with their
  * own checksum calculations to detect inconsistencies and request file recovery if needed.
  *
+ * <p>Checksums are not sent for all documents on every cycle. Each document is broadcast according
+ * to its {@link ChecksumBroadcastSchedule}: more often while it is edited concurrently and more and
+ * more rarely while it is idle.
+ *
  * <p>This component is only run on the session's host.
  */
 @Component(module = "consistency")
@@ -40,7 +46,18 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
 
   private static final Logger LOG = Logger.getLogger(ConsistencyWatchdogServer.class);
 
-  private static final long CHECKSUM_CALCULATION_INTERVAL = 10000;
+  /** interval in milliseconds a document edited by a single user is broadcast with */
+  private static final long CHECKSUM_CALCULATION_INTERVAL =
+      Long.getLong("saros.consistency.CHECKSUM_CALCULATION_INTERVAL", 10000L);
+
+  /** interval in milliseconds a document edited concurrently is broadcast with */
+  private static final long MIN_CHECKSUM_CALCULATION_INTERVAL =
+      Long.getLong("saros.consistency.MIN_CHECKSUM_CALCULATION_INTERVAL", 2000L);
+
+  /** interval in milliseconds an idle document backs off to */
+  private static final long MAX_CHECKSUM_CALCULATION_INTERVAL =
+      Long.getLong("saros.consistency.MAX_CHECKSUM_CALCULATION_INTERVAL", 300000L);
+
   private static final long TERMINATION_TIMEOUT = 10000;
 
   private final ISarosSession session;
@@ -49,12 +66,18 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
   private final StopManager stopManager;
   private final UISynchronizer synchronizer;
 
-  private final Map<SPath, DocumentChecksum> documentChecksums =
-      new HashMap<SPath, DocumentChecksum>();
+  private final Map<SPath, ChecksumBroadcastSchedule> schedules =
+      new HashMap<SPath, ChecksumBroadcastSchedule>();
   private ScheduledThreadPoolExecutor checksumCalculationExecutor;
   private Future<?> checksumCalculationFuture;
   private boolean blocked;
 
+  /** time in milliseconds the next checksum calculation cycle has to run */
+  private volatile long nextChecksumCalculation;
+
+  /** flag that tells if the checksums of all documents have to be broadcast in the next cycle */
+  private volatile boolean broadcastAll;
+
   private final Runnable checksumCalculation =
       new Runnable() {
         /**
@@ -62,6 +85,8 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
          */
         @Override
         public void run() {
+          if (!broadcastAll && System.currentTimeMillis() < nextChecksumCalculation) return;
+
           /*
            * Run on the UI thread to guarantee that the editor contents won't
            * be changed while we calculate the checksums. We also do this to
@@ -89,9 +114,27 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
          */
         @Override
         public void textEdited(TextEditActivity textEdit) {
-          DocumentChecksum checksum = documentChecksums.get(textEdit.getPath());
+          ChecksumBroadcastSchedule schedule = schedules.get(textEdit.getPath());
+
+          if (schedule == null) return;
+
+          schedule.getChecksum().markDirty();
+          schedule.edited(textEdit.getSource(), System.currentTimeMillis());
 
-          if (checksum != null) checksum.markDirty();
+          if (schedule.getNextBroadcast() < nextChecksumCalculation)
+            nextChecksumCalculation = schedule.getNextBroadcast();
+        }
+      };
+
+  private final ISessionListener sessionListener =
+      new ISessionListener() {
+        /**
+         * Broadcasts all checksums as the new user did not receive the checksums of documents that
+         * are currently idle.
+         */
+        @Override
+        public void userFinishedProjectNegotiation(User user) {
+          broadcastAll = true;
         }
       };
 
@@ -123,6 +166,7 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
       throw new IllegalStateException("Component can only be run on the session's host");
 
     session.addActivityProducer(this);
+    session.addListener(sessionListener);
     stopManager.addBlockable(this);
     editorManager.addSharedEditorListener(sharedEditorListener);
 
@@ -134,12 +178,13 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
 
     checksumCalculationFuture =
         checksumCalculationExecutor.scheduleWithFixedDelay(
-            checksumCalculation, 0, CHECKSUM_CALCULATION_INTERVAL, TimeUnit.MILLISECONDS);
+            checksumCalculation, 0, MIN_CHECKSUM_CALCULATION_INTERVAL, TimeUnit.MILLISECONDS);
   }
 
   @Override
   public void stop() {
     session.removeActivityProducer(this);
+    session.removeListener(sessionListener);
     stopManager.removeBlockable(this);
     editorManager.removeSharedEditorListener(sharedEditorListener);
 
@@ -167,7 +212,7 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
         new Runnable() {
           @Override
           public void run() {
-            documentChecksums.clear();
+            schedules.clear();
           }
         });
 
@@ -202,6 +247,11 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
   }
 
   private void calculateChecksums() {
+    final long now = System.currentTimeMillis();
+
+    final boolean broadcastAllChecksums = broadcastAll;
+    broadcastAll = false;
+
     Set<SPath> localEditors = editorManager.getOpenEditors();
     Set<SPath> remoteEditors = userEditorStateManager.getOpenEditors();
 
@@ -214,10 +264,10 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
      * cheksum calculation cycle.
      */
 
-    Iterator<Entry<SPath, DocumentChecksum>> it = documentChecksums.entrySet().iterator();
+    Iterator<Entry<SPath, ChecksumBroadcastSchedule>> it = schedules.entrySet().iterator();
 
     while (it.hasNext()) {
-      Entry<SPath, DocumentChecksum> entry = it.next();
+      Entry<SPath, ChecksumBroadcastSchedule> entry = it.next();
 
       if (!allEditors.contains(entry.getKey())) {
         it.remove();
@@ -225,28 +275,65 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
     }
 
     /*
-     * Update or create checksums for all currently open documents.
+     * Update and broadcast the checksums of all currently open documents
+     * that are due. Run the next cycle at the latest after the default
+     * interval to pick up newly opened documents.
      */
 
+    long next = now + CHECKSUM_CALCULATION_INTERVAL;
+
     for (SPath docPath : allEditors) {
-      updateChecksum(docPath, localEditors, remoteEditors);
-      broadcastChecksum(docPath);
+      ChecksumBroadcastSchedule schedule = schedules.get(docPath);
+
+      if (schedule == null) {
+        schedule =
+            new ChecksumBroadcastSchedule(
+                new DocumentChecksum(docPath),
+                now,
+                MIN_CHECKSUM_CALCULATION_INTERVAL,
+                CHECKSUM_CALCULATION_INTERVAL,
+                MAX_CHECKSUM_CALCULATION_INTERVAL);
+
+        schedules.put(docPath, schedule);
+      }
+
+      if (broadcastAllChecksums || isDeleted(schedule.getChecksum())) schedule.broadcastNow(now);
+
+      if (schedule.isDue(now)) {
+        updateChecksum(docPath, localEditors, remoteEditors);
+
+        if (!broadcastChecksum(docPath)) continue;
+
+        schedule.broadcasted(now);
+      }
+
+      next = Math.min(next, schedule.getNextBroadcast());
     }
+
+    nextChecksumCalculation = next;
+  }
+
+  /**
+   * Returns whether the file of the given checksum no longer exists locally although the checksum
+   * was calculated for an existing file.
+   */
+  private static boolean isDeleted(DocumentChecksum checksum) {
+    return checksum.getHash() != DocumentChecksum.NOT_AVAILABLE
+        && !checksum.getPath().getFile().exists();
   }
 
   private void updateChecksum(SPath docPath, Set<SPath> localEditors, Set<SPath> remoteEditors) {
 
-    DocumentChecksum checksum = documentChecksums.get(docPath);
-    if (checksum == null) {
-      checksum = new DocumentChecksum(docPath);
-      documentChecksums.put(docPath, checksum);
-    }
+    ChecksumBroadcastSchedule schedule = schedules.get(docPath);
+    if (schedule == null) return;
+
+    DocumentChecksum checksum = schedule.getChecksum();
 
     /*
      * Ensures that the watchdog server doesn't use outdated checksums for
      * files that no longer exist locally.
      */
-    if (checksum.getHash() != DocumentChecksum.NOT_AVAILABLE && !docPath.getFile().exists()) {
+    if (isDeleted(checksum)) {
 
       LOG.debug(
           "Updating checksum for "
@@ -279,7 +366,7 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
          * Since session participants do not report this document as
          * open, they are right (and our EditorPool might be confused)
          */
-        documentChecksums.remove(checksum.getPath());
+        schedules.remove(checksum.getPath());
         return;
       }
     }
@@ -287,10 +374,13 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
     checksum.update(content);
   }
 
-  private void broadcastChecksum(SPath docPath) {
+  /** @return <code>true</code> if a checksum was broadcast, <code>false</code> otherwise */
+  private boolean broadcastChecksum(SPath docPath) {
 
-    DocumentChecksum checksum = documentChecksums.get(docPath);
-    if (checksum == null) return;
+    ChecksumBroadcastSchedule schedule = schedules.get(docPath);
+    if (schedule == null) return false;
+
+    DocumentChecksum checksum = schedule.getChecksum();
 
     ChecksumActivity checksumActivity =
         new ChecksumActivity(
@@ -301,5 +391,7 @@ public class ConsistencyWatchdogServer extends AbstractActivityProducer
             null);
 
     fireActivity(checksumActivity);
+
+    return true;
   }
 }
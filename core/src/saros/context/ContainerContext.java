@@ -1,8 +1,12 @@
 package saros.context;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import org.apache.log4j.Logger;
+import org.jivesoftware.smackx.entitycaps.EntityCapsManager;
+import org.jivesoftware.smackx.entitycaps.cache.SimpleDirectoryPersistentCache;
 import saros.account.XMPPAccountStore;
 import saros.communication.extensions.ActivitiesExtension;
 import saros.communication.extensions.CancelInviteExtension;
@@ -57,8 +61,11 @@ import saros.repackaged.picocontainer.injectors.Reinjector;
  *
  * <p><b>Note:</b> The <code>create</code> and <code>dispose</code> methods are not thread safe.
  *
- * <p><b>Restriction:</b> Instantiating the context <b>multiple</b> times is only allowed by using
- * different class loaders !
+ * <p>Several contexts can be active in the same process, e.g. the contexts of the tenants of a
+ * server. The sessions of the contexts use their own converters for the activities, but some state
+ * of Smack and the core is global: the entity capabilities cache is installed by the first context
+ * and the default connection service of {@link XMPPUtils} is only set while a single context is
+ * active.
  *
  * @author pcordes
  * @author srossbach
@@ -71,6 +78,14 @@ public class ContainerContext implements IContainerContext {
 
   private static final String SAROS_XMPP_ACCOUNT_FILE = "config.dat";
 
+  private static final String SAROS_ENTITY_CAPS_DIRECTORY = "caps";
+
+  /** The initialized and not yet disposed contexts of the process. Guarded by the class. */
+  private static final List<ContainerContext> activeContexts = new ArrayList<ContainerContext>();
+
+  /** Whether a context installed the entity capabilities cache. Guarded by the class. */
+  private static boolean entityCapsCacheInstalled;
+
   private final List<IContextFactory> factories;
   /** A caching container which holds all the singletons in Saros. */
   private final MutablePicoContainer container;
@@ -176,7 +191,12 @@ public class ContainerContext implements IContainerContext {
 
     installPacketExtensionProviders();
 
-    XMPPUtils.setDefaultConnectionService(container.getComponent(XMPPConnectionService.class));
+    synchronized (ContainerContext.class) {
+      if (!entityCapsCacheInstalled) entityCapsCacheInstalled = initEntityCapsCache();
+
+      activeContexts.add(this);
+      updateDefaultConnectionService();
+    }
 
     /*
      * ensure all components are instantiated as some of them may have not
@@ -210,10 +230,80 @@ public class ContainerContext implements IContainerContext {
     container.stop();
     disposed = true;
     container.dispose();
+
+    synchronized (ContainerContext.class) {
+      activeContexts.remove(this);
+      updateDefaultConnectionService();
+    }
+
     LOG.info("successfully disposed context");
   }
 
   private void initAccountStore(XMPPAccountStore store) {
+    final File sarosDataDir = getSarosDataDirectory();
+
+    if (sarosDataDir == null) {
+      LOG.warn("home directory not set, cannot save and load account data");
+      return;
+    }
+
+    File accountFile = new File(sarosDataDir, SAROS_XMPP_ACCOUNT_FILE);
+
+    store.setAccountFile(accountFile, System.getProperty("user.name"));
+  }
+
+  /**
+   * Installs the on-disk cache for the service discovery information of XMPP entities that
+   * advertise their capabilities (XEP-0115). The information is stored per capabilities version, so
+   * contacts running the same client version can be resolved without a discovery query, even after
+   * a restart.
+   *
+   * <p>The cache is global to Smack, the contexts of the process share it. This is safe as the
+   * cached information is public and verified against the capabilities version it is stored for.
+   *
+   * @return <code>true</code> if the cache was installed
+   */
+  private static boolean initEntityCapsCache() {
+    final File sarosDataDir = getSarosDataDirectory();
+
+    if (sarosDataDir == null) {
+      LOG.warn("home directory not set, cannot save and load entity capabilities");
+      return false;
+    }
+
+    final File cacheDir = new File(sarosDataDir, SAROS_ENTITY_CAPS_DIRECTORY);
+
+    if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+      LOG.warn("could not create directory: " + cacheDir + " to store entity capabilities");
+      return false;
+    }
+
+    try {
+      EntityCapsManager.setPersistentCache(new SimpleDirectoryPersistentCache(cacheDir));
+      return true;
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("could not load entity capabilities from: " + cacheDir, e);
+      return false;
+    }
+  }
+
+  /**
+   * Sets the connection service of the only active context as the default of {@link XMPPUtils}.
+   * There is no default while several contexts are active, otherwise e.g. the nicknames of the
+   * users of one context would be resolved with the roster of another.
+   */
+  private static void updateDefaultConnectionService() {
+    XMPPUtils.setDefaultConnectionService(
+        activeContexts.size() == 1
+            ? activeContexts.get(0).container.getComponent(XMPPConnectionService.class)
+            : null);
+  }
+
+  /**
+   * Returns the directory Saros stores its data in, i.e. the directory <code>.saros</code> in the
+   * home directory of the user, or <code>null</code> if the home directory is not known.
+   */
+  private static File getSarosDataDirectory() {
     // see http://bugs.java.com/bugdatabase/view_bug.do?bug_id=4787931
 
     String os = System.getProperty("os.name");
@@ -234,15 +324,9 @@ public class ContainerContext implements IContainerContext {
 
     if (homeDirectory == null) homeDirectory = System.getProperty("user.home");
 
-    if (homeDirectory == null) {
-      LOG.warn("home directory not set, cannot save and load account data");
-      return;
-    }
+    if (homeDirectory == null) return null;
 
-    File sarosDataDir = new File(homeDirectory, SAROS_DATA_DIRECTORY);
-    File accountFile = new File(sarosDataDir, SAROS_XMPP_ACCOUNT_FILE);
-
-    store.setAccountFile(accountFile, System.getProperty("user.name"));
+    return new File(homeDirectory, SAROS_DATA_DIRECTORY);
   }
 
   @Override
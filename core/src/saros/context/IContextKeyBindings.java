@@ -51,6 +51,13 @@ public interface IContextKeyBindings {
     // marker interface
   }
 
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.FIELD, ElementType.PARAMETER})
+  @Bind
+  public @interface TCPStreamService {
+    // marker interface
+  }
+
   @Retention(RetentionPolicy.RUNTIME)
   @Target({ElementType.FIELD, ElementType.PARAMETER})
   @Bind
@@ -22,6 +22,8 @@
 package saros.filesystem;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 /**
  * This interface is under development. It currently equals its Eclipse counterpart. If not
@@ -36,4 +38,32 @@ public interface IContainer extends IResource {
   public IResource[] members(int memberFlags) throws IOException;
 
   public String getDefaultCharset() throws IOException;
+
+  /**
+   * Visits this container and all resources below it in depth-first pre-order. The members of a
+   * container are only visited if the visitor returned <code>true</code> for the container.
+   *
+   * <p>Unlike calling {@link #members()} recursively, implementations may stream the resources
+   * directly from the file system without creating intermediate arrays. The visited resources are
+   * known to exist at the time they are visited.
+   *
+   * @param visitor the visitor
+   * @throws IOException if this container does not exist, its members cannot be read, or the
+   *     visitor aborted the traversal
+   */
+  public default void accept(IResourceVisitor visitor) throws IOException {
+    final Deque<IResource> stack = new ArrayDeque<IResource>();
+
+    stack.push(this);
+
+    while (!stack.isEmpty()) {
+      final IResource resource = stack.pop();
+
+      if (!visitor.visit(resource) || resource.getType() == IResource.FILE) continue;
+
+      final IResource[] members = ((IContainer) resource).members();
+
+      for (int i = members.length - 1; i >= 0; i--) stack.push(members[i]);
+    }
+  }
 }
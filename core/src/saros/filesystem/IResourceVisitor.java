@@ -0,0 +1,20 @@
+package saros.filesystem;
+
+import java.io.IOException;
+
+/**
+ * Visitor for the traversal of a resource tree, see {@link IContainer#accept(IResourceVisitor)}.
+ * Equivalent to its Eclipse counterpart.
+ */
+public interface IResourceVisitor {
+
+  /**
+   * Visits the given resource.
+   *
+   * @param resource the visited resource
+   * @return <code>true</code> if the members of the resource should be visited, <code>false</code>
+   *     if they should be skipped
+   * @throws IOException if the traversal should be aborted
+   */
+  public boolean visit(IResource resource) throws IOException;
+}
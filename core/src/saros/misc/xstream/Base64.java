@@ -0,0 +1,70 @@
+package saros.misc.xstream;
+
+import java.util.Arrays;
+
+/**
+ * Base64 decoder that works directly on character buffers. It accepts the same input as the encoder
+ * used by XStream, i.e characters outside of the Base64 alphabet (like line breaks) are skipped and
+ * decoding stops at the first padding character.
+ */
+final class Base64 {
+
+  private static final String ALPHABET =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+  private static final byte[] VALUES = new byte[128];
+
+  static {
+    Arrays.fill(VALUES, (byte) -1);
+
+    for (int i = 0; i < ALPHABET.length(); i++) VALUES[ALPHABET.charAt(i)] = (byte) i;
+  }
+
+  private Base64() {
+    // NOP
+  }
+
+  /**
+   * Decodes the given range of characters. The input is scanned twice so that the result can be
+   * allocated with its exact size.
+   */
+  static byte[] decode(final char[] text, final int offset, final int length) {
+    final int end = offset + length;
+
+    int sextets = 0;
+
+    for (int i = offset; i < end; i++) {
+      final char c = text[i];
+
+      if (c == '=') break;
+
+      if (value(c) >= 0) sextets++;
+    }
+
+    final byte[] result = new byte[(int) (sextets * 6L / 8L)];
+
+    int bits = 0;
+    int bitCount = 0;
+    int idx = 0;
+
+    for (int i = offset; i < end && idx < result.length; i++) {
+      final int value = value(text[i]);
+
+      if (value < 0) continue;
+
+      bits = (bits << 6) | value;
+      bitCount += 6;
+
+      if (bitCount >= 8) {
+        bitCount -= 8;
+        result[idx++] = (byte) (bits >> bitCount);
+      }
+    }
+
+    return result;
+  }
+
+  private static int value(final char c) {
+    return c < VALUES.length ? VALUES[c] : -1;
+  }
+}
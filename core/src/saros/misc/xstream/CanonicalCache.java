@@ -0,0 +1,41 @@
+package saros.misc.xstream;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small cache of the objects a converter created for the recently seen XML values. Converters use
+ * it to return the same instance for the same value, so unmarshalled objects are compared by
+ * identity in the maps of the session and no new objects are created for values that occur in every
+ * packet.
+ *
+ * <p>The least recently used entry is evicted when the cache is full. This class is thread safe.
+ */
+final class CanonicalCache<K, V> {
+
+  private final Map<K, V> entries;
+
+  CanonicalCache(final int capacity) {
+    entries =
+        new LinkedHashMap<K, V>(16, 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+          }
+        };
+  }
+
+  synchronized V get(K key) {
+    return entries.get(key);
+  }
+
+  synchronized void put(K key, V value) {
+    entries.put(key, value);
+  }
+
+  synchronized void clear() {
+    entries.clear();
+  }
+}
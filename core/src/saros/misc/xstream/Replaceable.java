@@ -1,9 +1,14 @@
 package saros.misc.xstream;
 
-/** Wraps an object to make it replaceable. */
+/**
+ * Wraps an object to make it replaceable.
+ *
+ * <p>Only the modifications are synchronized, the delegate is read without locking so it can be
+ * used by several threads at the same time.
+ */
 abstract class Replaceable<T> {
-  protected T delegate;
-  private boolean isReset;
+  protected volatile T delegate;
+  private volatile boolean isReset;
 
   protected Replaceable(T delegate) {
     if (delegate == null) throw new IllegalArgumentException("delegate must not be null");
@@ -21,7 +26,7 @@ abstract class Replaceable<T> {
     this.isReset = true;
   }
 
-  protected synchronized boolean isReset() {
+  protected boolean isReset() {
     return isReset;
   }
 
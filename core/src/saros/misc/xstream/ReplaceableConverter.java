@@ -36,13 +36,12 @@ class ReplaceableConverter extends Replaceable<Converter> implements Converter {
    */
   @SuppressWarnings("rawtypes")
   @Override
-  public synchronized boolean canConvert(Class clazz) {
+  public boolean canConvert(Class clazz) {
     return delegate.canConvert(clazz);
   }
 
   @Override
-  public synchronized void marshal(
-      Object value, HierarchicalStreamWriter writer, MarshallingContext context) {
+  public void marshal(Object value, HierarchicalStreamWriter writer, MarshallingContext context) {
 
     if (isReset()) {
       LOG.debug("Tried to marshal " + value + " with inactive converter " + delegate);
@@ -53,8 +52,7 @@ class ReplaceableConverter extends Replaceable<Converter> implements Converter {
   }
 
   @Override
-  public synchronized Object unmarshal(
-      HierarchicalStreamReader reader, UnmarshallingContext context) {
+  public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
 
     if (isReset()) {
       LOG.debug("Tried to unmarshal with inactive converter " + delegate);
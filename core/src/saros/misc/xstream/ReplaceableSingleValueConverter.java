@@ -34,12 +34,12 @@ class ReplaceableSingleValueConverter extends Replaceable<SingleValueConverter>
    */
   @SuppressWarnings("rawtypes")
   @Override
-  public synchronized boolean canConvert(Class type) {
+  public boolean canConvert(Class type) {
     return delegate.canConvert(type);
   }
 
   @Override
-  public synchronized String toString(Object obj) {
+  public String toString(Object obj) {
     if (isReset()) {
       LOG.debug("Tried to marshal " + obj + " with inactive converter " + delegate);
       return "";
@@ -49,7 +49,7 @@ class ReplaceableSingleValueConverter extends Replaceable<SingleValueConverter>
   }
 
   @Override
-  public synchronized Object fromString(String str) {
+  public Object fromString(String str) {
     if (isReset()) {
       LOG.debug("Tried to unmarshal " + str + " with inactive converter " + delegate);
       return null;
@@ -25,6 +25,9 @@ import saros.session.ISarosSession;
  * <pre>
  * &lt;SPath i="projA" p="src/Main.java" /&gt;
  * </pre>
+ *
+ * <p>The converter returns the same SPath instance for the recently unmarshalled paths of a
+ * project.
  */
 @Component
 public class SPathConverter implements Converter, Startable {
@@ -34,22 +37,32 @@ public class SPathConverter implements Converter, Startable {
   private static final String PATH = "p";
   private static final String PROJECT_ID = "i";
 
+  /** Maximum number of unmarshalled SPaths that are reused. */
+  private static final int CACHE_SIZE = 256;
+
   private final ISarosSession session;
   private final IPathFactory pathFactory;
+  private final ActivitiesExtension.Provider provider;
+
+  /** Unmarshalled SPaths by their encoded path. */
+  private final CanonicalCache<String, SPath> paths = new CanonicalCache<>(CACHE_SIZE);
 
-  public SPathConverter(ISarosSession session, IPathFactory pathFactory) {
+  public SPathConverter(
+      ISarosSession session, IPathFactory pathFactory, ActivitiesExtension.Provider provider) {
     this.session = session;
     this.pathFactory = pathFactory;
+    this.provider = provider;
   }
 
   @Override
   public void start() {
-    ActivitiesExtension.PROVIDER.registerConverter(this);
+    provider.registerConverter(this);
   }
 
   @Override
   public void stop() {
-    ActivitiesExtension.PROVIDER.unregisterConverter(this);
+    provider.unregisterConverter(this);
+    paths.clear();
   }
 
   @SuppressWarnings("rawtypes")
@@ -82,7 +95,7 @@ public class SPathConverter implements Converter, Startable {
   public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
 
     String i = reader.getAttribute(PROJECT_ID);
-    String p = URLCodec.decode(reader.getAttribute(PATH));
+    String encodedPath = reader.getAttribute(PATH);
 
     IProject project = session.getProject(i);
     if (project == null) {
@@ -90,8 +103,19 @@ public class SPathConverter implements Converter, Startable {
       return null;
     }
 
-    IPath path = pathFactory.fromString(p);
+    /*
+     * the project is compared as the same path may exist in several projects
+     * and a project may be replaced by another one with the same id
+     */
+    SPath spath = paths.get(encodedPath);
+
+    if (spath != null && spath.getProject() == project) return spath;
+
+    IPath path = pathFactory.fromString(URLCodec.decode(encodedPath));
+
+    spath = new SPath(project, path);
+    paths.put(encodedPath, spath);
 
-    return new SPath(project, path);
+    return spath;
   }
 }
@@ -0,0 +1,27 @@
+package saros.misc.xstream;
+
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.converters.extended.EncodedByteArrayConverter;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+
+/**
+ * Converter for byte arrays that uses the same Base64 encoding as the default XStream converter but
+ * decodes the content directly from the parser if the data is read by an {@link XppReader}. This
+ * avoids storing the encoded content in intermediate strings and buffers that together need several
+ * times the memory of the decoded content, e.g for the content of large files.
+ */
+public class StreamingByteArrayConverter extends EncodedByteArrayConverter {
+
+  @Override
+  public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+    final HierarchicalStreamReader underlyingReader = reader.underlyingReader();
+
+    if (underlyingReader instanceof XppReader) {
+      final byte[] value = ((XppReader) underlyingReader).readBase64Value();
+
+      if (value != null) return value;
+    }
+
+    return super.unmarshal(reader, context);
+  }
+}
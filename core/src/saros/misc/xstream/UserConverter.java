@@ -11,24 +11,37 @@ import saros.session.User;
 /**
  * Converts session-dependent User objects to session-independent XML representations, and vice
  * versa.
+ *
+ * <p>The users of the recently unmarshalled JIDs are cached, so the JIDs are not parsed again for
+ * every activity.
  */
 @Component
 public class UserConverter extends AbstractSingleValueConverter implements Startable {
 
+  /** Maximum number of unmarshalled JIDs whose users are cached. */
+  private static final int CACHE_SIZE = 64;
+
   private ISarosSession session;
 
-  public UserConverter(ISarosSession session) {
+  private final ActivitiesExtension.Provider provider;
+
+  /** Users by their encoded JID. */
+  private final CanonicalCache<String, User> users = new CanonicalCache<>(CACHE_SIZE);
+
+  public UserConverter(ISarosSession session, ActivitiesExtension.Provider provider) {
     this.session = session;
+    this.provider = provider;
   }
 
   @Override
   public void start() {
-    ActivitiesExtension.PROVIDER.registerConverter(this);
+    provider.registerConverter(this);
   }
 
   @Override
   public void stop() {
-    ActivitiesExtension.PROVIDER.unregisterConverter(this);
+    provider.unregisterConverter(this);
+    users.clear();
   }
 
   @SuppressWarnings({"rawtypes"})
@@ -45,7 +58,19 @@ public class UserConverter extends AbstractSingleValueConverter implements Start
 
   @Override
   public Object fromString(String str) {
+    User user = users.get(str);
+
+    /*
+     * the user may have left the session meanwhile, the lookup is cheap as
+     * the JID of a cached user has already computed its hash code
+     */
+    if (user != null && session.getUser(user.getJID()) == user) return user;
+
     JID jid = new JID(URLCodec.decode(str));
-    return session.getUser(jid);
+    user = session.getUser(jid);
+
+    if (user != null) users.put(str, user);
+
+    return user;
   }
 }
@@ -84,6 +84,20 @@ public class XStreamExtensionProvider<T> implements PacketExtensionProvider, IQP
    * unable to decode the extension !
    */
   public XStreamExtensionProvider(String namespace, String elementName, Class<?>... classes) {
+    this(true, namespace, elementName, classes);
+  }
+
+  /**
+   * Create a new XStreamExtensionProvider like {@link #XStreamExtensionProvider(String, String,
+   * Class...)}.
+   *
+   * @param install whether the provider is installed at the Smack {@link ProviderManager}. A
+   *     provider that is not installed only parses the extensions that are explicitly passed to it,
+   *     so several providers for the same extension, e.g. with converters of different sessions,
+   *     can exist at the same time.
+   */
+  protected XStreamExtensionProvider(
+      boolean install, String namespace, String elementName, Class<?>... classes) {
 
     if (namespace == null) throw new NullPointerException("namespace is null");
 
@@ -99,13 +113,16 @@ public class XStreamExtensionProvider<T> implements PacketExtensionProvider, IQP
 
     xstream.registerConverter(BooleanConverter.BINARY);
     xstream.registerConverter(new UrlEncodingStringConverter());
+    xstream.registerConverter((Converter) new StreamingByteArrayConverter());
     xstream.processAnnotations(XStreamPacketExtension.class);
     xstream.processAnnotations(classes);
     xstream.alias(elementName, XStreamPacketExtension.class);
 
-    ProviderManager providerManager = ProviderManager.getInstance();
-    providerManager.addExtensionProvider(getElementName(), getNamespace(), this);
-    providerManager.addIQProvider(getElementName(), getNamespace(), this);
+    if (install) {
+      ProviderManager providerManager = ProviderManager.getInstance();
+      providerManager.addExtensionProvider(getElementName(), getNamespace(), this);
+      providerManager.addIQProvider(getElementName(), getNamespace(), this);
+    }
 
     // TODO Validate that elementName is a valid XML identifier
 
@@ -21,6 +21,12 @@ public class XppReader extends AbstractPullReader {
   /** Flag that tells if the reader is still "before" the first node. */
   protected boolean justStarted = true;
 
+  /**
+   * Flag that tells if the parser already reached the end tag of the current node while its text
+   * was read by {@link #readBase64Value()}.
+   */
+  private boolean pendingEndNode;
+
   public XppReader(XmlPullParser parser) {
     super(new XmlFriendlyNameCoder());
     this.parser = parser;
@@ -47,6 +53,11 @@ public class XppReader extends AbstractPullReader {
         return START_NODE;
       }
 
+      if (pendingEndNode) {
+        pendingEndNode = false;
+        return END_NODE;
+      }
+
       switch (parser.next()) {
         case XmlPullParser.START_DOCUMENT:
         case XmlPullParser.START_TAG:
@@ -99,6 +110,50 @@ public class XppReader extends AbstractPullReader {
     return unescapeXmlName(parser.getAttributeName(index));
   }
 
+  /**
+   * Decodes the Base64 encoded text of the current node directly from the character buffer of the
+   * parser. Unlike {@link #getValue()} this does not create any intermediate strings, the only
+   * allocated object is the returned array.
+   *
+   * <p>This method must only be called right after moving down to the node and before any other
+   * method that inspects its content (e.g {@link #hasMoreChildren()}) is called.
+   *
+   * @return the decoded text of the current node or <code>null</code> if the reader is not
+   *     positioned at the start of the current node, in this case the reader is left unchanged
+   * @throws StreamException if the node contains child nodes or the parser fails
+   */
+  public byte[] readBase64Value() {
+    try {
+      if (justStarted
+          || pendingEndNode
+          || parser.getEventType() != XmlPullParser.START_TAG
+          || !parser.getName().equals(escapeXmlName(getNodeName()))) return null;
+
+      int event = parser.next();
+
+      byte[] value = new byte[0];
+
+      if (event == XmlPullParser.TEXT) {
+        final int[] holder = new int[2];
+        final char[] text = parser.getTextCharacters(holder);
+
+        value = Base64.decode(text, holder[0], holder[1]);
+        event = parser.next();
+      }
+
+      if (event != XmlPullParser.END_TAG)
+        throw new StreamException("node " + getNodeName() + " contains unexpected content");
+
+      pendingEndNode = true;
+
+      return value;
+    } catch (XmlPullParserException e) {
+      throw new StreamException(e);
+    } catch (IOException e) {
+      throw new StreamException(e);
+    }
+  }
+
   @Override
   public void appendErrors(ErrorWriter errorWriter) {
     errorWriter.add("line number", String.valueOf(parser.getLineNumber()));
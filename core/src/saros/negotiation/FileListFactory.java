@@ -1,9 +1,7 @@
 package saros.negotiation;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import org.apache.log4j.Logger;
 import saros.filesystem.FileSystem;
@@ -76,52 +74,64 @@ public class FileListFactory {
 
     FileList list = new FileList();
 
+    final List<IFile> files = new ArrayList<IFile>();
+
     if (resources == null) {
       list.addEncoding(project.getDefaultCharset());
-      resources = Arrays.asList(project.members());
+
+      project.accept(
+          (resource) -> resource.getType() == IResource.PROJECT || add(list, files, resource));
+    } else {
+      addMembersToList(list, files, resources);
     }
 
-    addMembersToList(list, resources);
+    computeChecksums(list, files);
 
     return list;
   }
 
-  private void addMembersToList(final FileList list, final List<IResource> resources)
+  private void addMembersToList(
+      final FileList list, final List<IFile> files, final List<IResource> resources)
       throws IOException {
 
-    if (resources.size() == 0) return;
-
-    Deque<IResource> stack = new LinkedList<IResource>();
-
-    stack.addAll(resources);
+    for (final IResource resource : resources) {
+      if (!resource.exists()) continue;
 
-    List<IFile> files = new LinkedList<IFile>();
-
-    while (!stack.isEmpty()) {
-      IResource resource = stack.pop();
+      if (resource.getType() == IResource.FOLDER)
+        ((IFolder) resource).accept((member) -> add(list, files, member));
+      else add(list, files, resource);
+    }
+  }
 
-      if (resource.isIgnored() || !resource.exists()) continue;
+  /**
+   * Adds the given existing resource to the list.
+   *
+   * @return <code>true</code> if the members of the resource should be added as well
+   */
+  private boolean add(final FileList list, final List<IFile> files, final IResource resource)
+      throws IOException {
 
-      String path = resource.getProjectRelativePath().toPortableString();
+    if (resource.isIgnored()) return false;
 
-      if (list.contains(path)) continue;
+    final String path = resource.getProjectRelativePath().toPortableString();
 
-      MetaData data = null;
+    if (list.contains(path)) return false;
 
-      switch (resource.getType()) {
-        case IResource.FILE:
-          files.add((IFile) resource);
-          data = new MetaData();
-          list.addPath(path, data, false);
-          list.addEncoding(((IFile) resource).getCharset());
-          break;
-        case IResource.FOLDER:
-          stack.addAll(Arrays.asList(((IFolder) resource).members()));
-          list.addPath(path, data, true);
-          break;
-      }
+    switch (resource.getType()) {
+      case IResource.FILE:
+        files.add((IFile) resource);
+        list.addPath(path, new MetaData(), false);
+        list.addEncoding(((IFile) resource).getCharset());
+        return false;
+      case IResource.FOLDER:
+        list.addPath(path, null, true);
+        return true;
+      default:
+        return false;
     }
+  }
 
+  private void computeChecksums(final FileList list, final List<IFile> files) {
     monitor.beginTask("Calculating checksums...", files.size());
 
     for (IFile file : files) {
@@ -10,7 +10,8 @@ import saros.net.internal.TransferDescription;
 public interface IPacketInterceptor {
 
   /**
-   * This method is called before the {@link IReceiver} is dispatching the packet.
+   * This method is called before the {@link IReceiver} is dispatching the packet. It is called on
+   * the dispatch thread, for the extensions of a sender in the order they were received.
    *
    * @param extension
    * @return <code>true</code> if the packet should be dispatched, <code>false</code> if the packet
@@ -3,6 +3,8 @@ package saros.net;
 import org.jivesoftware.smack.PacketListener;
 import org.jivesoftware.smack.filter.PacketFilter;
 import org.jivesoftware.smack.packet.Packet;
+import org.jivesoftware.smack.provider.PacketExtensionProvider;
+import org.jivesoftware.smack.provider.ProviderManager;
 
 public interface IReceiver {
 
@@ -66,4 +68,31 @@ public interface IReceiver {
   public default void removePacketInterceptor(IPacketInterceptor interceptor) {
     // NOP
   }
+
+  /**
+   * Adds a provider that parses the received packet extensions with the given element name and
+   * namespace. The provider is used instead of the provider that is installed at the {@link
+   * ProviderManager}, which is shared by all receivers of the process.
+   *
+   * @param elementName the element name of the packet extensions
+   * @param namespace the namespace of the packet extensions
+   * @param provider the provider to parse the packet extensions with
+   */
+  public default void addPacketExtensionProvider(
+      String elementName, String namespace, PacketExtensionProvider provider) {
+    // NOP
+  }
+
+  /**
+   * Removes a provider that was added with {@link #addPacketExtensionProvider}. Does nothing if
+   * another provider was added for the element name and namespace meanwhile.
+   *
+   * @param elementName the element name of the packet extensions
+   * @param namespace the namespace of the packet extensions
+   * @param provider the provider to remove
+   */
+  public default void removePacketExtensionProvider(
+      String elementName, String namespace, PacketExtensionProvider provider) {
+    // NOP
+  }
 }
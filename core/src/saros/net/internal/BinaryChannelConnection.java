@@ -1,15 +1,18 @@
 package saros.net.internal;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InterruptedIOException;
-import java.net.ProtocolException;
+import java.io.OutputStream;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 import org.apache.log4j.Logger;
@@ -24,7 +27,23 @@ import saros.net.xmpp.JID;
  * <p>The threading requirements of this class are the following:
  *
  * <p>send() is a reentrant method for sending data. Any number of threads can call it in parallel.
- * <b>Note:</b> The maximum number of concurrent threads is 32 !
+ *
+ * <p>The data that is sent concurrently is limited by a credit window of {@value
+ * #MAX_PENDING_BYTES_DEFAULT} bytes (configurable). A thread whose data does not fit into the
+ * window blocks until enough pending data is sent, which also bounds the partially received data
+ * the remote side has to keep. Threads are admitted in the order they called send(), except for
+ * data with {@link TransferDescription.Priority#INTERACTIVE interactive} priority which is admitted
+ * regardless of the window.
+ *
+ * <p>The chunks of concurrently sent data are interleaved according to the {@link
+ * TransferDescription.Priority priority} of their transfer descriptions, see {@link
+ * FragmentScheduler}. Only one thread writes to the stream at a time. It writes the chunks of all
+ * pending fragments until its own fragment is sent and then hands over to the next waiting thread.
+ *
+ * <p>If the {@link ByteStream} is backed by a {@link SocketChannel}, the channel is switched to
+ * non-blocking mode and served by a shared {@link SelectorPool} instead of a dedicated receiver
+ * thread. Each chunk is then written together with its frame header by a single gathering write.
+ * The framing is the same for both kinds of streams.
  *
  * @author sszuecs
  * @author coezbek
@@ -36,19 +55,31 @@ public class BinaryChannelConnection implements IByteStreamConnection {
 
   private static final long TERMINATE_TIMEOUT = 10000L;
 
-  private static class Opcode {
+  private static final boolean USE_NIO =
+      Boolean.valueOf(System.getProperty("saros.net.nio.ENABLED", "true"));
+
+  static class Opcode {
     /* these opcodes will be cropped to byte values, do not exceed 0xFF ! */
 
-    private static final int TRANSFERDESCRIPTION = 0xFA;
-    private static final int DATA = 0xFB;
+    static final int TRANSFERDESCRIPTION = 0xFA;
+    static final int DATA = 0xFB;
 
-    private static final int NAMESPACE_UPDATE = 0x64;
-    private static final int ELEMENT_NAME_UPDATE = 0x65;
+    static final int NAMESPACE_UPDATE = 0x64;
+    static final int ELEMENT_NAME_UPDATE = 0x65;
   }
 
   /** Max size of data chunks */
   private static final int CHUNKSIZE = 32 * 1024 - 1;
 
+  static final int MAX_PENDING_BYTES_DEFAULT = 16 * 1024 * 1024;
+
+  /** Credit window, i.e. the maximum number of bytes that are admitted for sending at once. */
+  private static final int MAX_PENDING_BYTES =
+      Integer.getInteger("saros.net.binarychannel.MAX_PENDING_BYTES", MAX_PENDING_BYTES_DEFAULT);
+
+  /** Initial size of the buffer for the frames that are written in front of a chunk. */
+  private static final int FRAME_BUFFER_SIZE = 1024;
+
   private IByteStreamConnectionListener listener;
   private ReceiverThread receiveThread;
 
@@ -62,53 +93,146 @@ public class BinaryChannelConnection implements IByteStreamConnection {
   private boolean connected;
   private boolean initialized;
 
-  private Map<Integer, ByteArrayOutputStream> pendingFragmentedPackets =
-      new HashMap<Integer, ByteArrayOutputStream>();
-  private Map<Integer, BinaryXMPPExtension> pendingXMPPExtensions =
-      new HashMap<Integer, BinaryXMPPExtension>();
+  private final FrameDecoder decoder;
+
+  /** The streams of the connection, only used if there is no channel. */
+  private InputStream inputStream;
+
+  private OutputStream outputStream;
+
+  /** The non-blocking channel of the connection or <code>null</code> if streams are used. */
+  private final SocketChannel channel;
+
+  private SelectorPool selectorPool;
+  private SelectorPool.Registration registration;
 
-  private DataInputStream inputStream;
-  private DataOutputStream outputStream;
+  /** Buffer for reading from the channel, only accessed by the selector thread. */
+  private ByteBuffer readBuffer;
+
+  /** Buffer for the frames that are written in front of a chunk, only used by the writer. */
+  private ByteBuffer frameBuffer = ByteBuffer.allocate(FRAME_BUFFER_SIZE);
+
+  private final ByteBuffer[] writeBuffers = new ByteBuffer[2];
+
+  private final Object writableLock = new Object();
+  private boolean writable;
 
   private ByteStream stream;
   private StreamMode mode;
 
-  private Map<Integer, String> inNamespaceCache = new HashMap<Integer, String>();
   private Map<String, Integer> outNamespaceCache = new HashMap<String, Integer>();
 
-  private Map<Integer, String> inElementNameCache = new HashMap<Integer, String>();
   private Map<String, Integer> outElementNameCache = new HashMap<String, Integer>();
 
   private int nextNamespaceId = 0;
   private int nextElementNameId = 0;
 
+  /** Guards the scheduler, the writing flag and the state of the outgoing fragments. */
+  private final Object sendLock = new Object();
+
+  private final FragmentScheduler scheduler = new FragmentScheduler(CHUNKSIZE);
+
+  /** Whether a thread is currently writing chunks to the stream. */
+  private boolean writing;
+
+  /** Number of bytes that are admitted for sending but not sent yet. */
+  private long pendingBytes;
+
+  /** Tickets that order the admission of threads that wait for credits. */
+  private long nextTicket;
+
+  private long admittedTicket;
+
+  private static class OutgoingFragment extends FragmentScheduler.Fragment {
+    private final int id;
+    private final TransferDescription description;
+    private final byte[] content;
+    private final int offset;
+    private final int length;
+
+    private boolean sent;
+    private IOException failure;
+
+    private OutgoingFragment(
+        final int id,
+        final TransferDescription description,
+        final byte[] content,
+        final int offset,
+        final int length) {
+      super(description.getPriority(), length);
+      this.id = id;
+      this.description = description;
+      this.content = content;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
   private class ReceiverThread extends Thread {
 
     @Override
     public void run() {
-      String connection = BinaryChannelConnection.this.toString();
+      LOG.debug(BinaryChannelConnection.this + " ReceiverThread started.");
+
+      final ByteBuffer buffer = ByteBuffer.allocate(SelectorPool.BUFFER_CAPACITY);
 
-      LOG.debug(connection + " ReceiverThread started.");
       try {
         while (!isInterrupted()) {
-          final BinaryXMPPExtension extension = readNextXMPPExtension();
-          if (receiver != null) receiver.receive(extension);
+          final int read =
+              inputStream.read(
+                  buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+
+          if (read == -1) throw new EOFException("no stream data available");
+
+          buffer.position(buffer.position() + read);
+
+          decodeAndDispatch(buffer);
         }
 
-      } catch (SocketException e) {
-        LOG.debug(connection + " connection closed locally: " + e.getMessage());
-      } catch (EOFException e) {
-        LOG.debug(connection + " connection closed remotely:" + e.getMessage());
-      } catch (IOException e) {
-        LOG.error(connection + " network error: " + e.getMessage(), e);
+        throw new InterruptedIOException("interrupted while reading stream data");
       } catch (Exception e) {
-        LOG.error(connection + " internal error: " + e.getMessage(), e);
+        logReceiveFailure(e);
       } finally {
         close();
       }
     }
   }
 
+  private class ChannelHandler implements SelectorPool.Handler {
+
+    @Override
+    public void readable() {
+      if (readBuffer == null) return;
+
+      try {
+        if (channel.read(readBuffer) == -1) throw new EOFException("no stream data available");
+
+        decodeAndDispatch(readBuffer);
+      } catch (Exception e) {
+        logReceiveFailure(e);
+        close();
+      }
+    }
+
+    @Override
+    public void writable() {
+      synchronized (writableLock) {
+        writable = true;
+        writableLock.notifyAll();
+      }
+    }
+
+    @Override
+    public void unregistered() {
+      close();
+
+      if (readBuffer == null) return;
+
+      selectorPool.releaseBuffer(readBuffer);
+      readBuffer = null;
+    }
+  }
+
   private IBinaryXMPPExtensionReceiver receiver;
 
   public BinaryChannelConnection(
@@ -127,8 +251,20 @@ public class BinaryChannelConnection implements IByteStreamConnection {
     this.stream.setReadTimeout(0); // keep connection alive
     this.mode = mode;
 
-    outputStream = new DataOutputStream(new BufferedOutputStream(stream.getOutputStream()));
-    inputStream = new DataInputStream(new BufferedInputStream(stream.getInputStream()));
+    decoder = new FrameDecoder(localAddress, remoteAddress, mode, CHUNKSIZE);
+
+    final SocketChannel streamChannel = USE_NIO ? stream.getChannel() : null;
+
+    selectorPool = streamChannel != null ? SelectorPool.getDefault() : null;
+
+    if (selectorPool != null) {
+      channel = streamChannel;
+      channel.configureBlocking(false);
+    } else {
+      channel = null;
+      outputStream = new BufferedOutputStream(stream.getOutputStream());
+      inputStream = stream.getInputStream();
+    }
   }
 
   @Override
@@ -146,9 +282,15 @@ public class BinaryChannelConnection implements IByteStreamConnection {
      * it is ok to start the receiver a bit later because the data will be
      * already buffered by SMACK or the OS
      */
-    receiveThread = new ReceiverThread();
-    receiveThread.setName("BinaryChannel-" + remoteAddress.getName());
-    receiveThread.start();
+    if (channel != null) {
+      readBuffer = selectorPool.acquireBuffer();
+      registration = selectorPool.register(channel, new ChannelHandler());
+    } else {
+      receiveThread = new ReceiverThread();
+      receiveThread.setName("BinaryChannel-" + remoteAddress.getName());
+      receiveThread.start();
+    }
+
     connected = true;
     initialized = true;
   }
@@ -177,9 +319,14 @@ public class BinaryChannelConnection implements IByteStreamConnection {
       }
     }
 
-    assert receiveThread != null;
+    // wake up threads that wait for admission
+    synchronized (sendLock) {
+      sendLock.notifyAll();
+    }
+
+    if (registration != null) registration.cancel();
 
-    if (Thread.currentThread() != receiveThread) {
+    if (receiveThread != null && Thread.currentThread() != receiveThread) {
       try {
         receiveThread.join(TERMINATE_TIMEOUT);
       } catch (InterruptedException e) {
@@ -207,308 +354,415 @@ public class BinaryChannelConnection implements IByteStreamConnection {
 
   @Override
   public void send(TransferDescription data, byte[] content) throws IOException {
+    send(data, content, 0, content.length);
+  }
+
+  @Override
+  public void send(TransferDescription data, byte[] content, int offset, int length)
+      throws IOException {
 
     if (!isConnected()) throw new EOFException("connection is closed");
 
-    final int fragmentId = idPool.nextID();
+    assert length > 0;
 
-    if (fragmentId < 0) throw new IOException("concurrent access threshold exceeded");
+    final int fragmentId = admit(data.getPriority(), length);
 
     try {
 
-      Integer namespaceId;
-      Integer elementNameId;
+      final OutgoingFragment fragment =
+          new OutgoingFragment(fragmentId, data, content, offset, length);
 
-      synchronized (this) {
-        final String namespace = data.getNamespace();
-        namespaceId = outNamespaceCache.get(namespace);
+      synchronized (sendLock) {
+        scheduler.add(fragment);
+      }
+
+      awaitSent(fragment);
+    } catch (IOException e) {
+      close();
+      throw e;
+    } finally {
+      synchronized (sendLock) {
+        idPool.freeID(fragmentId);
+        pendingBytes -= length;
+        sendLock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Waits until the data of the given length fits into the credit window and a fragment id is
+   * available.
+   *
+   * @return the fragment id to use
+   * @throws EOFException if the connection was closed while waiting
+   */
+  private int admit(final TransferDescription.Priority priority, final int length)
+      throws IOException {
 
-        if (namespaceId == null) {
-          if (nextNamespaceId > 255) throw new IOException("namespace cache limit exceeded");
+    boolean interrupted = false;
 
-          namespaceId = Integer.valueOf(nextNamespaceId++);
-          outNamespaceCache.put(namespace, namespaceId);
+    try {
+      synchronized (sendLock) {
+        final long ticket =
+            priority == TransferDescription.Priority.INTERACTIVE ? -1 : nextTicket++;
 
-          if (LOG.isTraceEnabled())
-            LOG.trace(
-                "updated outgoing namespace cache, id: "
-                    + namespaceId
-                    + " , namespace: "
-                    + namespace);
+        while (true) {
+          if (!isConnected()) throw new EOFException("connection is closed");
 
-          outputStream.write(Opcode.NAMESPACE_UPDATE);
-          outputStream.write(namespaceId);
-          outputStream.writeUTF(namespace);
-        }
+          final boolean mayEnter =
+              ticket < 0
+                  || (ticket == admittedTicket
+                      && (pendingBytes == 0 || pendingBytes + length <= MAX_PENDING_BYTES));
 
-        final String elementName = data.getElementName();
-        elementNameId = outElementNameCache.get(elementName);
+          if (mayEnter) {
+            final int fragmentId = idPool.nextID();
 
-        if (elementNameId == null) {
-          if (nextElementNameId > 65535) throw new IOException("element name cache limit exceeded");
+            if (fragmentId >= 0) {
+              pendingBytes += length;
 
-          elementNameId = Integer.valueOf(nextElementNameId++);
-          outElementNameCache.put(elementName, elementNameId);
+              if (ticket >= 0) {
+                admittedTicket++;
+                sendLock.notifyAll();
+              }
 
-          if (LOG.isTraceEnabled())
-            LOG.trace(
-                "updated outgoing element name cache, id: "
-                    + elementNameId
-                    + " , element name: "
-                    + elementName);
+              return fragmentId;
+            }
+          }
 
-          outputStream.write(Opcode.ELEMENT_NAME_UPDATE);
-          outputStream.writeShort(elementNameId);
-          outputStream.writeUTF(elementName);
+          try {
+            sendLock.wait();
+          } catch (InterruptedException e) {
+            /*
+             * keep waiting, leaving the queue would stall all threads that
+             * arrived later
+             */
+            interrupted = true;
+          }
         }
       }
+    } finally {
+      if (interrupted) Thread.currentThread().interrupt();
+    }
+  }
 
-      assert content.length > 0;
+  /**
+   * Waits until the given fragment is sent. If no other thread is currently writing, the calling
+   * thread writes the scheduled chunks of all pending fragments until the given fragment is sent.
+   */
+  private void awaitSent(final OutgoingFragment fragment) throws IOException {
+    boolean interrupted = false;
 
-      int chunks = ((content.length - 1) / CHUNKSIZE) + 1;
+    try {
+      synchronized (sendLock) {
+        while (writing && !fragment.sent && fragment.failure == null) {
+          try {
+            sendLock.wait();
+          } catch (InterruptedException e) {
+            /*
+             * the chunks of the fragment may already be on the wire, so
+             * we cannot abort here without corrupting the stream
+             */
+            interrupted = true;
+          }
+        }
 
-      sendTransferDescription(
-          fragmentId, chunks, namespaceId, elementNameId, data.compressContent());
+        if (fragment.failure != null)
+          throw new IOException(
+              "failed to send data: " + fragment.failure.getMessage(), fragment.failure);
+
+        if (fragment.sent) return;
+
+        writing = true;
+      }
+
+      try {
+        writeUntilSent(fragment);
+      } finally {
+        synchronized (sendLock) {
+          writing = false;
+          sendLock.notifyAll();
+        }
+      }
 
-      splitAndSend(content, chunks, fragmentId);
-    } catch (IOException e) {
-      close();
-      throw e;
     } finally {
-      idPool.freeID(fragmentId);
+      if (interrupted) Thread.currentThread().interrupt();
     }
   }
 
   /**
-   * Reads the next XMPP extension.
-   *
-   * @return returns the next incoming transfer object
-   * @throws IOException If the associated socket broke, while reading or if the socket has already
-   *     been disposed.
+   * Writes the chunks in the order of the {@link FragmentScheduler} until the given fragment is
+   * sent. Must only be called by the thread that is currently writing.
    */
-  private BinaryXMPPExtension readNextXMPPExtension() throws IOException {
-
-    while (!Thread.currentThread().isInterrupted()) {
+  private void writeUntilSent(final OutgoingFragment fragment) throws IOException {
+    while (true) {
+      final OutgoingFragment next;
 
-      final int opcode = inputStream.readUnsignedByte();
+      synchronized (sendLock) {
+        if (fragment.sent) return;
 
-      if (opcode == -1) throw new EOFException("no stream data available");
+        next = (OutgoingFragment) scheduler.next();
+      }
 
-      final int fragmentId;
+      assert next != null;
 
-      final int id;
-      final String name;
+      try {
+        if (next.isFirstChunk()) putTransferDescription(next);
 
-      switch (opcode) {
-        case Opcode.TRANSFERDESCRIPTION:
-          fragmentId = inputStream.readShort();
-          final int chunks = inputStream.readInt();
+        sendData(next.id, next.content, next.offset + next.getChunkOffset(), next.getChunkLength());
 
-          if (LOG.isTraceEnabled()) {
-            LOG.trace(
-                "processing opcode 0x"
-                    + Integer.toHexString(opcode).toUpperCase()
-                    + " [TFD]: id="
-                    + fragmentId
-                    + ", chunks="
-                    + chunks);
-          }
+        if (next.isComplete() && outputStream != null) outputStream.flush();
 
-          final int namespaceId = inputStream.readUnsignedByte();
-          final int elementNameId = inputStream.readUnsignedShort();
-          final int compressed = inputStream.readUnsignedByte();
+      } catch (IOException e) {
+        synchronized (sendLock) {
+          for (final FragmentScheduler.Fragment pending : scheduler.clear())
+            ((OutgoingFragment) pending).failure = e;
 
-          final String namespace = inNamespaceCache.get(Integer.valueOf(namespaceId));
+          next.failure = e;
+          sendLock.notifyAll();
+        }
 
-          final String elementName = inElementNameCache.get(Integer.valueOf(elementNameId));
+        throw e;
+      }
 
-          final TransferDescription transferDescription = TransferDescription.newDescription();
+      if (!next.isComplete()) continue;
 
-          transferDescription.setSender(remoteAddress);
-          transferDescription.setRecipient(localAddress);
-          transferDescription.setNamespace(namespace);
-          transferDescription.setElementName(elementName);
-          transferDescription.setCompressContent(compressed == 1);
+      synchronized (sendLock) {
+        next.sent = true;
+        sendLock.notifyAll();
+      }
+    }
+  }
 
-          BinaryXMPPExtension oldTransferObject =
-              pendingXMPPExtensions.put(
-                  fragmentId, new BinaryXMPPExtension(mode, transferDescription, chunks));
+  /**
+   * Decodes the frames of the given buffer and passes all completed XMPP extensions to the
+   * receiver.
+   *
+   * @param buffer a buffer in write mode, it is compacted afterwards
+   */
+  private void decodeAndDispatch(final ByteBuffer buffer) throws IOException {
+    buffer.flip();
 
-          if (oldTransferObject != null)
-            throw new IOException("replaced a XMPP extension that is still transmitted");
-          break;
+    try {
+      BinaryXMPPExtension extension;
 
-        case Opcode.DATA:
-          fragmentId = inputStream.readShort();
-          final int payloadLength = inputStream.readInt();
+      while ((extension = decoder.decode(buffer)) != null)
+        if (receiver != null) receiver.receive(extension);
 
-          if (LOG.isTraceEnabled()) {
-            LOG.trace(
-                "processing opcode 0x"
-                    + Integer.toHexString(opcode).toUpperCase()
-                    + " [DATA]: id="
-                    + fragmentId
-                    + ", DATA len="
-                    + payloadLength
-                    + " bytes");
-          }
+    } finally {
+      buffer.compact();
+    }
+  }
 
-          if (payloadLength <= 0 || payloadLength > CHUNKSIZE)
-            throw new ProtocolException(
-                "payload length field contains corrupted value: 0 < "
-                    + payloadLength
-                    + " <= "
-                    + CHUNKSIZE);
+  private void logReceiveFailure(final Exception e) {
+    if (e instanceof SocketException || e instanceof ClosedChannelException) {
+      LOG.debug(this + " connection closed locally: " + e.getMessage());
+    } else if (e instanceof EOFException) {
+      LOG.debug(this + " connection closed remotely:" + e.getMessage());
+    } else if (e instanceof IOException) {
+      LOG.error(this + " network error: " + e.getMessage(), e);
+    } else {
+      LOG.error(this + " internal error: " + e.getMessage(), e);
+    }
+  }
 
-          byte[] payload = new byte[payloadLength];
-          inputStream.readFully(payload);
+  private void sendData(int fragmentId, byte[] data, int offset, int length) throws IOException {
 
-          ByteArrayOutputStream out = pendingFragmentedPackets.get(fragmentId);
+    if (LOG.isTraceEnabled()) {
+      LOG.trace("sending data: id=" + fragmentId + ", len=" + length + " bytes");
+    }
 
-          if (out == null) {
-            out = new ByteArrayOutputStream(payloadLength * 2);
-            pendingFragmentedPackets.put(fragmentId, out);
-          }
+    ensureFrameCapacity(1 + 2 + 4);
 
-          out.write(payload);
-          out.flush();
+    frameBuffer.put((byte) Opcode.DATA);
+    frameBuffer.putShort((short) fragmentId);
+    frameBuffer.putInt(length);
 
-          if (!pendingXMPPExtensions.get(fragmentId).isLastChunk()) break;
+    writeFrames(data, offset, length);
+  }
 
-          pendingFragmentedPackets.remove(fragmentId);
+  /**
+   * Puts the transfer description of the fragment including necessary cache updates into the frame
+   * buffer.
+   */
+  private void putTransferDescription(final OutgoingFragment fragment) throws IOException {
 
-          BinaryXMPPExtension fullyReceivedTransferObject =
-              pendingXMPPExtensions.remove(fragmentId);
+    final TransferDescription data = fragment.description;
 
-          payload = out.toByteArray();
-          out = null; // help GC
+    final String namespace = data.getNamespace();
+    Integer namespaceId = outNamespaceCache.get(namespace);
 
-          fullyReceivedTransferObject.setPayload(payload.length, payload);
+    if (namespaceId == null) {
+      if (nextNamespaceId > 255) throw new IOException("namespace cache limit exceeded");
 
-          return fullyReceivedTransferObject;
+      namespaceId = Integer.valueOf(nextNamespaceId++);
+      outNamespaceCache.put(namespace, namespaceId);
 
-        case Opcode.ELEMENT_NAME_UPDATE:
-          if (LOG.isTraceEnabled()) {
-            LOG.trace(
-                "processing opcode 0x" + Integer.toHexString(opcode).toUpperCase() + " [ENU]");
-          }
+      if (LOG.isTraceEnabled())
+        LOG.trace(
+            "updated outgoing namespace cache, id: " + namespaceId + " , namespace: " + namespace);
 
-          id = inputStream.readUnsignedShort();
-          name = inputStream.readUTF();
-          inElementNameCache.put(Integer.valueOf(id), name);
+      final byte[] name = encodeUTF(namespace);
 
-          if (LOG.isTraceEnabled())
-            LOG.trace(
-                "updated incoming element name cache, id: " + id + " , element name: " + name);
+      ensureFrameCapacity(1 + 1 + name.length);
 
-          break;
+      frameBuffer.put((byte) Opcode.NAMESPACE_UPDATE);
+      frameBuffer.put(namespaceId.byteValue());
+      frameBuffer.put(name);
+    }
 
-        case Opcode.NAMESPACE_UPDATE:
-          if (LOG.isTraceEnabled()) {
-            LOG.trace(
-                "processing opcode 0x" + Integer.toHexString(opcode).toUpperCase() + " [NSU]");
-          }
+    final String elementName = data.getElementName();
+    Integer elementNameId = outElementNameCache.get(elementName);
 
-          id = inputStream.readUnsignedByte();
-          name = inputStream.readUTF();
-          inNamespaceCache.put(Integer.valueOf(id), name);
+    if (elementNameId == null) {
+      if (nextElementNameId > 65535) throw new IOException("element name cache limit exceeded");
 
-          if (LOG.isTraceEnabled())
-            LOG.trace("updated incoming namespace cache, id: " + id + " , namespace: " + name);
+      elementNameId = Integer.valueOf(nextElementNameId++);
+      outElementNameCache.put(elementName, elementNameId);
 
-          break;
+      if (LOG.isTraceEnabled())
+        LOG.trace(
+            "updated outgoing element name cache, id: "
+                + elementNameId
+                + " , element name: "
+                + elementName);
 
-        default:
-          close();
-          throw new ProtocolException(
-              "unknown opcode: 0x" + Integer.toHexString(opcode).toUpperCase());
-      }
-    }
+      final byte[] name = encodeUTF(elementName);
 
-    // clear the interrupt flag
-    Thread.interrupted();
-    throw new InterruptedIOException("interrupted while reading stream data");
-  }
+      ensureFrameCapacity(1 + 2 + name.length);
 
-  private synchronized void sendData(int fragmentId, byte[] data, int offset, int length)
-      throws IOException {
+      frameBuffer.put((byte) Opcode.ELEMENT_NAME_UPDATE);
+      frameBuffer.putShort(elementNameId.shortValue());
+      frameBuffer.put(name);
+    }
 
     if (LOG.isTraceEnabled()) {
-      LOG.trace("sending data: id=" + fragmentId + ", len=" + length + " bytes");
+      LOG.trace("sending transfer description: id=" + fragment.id);
     }
 
-    outputStream.write(Opcode.DATA);
-    outputStream.writeShort(fragmentId);
-    outputStream.writeInt(length);
-    outputStream.write(data, offset, length);
-    outputStream.flush();
+    ensureFrameCapacity(1 + 2 + 4 + 1 + 2 + 1);
+
+    frameBuffer.put((byte) Opcode.TRANSFERDESCRIPTION);
+    frameBuffer.putShort((short) fragment.id);
+    frameBuffer.putInt(((fragment.length - 1) / CHUNKSIZE) + 1);
+    frameBuffer.put(namespaceId.byteValue());
+    frameBuffer.putShort(elementNameId.shortValue());
+    frameBuffer.put((byte) (data.compressContent() ? 1 : 0));
+  }
+
+  /** Grows the frame buffer if it cannot take the given number of bytes. */
+  private void ensureFrameCapacity(final int length) {
+    if (frameBuffer.remaining() >= length) return;
+
+    frameBuffer.flip();
+    frameBuffer =
+        ByteBuffer.allocate(Math.max(frameBuffer.capacity() * 2, frameBuffer.limit() + length))
+            .put(frameBuffer);
   }
 
-  private synchronized void sendTransferDescription(
-      int fragmentId, int chunks, int namespaceId, int elementNameId, boolean compress)
+  /**
+   * Writes the content of the frame buffer followed by the given data and clears the frame buffer.
+   */
+  private void writeFrames(final byte[] data, final int offset, final int length)
       throws IOException {
 
-    if (LOG.isTraceEnabled()) {
-      LOG.trace("sending transfer description: id=" + fragmentId);
-    }
+    frameBuffer.flip();
 
-    outputStream.write(Opcode.TRANSFERDESCRIPTION);
-    outputStream.writeShort(fragmentId);
-    outputStream.writeInt(chunks);
-    outputStream.write(namespaceId);
-    outputStream.writeShort(elementNameId);
-    outputStream.write(compress ? 1 : 0);
-  }
+    try {
+      if (channel == null) {
+        outputStream.write(frameBuffer.array(), frameBuffer.arrayOffset(), frameBuffer.limit());
+        outputStream.write(data, offset, length);
+        return;
+      }
 
-  /** Splits the given data into chunks of CHUNKSIZE to send the BinaryPackets. */
-  private void splitAndSend(byte[] data, int chunks, int fragmentId) throws IOException {
+      writeBuffers[0] = frameBuffer;
+      writeBuffers[1] = ByteBuffer.wrap(data, offset, length);
 
-    int offset = 0;
-    int length = 0;
+      while (writeBuffers[0].hasRemaining() || writeBuffers[1].hasRemaining()) {
+        if (channel.write(writeBuffers) == 0) awaitWritable();
+      }
+
+    } finally {
+      frameBuffer.clear();
+      writeBuffers[1] = null;
+    }
+  }
 
-    while (chunks-- > 0) {
+  /** Blocks until the channel accepts data again. */
+  private void awaitWritable() throws IOException {
+    synchronized (writableLock) {
+      writable = false;
+    }
 
-      length = Math.min(data.length - offset, CHUNKSIZE);
+    registration.requestWritable();
 
-      sendData(fragmentId, data, offset, length);
+    boolean interrupted = false;
 
-      offset += length;
+    try {
+      synchronized (writableLock) {
+        while (!writable) {
+          if (!isConnected()) throw new EOFException("connection is closed");
+
+          try {
+            writableLock.wait(1000);
+          } catch (InterruptedException e) {
+            // see awaitSent
+            interrupted = true;
+          }
+        }
+      }
+    } finally {
+      if (interrupted) Thread.currentThread().interrupt();
     }
   }
 
+  /** Encodes the given string in the format of {@link DataOutputStream#writeUTF(String)}. */
+  private static byte[] encodeUTF(final String value) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(2 + value.length());
+
+    new DataOutputStream(out).writeUTF(value);
+
+    return out.toByteArray();
+  }
+
   @Override
   public String toString() {
     return "[mode=" + getMode() + ", id=" + connectionID + "]" + " " + remoteAddress;
   }
 
+  /**
+   * Hands out the fragment ids. The ids are transmitted as 16 bit values, so up to 65536 fragments
+   * can be in transit at once. Ids are handed out in ascending order and wrap around, so a released
+   * id is not reused immediately.
+   */
   static class IDPool {
 
-    private final int MAX_ID = 32;
-    private int pool = 0; // 32 ids
+    static final int MAX_ID = 1 << 16;
+
+    private final BitSet used = new BitSet(MAX_ID);
 
-    // see
-    // http://graphics.stanford.edu/~seander/bithacks.html#IntegerLogDeBruijn
-    private static final int LOG_2_TABLE[] = {
-      0, 1, 28, 2, 29, 14, 24, 3, 30, 22, 20, 15, 25, 17, 4, 8, 31, 27, 13, 23, 21, 19, 16, 7, 26,
-      12, 18, 6, 11, 5, 10, 9
-    };
+    private int size;
+    private int next;
 
+    /** @return the next free id or -1 if all ids are in use */
     public synchronized int nextID() {
+      if (size == MAX_ID) return -1;
 
-      final int bitIdx = Integer.lowestOneBit(~pool);
+      int id = used.nextClearBit(next);
 
-      if (bitIdx == 0) return -1;
+      if (id >= MAX_ID) id = used.nextClearBit(0);
 
-      pool |= bitIdx;
+      used.set(id);
+      size++;
+      next = (id + 1) % MAX_ID;
 
-      return LOG_2_TABLE[(bitIdx * 0x077CB531) >>> 27];
+      return id;
     }
 
     public synchronized void freeID(int id) {
-      if (id < 0 || id >= MAX_ID) return;
+      if (id < 0 || id >= MAX_ID || !used.get(id)) return;
 
-      int bitIdx = 1 << id;
-      pool &= (~bitIdx);
+      used.clear(id);
+      size--;
     }
   }
 }
@@ -1,5 +1,8 @@
 package saros.net.internal;
 
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import saros.net.stream.StreamMode;
 
 public final class BinaryXMPPExtension {
@@ -9,7 +12,7 @@ public final class BinaryXMPPExtension {
   private int chunkCount;
   private long transferredSize;
   private long uncompressedSize;
-  private byte[] payload;
+  private final List<byte[]> chunks;
   private long transferDuration;
   private StreamMode transferMode;
 
@@ -18,19 +21,60 @@ public final class BinaryXMPPExtension {
     this.transferMode = transferMode;
     this.transferDescription = transferDescription;
     this.chunkCount = chunkCount;
+    /* the chunk count is read from the network, do not trust it */
+    chunks = new ArrayList<byte[]>(Math.max(1, Math.min(chunkCount, 64)));
     transferredSize = 0;
-    uncompressedSize = 0;
+    uncompressedSize = -1;
     transferDuration = System.currentTimeMillis();
   }
 
   /**
-   * Returns the XMPP packet extension in binary form. <b>Note:</b>The returned byte array <b>must
-   * not</b> be modified directly.
+   * Returns the XMPP packet extension in binary form. If the extension was received in more than
+   * one chunk the chunks are copied into a new array on every call. Use {@link #getPayloadStream()}
+   * to read the payload without copying it. <b>Note:</b>The returned byte array <b>must not</b> be
+   * modified directly.
+   *
+   * @throws IllegalStateException if there are still missing chunks, see also {@link #isLastChunk}
    */
   byte[] getPayload() {
+    checkComplete();
+
+    if (chunks.size() == 1) return chunks.get(0);
+
+    final byte[] payload = new byte[(int) transferredSize];
+
+    int offset = 0;
+
+    for (final byte[] chunk : chunks) {
+      System.arraycopy(chunk, 0, payload, offset, chunk.length);
+      offset += chunk.length;
+    }
+
     return payload;
   }
 
+  /**
+   * Returns a new stream that reads the XMPP packet extension in binary form directly from the
+   * received chunks.
+   *
+   * @throws IllegalStateException if there are still missing chunks, see also {@link #isLastChunk}
+   */
+  InputStream getPayloadStream() {
+    checkComplete();
+    return new ChunkInputStream(chunks);
+  }
+
+  /**
+   * Returns the received chunks of the XMPP packet extension in binary form. <b>Note:</b>The
+   * returned list and byte arrays <b>must not</b> be modified directly.
+   *
+   * @throws IllegalStateException if there are still missing chunks, see also {@link #isLastChunk}
+   */
+  List<byte[]> getChunks() {
+    checkComplete();
+    return chunks;
+  }
+
   /** Returns the transfer description of this transfer object. */
   // public for STF
   public TransferDescription getTransferDescription() {
@@ -47,9 +91,12 @@ public final class BinaryXMPPExtension {
     return transferredSize;
   }
 
-  /** Returns the size of the XMPP packet extension in bytes after decompression. */
+  /**
+   * Returns the size of the XMPP packet extension in bytes after decompression. This is the same as
+   * {@link #getCompressedSize()} until {@link #setUncompressedSize} was called.
+   */
   long getUncompressedSize() {
-    return uncompressedSize;
+    return uncompressedSize < 0 ? transferredSize : uncompressedSize;
   }
 
   /** Returns the time in milliseconds until the transfer was completed. */
@@ -58,28 +105,34 @@ public final class BinaryXMPPExtension {
   }
 
   /**
-   * Sets the data for this XMPP packet extension.
+   * Adds the next chunk of the XMPP packet extension in binary form. The chunk is stored as is and
+   * <b>must not</b> be modified afterwards.
    *
-   * @param originalSize the original size of the received data
-   * @param data the binary form of the XMPP packet extension
-   * @throws IllegalStateException if there are still missing chunks, see also {@link #isLastChunk}
+   * @param chunk the next chunk of the binary form of the XMPP packet extension
+   * @throws IllegalStateException if all chunks were already received
    */
-  void setPayload(long originalSize, byte[] data) {
+  void addChunk(byte[] chunk) {
 
-    if (chunkCount > 0)
-      throw new IllegalStateException("there are chunks missing: " + chunkCount + " > 0");
+    if (chunkCount <= 0) throw new IllegalStateException("all chunks were already received");
+
+    chunks.add(chunk);
+    transferredSize += chunk.length;
+  }
 
-    payload = data;
-    transferredSize = originalSize;
-    uncompressedSize = data.length;
+  /**
+   * Sets the size of the XMPP packet extension in bytes after decompression.
+   *
+   * @param size the size of the decompressed data
+   */
+  void setUncompressedSize(long size) {
+    uncompressedSize = size;
   }
 
   /**
    * Checks if all outstanding chunks have arrived. This method <b>must</b> be called after a chunk
    * has been received.
    *
-   * @return <code>true</code> if {@link #setPayload} can now be called, <code>false</code>
-   *     otherwise
+   * @return <code>true</code> if the payload can now be accessed, <code>false</code> otherwise
    */
   boolean isLastChunk() {
     boolean last = (--chunkCount <= 0);
@@ -88,4 +141,66 @@ public final class BinaryXMPPExtension {
 
     return last;
   }
+
+  private void checkComplete() {
+    if (chunkCount > 0)
+      throw new IllegalStateException("there are chunks missing: " + chunkCount + " > 0");
+  }
+
+  /** Input stream that reads a list of byte arrays one after another without copying them. */
+  private static class ChunkInputStream extends InputStream {
+
+    private final List<byte[]> chunks;
+
+    private int chunkIdx;
+    private int offset;
+
+    private ChunkInputStream(List<byte[]> chunks) {
+      this.chunks = chunks;
+    }
+
+    @Override
+    public int read() {
+      final byte[] chunk = currentChunk();
+
+      if (chunk == null) return -1;
+
+      return chunk[offset++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) return 0;
+
+      final byte[] chunk = currentChunk();
+
+      if (chunk == null) return -1;
+
+      final int count = Math.min(len, chunk.length - offset);
+
+      System.arraycopy(chunk, offset, b, off, count);
+      offset += count;
+
+      return count;
+    }
+
+    @Override
+    public int available() {
+      final byte[] chunk = currentChunk();
+      return chunk == null ? 0 : chunk.length - offset;
+    }
+
+    private byte[] currentChunk() {
+      while (chunkIdx < chunks.size()) {
+        final byte[] chunk = chunks.get(chunkIdx);
+
+        if (offset < chunk.length) return chunk;
+
+        chunkIdx++;
+        offset = 0;
+      }
+
+      return null;
+    }
+  }
 }
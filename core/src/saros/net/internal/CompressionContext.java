@@ -0,0 +1,102 @@
+package saros.net.internal;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A compressor, a decompressor and an output buffer that are confined to a single thread. The
+ * instances are reused for every packet the thread compresses or decompresses, so neither the
+ * native memory of the {@link Deflater} and {@link Inflater} nor the output buffer is allocated per
+ * packet.
+ *
+ * <p>Use {@link #get()} to obtain the context of the current thread. A context must not be used
+ * reentrantly, i.e. the thread must have finished using the compressed data before it compresses
+ * the next packet.
+ */
+final class CompressionContext {
+
+  private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
+  /**
+   * Output buffers that grew beyond this size are released after use, so a single large packet does
+   * not pin its buffer for the lifetime of the thread.
+   */
+  static final int MAX_RETAINED_BUFFER_SIZE =
+      Integer.getInteger("saros.net.compression.MAX_RETAINED_BUFFER_SIZE", 1024 * 1024);
+
+  private static final ThreadLocal<CompressionContext> CONTEXTS =
+      new ThreadLocal<CompressionContext>() {
+        @Override
+        protected CompressionContext initialValue() {
+          return new CompressionContext();
+        }
+      };
+
+  private final Deflater deflater = new Deflater(Deflater.DEFLATED);
+
+  private final Inflater inflater = new Inflater();
+
+  private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+  private CompressionContext() {
+    // use get()
+  }
+
+  /** Returns the context of the current thread. */
+  static CompressionContext get() {
+    return CONTEXTS.get();
+  }
+
+  /**
+   * Compresses the given data into the {@link #getBuffer() output buffer}.
+   *
+   * @param input the data to compress
+   * @return the number of compressed bytes at the start of the output buffer
+   */
+  int deflate(final byte[] input) {
+    deflater.setInput(input);
+    deflater.finish();
+
+    int length = 0;
+
+    try {
+      while (!deflater.finished()) {
+        if (length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+
+        length += deflater.deflate(buffer, length, buffer.length - length);
+      }
+    } finally {
+      deflater.reset();
+    }
+
+    return length;
+  }
+
+  /**
+   * Returns the output buffer of the last {@link #deflate(byte[])} call. The buffer is only valid
+   * until the next call of <code>deflate</code> or {@link #releaseBuffer(boolean)}.
+   */
+  byte[] getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * Signals that the output buffer is no longer used.
+   *
+   * @param discard <code>true</code> if the buffer may still be referenced elsewhere and must not
+   *     be reused
+   */
+  void releaseBuffer(final boolean discard) {
+    if (discard || buffer.length > MAX_RETAINED_BUFFER_SIZE) buffer = new byte[INITIAL_BUFFER_SIZE];
+  }
+
+  /**
+   * Returns the decompressor of the current thread in its initial state. It must not be {@link
+   * Inflater#end() ended}.
+   */
+  Inflater getInflater() {
+    inflater.reset();
+    return inflater;
+  }
+}
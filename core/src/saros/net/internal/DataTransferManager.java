@@ -16,6 +16,7 @@ import org.jivesoftware.smack.Connection;
 import saros.annotations.Component;
 import saros.context.IContextKeyBindings.IBBStreamService;
 import saros.context.IContextKeyBindings.Socks5StreamService;
+import saros.context.IContextKeyBindings.TCPStreamService;
 import saros.net.ConnectionState;
 import saros.net.IConnectionManager;
 import saros.net.stream.IStreamService;
@@ -50,6 +51,9 @@ public class DataTransferManager implements IConnectionListener, IConnectionMana
 
   private int serviceMask = -1;
 
+  /** Service for direct connections, preferred over the main service if available. */
+  private final IStreamService directService;
+
   private final IStreamService mainService;
 
   private final IStreamService fallbackService;
@@ -138,7 +142,16 @@ public class DataTransferManager implements IConnectionListener, IConnectionMana
       XMPPConnectionService connectionService,
       @Nullable @Socks5StreamService IStreamService mainService,
       @Nullable @IBBStreamService IStreamService fallbackService) {
+    this(connectionService, null, mainService, fallbackService);
+  }
+
+  public DataTransferManager(
+      XMPPConnectionService connectionService,
+      @Nullable @TCPStreamService IStreamService directService,
+      @Nullable @Socks5StreamService IStreamService mainService,
+      @Nullable @IBBStreamService IStreamService fallbackService) {
 
+    this.directService = directService;
     this.fallbackService = fallbackService;
     this.mainService = mainService;
     this.setStreamServices();
@@ -320,14 +333,18 @@ public class DataTransferManager implements IConnectionListener, IConnectionMana
   private void setStreamServices() {
     boolean useIBB;
     boolean useSocks5;
+    boolean useTCP;
 
     synchronized (this) {
       useIBB = (serviceMask & IBB_SERVICE) != 0;
       useSocks5 = (serviceMask & SOCKS5_SERVICE) != 0;
+      useTCP = (serviceMask & TCP_SERVICE) != 0;
     }
 
     streamServices.clear();
 
+    if (useTCP && directService != null) streamServices.add(directService);
+
     if (useSocks5 && mainService != null) streamServices.add(mainService);
 
     if (useIBB && fallbackService != null) streamServices.add(fallbackService);
@@ -0,0 +1,63 @@
+package saros.net.internal;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct {@link ByteBuffer}s of a fixed capacity. Allocating and freeing direct buffers is
+ * expensive, so buffers of closed connections are kept for the next connections.
+ *
+ * <p>This class is thread safe.
+ */
+final class DirectBufferPool {
+
+  private final int bufferCapacity;
+
+  private final int maxPooledBuffers;
+
+  private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+
+  private final AtomicInteger pooledBuffers = new AtomicInteger();
+
+  /**
+   * @param bufferCapacity the capacity of the buffers
+   * @param maxPooledBuffers the maximum number of unused buffers that are kept
+   */
+  DirectBufferPool(final int bufferCapacity, final int maxPooledBuffers) {
+    this.bufferCapacity = bufferCapacity;
+    this.maxPooledBuffers = maxPooledBuffers;
+  }
+
+  /** Returns a cleared buffer from the pool or a new buffer if the pool is empty. */
+  ByteBuffer acquire() {
+    final ByteBuffer buffer = buffers.poll();
+
+    if (buffer == null) return ByteBuffer.allocateDirect(bufferCapacity);
+
+    pooledBuffers.decrementAndGet();
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * Returns the given buffer to the pool. The buffer must not be used by the caller afterwards.
+   *
+   * @param buffer a buffer that was acquired from this pool
+   */
+  void release(final ByteBuffer buffer) {
+    assert buffer.capacity() == bufferCapacity && buffer.isDirect();
+
+    if (pooledBuffers.incrementAndGet() > maxPooledBuffers) {
+      pooledBuffers.decrementAndGet();
+      return;
+    }
+
+    buffers.offer(buffer);
+  }
+
+  /** Returns the capacity of the buffers of this pool. */
+  int getBufferCapacity() {
+    return bufferCapacity;
+  }
+}
@@ -0,0 +1,199 @@
+package saros.net.internal;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import org.apache.log4j.Logger;
+import org.jivesoftware.smack.packet.Packet;
+import saros.net.xmpp.JID;
+import saros.util.NamedThreadFactory;
+
+/**
+ * Decodes received {@link BinaryXMPPExtension}s on a pool of threads and passes the decoded packets
+ * on in the order the extensions of each sender were received. Extensions of different senders are
+ * not ordered, so a large packet of one sender does not delay the packets of the others.
+ *
+ * <p>With zero threads the extensions are decoded and passed on by the thread that submits them.
+ * Idle threads are terminated after 30 seconds. The threads are daemon threads, nevertheless the
+ * decoder must be {@linkplain #shutdown() shut down} when it is no longer used.
+ */
+final class ExtensionDecoder {
+
+  private static final Logger LOG = Logger.getLogger(ExtensionDecoder.class);
+
+  private final Function<BinaryXMPPExtension, Packet> decoder;
+
+  private final BiConsumer<BinaryXMPPExtension, Packet> consumer;
+
+  private final ThreadPoolExecutor executor;
+
+  /**
+   * The decodings of every sender that were not passed on yet, in the order of their submission.
+   * Guarded by <code>this</code>.
+   */
+  private final Map<JID, PendingDecodings> pendingDecodings = new HashMap<>();
+
+  /**
+   * @param decoder decodes an extension, must be thread safe; returns <code>null</code> if the
+   *     extension could not be decoded
+   * @param consumer receives every extension together with its decoded packet, which may be <code>
+   *     null</code>; it is called by one thread at a time for the same sender
+   * @param threads the maximum number of threads decoding in parallel
+   */
+  ExtensionDecoder(
+      final Function<BinaryXMPPExtension, Packet> decoder,
+      final BiConsumer<BinaryXMPPExtension, Packet> consumer,
+      final int threads) {
+
+    this.decoder = decoder;
+    this.consumer = consumer;
+
+    if (threads <= 0) {
+      executor = null;
+      return;
+    }
+
+    final ThreadFactory threadFactory = new NamedThreadFactory("XMPPReceiver-Decoder-");
+
+    executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            30,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            (runnable) -> {
+              final Thread thread = threadFactory.newThread(runnable);
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Decodes the given extension and passes it on after its predecessors. Extensions that are
+   * submitted after the decoder was shut down are discarded.
+   */
+  void submit(final BinaryXMPPExtension extension) {
+    if (executor == null) {
+      pass(extension, decode(extension));
+      return;
+    }
+
+    final JID sender = extension.getTransferDescription().getSender();
+    final Decoding decoding = new Decoding(extension);
+
+    synchronized (this) {
+      if (executor.isShutdown()) {
+        LOG.warn("decoder is shut down, discarding extension: " + extension);
+        return;
+      }
+
+      pendingDecodings.computeIfAbsent(sender, (key) -> new PendingDecodings()).add(decoding);
+    }
+
+    executor.execute(
+        () -> {
+          decoding.packet = decode(extension);
+          complete(sender, decoding);
+        });
+  }
+
+  /**
+   * Stops the threads of this decoder. Extensions that are already submitted are still decoded and
+   * passed on.
+   */
+  void shutdown() {
+    if (executor == null) return;
+
+    synchronized (this) {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Marks the given decoding as done and passes on all decodings of the sender that are done and
+   * have no pending predecessors. The consumer is called without holding the lock of this decoder.
+   * Only one thread at a time passes on the decodings of a sender, so the order is kept.
+   */
+  private void complete(final JID sender, final Decoding decoding) {
+    PendingDecodings decodings;
+
+    synchronized (this) {
+      decoding.done = true;
+
+      decodings = pendingDecodings.get(sender);
+
+      // another thread is passing on the decodings of this sender and will pick this one up
+      if (decodings.delivering) return;
+
+      decodings.delivering = true;
+    }
+
+    while (true) {
+      final Decoding next;
+
+      synchronized (this) {
+        next = decodings.pollDone();
+
+        if (next == null) {
+          decodings.delivering = false;
+
+          if (decodings.isEmpty()) pendingDecodings.remove(sender);
+
+          return;
+        }
+      }
+
+      pass(next.extension, next.packet);
+    }
+  }
+
+  private void pass(final BinaryXMPPExtension extension, final Packet packet) {
+    try {
+      consumer.accept(extension, packet);
+    } catch (RuntimeException e) {
+      LOG.error("could not pass on extension: " + extension.getTransferDescription(), e);
+    }
+  }
+
+  private Packet decode(final BinaryXMPPExtension extension) {
+    try {
+      return decoder.apply(extension);
+    } catch (RuntimeException e) {
+      LOG.error("could not decode extension: " + extension.getTransferDescription(), e);
+      return null;
+    }
+  }
+
+  /** The pending decodings of a sender, guarded by the lock of the decoder. */
+  private static final class PendingDecodings extends ArrayDeque<Decoding> {
+    private static final long serialVersionUID = 1L;
+
+    /** <code>true</code> while a thread passes on the decodings of the sender */
+    private boolean delivering;
+
+    /** @return the first decoding if it is done, otherwise <code>null</code> */
+    private Decoding pollDone() {
+      return !isEmpty() && peek().done ? poll() : null;
+    }
+  }
+
+  /** The result of decoding an extension, published through the lock of the decoder. */
+  private static final class Decoding {
+    private final BinaryXMPPExtension extension;
+    private Packet packet;
+    private boolean done;
+
+    private Decoding(final BinaryXMPPExtension extension) {
+      this.extension = extension;
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package saros.net.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import saros.net.internal.TransferDescription.Priority;
+
+/**
+ * Determines the order in which the chunks of concurrently sent fragments are written to a {@link
+ * BinaryChannelConnection}.
+ *
+ * <p>Every {@link Priority} has its own lane. The lanes are served by deficit round-robin: each
+ * time a lane is visited its deficit is increased by its quantum and chunks of that lane are
+ * scheduled as long as the deficit covers their length. Inside a lane the fragments take turns
+ * chunk by chunk, so a large fragment never holds back a small fragment of the same priority for
+ * more than one chunk.
+ *
+ * <p>As the quantum of every lane is a multiple of the chunk size, the first chunk of a fragment
+ * that is added to the {@link Priority#INTERACTIVE interactive} lane is scheduled after at most the
+ * quanta of the other lanes, regardless of how much data these lanes contain.
+ *
+ * <p>This class is not thread safe.
+ */
+final class FragmentScheduler {
+
+  /** A payload that is scheduled in chunks. */
+  static class Fragment {
+    private final Priority priority;
+    private final int length;
+
+    private int offset;
+    private int chunkOffset;
+    private int chunkLength;
+
+    Fragment(final Priority priority, final int length) {
+      if (length <= 0) throw new IllegalArgumentException("length must be positive: " + length);
+
+      this.priority = priority;
+      this.length = length;
+    }
+
+    Priority getPriority() {
+      return priority;
+    }
+
+    /** Returns the offset of the chunk that was scheduled last. */
+    int getChunkOffset() {
+      return chunkOffset;
+    }
+
+    /** Returns the length of the chunk that was scheduled last. */
+    int getChunkLength() {
+      return chunkLength;
+    }
+
+    /** Returns <code>true</code> if the chunk that was scheduled last is the first chunk. */
+    boolean isFirstChunk() {
+      return chunkOffset == 0;
+    }
+
+    /** Returns <code>true</code> if all chunks of this fragment have been scheduled. */
+    boolean isComplete() {
+      return offset == length;
+    }
+  }
+
+  private static final class Lane {
+    private final ArrayDeque<Fragment> fragments = new ArrayDeque<Fragment>();
+    private final int quantum;
+    private int deficit;
+    private boolean credited;
+
+    private Lane(final int quantum) {
+      this.quantum = quantum;
+    }
+  }
+
+  private final int chunkSize;
+
+  private final Lane[] lanes;
+
+  private int currentLane;
+
+  private int size;
+
+  /** @param chunkSize the maximum length of a chunk */
+  FragmentScheduler(final int chunkSize) {
+    this.chunkSize = chunkSize;
+
+    final Priority[] priorities = Priority.values();
+
+    lanes = new Lane[priorities.length];
+
+    for (final Priority priority : priorities)
+      lanes[priority.ordinal()] = new Lane(getWeight(priority) * chunkSize);
+  }
+
+  /** Adds the given fragment. Its chunks are scheduled after the already scheduled chunks. */
+  void add(final Fragment fragment) {
+    lanes[fragment.priority.ordinal()].fragments.addLast(fragment);
+    size++;
+  }
+
+  /**
+   * Schedules the next chunk. The offset and length of the chunk are available via {@link
+   * Fragment#getChunkOffset()} and {@link Fragment#getChunkLength()} of the returned fragment. A
+   * fragment is removed from this scheduler once its last chunk was scheduled.
+   *
+   * @return the fragment the next chunk belongs to or <code>null</code> if there are no fragments
+   */
+  Fragment next() {
+    if (size == 0) return null;
+
+    while (true) {
+      final Lane lane = lanes[currentLane];
+
+      if (lane.fragments.isEmpty()) {
+        lane.deficit = 0;
+        advance();
+        continue;
+      }
+
+      if (!lane.credited) {
+        lane.deficit += lane.quantum;
+        lane.credited = true;
+      }
+
+      final Fragment fragment = lane.fragments.peekFirst();
+      final int length = Math.min(chunkSize, fragment.length - fragment.offset);
+
+      if (lane.deficit < length) {
+        advance();
+        continue;
+      }
+
+      lane.deficit -= length;
+      lane.fragments.pollFirst();
+
+      fragment.chunkOffset = fragment.offset;
+      fragment.chunkLength = length;
+      fragment.offset += length;
+
+      if (fragment.isComplete()) size--;
+      else lane.fragments.addLast(fragment);
+
+      return fragment;
+    }
+  }
+
+  /** Returns <code>true</code> if there are no fragments left to schedule. */
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Removes all fragments from this scheduler and returns them. */
+  List<Fragment> clear() {
+    final List<Fragment> fragments = new ArrayList<Fragment>(size);
+
+    for (final Lane lane : lanes) {
+      fragments.addAll(lane.fragments);
+      lane.fragments.clear();
+      lane.deficit = 0;
+      lane.credited = false;
+    }
+
+    currentLane = 0;
+    size = 0;
+
+    return fragments;
+  }
+
+  private void advance() {
+    lanes[currentLane].credited = false;
+    currentLane = (currentLane + 1) % lanes.length;
+  }
+
+  /** Returns the number of chunks a lane may schedule per round. */
+  private static int getWeight(final Priority priority) {
+    switch (priority) {
+      case INTERACTIVE:
+        return 8;
+      case NORMAL:
+        return 2;
+      default:
+        return 1;
+    }
+  }
+}
@@ -0,0 +1,224 @@
+package saros.net.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.log4j.Logger;
+import saros.net.internal.BinaryChannelConnection.Opcode;
+import saros.net.stream.StreamMode;
+import saros.net.xmpp.JID;
+
+/**
+ * Decodes the frames that are sent by a {@link BinaryChannelConnection}. The decoder works on
+ * buffers that may contain partial frames, so it can be used for blocking streams as well as for
+ * non-blocking channels.
+ *
+ * <p>This class is not thread safe.
+ */
+final class FrameDecoder {
+
+  private static final Logger LOG = Logger.getLogger(FrameDecoder.class);
+
+  /** Size of the largest frame, i.e. an element name update with a name of maximum length. */
+  static final int MAX_FRAME_SIZE = 1 + 2 + 2 + 65535;
+
+  private static final int TRANSFERDESCRIPTION_FRAME_SIZE = 1 + 2 + 4 + 1 + 2 + 1;
+
+  private static final int DATA_HEADER_SIZE = 1 + 2 + 4;
+
+  private final JID localAddress;
+  private final JID remoteAddress;
+  private final StreamMode mode;
+  private final int maxChunkSize;
+
+  private final Map<Integer, BinaryXMPPExtension> pendingXMPPExtensions =
+      new HashMap<Integer, BinaryXMPPExtension>();
+
+  private final Map<Integer, String> inNamespaceCache = new HashMap<Integer, String>();
+
+  private final Map<Integer, String> inElementNameCache = new HashMap<Integer, String>();
+
+  FrameDecoder(
+      final JID localAddress, final JID remoteAddress, final StreamMode mode, int maxChunkSize) {
+    this.localAddress = localAddress;
+    this.remoteAddress = remoteAddress;
+    this.mode = mode;
+    this.maxChunkSize = maxChunkSize;
+  }
+
+  /**
+   * Decodes the frames of the given buffer until a XMPP extension is complete. Frames that are only
+   * partially contained in the buffer are left untouched, i.e. the position of the buffer is set to
+   * the start of the first incomplete frame.
+   *
+   * @param buffer a buffer in read mode, the buffer must be able to hold at least {@link
+   *     #MAX_FRAME_SIZE} bytes
+   * @return the next complete XMPP extension or <code>null</code> if more data is needed
+   * @throws ProtocolException if the buffer contains corrupted data
+   */
+  BinaryXMPPExtension decode(final ByteBuffer buffer) throws IOException {
+
+    while (buffer.hasRemaining()) {
+
+      final int start = buffer.position();
+      final int available = buffer.remaining();
+      final int opcode = buffer.get(start) & 0xFF;
+
+      final int fragmentId;
+      final int id;
+      final String name;
+
+      switch (opcode) {
+        case Opcode.TRANSFERDESCRIPTION:
+          if (available < TRANSFERDESCRIPTION_FRAME_SIZE) return null;
+
+          buffer.get();
+          fragmentId = buffer.getShort();
+          final int chunks = buffer.getInt();
+
+          if (LOG.isTraceEnabled()) {
+            LOG.trace(
+                "processing opcode 0x"
+                    + Integer.toHexString(opcode).toUpperCase()
+                    + " [TFD]: id="
+                    + fragmentId
+                    + ", chunks="
+                    + chunks);
+          }
+
+          final int namespaceId = buffer.get() & 0xFF;
+          final int elementNameId = buffer.getShort() & 0xFFFF;
+          final int compressed = buffer.get() & 0xFF;
+
+          final String namespace = inNamespaceCache.get(Integer.valueOf(namespaceId));
+
+          final String elementName = inElementNameCache.get(Integer.valueOf(elementNameId));
+
+          final TransferDescription transferDescription = TransferDescription.newDescription();
+
+          transferDescription.setSender(remoteAddress);
+          transferDescription.setRecipient(localAddress);
+          transferDescription.setNamespace(namespace);
+          transferDescription.setElementName(elementName);
+          transferDescription.setCompressContent(compressed == 1);
+
+          BinaryXMPPExtension oldTransferObject =
+              pendingXMPPExtensions.put(
+                  fragmentId, new BinaryXMPPExtension(mode, transferDescription, chunks));
+
+          if (oldTransferObject != null)
+            throw new IOException("replaced a XMPP extension that is still transmitted");
+          break;
+
+        case Opcode.DATA:
+          if (available < DATA_HEADER_SIZE) return null;
+
+          final int payloadLength = buffer.getInt(start + 3);
+
+          if (payloadLength <= 0 || payloadLength > maxChunkSize)
+            throw new ProtocolException(
+                "payload length field contains corrupted value: 0 < "
+                    + payloadLength
+                    + " <= "
+                    + maxChunkSize);
+
+          if (available < DATA_HEADER_SIZE + payloadLength) return null;
+
+          buffer.get();
+          fragmentId = buffer.getShort();
+          buffer.getInt();
+
+          if (LOG.isTraceEnabled()) {
+            LOG.trace(
+                "processing opcode 0x"
+                    + Integer.toHexString(opcode).toUpperCase()
+                    + " [DATA]: id="
+                    + fragmentId
+                    + ", DATA len="
+                    + payloadLength
+                    + " bytes");
+          }
+
+          final BinaryXMPPExtension extension = pendingXMPPExtensions.get(fragmentId);
+
+          if (extension == null)
+            throw new ProtocolException("received data for unknown fragment id: " + fragmentId);
+
+          /*
+           * the chunks are passed on as is, the receiver reads them one after
+           * another so there is no need to assemble the full payload here
+           */
+          final byte[] payload = new byte[payloadLength];
+          buffer.get(payload);
+
+          extension.addChunk(payload);
+
+          if (!extension.isLastChunk()) break;
+
+          pendingXMPPExtensions.remove(fragmentId);
+
+          return extension;
+
+        case Opcode.ELEMENT_NAME_UPDATE:
+          if (available < 1 + 2 + 2) return null;
+
+          if (available < 1 + 2 + 2 + (buffer.getShort(start + 3) & 0xFFFF)) return null;
+
+          if (LOG.isTraceEnabled()) {
+            LOG.trace(
+                "processing opcode 0x" + Integer.toHexString(opcode).toUpperCase() + " [ENU]");
+          }
+
+          buffer.get();
+          id = buffer.getShort() & 0xFFFF;
+          name = readUTF(buffer);
+          inElementNameCache.put(Integer.valueOf(id), name);
+
+          if (LOG.isTraceEnabled())
+            LOG.trace(
+                "updated incoming element name cache, id: " + id + " , element name: " + name);
+
+          break;
+
+        case Opcode.NAMESPACE_UPDATE:
+          if (available < 1 + 1 + 2) return null;
+
+          if (available < 1 + 1 + 2 + (buffer.getShort(start + 2) & 0xFFFF)) return null;
+
+          if (LOG.isTraceEnabled()) {
+            LOG.trace(
+                "processing opcode 0x" + Integer.toHexString(opcode).toUpperCase() + " [NSU]");
+          }
+
+          buffer.get();
+          id = buffer.get() & 0xFF;
+          name = readUTF(buffer);
+          inNamespaceCache.put(Integer.valueOf(id), name);
+
+          if (LOG.isTraceEnabled())
+            LOG.trace("updated incoming namespace cache, id: " + id + " , namespace: " + name);
+
+          break;
+
+        default:
+          throw new ProtocolException(
+              "unknown opcode: 0x" + Integer.toHexString(opcode).toUpperCase());
+      }
+    }
+
+    return null;
+  }
+
+  /** Reads a string in the format of {@link DataInputStream#readUTF()}. */
+  private static String readUTF(final ByteBuffer buffer) throws IOException {
+    final byte[] data = new byte[2 + (buffer.getShort(buffer.position()) & 0xFFFF)];
+
+    buffer.get(data);
+
+    return DataInputStream.readUTF(new DataInputStream(new ByteArrayInputStream(data)));
+  }
+}
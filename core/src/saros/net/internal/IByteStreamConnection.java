@@ -1,6 +1,7 @@
 package saros.net.internal;
 
 import java.io.IOException;
+import java.util.Arrays;
 import saros.net.stream.StreamMode;
 import saros.net.xmpp.JID;
 
@@ -29,6 +30,25 @@ public interface IByteStreamConnection {
    */
   public void send(TransferDescription data, byte[] content) throws IOException;
 
+  /**
+   * Sends the given range of the content. The content is not accessed anymore once this method
+   * returns, so the caller may reuse the array afterwards.
+   *
+   * <p>The default implementation copies the range and calls {@link #send(TransferDescription,
+   * byte[])}.
+   *
+   * @param data The data to be sent.
+   * @param content the array containing the content
+   * @param offset the offset of the content in the array
+   * @param length the length of the content
+   * @throws IOException if the send failed
+   * @blocking Send the given data as a blocking operation.
+   */
+  public default void send(TransferDescription data, byte[] content, int offset, int length)
+      throws IOException {
+    send(data, Arrays.copyOfRange(content, offset, offset + length));
+  }
+
   /**
    * Returns the connection id of this connection.
    *
@@ -0,0 +1,247 @@
+package saros.net.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+import saros.util.NamedThreadFactory;
+
+/**
+ * A small pool of selector threads that serve the non-blocking channels of {@link
+ * BinaryChannelConnection}s. Instead of parking one receiver thread per connection, every channel
+ * is registered with one of the selector threads which notifies the {@link Handler} of the channel
+ * when data can be read or written.
+ *
+ * <p>The pool also manages the direct buffers that are used to read from the channels.
+ *
+ * <p>This class is thread safe.
+ */
+final class SelectorPool {
+
+  private static final Logger LOG = Logger.getLogger(SelectorPool.class);
+
+  private static final int SELECTOR_THREADS =
+      Integer.getInteger(
+          "saros.net.nio.SELECTOR_THREADS",
+          Math.min(2, Runtime.getRuntime().availableProcessors()));
+
+  private static final int MAX_POOLED_BUFFERS =
+      Integer.getInteger("saros.net.nio.MAX_POOLED_BUFFERS", 64);
+
+  /** Capacity of the read buffers, large enough to hold any frame. */
+  static final int BUFFER_CAPACITY = 72 * 1024;
+
+  private static class DefaultPoolHolder {
+    private static final SelectorPool INSTANCE = createDefault();
+  }
+
+  /** Callback interface for registered channels. All methods are called by the selector thread. */
+  interface Handler {
+
+    /** Called when the channel has data available or reached the end of the stream. */
+    void readable();
+
+    /** Called when the channel accepts data again after it was requested by the registration. */
+    void writable();
+
+    /**
+     * Called once the channel is no longer served, either because its registration was cancelled or
+     * because the registration failed.
+     */
+    void unregistered();
+  }
+
+  /** The registration of a channel with a selector thread. */
+  final class Registration {
+    private final SelectorLoop loop;
+    private final SocketChannel channel;
+    private final Handler handler;
+
+    private SelectionKey key;
+    private boolean cancelled;
+
+    private Registration(SelectorLoop loop, SocketChannel channel, Handler handler) {
+      this.loop = loop;
+      this.channel = channel;
+      this.handler = handler;
+    }
+
+    /**
+     * Requests a {@link Handler#writable()} notification as soon as the channel accepts data again.
+     */
+    void requestWritable() {
+      loop.execute(
+          () -> {
+            if (key != null && key.isValid())
+              key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            else handler.writable();
+          });
+    }
+
+    /** Cancels this registration. The handler is notified via {@link Handler#unregistered()}. */
+    void cancel() {
+      loop.execute(
+          () -> {
+            if (cancelled) return;
+
+            cancelled = true;
+
+            if (key != null) key.cancel();
+
+            handler.unregistered();
+          });
+    }
+
+    private void register() {
+      try {
+        key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+      } catch (IOException | RuntimeException e) {
+        LOG.error("failed to register channel " + channel + " with selector", e);
+        cancel();
+      }
+    }
+  }
+
+  private final SelectorLoop[] loops;
+
+  private final AtomicInteger nextLoop = new AtomicInteger();
+
+  private final DirectBufferPool bufferPool;
+
+  /**
+   * @param threads the number of selector threads
+   * @param maxPooledBuffers the maximum number of unused read buffers that are kept
+   * @throws IOException if a selector could not be opened
+   */
+  SelectorPool(final int threads, final int maxPooledBuffers) throws IOException {
+    if (threads <= 0) throw new IllegalArgumentException("threads must be positive: " + threads);
+
+    bufferPool = new DirectBufferPool(BUFFER_CAPACITY, maxPooledBuffers);
+
+    final NamedThreadFactory threadFactory = new NamedThreadFactory("NIO-Selector-");
+
+    loops = new SelectorLoop[threads];
+
+    for (int i = 0; i < threads; i++) {
+      loops[i] = new SelectorLoop(Selector.open());
+
+      final Thread thread = threadFactory.newThread(loops[i]);
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Returns the pool that is shared by all connections.
+   *
+   * @return the default pool or <code>null</code> if it could not be created
+   */
+  static SelectorPool getDefault() {
+    return DefaultPoolHolder.INSTANCE;
+  }
+
+  /**
+   * Registers the given channel for reading. The channel must be in non-blocking mode.
+   *
+   * @return the registration that must be {@linkplain Registration#cancel() cancelled} once the
+   *     channel is closed
+   */
+  Registration register(final SocketChannel channel, final Handler handler) {
+    if (channel.isBlocking()) throw new IllegalArgumentException("channel is in blocking mode");
+
+    final SelectorLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+
+    final Registration registration = new Registration(loop, channel, handler);
+
+    loop.execute(registration::register);
+
+    return registration;
+  }
+
+  /** Returns a cleared direct buffer with a capacity of {@link #BUFFER_CAPACITY} bytes. */
+  ByteBuffer acquireBuffer() {
+    return bufferPool.acquire();
+  }
+
+  /** Returns a buffer that was acquired by {@link #acquireBuffer()}. */
+  void releaseBuffer(final ByteBuffer buffer) {
+    bufferPool.release(buffer);
+  }
+
+  private static SelectorPool createDefault() {
+    try {
+      return new SelectorPool(Math.max(1, SELECTOR_THREADS), MAX_POOLED_BUFFERS);
+    } catch (IOException e) {
+      LOG.error("failed to create selector pool, non-blocking channels cannot be used", e);
+      return null;
+    }
+  }
+
+  private static final class SelectorLoop implements Runnable {
+
+    private final Selector selector;
+
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+    private SelectorLoop(final Selector selector) {
+      this.selector = selector;
+    }
+
+    /** Executes the given task on the selector thread. */
+    private void execute(final Runnable task) {
+      tasks.offer(task);
+      selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        try {
+          selector.select();
+        } catch (IOException e) {
+          LOG.error("selector failed", e);
+          continue;
+        }
+
+        Runnable task;
+
+        while ((task = tasks.poll()) != null) {
+          try {
+            task.run();
+          } catch (RuntimeException e) {
+            LOG.error("internal error while executing selector task", e);
+          }
+        }
+
+        final Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+
+        while (it.hasNext()) {
+          final SelectionKey key = it.next();
+          it.remove();
+
+          final Handler handler = ((Registration) key.attachment()).handler;
+
+          try {
+            if (key.isWritable()) {
+              key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+              handler.writable();
+            }
+
+            if (key.isValid() && key.isReadable()) handler.readable();
+
+          } catch (CancelledKeyException e) {
+            // channel was closed concurrently, the registration will be cancelled
+          } catch (RuntimeException e) {
+            LOG.error("internal error while serving channel", e);
+          }
+        }
+      }
+    }
+  }
+}
@@ -6,10 +6,21 @@ import saros.net.xmpp.JID;
 /**
  * A transfer description contains all necessary information for tunneling packet extension through
  * a plain TCP connection. <b>Note:</b> Modifying this class (e.g adding fields) requires changes in
- * the {@link BinaryChannelConnection} class !
+ * the {@link BinaryChannelConnection} class ! The {@link Priority} is only evaluated by the sending
+ * side and is not transmitted.
  */
 public class TransferDescription {
 
+  /** Classes that determine how the data of concurrent transfers is interleaved. */
+  public enum Priority {
+    /** Small latency sensitive packets, e.g. cursor movements or text edits. */
+    INTERACTIVE,
+    /** The default for all packets that do not fit into another class. */
+    NORMAL,
+    /** Large packets whose delivery time is dominated by their size, e.g. file contents. */
+    BULK
+  }
+
   private TransferDescription() {
     // NOP
   }
@@ -25,6 +36,8 @@ public class TransferDescription {
   /** Field used to indicate that the payload may be compressed. */
   private boolean compress;
 
+  private Priority priority = Priority.NORMAL;
+
   public static TransferDescription newDescription() {
     return new TransferDescription();
   }
@@ -74,6 +87,15 @@ public class TransferDescription {
     return compress;
   }
 
+  TransferDescription setPriority(Priority priority) {
+    this.priority = priority;
+    return this;
+  }
+
+  public Priority getPriority() {
+    return priority;
+  }
+
   @Override
   public String toString() {
     return "TransferDescription [elementName="
@@ -86,6 +108,8 @@ public class TransferDescription {
         + sender
         + ", compress="
         + compress
+        + ", priority="
+        + priority
         + "]";
   }
 }
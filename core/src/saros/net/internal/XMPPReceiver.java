@@ -1,15 +1,19 @@
 package saros.net.internal;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 import org.apache.log4j.Logger;
 import org.jivesoftware.smack.Connection;
 import org.jivesoftware.smack.PacketListener;
@@ -32,16 +36,31 @@ import saros.net.PacketCollector.CancelHook;
 import saros.net.stream.StreamMode;
 import saros.net.xmpp.IConnectionListener;
 import saros.net.xmpp.XMPPConnectionService;
+import saros.repackaged.picocontainer.Disposable;
 
 @Component(module = "net")
-public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
+public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver, Disposable {
 
   private static final Logger LOG = Logger.getLogger(XMPPReceiver.class);
 
-  private static final int CHUNKSIZE = 16 * 1024;
+  /**
+   * Maximum number of threads that decode received binary XMPP extensions in parallel. With 0 the
+   * extensions are decoded by the threads that receive them.
+   */
+  private static final String DECODER_THREADS_PROPERTY = "saros.net.DECODER_THREADS";
+
+  private static final int DEFAULT_DECODER_THREADS =
+      Math.min(4, Runtime.getRuntime().availableProcessors());
+
+  /** The parsers are reused for every packet decoded by the same thread. */
+  private static final ThreadLocal<XmlPullParser> PARSERS = ThreadLocal.withInitial(MXParser::new);
 
   private final DispatchThreadContext dispatchThreadContext;
 
+  private final XMPPConnectionService connectionService;
+
+  private final DataTransferManager dataTransferManager;
+
   private final Map<PacketListener, PacketFilter> listeners =
       Collections.synchronizedMap(new HashMap<PacketListener, PacketFilter>());
 
@@ -51,7 +70,10 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
   private final CopyOnWriteArrayList<IPacketInterceptor> packetInterceptors =
       new CopyOnWriteArrayList<>();
 
-  private XmlPullParser parser;
+  /** Providers of this receiver by the element name and namespace of their extensions. */
+  private final Map<String, PacketExtensionProvider> providers = new ConcurrentHashMap<>();
+
+  private final ExtensionDecoder decoder;
 
   private final PacketListener smackPacketListener =
       new PacketListener() {
@@ -80,25 +102,42 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
         }
       };
 
+  private final IByteStreamConnectionListener byteStreamConnectionListener =
+      new IByteStreamConnectionListener() {
+        @Override
+        public void connectionChanged(
+            final String connectionId,
+            final IByteStreamConnection connection,
+            final boolean incomingRequest) {
+          connection.setBinaryXMPPExtensionReceiver(XMPPReceiver.this);
+        }
+      };
+
   public XMPPReceiver(
       DispatchThreadContext dispatchThreadContext,
       XMPPConnectionService connectionService,
       DataTransferManager dataTransferManager) {
 
     this.dispatchThreadContext = dispatchThreadContext;
-    this.parser = new MXParser();
+    this.connectionService = connectionService;
+    this.dataTransferManager = dataTransferManager;
+    this.decoder =
+        new ExtensionDecoder(
+            this::convertBinaryXMPPExtension,
+            (extension, packet) ->
+                dispatchThreadContext.executeAsDispatch(() -> dispatchPacket(extension, packet)),
+            Integer.getInteger(DECODER_THREADS_PROPERTY, DEFAULT_DECODER_THREADS));
 
     connectionService.addListener(connectionListener);
-    dataTransferManager.addConnectionListener(
-        new IByteStreamConnectionListener() {
-          @Override
-          public void connectionChanged(
-              final String connectionId,
-              final IByteStreamConnection connection,
-              final boolean incomingRequest) {
-            connection.setBinaryXMPPExtensionReceiver(XMPPReceiver.this);
-          }
-        });
+    dataTransferManager.addConnectionListener(byteStreamConnectionListener);
+  }
+
+  /** Stops listening for packets and stops the threads that decode the received extensions. */
+  @Override
+  public void dispose() {
+    connectionService.removeListener(connectionListener);
+    dataTransferManager.removeConnectionListener(byteStreamConnectionListener);
+    decoder.shutdown();
   }
 
   @Override
@@ -131,6 +170,18 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
     packetInterceptors.remove(interceptor);
   }
 
+  @Override
+  public void addPacketExtensionProvider(
+      final String elementName, final String namespace, final PacketExtensionProvider provider) {
+    providers.put(getProviderKey(elementName, namespace), provider);
+  }
+
+  @Override
+  public void removePacketExtensionProvider(
+      final String elementName, final String namespace, final PacketExtensionProvider provider) {
+    providers.remove(getProviderKey(elementName, namespace), provider);
+  }
+
   @Override
   public void processPacket(final Packet packet) {
     dispatchThreadContext.executeAsDispatch(
@@ -158,19 +209,32 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
     return collector;
   }
 
+  /**
+   * Decodes the given extension off the dispatch thread. The packet interceptors are called and the
+   * packet is dispatched on the dispatch thread after all extensions that were received before from
+   * the same sender. Extensions of different senders may be dispatched in a different order than
+   * they were received.
+   */
   @Override
   public void receive(BinaryXMPPExtension extension) {
-    dispatchThreadContext.executeAsDispatch(
-        new Runnable() {
+    decoder.submit(extension);
+  }
 
-          @Override
-          public void run() {
+  /**
+   * Passes the received extension to the packet interceptors and dispatches its decoded packet
+   * unless an interceptor drops it.
+   *
+   * @param packet the decoded packet or <code>null</code> if the extension could not be decoded
+   * @sarosThread must be called from the Dispatch Thread
+   */
+  private void dispatchPacket(BinaryXMPPExtension extension, Packet packet) {
 
-            Packet packet = convertBinaryXMPPExtension(extension);
+    boolean dispatchPacket = true;
 
-            if (packet != null) forwardPacket(packet);
-          }
-        });
+    for (IPacketInterceptor packetInterceptor : packetInterceptors)
+      dispatchPacket &= packetInterceptor.receivedPacket(extension);
+
+    if (dispatchPacket && packet != null) forwardPacket(packet);
   }
 
   /**
@@ -198,18 +262,10 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
    * Deserializes the payload of an {@link BinaryXMPPExtension} back to its original {@link
    * PacketExtension} and returns a new packet containing the deserialized packet extension.
    *
-   * <p>This method is <b>not</b> thread safe and <b>must not</b> accessed by multiple threads
-   * concurrently.
+   * <p>This method is thread safe, every thread uses its own parser and decompressor.
    */
   private Packet convertBinaryXMPPExtension(BinaryXMPPExtension extension) {
 
-    boolean dispatchPacket = true;
-
-    for (IPacketInterceptor packetInterceptor : packetInterceptors)
-      dispatchPacket &= packetInterceptor.receivedPacket(extension);
-
-    if (!dispatchPacket) return null;
-
     if (LOG.isTraceEnabled())
       LOG.trace(
           "received binary XMPP extension: "
@@ -222,18 +278,37 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
               + extension.getTransferMode()
               + "]");
 
-    if (extension.getTransferDescription().compressContent()) {
-      byte[] payload = extension.getPayload();
-      long compressedPayloadLength = payload.length;
+    final TransferDescription description = extension.getTransferDescription();
 
-      try {
-        payload = inflate(payload);
-      } catch (IOException e) {
-        LOG.error("could not decompress extension payload", e);
-        return null;
-      }
+    Inflater inflater = null;
+    final InputStream payload;
+
+    /*
+     * the payload is inflated while it is parsed so the uncompressed packet
+     * extension is never stored as a whole
+     */
+    if (description.compressContent()) {
+      inflater = CompressionContext.get().getInflater();
+      payload = new ChunkInflaterInputStream(extension.getChunks(), inflater);
+    } else {
+      payload = extension.getPayloadStream();
+    }
 
-      extension.setPayload(compressedPayloadLength, payload);
+    final PacketExtension packetExtension;
+
+    try {
+      packetExtension = parsePayload(description, payload);
+
+      if (inflater != null) {
+        drain(payload);
+        extension.setUncompressedSize(inflater.getBytesWritten());
+      }
+    } catch (IOException e) {
+      LOG.error("could not decompress extension payload", e);
+      return null;
+    } finally {
+      // the inflater is reused by the next packet of this thread
+      if (inflater != null) inflater.reset();
     }
 
     notifyDataReceived(
@@ -242,15 +317,37 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
         extension.getUncompressedSize(),
         extension.getTransferDuration());
 
-    TransferDescription description = extension.getTransferDescription();
+    if (packetExtension == null) return null;
 
-    String name = description.getElementName();
-    String namespace = description.getNamespace();
+    Packet packet = new Message();
+    packet.setPacketID(Packet.ID_NOT_AVAILABLE);
+    packet.setFrom(description.getSender().toString());
+    packet.setTo(description.getRecipient().toString());
+    packet.addExtension(packetExtension);
+
+    return packet;
+  }
+
+  /**
+   * Deserializes the given payload using the provider that is installed for the element name and
+   * namespace of the given transfer description.
+   *
+   * @return the deserialized packet extension or <code>null</code> if the payload could not be
+   *     deserialized
+   */
+  private PacketExtension parsePayload(
+      final TransferDescription description, final InputStream payload) {
+
+    final String name = description.getElementName();
+    final String namespace = description.getNamespace();
     // IQ provider?
 
-    PacketExtensionProvider provider =
-        (PacketExtensionProvider)
-            ProviderManager.getInstance().getExtensionProvider(name, namespace);
+    PacketExtensionProvider provider = providers.get(getProviderKey(name, namespace));
+
+    if (provider == null)
+      provider =
+          (PacketExtensionProvider)
+              ProviderManager.getInstance().getExtensionProvider(name, namespace);
 
     if (provider == null) {
       LOG.warn(
@@ -262,31 +359,27 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
       return null;
     }
 
-    PacketExtension packetExtension = null;
+    final XmlPullParser parser = PARSERS.get();
 
     try {
-      parser.setInput(new ByteArrayInputStream(extension.getPayload()), "UTF-8");
+      parser.setInput(payload, "UTF-8");
       /*
        * We have to skip the empty start tag because Smack expects a
        * parser that already has started parsing.
        */
       parser.next();
-      packetExtension = provider.parseExtension(parser);
+      return provider.parseExtension(parser);
     } catch (Exception e) {
       LOG.error("could not deserialize transfer object payload: " + e.getMessage(), e);
 
       // just to be safe
-      parser = new MXParser();
+      PARSERS.remove();
       return null;
     }
+  }
 
-    Packet packet = new Message();
-    packet.setPacketID(Packet.ID_NOT_AVAILABLE);
-    packet.setFrom(description.getSender().toString());
-    packet.setTo(description.getRecipient().toString());
-    packet.addExtension(packetExtension);
-
-    return packet;
+  private static String getProviderKey(final String elementName, final String namespace) {
+    return elementName + " " + namespace;
   }
 
   private void notifyDataReceived(
@@ -304,24 +397,36 @@ public class XMPPReceiver implements IReceiver, IBinaryXMPPExtensionReceiver {
     }
   }
 
-  private static byte[] inflate(byte[] input) throws IOException {
+  /** Reads the remaining bytes of the given stream so its total size is known. */
+  private static void drain(final InputStream in) throws IOException {
+    while (in.skip(Long.MAX_VALUE) > 0 || in.read() != -1) {
+      // NOP
+    }
+  }
+
+  /**
+   * Inflater input stream that passes the received chunks directly to the inflater instead of
+   * copying them into an intermediate buffer first.
+   */
+  private static class ChunkInflaterInputStream extends InflaterInputStream {
 
-    ByteArrayOutputStream bos;
-    Inflater decompressor = new Inflater();
+    private final Iterator<byte[]> chunks;
 
-    decompressor.setInput(input, 0, input.length);
-    bos = new ByteArrayOutputStream(input.length);
+    private ChunkInflaterInputStream(final List<byte[]> chunks, final Inflater inflater) {
+      /*
+       * the underlying stream and buffer are never used because fill() is
+       * overridden
+       */
+      super(new ByteArrayInputStream(new byte[0]), inflater, 1);
+      this.chunks = chunks.iterator();
+    }
 
-    byte[] buf = new byte[CHUNKSIZE];
+    @Override
+    protected void fill() throws IOException {
+      if (!chunks.hasNext()) throw new EOFException("unexpected end of compressed payload");
 
-    try {
-      while (!decompressor.finished()) {
-        int count = decompressor.inflate(buf);
-        bos.write(buf, 0, count);
-      }
-      return bos.toByteArray();
-    } catch (DataFormatException e) {
-      throw new IOException("failed to inflate data", e);
+      final byte[] chunk = chunks.next();
+      inf.setInput(chunk, 0, chunk.length);
     }
   }
 }
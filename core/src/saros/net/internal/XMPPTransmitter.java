@@ -19,10 +19,8 @@
  */
 package saros.net.internal;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.zip.Deflater;
 import org.apache.log4j.Logger;
 import org.jivesoftware.smack.Connection;
 import org.jivesoftware.smack.packet.Message;
@@ -51,7 +49,13 @@ public class XMPPTransmitter implements ITransmitter, IConnectionListener {
   private static final int PACKET_EXTENSION_COMPRESS_THRESHOLD =
       Integer.getInteger("saros.net.transmitter.PACKET_EXTENSION_COMPRESS_THRESHOLD", 32);
 
-  private static final int CHUNKSIZE = 16 * 1024;
+  /** size in bytes up to which a packet extension is sent with interactive priority */
+  private static final int INTERACTIVE_PACKET_THRESHOLD =
+      Integer.getInteger("saros.net.transmitter.INTERACTIVE_PACKET_THRESHOLD", 4 * 1024);
+
+  /** size in bytes that a packet extension must exceed to be sent with bulk priority */
+  private static final int BULK_PACKET_THRESHOLD =
+      Integer.getInteger("saros.net.transmitter.BULK_PACKET_THRESHOLD", 256 * 1024);
 
   private final DataTransferManager dataManager;
 
@@ -109,6 +113,11 @@ public class XMPPTransmitter implements ITransmitter, IConnectionListener {
       transferDescription.setCompressContent(true);
     }
 
+    if (data.length <= INTERACTIVE_PACKET_THRESHOLD)
+      transferDescription.setPriority(TransferDescription.Priority.INTERACTIVE);
+    else if (data.length > BULK_PACKET_THRESHOLD)
+      transferDescription.setPriority(TransferDescription.Priority.BULK);
+
     sendPacketExtension(connection, transferDescription, data);
   }
 
@@ -209,23 +218,44 @@ public class XMPPTransmitter implements ITransmitter, IConnectionListener {
               + " byte(s), connection="
               + connection);
 
-    long sizeUncompressed = payload.length;
+    final long sizeUncompressed = payload.length;
 
-    if (description.compressContent()) payload = deflate(payload);
+    final CompressionContext compression;
+    final byte[] content;
+    final int length;
+
+    if (description.compressContent()) {
+      compression = CompressionContext.get();
+      length = compression.deflate(payload);
+      content = compression.getBuffer();
+    } else {
+      compression = null;
+      length = payload.length;
+      content = payload;
+    }
 
     final long transferStartTime = System.currentTimeMillis();
 
+    boolean sent = false;
+
     try {
-      connection.send(description, payload);
+      connection.send(description, content, 0, length);
+      sent = true;
     } catch (IOException e) {
       log.error(
           "failed to send " + description + ", connection=" + connection + ":" + e.getMessage(), e);
       throw e;
+    } finally {
+      /*
+       * a failed connection may still reference the buffer, so it must not
+       * be reused for the next packet
+       */
+      if (compression != null) compression.releaseBuffer(!sent);
     }
 
     notifyDataSent(
         connection.getMode(),
-        payload.length,
+        length,
         sizeUncompressed,
         System.currentTimeMillis() - transferStartTime);
   }
@@ -244,22 +274,4 @@ public class XMPPTransmitter implements ITransmitter, IConnectionListener {
       }
     }
   }
-
-  private static byte[] deflate(byte[] input) {
-
-    Deflater compressor = new Deflater(Deflater.DEFLATED);
-    compressor.setInput(input);
-    compressor.finish();
-
-    ByteArrayOutputStream bos = new ByteArrayOutputStream(input.length);
-
-    byte[] buf = new byte[CHUNKSIZE];
-
-    while (!compressor.finished()) {
-      int count = compressor.deflate(buf);
-      bos.write(buf, 0, count);
-    }
-
-    return bos.toByteArray();
-  }
 }
@@ -3,6 +3,7 @@ package saros.net.stream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.SocketChannel;
 
 // TODO JavaDoc
 public interface ByteStream {
@@ -16,4 +17,15 @@ public interface ByteStream {
   public int getReadTimeout() throws IOException;
 
   public void setReadTimeout(int timeout) throws IOException;
+
+  /**
+   * Returns the socket channel this stream is based on. If a channel is returned the user of this
+   * stream may switch the channel to non-blocking mode and must not use the input and output
+   * streams of this stream afterwards.
+   *
+   * @return the channel or <code>null</code> if this stream is not based on a socket channel
+   */
+  public default SocketChannel getChannel() {
+    return null;
+  }
 }
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 
 public class TCPByteStream implements ByteStream {
 
@@ -39,4 +40,9 @@ public class TCPByteStream implements ByteStream {
   public void setReadTimeout(int timeout) throws IOException {
     socket.setSoTimeout(timeout);
   }
+
+  @Override
+  public SocketChannel getChannel() {
+    return socket.getChannel();
+  }
 }
@@ -1,63 +1,939 @@
 package saros.net.stream;
 
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.Proxy;
 import java.net.Socket;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.apache.log4j.Logger;
 import org.jivesoftware.smack.Connection;
+import org.jivesoftware.smack.PacketCollector;
+import org.jivesoftware.smack.PacketListener;
+import org.jivesoftware.smack.XMPPException;
+import org.jivesoftware.smack.filter.AndFilter;
+import org.jivesoftware.smack.filter.FromMatchesFilter;
+import org.jivesoftware.smack.filter.IQTypeFilter;
+import org.jivesoftware.smack.filter.PacketIDFilter;
+import org.jivesoftware.smack.packet.IQ;
+import org.jivesoftware.smack.packet.Packet;
+import org.jivesoftware.smack.util.StringUtils;
+import org.jivesoftware.smackx.FormField;
+import org.jivesoftware.smackx.ServiceDiscoveryManager;
+import org.jivesoftware.smackx.packet.DataForm;
+import org.jivesoftware.smackx.packet.DiscoverInfo;
 import saros.net.internal.BinaryChannelConnection;
 import saros.net.internal.IByteStreamConnection;
 import saros.net.internal.IByteStreamConnectionListener;
+import saros.net.util.NetworkingUtils;
 import saros.net.xmpp.JID;
+import saros.util.NamedThreadFactory;
 
-// TODO rewrite IStreamService interface
-
+/**
+ * Stream service that establishes direct TCP connections between two Saros instances.
+ *
+ * <p>On initialization the service starts listening on a local port and advertises the port and the
+ * local IP addresses as extended information of the XMPP service discovery. To connect to a peer
+ * the service discovers these information, connects to all addresses of the peer in parallel and
+ * keeps the first connection that passes the handshake. All other connections are closed. As the
+ * addresses include the loopback address, two instances on the same host connect without leaving
+ * the host.
+ *
+ * <p>Before connecting, the connecting side requests a nonce from the peer with an IQ (see {@link
+ * TCPTransportExtension}). The peer issues the nonce for the JID the XMPP server authenticated as
+ * the sender of the IQ and for the requested connection id only. The nonce can be used once and
+ * expires after {@link #NONCE_TIMEOUT} milliseconds. Only a few unused nonces are kept per peer.
+ *
+ * <p>The nonce itself is never sent over the TCP connection, because the connecting side sends the
+ * handshake to all addresses of the peer, including addresses that may belong to other hosts. The
+ * handshake contains the JID of the connecting side, the connection id and a random challenge of
+ * both sides. Both sides prove the knowledge of the nonce with a HMAC over the challenges. The
+ * accepting side rejects the connection if the nonce was not issued for the claimed JID and
+ * connection id, otherwise it consumes the nonce and confirms the connection.
+ *
+ * <p>Incoming connections that did not pass the handshake are limited to {@link
+ * #MAX_PENDING_HANDSHAKES} and closed if the handshake does not complete within {@link
+ * #CONNECT_TIMEOUT} milliseconds, so unauthenticated peers cannot hold threads for long.
+ *
+ * <p>The established connections are based on socket channels so that they are served by the
+ * non-blocking {@link BinaryChannelConnection} transport.
+ */
 public class TCPTransport implements IStreamService {
 
+  private static final Logger LOG = Logger.getLogger(TCPTransport.class);
+
+  /** Form type of the extended service discovery information of this service. */
+  static final String FORM_TYPE = "saros:tcp-transport";
+
+  private static final String FIELD_FORM_TYPE = "FORM_TYPE";
+
+  private static final String FIELD_ADDRESS = "address";
+
+  private static final String FIELD_PORT = "port";
+
+  private static final int HANDSHAKE_MAGIC = 0x53544350;
+
+  private static final int HANDSHAKE_VERSION = 3;
+
+  private static final int HANDSHAKE_ACCEPTED = 1;
+
+  private static final int CHALLENGE_LENGTH = 16;
+
+  private static final int NONCE_LENGTH = 16;
+
+  private static final String MAC_ALGORITHM = "HmacSHA256";
+
+  private static final int MAC_LENGTH = 32;
+
+  private static final byte ROLE_ACCEPTOR = 'A';
+
+  private static final byte ROLE_CONNECTOR = 'C';
+
+  private static final boolean ENABLED =
+      Boolean.valueOf(System.getProperty("saros.net.tcp.ENABLED", "true"));
+
+  /** Port to listen on, 0 for an arbitrary free port. */
+  private static final int PORT = Integer.getInteger("saros.net.tcp.PORT", 0);
+
+  /** Timeout for connecting to a single address of the peer including the handshake. */
+  static final int CONNECT_TIMEOUT = Integer.getInteger("saros.net.tcp.CONNECT_TIMEOUT", 5000);
+
+  private static final boolean TCP_NODELAY =
+      Boolean.valueOf(System.getProperty("saros.net.tcp.TCP_NODELAY", "true"));
+
+  /**
+   * Time in milliseconds an issued nonce can be used to establish a connection. The default covers
+   * the nonce request and the connection attempts that follow it immediately.
+   */
+  static final long NONCE_TIMEOUT =
+      Long.getLong("saros.net.tcp.NONCE_TIMEOUT", 3L * CONNECT_TIMEOUT);
+
+  /** Maximum number of unused nonces per peer, issuing another one drops the oldest. */
+  static final int MAX_NONCES_PER_PEER = 4;
+
+  /** Maximum number of unused nonces of all peers, issuing another one drops the oldest. */
+  private static final int MAX_NONCES = 256;
+
+  /** Maximum number of incoming connections that perform the handshake at the same time. */
+  static final int MAX_PENDING_HANDSHAKES =
+      Integer.getInteger("saros.net.tcp.MAX_PENDING_HANDSHAKES", 16);
+
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  private static final Pattern IPV4_LITERAL = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+
   private volatile IByteStreamConnectionListener currentListener;
 
+  private JID localAddress;
+  private Connection connection;
+  private ServiceDiscoveryManager discoveryManager;
+  private ServerSocketChannel serverChannel;
+  private ExecutorService executorService;
+  private ScheduledExecutorService handshakeTimer;
+
+  /**
+   * Nonces that were issued to peers and not used yet, the oldest first. Guarded by <code>this
+   * </code>.
+   */
+  private final List<IssuedNonce> issuedNonces = new ArrayList<IssuedNonce>();
+
+  private final Semaphore pendingHandshakes = new Semaphore(MAX_PENDING_HANDSHAKES);
+
+  private final PacketListener nonceRequestListener =
+      new PacketListener() {
+        @Override
+        public void processPacket(Packet packet) {
+          handleNonceRequest((IQ) packet);
+        }
+      };
+
   @Override
   public IByteStreamConnection connect(String connectionID, JID peer)
       throws IOException, InterruptedException {
 
-    if (true) throw new RuntimeException("NYI");
+    if (connectionID == null) throw new NullPointerException("connectionID is null");
+
+    if (peer == null) throw new NullPointerException("peer is null");
+
+    if (connectionID.isEmpty())
+      throw new IllegalArgumentException("connection id must not be empty");
 
-    // TODO this should be configurable;
+    if (connectionID.indexOf(SESSION_ID_DELIMITER) != -1)
+      throw new IllegalArgumentException(
+          "connection id must not contain '" + SESSION_ID_DELIMITER + "'");
 
-    final Socket socket = new Socket(Proxy.NO_PROXY);
+    final ServiceDiscoveryManager manager;
+    final Connection xmppConnection;
 
-    final InetSocketAddress address = new InetSocketAddress("localhost", 4711);
+    synchronized (this) {
+      manager = discoveryManager;
+      xmppConnection = connection;
+    }
+
+    if (manager == null) throw new IOException(this + " transport is not initialized");
+
+    final PeerInfo info = discoverPeer(manager, peer);
+
+    return connect(connectionID, peer, info, requestNonce(xmppConnection, peer, connectionID));
+  }
 
-    socket.connect(address, 30000);
-    socket.setTcpNoDelay(true);
+  /**
+   * Connects to the peer using the given TCP transport information of the peer and the nonce the
+   * peer issued for this connection.
+   */
+  IByteStreamConnection connect(String connectionID, JID peer, PeerInfo info, byte[] nonce)
+      throws IOException, InterruptedException {
 
-    final IByteStreamConnectionListener listener = currentListener;
+    final IByteStreamConnectionListener listener;
+    final JID local;
+    final ExecutorService executor;
 
-    if (listener == null) {
-      socket.close();
-      throw new IOException(this + " transport is not initialized");
+    synchronized (this) {
+      listener = currentListener;
+      local = localAddress;
+      executor = executorService;
     }
 
-    final IByteStreamConnection connection =
-        new BinaryChannelConnection(
-            null, peer, connectionID, new TCPByteStream(socket), StreamMode.TCP, listener);
+    if (listener == null) throw new IOException(this + " transport is not initialized");
+
+    LOG.debug(this + " establishing connection to " + peer + " using candidates " + info.addresses);
+
+    final SocketChannel channel = connectToAny(executor, info, local, connectionID, nonce);
 
-    return connection;
+    return new BinaryChannelConnection(
+        local, peer, connectionID, new TCPByteStream(channel.socket()), StreamMode.TCP, listener);
   }
 
   @Override
-  public void initialize(Connection connection, IByteStreamConnectionListener listener) {
+  public synchronized void initialize(
+      Connection connection, IByteStreamConnectionListener listener) {
 
+    if (!ENABLED) return;
+
+    final ServerSocketChannel channel;
+
+    try {
+      channel = ServerSocketChannel.open();
+      channel.bind(new InetSocketAddress(PORT));
+    } catch (IOException e) {
+      LOG.warn(this + " failed to listen on port " + PORT + ", service is disabled", e);
+      return;
+    }
+
+    localAddress = new JID(connection.getUser());
+    serverChannel = channel;
+    executorService = Executors.newCachedThreadPool(new NamedThreadFactory("TCPTransport-"));
+    handshakeTimer = createHandshakeTimer();
+    discoveryManager = ServiceDiscoveryManager.getInstanceFor(connection);
     currentListener = listener;
+    this.connection = connection;
+
+    final int port = channel.socket().getLocalPort();
+
+    connection.addPacketListener(
+        nonceRequestListener,
+        new AndFilter(TCPTransportExtension.PROVIDER.getIQFilter(), new IQTypeFilter(IQ.Type.GET)));
+
+    discoveryManager.setExtendedInfo(createForm(port));
+
+    final Thread acceptor = new Thread(() -> accept(channel), "TCPTransport-Acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+
+    LOG.info(this + " listening on port " + port);
   }
 
   @Override
-  public void uninitialize() {
+  public synchronized void uninitialize() {
+    if (serverChannel == null) return;
+
     currentListener = null;
+
+    connection.removePacketListener(nonceRequestListener);
+    discoveryManager.removeExtendedInfo();
+
+    try {
+      serverChannel.close();
+    } catch (IOException e) {
+      LOG.warn(this + " failed to close server socket", e);
+    }
+
+    executorService.shutdownNow();
+    handshakeTimer.shutdownNow();
+
+    serverChannel = null;
+    executorService = null;
+    handshakeTimer = null;
+    discoveryManager = null;
+    connection = null;
+    localAddress = null;
+    issuedNonces.clear();
   }
 
   @Override
   public String toString() {
     return "TCP-Transport";
   }
+
+  private void accept(final ServerSocketChannel channel) {
+    while (true) {
+      final SocketChannel socketChannel;
+
+      try {
+        socketChannel = channel.accept();
+      } catch (ClosedChannelException e) {
+        return;
+      } catch (IOException e) {
+        LOG.error(this + " failed to accept connection", e);
+        return;
+      }
+
+      final ExecutorService executor;
+      final ScheduledExecutorService timer;
+
+      synchronized (this) {
+        executor = channel == serverChannel ? executorService : null;
+        timer = handshakeTimer;
+      }
+
+      if (executor == null) {
+        close(socketChannel);
+        return;
+      }
+
+      if (!pendingHandshakes.tryAcquire()) {
+        LOG.debug(this + " too many pending handshakes, rejecting " + socketChannel);
+        close(socketChannel);
+        continue;
+      }
+
+      try {
+        executor.execute(
+            () -> {
+              try {
+                acceptHandshake(socketChannel, timer);
+              } finally {
+                pendingHandshakes.release();
+              }
+            });
+      } catch (RuntimeException e) {
+        pendingHandshakes.release();
+        close(socketChannel);
+      }
+    }
+  }
+
+  /**
+   * Issues a nonce for the given peer and connection id. A nonce can be used for one connection
+   * only and expires after {@link #NONCE_TIMEOUT} milliseconds.
+   *
+   * @param peer the authenticated JID of the peer that requested the nonce
+   */
+  byte[] issueNonce(final JID peer, final String connectionID) {
+    return issueNonce(peer, connectionID, NONCE_TIMEOUT);
+  }
+
+  /**
+   * Issues a nonce that expires after the given time. If the peer has already {@link
+   * #MAX_NONCES_PER_PEER} unused nonces, its oldest one is dropped.
+   */
+  synchronized byte[] issueNonce(final JID peer, final String connectionID, final long timeout) {
+    final long now = System.currentTimeMillis();
+
+    removeExpiredNonces(now);
+
+    int issuedToPeer = 0;
+
+    for (final IssuedNonce issued : issuedNonces)
+      if (issued.peer.strictlyEquals(peer)) issuedToPeer++;
+
+    for (final Iterator<IssuedNonce> it = issuedNonces.iterator();
+        it.hasNext() && issuedToPeer >= MAX_NONCES_PER_PEER; ) {
+      if (it.next().peer.strictlyEquals(peer)) {
+        it.remove();
+        issuedToPeer--;
+      }
+    }
+
+    if (issuedNonces.size() >= MAX_NONCES) issuedNonces.remove(0);
+
+    final byte[] nonce = new byte[NONCE_LENGTH];
+    RANDOM.nextBytes(nonce);
+
+    issuedNonces.add(new IssuedNonce(peer, connectionID, nonce, now + timeout));
+
+    return nonce;
+  }
+
+  /**
+   * Returns the nonce that was issued for the given peer and connection id or <code>null</code> if
+   * there is none.
+   */
+  private synchronized byte[] getNonce(final JID peer, final String connectionID) {
+    final IssuedNonce issued = findNonce(peer, connectionID);
+    return issued == null ? null : issued.nonce;
+  }
+
+  /**
+   * Removes the nonce that was issued for the given peer and connection id.
+   *
+   * @return <code>false</code> if the nonce was already used or expired
+   */
+  private synchronized boolean consumeNonce(final JID peer, final String connectionID) {
+    final IssuedNonce issued = findNonce(peer, connectionID);
+    return issued != null && issuedNonces.remove(issued);
+  }
+
+  private IssuedNonce findNonce(final JID peer, final String connectionID) {
+    removeExpiredNonces(System.currentTimeMillis());
+
+    for (final IssuedNonce issued : issuedNonces) {
+      if (issued.peer.strictlyEquals(peer) && issued.connectionID.equals(connectionID))
+        return issued;
+    }
+
+    return null;
+  }
+
+  private void removeExpiredNonces(final long now) {
+    issuedNonces.removeIf(issued -> issued.expires < now);
+  }
+
+  /** Answers a nonce request that was received over the XMPP connection. */
+  private void handleNonceRequest(final IQ request) {
+    final TCPTransportExtension payload = TCPTransportExtension.PROVIDER.getPayload(request);
+
+    if (payload == null || request.getFrom() == null) return;
+
+    final JID peer = new JID(request.getFrom());
+    final String connectionID = payload.getConnectionID();
+
+    if (!peer.isResourceQualifiedJID() || connectionID == null || connectionID.isEmpty()) {
+      LOG.warn(this + " received invalid nonce request from " + peer);
+      return;
+    }
+
+    final Connection xmppConnection;
+
+    synchronized (this) {
+      xmppConnection = connection;
+    }
+
+    if (xmppConnection == null) return;
+
+    final IQ reply =
+        TCPTransportExtension.PROVIDER.createIQ(
+            new TCPTransportExtension(
+                connectionID, StringUtils.encodeHex(issueNonce(peer, connectionID))));
+
+    reply.setType(IQ.Type.RESULT);
+    reply.setPacketID(request.getPacketID());
+    reply.setTo(request.getFrom());
+
+    xmppConnection.sendPacket(reply);
+  }
+
+  /** Requests a nonce for the given connection from the peer over the XMPP connection. */
+  private static byte[] requestNonce(
+      final Connection connection, final JID peer, final String connectionID) throws IOException {
+
+    final IQ request =
+        TCPTransportExtension.PROVIDER.createIQ(new TCPTransportExtension(connectionID, null));
+
+    request.setType(IQ.Type.GET);
+    request.setTo(peer.toString());
+
+    final PacketCollector collector =
+        connection.createPacketCollector(
+            new AndFilter(
+                new PacketIDFilter(request.getPacketID()),
+                new FromMatchesFilter(peer.toString()),
+                TCPTransportExtension.PROVIDER.getIQFilter(),
+                new IQTypeFilter(IQ.Type.RESULT)));
+
+    try {
+      connection.sendPacket(request);
+
+      final TCPTransportExtension result =
+          TCPTransportExtension.PROVIDER.getPayload(collector.nextResult(CONNECT_TIMEOUT));
+
+      if (result == null || result.getNonce() == null)
+        throw new IOException(peer + " did not issue a nonce for connection " + connectionID);
+
+      final byte[] nonce = decodeHex(result.getNonce());
+
+      if (nonce == null || nonce.length != NONCE_LENGTH)
+        throw new IOException(peer + " issued an invalid nonce");
+
+      return nonce;
+    } finally {
+      collector.cancel();
+    }
+  }
+
+  /**
+   * Performs the handshake for an incoming connection and announces it on success. The connection
+   * is closed by the given timer if the handshake takes longer than {@link #CONNECT_TIMEOUT}.
+   */
+  private void acceptHandshake(final SocketChannel channel, final ScheduledExecutorService timer) {
+    final Socket socket = channel.socket();
+
+    try {
+      final ScheduledFuture<?> timeout =
+          timer.schedule(() -> close(channel), CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
+
+      socket.setSoTimeout(CONNECT_TIMEOUT);
+      socket.setTcpNoDelay(TCP_NODELAY);
+
+      final DataInputStream in = new DataInputStream(socket.getInputStream());
+
+      if (in.readInt() != HANDSHAKE_MAGIC || in.readUnsignedByte() != HANDSHAKE_VERSION)
+        throw new IOException("unknown handshake");
+
+      final JID peer = new JID(in.readUTF());
+      final String connectionID = in.readUTF();
+      final byte[] connectorChallenge = new byte[CHALLENGE_LENGTH];
+      in.readFully(connectorChallenge);
+
+      if (!peer.isResourceQualifiedJID() || connectionID.isEmpty())
+        throw new IOException("handshake contains invalid peer or connection id");
+
+      final IByteStreamConnectionListener listener;
+      final JID local;
+
+      synchronized (this) {
+        listener = currentListener;
+        local = localAddress;
+      }
+
+      if (listener == null) throw new IOException(this + " transport is not initialized");
+
+      final byte[] nonce = getNonce(peer, connectionID);
+
+      if (nonce == null)
+        throw new IOException("no nonce was issued to " + peer + " for connection " + connectionID);
+
+      final byte[] acceptorChallenge = new byte[CHALLENGE_LENGTH];
+      RANDOM.nextBytes(acceptorChallenge);
+
+      final DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+      out.write(HANDSHAKE_ACCEPTED);
+      out.write(acceptorChallenge);
+      out.write(mac(nonce, ROLE_ACCEPTOR, connectorChallenge, acceptorChallenge));
+      out.flush();
+
+      /*
+       * the connecting side may have connected via several addresses, it
+       * only answers on the selected connection
+       */
+      final byte[] connectorMac = new byte[MAC_LENGTH];
+      in.readFully(connectorMac);
+
+      if (!MessageDigest.isEqual(
+          connectorMac, mac(nonce, ROLE_CONNECTOR, connectorChallenge, acceptorChallenge)))
+        throw new IOException("handshake contains invalid proof of the nonce");
+
+      if (!consumeNonce(peer, connectionID))
+        throw new IOException("nonce was already used or expired");
+
+      if (!timeout.cancel(false)) throw new IOException("handshake timed out");
+
+      // the connecting side waits for this before it uses the connection
+      out.write(HANDSHAKE_ACCEPTED);
+      out.flush();
+
+      socket.setSoTimeout(0);
+
+      LOG.debug(this + " accepted connection from " + peer + " via " + socket);
+
+      final IByteStreamConnection connection =
+          new BinaryChannelConnection(
+              local, peer, connectionID, new TCPByteStream(socket), StreamMode.TCP, listener);
+
+      listener.connectionChanged(connectionID, connection, true);
+
+    } catch (Exception e) {
+      LOG.debug(this + " rejected incoming connection " + socket + ": " + e.getMessage());
+      close(channel);
+    }
+  }
+
+  /**
+   * Connects to all addresses of the peer in parallel.
+   *
+   * @return the first connection that passed the handshake
+   */
+  private SocketChannel connectToAny(
+      final ExecutorService executor,
+      final PeerInfo info,
+      final JID local,
+      final String connectionID,
+      final byte[] nonce)
+      throws IOException, InterruptedException {
+
+    final CompletionService<SocketChannel> completionService =
+        new ExecutorCompletionService<SocketChannel>(executor);
+
+    final AtomicBoolean selected = new AtomicBoolean();
+
+    final List<Future<SocketChannel>> futures = new ArrayList<Future<SocketChannel>>();
+
+    for (final InetAddress address : info.addresses) {
+      final InetSocketAddress socketAddress = new InetSocketAddress(address, info.port);
+
+      futures.add(
+          completionService.submit(
+              () -> connect(socketAddress, nonce, local, connectionID, selected)));
+    }
+
+    final long deadline = System.currentTimeMillis() + 2L * CONNECT_TIMEOUT;
+
+    IOException lastError = null;
+
+    try {
+      for (int pending = futures.size(); pending > 0; pending--) {
+        final long remaining = deadline - System.currentTimeMillis();
+
+        final Future<SocketChannel> future =
+            remaining > 0 ? completionService.poll(remaining, TimeUnit.MILLISECONDS) : null;
+
+        if (future == null) break;
+
+        try {
+          return future.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof IOException) lastError = (IOException) e.getCause();
+          else lastError = new IOException(e.getCause());
+        }
+      }
+
+      /*
+       * a connection may pass the handshake right now, so make sure that
+       * it is either returned or no connection can be selected anymore
+       */
+      if (!selected.compareAndSet(false, true)) return awaitSelected(completionService);
+
+    } catch (InterruptedException e) {
+      if (!selected.compareAndSet(false, true)) close(awaitSelected(completionService));
+
+      throw e;
+    } finally {
+      for (final Future<SocketChannel> future : futures) future.cancel(true);
+    }
+
+    throw new IOException(
+        "could not connect to any address " + info.addresses + " of the peer", lastError);
+  }
+
+  /** Waits for the connection that was selected by one of the connect tasks. */
+  private static SocketChannel awaitSelected(
+      final CompletionService<SocketChannel> completionService) {
+
+    boolean interrupted = false;
+
+    try {
+      while (true) {
+        try {
+          return completionService.take().get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          // not the selected connection
+        }
+      }
+    } finally {
+      if (interrupted) Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Connects to the given address and performs the handshake. The connection is only returned if no
+   * other connection was selected before.
+   */
+  private static SocketChannel connect(
+      final InetSocketAddress address,
+      final byte[] nonce,
+      final JID local,
+      final String connectionID,
+      final AtomicBoolean selected)
+      throws IOException {
+
+    final SocketChannel channel = SocketChannel.open();
+    final Socket socket = channel.socket();
+
+    boolean success = false;
+
+    try {
+      socket.connect(address, CONNECT_TIMEOUT);
+      socket.setSoTimeout(CONNECT_TIMEOUT);
+      socket.setTcpNoDelay(TCP_NODELAY);
+
+      final byte[] connectorChallenge = new byte[CHALLENGE_LENGTH];
+      RANDOM.nextBytes(connectorChallenge);
+
+      final DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+      out.writeInt(HANDSHAKE_MAGIC);
+      out.write(HANDSHAKE_VERSION);
+      out.writeUTF(local.toString());
+      out.writeUTF(connectionID);
+      out.write(connectorChallenge);
+      out.flush();
+
+      final DataInputStream in = new DataInputStream(socket.getInputStream());
+
+      if (in.read() != HANDSHAKE_ACCEPTED) throw new IOException("handshake was rejected");
+
+      final byte[] acceptorChallenge = new byte[CHALLENGE_LENGTH];
+      final byte[] acceptorMac = new byte[MAC_LENGTH];
+
+      in.readFully(acceptorChallenge);
+      in.readFully(acceptorMac);
+
+      // the address may belong to another host that does not know the nonce
+      if (!MessageDigest.isEqual(
+          acceptorMac, mac(nonce, ROLE_ACCEPTOR, connectorChallenge, acceptorChallenge)))
+        throw new IOException("peer could not prove the knowledge of the nonce");
+
+      if (!selected.compareAndSet(false, true))
+        throw new IOException("another connection was selected");
+
+      out.write(mac(nonce, ROLE_CONNECTOR, connectorChallenge, acceptorChallenge));
+      out.flush();
+
+      // the nonce may have been used or expired meanwhile
+      if (in.read() != HANDSHAKE_ACCEPTED) throw new IOException("peer rejected the nonce");
+
+      socket.setSoTimeout(0);
+
+      LOG.debug("established direct TCP connection via " + address);
+
+      success = true;
+
+      return channel;
+    } finally {
+      if (!success) close(channel);
+    }
+  }
+
+  private static ScheduledExecutorService createHandshakeTimer() {
+    final NamedThreadFactory threadFactory = new NamedThreadFactory("TCPTransport-Timer", false);
+
+    final ScheduledThreadPoolExecutor timer =
+        new ScheduledThreadPoolExecutor(
+            1,
+            (runnable) -> {
+              final Thread thread = threadFactory.newThread(runnable);
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    timer.setRemoveOnCancelPolicy(true);
+
+    return timer;
+  }
+
+  /** Discovers the listening addresses of the peer. */
+  private static PeerInfo discoverPeer(final ServiceDiscoveryManager manager, final JID peer)
+      throws IOException {
+
+    final DiscoverInfo discoverInfo;
+
+    try {
+      discoverInfo = manager.discoverInfo(peer.toString());
+    } catch (XMPPException e) {
+      throw new IOException("failed to discover TCP transport information of " + peer, e);
+    }
+
+    final PeerInfo info = parseForm(discoverInfo);
+
+    if (info == null) throw new IOException(peer + " does not offer direct TCP connections");
+
+    return info;
+  }
+
+  static DataForm createForm(final int port) {
+    final DataForm form = new DataForm("result");
+
+    final FormField formType = new FormField(FIELD_FORM_TYPE);
+    formType.setType(FormField.TYPE_HIDDEN);
+    formType.addValue(FORM_TYPE);
+    form.addField(formType);
+
+    final FormField addresses = new FormField(FIELD_ADDRESS);
+    addresses.setType(FormField.TYPE_TEXT_MULTI);
+
+    for (final InetAddress address : NetworkingUtils.getAllNonLoopbackLocalIPAddresses(true))
+      addresses.addValue(address.getHostAddress());
+
+    addresses.addValue(InetAddress.getLoopbackAddress().getHostAddress());
+    form.addField(addresses);
+
+    final FormField portField = new FormField(FIELD_PORT);
+    portField.addValue(String.valueOf(port));
+    form.addField(portField);
+
+    return form;
+  }
+
+  /**
+   * Extracts the TCP transport information from the given service discovery information.
+   *
+   * @return the information or <code>null</code> if the information is missing or invalid
+   */
+  static PeerInfo parseForm(final DiscoverInfo discoverInfo) {
+    for (final Object extension : discoverInfo.getExtensions()) {
+      if (!(extension instanceof DataForm)) continue;
+
+      final DataForm form = (DataForm) extension;
+
+      String formType = null;
+      String port = null;
+      final List<InetAddress> addresses = new ArrayList<InetAddress>();
+
+      for (final Iterator<FormField> it = form.getFields(); it.hasNext(); ) {
+        final FormField field = it.next();
+        final String value = firstValue(field);
+
+        if (FIELD_FORM_TYPE.equals(field.getVariable())) formType = value;
+        else if (FIELD_PORT.equals(field.getVariable())) port = value;
+        else if (FIELD_ADDRESS.equals(field.getVariable())) {
+          for (final Iterator<String> values = field.getValues(); values.hasNext(); ) {
+            final InetAddress address = parseAddress(values.next());
+
+            if (address != null) addresses.add(address);
+          }
+        }
+      }
+
+      if (!FORM_TYPE.equals(formType) || port == null || addresses.isEmpty()) continue;
+
+      try {
+        return new PeerInfo(addresses, Integer.parseInt(port));
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+
+    return null;
+  }
+
+  private static String firstValue(final FormField field) {
+    final Iterator<String> values = field.getValues();
+    return values.hasNext() ? values.next() : null;
+  }
+
+  /** Parses an IP address literal without resolving host names. */
+  private static InetAddress parseAddress(final String address) {
+    if (!IPV4_LITERAL.matcher(address).matches() && address.indexOf(':') == -1) return null;
+
+    try {
+      return InetAddress.getByName(address);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /** Computes the proof of the given side that it knows the nonce. */
+  private static byte[] mac(
+      final byte[] nonce,
+      final byte role,
+      final byte[] connectorChallenge,
+      final byte[] acceptorChallenge)
+      throws IOException {
+
+    try {
+      final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+      mac.init(new SecretKeySpec(nonce, MAC_ALGORITHM));
+      mac.update(role);
+      mac.update(connectorChallenge);
+      mac.update(acceptorChallenge);
+      return mac.doFinal();
+    } catch (GeneralSecurityException e) {
+      throw new IOException(MAC_ALGORITHM + " is not available", e);
+    }
+  }
+
+  /** Decodes a hex string or returns <code>null</code> if it is invalid. */
+  private static byte[] decodeHex(final String hex) {
+    if (hex.length() % 2 != 0) return null;
+
+    final byte[] bytes = new byte[hex.length() / 2];
+
+    for (int i = 0; i < bytes.length; i++) {
+      final int high = Character.digit(hex.charAt(2 * i), 16);
+      final int low = Character.digit(hex.charAt(2 * i + 1), 16);
+
+      if (high == -1 || low == -1) return null;
+
+      bytes[i] = (byte) (high << 4 | low);
+    }
+
+    return bytes;
+  }
+
+  private static void close(final SocketChannel channel) {
+    if (channel == null) return;
+
+    try {
+      channel.close();
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+
+  /** The TCP transport information of a peer. */
+  static final class PeerInfo {
+    final List<InetAddress> addresses;
+    final int port;
+
+    PeerInfo(final List<InetAddress> addresses, final int port) {
+      this.addresses = addresses;
+      this.port = port;
+    }
+  }
+
+  /** A nonce that was issued to a peer for a single connection. */
+  private static final class IssuedNonce {
+    private final JID peer;
+    private final String connectionID;
+    private final byte[] nonce;
+    private final long expires;
+
+    private IssuedNonce(
+        final JID peer, final String connectionID, final byte[] nonce, final long expires) {
+      this.peer = peer;
+      this.connectionID = connectionID;
+      this.nonce = nonce;
+      this.expires = expires;
+    }
+  }
 }
@@ -0,0 +1,50 @@
+package saros.net.stream;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+import saros.misc.xstream.XStreamExtensionProvider;
+
+/**
+ * IQ payload to request a nonce for a direct TCP connection. The request contains the id of the
+ * connection, the result additionally the nonce the peer issued for the sender of the request and
+ * this connection id.
+ *
+ * <p>As the nonce is exchanged over the XMPP connection, the peer knows the authenticated JID of
+ * the side that is allowed to use it.
+ *
+ * @see TCPTransport
+ */
+@XStreamAlias(/* TCPTransportExtension */ "TCPTE")
+public class TCPTransportExtension {
+
+  public static final Provider PROVIDER = new Provider();
+
+  @XStreamAlias("c")
+  @XStreamAsAttribute
+  private final String connectionID;
+
+  @XStreamAlias("n")
+  @XStreamAsAttribute
+  private final String nonce;
+
+  public TCPTransportExtension(String connectionID, String nonce) {
+    this.connectionID = connectionID;
+    this.nonce = nonce;
+  }
+
+  public String getConnectionID() {
+    return connectionID;
+  }
+
+  /** Returns the nonce or <code>null</code> if this is a request. */
+  public String getNonce() {
+    return nonce;
+  }
+
+  public static class Provider extends XStreamExtensionProvider<TCPTransportExtension> {
+
+    private Provider() {
+      super("saros", "tcpte", TCPTransportExtension.class);
+    }
+  }
+}
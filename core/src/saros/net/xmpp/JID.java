@@ -36,6 +36,13 @@ public class JID implements Serializable {
 
   private final String jid;
 
+  /**
+   * The {@link #getBase() base} portion, computed on first use. JIDs are hash keys of most session
+   * and network maps, so the base is not parsed again for every {@link #hashCode()} and {@link
+   * #equals(Object)}.
+   */
+  private transient String base;
+
   /**
    * Creates the client {@link JID} on the base of a service perspective {@link JID} as explained in
    * XEP-0045.
@@ -100,7 +107,12 @@ public class JID implements Serializable {
    * @see StringUtils#parseBareAddress(String)
    */
   public String getBase() {
-    return StringUtils.parseBareAddress(jid);
+    String base = this.base;
+
+    // racy but safe, Strings are immutable and every thread computes the same value
+    if (base == null) this.base = base = StringUtils.parseBareAddress(jid);
+
+    return base;
   }
 
   /**
@@ -147,6 +159,8 @@ public class JID implements Serializable {
   @Override
   public boolean equals(Object obj) {
 
+    if (this == obj) return true;
+
     if (obj == null) return false;
 
     if (obj instanceof JID) {
@@ -17,6 +17,7 @@ import org.jivesoftware.smack.SmackConfiguration;
 import org.jivesoftware.smack.XMPPConnection;
 import org.jivesoftware.smack.XMPPException;
 import org.jivesoftware.smackx.bytestreams.socks5.Socks5Proxy;
+import org.jivesoftware.smackx.entitycaps.EntityCapsManager;
 import saros.annotations.Component;
 import saros.net.ConnectionState;
 import saros.net.stun.IStunService;
@@ -233,13 +234,29 @@ public class XMPPConnectionService {
       ConnectionConfiguration connectionConfiguration, String username, String password)
       throws XMPPException {
 
+    connect(new XMPPConnection(connectionConfiguration), username, password);
+  }
+
+  /**
+   * Connects the service using the given connection and credentials. Unlike {@link
+   * #connect(ConnectionConfiguration, String, String)} this method accepts any connection
+   * implementation, e.g. a stand-in for a XMPP server that runs in the same process.
+   *
+   * @param newConnection a connection that is not connected yet
+   * @param username the username of the XMPP account
+   * @param password the password of the XMPP Account
+   * @blocking
+   */
+  public synchronized void connect(Connection newConnection, String username, String password)
+      throws XMPPException {
+
     if (isConnected()) disconnect();
 
     initialzeNetworkComponents();
 
     Roster.setDefaultSubscriptionMode(Roster.SubscriptionMode.manual);
 
-    connection = new XMPPConnection(connectionConfiguration);
+    connection = newConnection;
 
     try {
       setConnectionState(ConnectionState.CONNECTING, null);
@@ -252,6 +269,13 @@ public class XMPPConnectionService {
        */
       connection.addConnectionListener(smackConnectionListener);
 
+      /*
+       * advertise the capabilities (XEP-0115) in every presence so other
+       * Saros instances can resolve our features from their caps cache
+       * instead of sending a discovery query
+       */
+      EntityCapsManager.getInstanceFor(connection).enableEntityCaps();
+
       connection.login(username, password, resource);
 
       localJID = new JID(connection.getUser());
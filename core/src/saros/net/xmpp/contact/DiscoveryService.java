@@ -1,11 +1,12 @@
 package saros.net.xmpp.contact;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -14,6 +15,8 @@ import org.apache.log4j.Logger;
 import org.jivesoftware.smack.Connection;
 import org.jivesoftware.smack.XMPPException;
 import org.jivesoftware.smackx.ServiceDiscoveryManager;
+import org.jivesoftware.smackx.entitycaps.EntityCapsManager;
+import org.jivesoftware.smackx.entitycaps.packet.CapsExtension;
 import org.jivesoftware.smackx.packet.DiscoverInfo;
 import saros.net.ResourceFeature;
 import saros.net.xmpp.JID;
@@ -22,24 +25,46 @@ import saros.util.NamedThreadFactory;
 /**
  * A Simple Service to get and cache {@link ResourceFeature} Support of XMPP resources.
  *
- * <p>All methods are non-blocking and run in a separate thread, which should be stopped after usage
- * via {@link #stop()}.
+ * <p>Resources that advertise their capabilities (XEP-0115) are resolved by their capabilities
+ * version. The discovery information of a version is verified against its hash and then stored in
+ * the caps cache of Smack, which is persisted if a persistent cache is installed (see {@link
+ * EntityCapsManager#setPersistentCache}). So all resources running the same client version are
+ * resolved with one query, and on later logins without any query at all.
+ *
+ * <p>All methods are non-blocking. The queries run in a bounded number of separate threads, so
+ * several queries can wait for their responses at the same time. The threads should be stopped
+ * after usage via {@link #stop()}.
  */
 class DiscoveryService {
   private static final Logger log = Logger.getLogger(DiscoveryService.class);
 
-  /** Single-Threaded Executor to handle all Feature Discoveries and map modification. */
-  private final ExecutorService discoveryExecutor =
+  /** Maximum number of discovery queries that wait for their response at the same time. */
+  private static final int MAX_PARALLEL_QUERIES = 4;
+
+  /** Executor to run the Feature Discoveries, idle threads are terminated after 30 seconds. */
+  private final ThreadPoolExecutor discoveryExecutor =
       new ThreadPoolExecutor(
-          0,
-          1,
+          MAX_PARALLEL_QUERIES,
+          MAX_PARALLEL_QUERIES,
           30,
           TimeUnit.SECONDS,
           new LinkedBlockingQueue<Runnable>(),
-          new NamedThreadFactory("XMPPContactService-DiscoveryThread", false));
+          new NamedThreadFactory("XMPPContactService-DiscoveryThread-"));
+
+  private final Map<String, EnumSet<ResourceFeature>> resourcesFeatureSupport =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Queries that are running or scheduled, by capabilities version or by JID for resources without
+   * capabilities. Guarded by <code>this</code>.
+   */
+  private final Map<String, PendingQuery> pendingQueries = new HashMap<>();
 
-  private Map<String, EnumSet<ResourceFeature>> resourcesFeatureSupport = new HashMap<>();
-  private ServiceDiscoveryManager discoveryManager;
+  private volatile ServiceDiscoveryManager discoveryManager;
+
+  DiscoveryService() {
+    discoveryExecutor.allowCoreThreadTimeOut(true);
+  }
 
   /**
    * Needs to be called on connection changes!
@@ -47,68 +72,191 @@ class DiscoveryService {
    * @param connection current connection
    */
   void connectionChanged(Connection connection) {
-    discoveryExecutor.execute(
-        () -> {
-          if (connection == null) {
-            discoveryManager = null;
-            return;
-          }
-          discoveryManager = ServiceDiscoveryManager.getInstanceFor(connection);
-          resourcesFeatureSupport = new HashMap<>();
-        });
+    discoveryManagerChanged(
+        connection == null ? null : ServiceDiscoveryManager.getInstanceFor(connection));
+  }
+
+  /**
+   * Drops all known and pending results and uses the given discovery manager for further queries.
+   *
+   * @param discoveryManager the discovery manager of the current connection or <code>null</code>
+   */
+  synchronized void discoveryManagerChanged(ServiceDiscoveryManager discoveryManager) {
+    /* results of queries that are still running are dropped, see #completeQuery */
+    pendingQueries.clear();
+    resourcesFeatureSupport.clear();
+
+    this.discoveryManager = discoveryManager;
   }
 
   /**
    * Query Feature Support.
    *
    * @param fullJid of contact
+   * @param caps the capabilities advertised in the last presence of the resource or <code>null
+   *     </code>
    * @param resultCallback to call on result
    */
-  void queryFeatureSupport(JID fullJid, Consumer<EnumSet<ResourceFeature>> resultCallback) {
-    discoveryExecutor.execute(
-        () -> {
-          String jid = fullJid.getRAW();
-          EnumSet<ResourceFeature> features;
-          if (resourcesFeatureSupport.containsKey(jid)) {
-            features = resourcesFeatureSupport.get(jid);
-          } else {
-            features = runDiscovery(jid);
-            resourcesFeatureSupport.put(jid, features);
-          }
-
-          resultCallback.accept(features);
-        });
+  void queryFeatureSupport(
+      JID fullJid, CapsExtension caps, Consumer<EnumSet<ResourceFeature>> resultCallback) {
+    String jid = fullJid.getRAW();
+    String nodeVer = getNodeVer(caps);
+
+    EnumSet<ResourceFeature> features = null;
+
+    if (nodeVer != null) {
+      DiscoverInfo discoverInfo = EntityCapsManager.getDiscoveryInfoByNodeVer(nodeVer);
+
+      if (discoverInfo != null) {
+        features = toFeatures(discoverInfo);
+        resourcesFeatureSupport.put(jid, features);
+      }
+    } else {
+      features = resourcesFeatureSupport.get(jid);
+    }
+
+    if (features != null) {
+      resultCallback.accept(features);
+      return;
+    }
+
+    synchronized (this) {
+      if (discoveryManager != null) {
+        String key = nodeVer != null ? nodeVer : jid;
+        PendingQuery query = pendingQueries.get(key);
+
+        if (query == null) {
+          query = new PendingQuery(discoveryManager, jid, caps);
+          pendingQueries.put(key, query);
+
+          final PendingQuery newQuery = query;
+          discoveryExecutor.execute(() -> completeQuery(key, newQuery, runDiscovery(newQuery)));
+        }
+
+        query.requesters.add(new Requester(jid, resultCallback));
+        return;
+      }
+    }
+
+    resultCallback.accept(EnumSet.noneOf(ResourceFeature.class));
   }
 
-  private EnumSet<ResourceFeature> runDiscovery(String fullJid) {
-    EnumSet<ResourceFeature> features = EnumSet.noneOf(ResourceFeature.class);
+  /**
+   * Passes the result of the given query to its requesters and caches it. If the query failed (
+   * <code>features</code> is <code>null</code>) the requesters get an empty feature set, but it is
+   * not cached, so the next request queries again.
+   */
+  private void completeQuery(String key, PendingQuery query, EnumSet<ResourceFeature> features) {
+    List<Requester> requesters;
+
+    synchronized (this) {
+      /* the connection changed meanwhile */
+      if (pendingQueries.get(key) != query) return;
+
+      pendingQueries.remove(key);
+      requesters = query.requesters;
+
+      if (features != null) {
+        for (Requester requester : requesters) resourcesFeatureSupport.put(requester.jid, features);
+      }
+    }
+
+    if (features == null) features = EnumSet.noneOf(ResourceFeature.class);
+
+    for (Requester requester : requesters) requester.resultCallback.accept(features);
+  }
+
+  /** @return the discovered features or <code>null</code> if the query failed */
+  private static EnumSet<ResourceFeature> runDiscovery(PendingQuery query) {
+    String nodeVer = getNodeVer(query.caps);
 
-    if (discoveryManager == null) return features;
     try {
-      DiscoverInfo discoverInfo = discoveryManager.discoverInfo(fullJid);
+      if (nodeVer == null) return toFeatures(query.discoveryManager.discoverInfo(query.jid));
 
-      for (Iterator<DiscoverInfo.Feature> it = discoverInfo.getFeatures(); it.hasNext(); ) {
-        ResourceFeature.getFeature(it.next().getVar()).ifPresent(features::add);
+      DiscoverInfo discoverInfo = query.discoveryManager.discoverInfo(query.jid, nodeVer);
+
+      if (EntityCapsManager.verifyDiscoverInfoVersion(
+          query.caps.getVer(), query.caps.getHash(), discoverInfo)) {
+        EntityCapsManager.addDiscoverInfoByNode(nodeVer, discoverInfo);
+      } else {
+        log.warn(
+            "discovery information of "
+                + query.jid
+                + " does not match its capabilities version "
+                + query.caps.getVer());
       }
+
+      return toFeatures(discoverInfo);
     } catch (XMPPException e) {
-      log.debug("Feature discovery for " + fullJid + " failed", e);
+      log.debug("Feature discovery for " + query.jid + " failed", e);
+    }
+
+    return null;
+  }
+
+  private static EnumSet<ResourceFeature> toFeatures(DiscoverInfo discoverInfo) {
+    EnumSet<ResourceFeature> features = EnumSet.noneOf(ResourceFeature.class);
+
+    for (Iterator<DiscoverInfo.Feature> it = discoverInfo.getFeatures(); it.hasNext(); ) {
+      ResourceFeature.getFeature(it.next().getVar()).ifPresent(features::add);
     }
 
     return features;
   }
 
+  /**
+   * Returns the <code>node#ver</code> string of the given capabilities or <code>null</code> if
+   * there are no capabilities or they use the legacy format without a hash, which cannot be
+   * verified.
+   */
+  private static String getNodeVer(CapsExtension caps) {
+    if (caps == null || caps.getNode() == null || caps.getVer() == null || caps.getHash() == null)
+      return null;
+
+    return caps.getNode() + "#" + caps.getVer();
+  }
+
   /**
    * Removes known resources.
    *
    * @param fullJids List with fullJids from resources
    */
-  void removeResources(List<JID> fullJids) {
-    discoveryExecutor.execute(
-        () -> fullJids.forEach(jid -> resourcesFeatureSupport.remove(jid.getRAW())));
+  synchronized void removeResources(List<JID> fullJids) {
+    for (JID fullJid : fullJids) {
+      String jid = fullJid.getRAW();
+
+      resourcesFeatureSupport.remove(jid);
+
+      for (PendingQuery query : pendingQueries.values())
+        query.requesters.removeIf(requester -> requester.jid.equals(jid));
+    }
   }
 
-  /** Shuts down the executor thread. Needs to be called after usage! */
+  /** Shuts down the executor threads. Needs to be called after usage! */
   void stop() {
     discoveryExecutor.shutdownNow();
   }
+
+  private static final class PendingQuery {
+    private final ServiceDiscoveryManager discoveryManager;
+    private final String jid;
+    private final CapsExtension caps;
+    private final List<Requester> requesters = new ArrayList<>();
+
+    private PendingQuery(ServiceDiscoveryManager discoveryManager, String jid, CapsExtension caps) {
+      this.discoveryManager = discoveryManager;
+      this.jid = jid;
+      this.caps = caps;
+    }
+  }
+
+  private static final class Requester {
+    private final String jid;
+    private final Consumer<EnumSet<ResourceFeature>> resultCallback;
+
+    private Requester(String jid, Consumer<EnumSet<ResourceFeature>> resultCallback) {
+      this.jid = jid;
+      this.resultCallback = resultCallback;
+    }
+  }
 }
@@ -1,5 +1,7 @@
 package saros.net.xmpp.contact;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import saros.net.xmpp.XMPPConnectionService;
 
@@ -33,4 +35,25 @@ public interface IContactsUpdate {
    * @param updateType {@link UpdateType}
    */
   public void update(Optional<XMPPContact> contact, UpdateType updateType);
+
+  /**
+   * Notification about all contact updates within a short time window. The updates are merged per
+   * contact, so every contact is contained once with all types of updates it received during the
+   * window. Every type is contained once, in the order of its latest occurrence, e.g. a contact
+   * that was removed and added again has the types {@link UpdateType#REMOVED} and {@link
+   * UpdateType#ADDED} in this order. Updates without a contact, i.e. {@link UpdateType#CONNECTED}
+   * and {@link UpdateType#NOT_CONNECTED}, are always delivered by {@link #update(Optional,
+   * UpdateType)}.
+   *
+   * <p>The default implementation calls {@link #update(Optional, UpdateType)} for every contact and
+   * update type. Listeners that e.g. refresh a whole view on every update should override this
+   * method and refresh only once.
+   *
+   * @param updates the updated contacts with their update types in the order of their first update
+   */
+  public default void updateAll(Map<XMPPContact, List<UpdateType>> updates) {
+    updates.forEach(
+        (contact, updateTypes) ->
+            updateTypes.forEach(updateType -> update(Optional.of(contact), updateType)));
+  }
 }
@@ -1,15 +1,18 @@
 package saros.net.xmpp.contact;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiPredicate;
 import java.util.function.Consumer;
@@ -21,6 +24,8 @@ import org.jivesoftware.smack.RosterListener;
 import org.jivesoftware.smack.XMPPException;
 import org.jivesoftware.smack.packet.Presence;
 import org.jivesoftware.smack.packet.RosterPacket.ItemStatus;
+import org.jivesoftware.smackx.entitycaps.EntityCapsManager;
+import org.jivesoftware.smackx.entitycaps.packet.CapsExtension;
 import saros.exceptions.OperationCanceledException;
 import saros.net.ConnectionState;
 import saros.net.ResourceFeature;
@@ -56,22 +61,29 @@ import saros.util.NamedThreadFactory;
 public class XMPPContactsService implements Disposable {
   private static final Logger log = Logger.getLogger(XMPPContactsService.class);
 
+  /**
+   * Updates of contacts are collected for this time window and then delivered to the listeners at
+   * once, so e.g. the presence storm after a reconnect does not cause an update of the UI for every
+   * single presence.
+   */
+  private static final long UPDATE_WINDOW_MILLIS = 100;
+
   private final List<IContactsUpdate> updateListeners = new CopyOnWriteArrayList<>();
   private final DiscoveryService discoveryService = new DiscoveryService();
 
   /**
    * Single-Threaded Executor to off-load work and providing thread-safety by being the only Thread
    * updating fields. Therefore must be used internally for all write access and read access to
-   * non-volatile / non-final fields.
+   * non-volatile / non-final fields. Its thread is a daemon thread that runs until {@link
+   * #dispose()}, so the delayed delivery of updates always has a thread to run on.
    */
-  private final ExecutorService contactsExecutor =
-      new ThreadPoolExecutor(
-          0,
-          1,
-          30,
-          TimeUnit.SECONDS,
-          new LinkedBlockingQueue<Runnable>(),
-          new NamedThreadFactory("XMPPContactService-ContactsThread", false));
+  private final ScheduledThreadPoolExecutor contactsExecutor =
+      new ScheduledThreadPoolExecutor(1, createDaemonThreadFactory());
+
+  /** Contact updates not delivered yet. Only access within contactsExecutor */
+  private final Map<XMPPContact, PendingUpdate> pendingUpdates = new LinkedHashMap<>();
+  /** Only access within contactsExecutor */
+  private ScheduledFuture<?> pendingUpdatesDelivery;
   /** Modification only within contactsExecutor */
   private final ContactStore contacts = new ContactStore();
   /** Access to current Connection Service. */
@@ -418,8 +430,12 @@ public class XMPPContactsService implements Disposable {
     }
     if (contact.setResourceStatus(fullJid, status)) notifyListeners(contact, UpdateType.STATUS);
 
+    CapsExtension caps =
+        (CapsExtension)
+            presence.getExtension(EntityCapsManager.ELEMENT, EntityCapsManager.NAMESPACE);
+
     discoveryService.queryFeatureSupport(
-        fullJid, createFeatureQueryResultHandler(fullJid, contact));
+        fullJid, caps, createFeatureQueryResultHandler(fullJid, contact));
   }
 
   private void handleContactResourceUnavailable(XMPPContact contact, JID fullJid) {
@@ -445,16 +461,88 @@ public class XMPPContactsService implements Disposable {
     };
   }
 
+  /**
+   * Notifies the listeners about an update. Updates of a contact are delivered with the next batch
+   * of updates, see {@link #UPDATE_WINDOW_MILLIS}. Updates without a contact are delivered
+   * immediately after all pending updates.
+   */
   private void notifyListeners(XMPPContact contact, UpdateType updateType) {
     log.debug("updated " + contact + " - " + updateType);
-    Optional<XMPPContact> optionalContact = Optional.ofNullable(contact);
+
+    if (contact != null) {
+      if (pendingUpdates.isEmpty())
+        pendingUpdatesDelivery =
+            contactsExecutor.schedule(
+                this::deliverPendingUpdates, UPDATE_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+
+      pendingUpdates.computeIfAbsent(contact, c -> new PendingUpdate()).add(contact, updateType);
+      return;
+    }
+
+    deliverPendingUpdates();
+
+    for (IContactsUpdate listener : updateListeners) {
+      try {
+        listener.update(Optional.empty(), updateType);
+      } catch (RuntimeException e) {
+        log.error("invoking listener: " + listener + " failed", e);
+      }
+    }
+  }
+
+  private void deliverPendingUpdates() {
+    if (pendingUpdatesDelivery != null) {
+      pendingUpdatesDelivery.cancel(false);
+      pendingUpdatesDelivery = null;
+    }
+
+    if (pendingUpdates.isEmpty()) return;
+
+    Map<XMPPContact, List<UpdateType>> updates = new LinkedHashMap<>();
+
+    for (PendingUpdate update : pendingUpdates.values())
+      updates.put(update.contact, Collections.unmodifiableList(update.updateTypes));
+
+    pendingUpdates.clear();
+
+    updates = Collections.unmodifiableMap(updates);
 
     for (IContactsUpdate listener : updateListeners) {
       try {
-        listener.update(optionalContact, updateType);
+        listener.updateAll(updates);
       } catch (RuntimeException e) {
         log.error("invoking listener: " + listener + " failed", e);
       }
     }
   }
+
+  private static ThreadFactory createDaemonThreadFactory() {
+    final ThreadFactory threadFactory =
+        new NamedThreadFactory("XMPPContactService-ContactsThread", false);
+
+    return runnable -> {
+      Thread thread = threadFactory.newThread(runnable);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /** The updates of a contact that were not delivered yet. */
+  private static final class PendingUpdate {
+    /**
+     * The latest instance of the contact, a contact that was removed and added again is a new
+     * instance
+     */
+    private XMPPContact contact;
+
+    /** Every type once, in the order of its latest occurrence */
+    private final List<UpdateType> updateTypes = new ArrayList<>();
+
+    private void add(XMPPContact contact, UpdateType updateType) {
+      this.contact = contact;
+
+      updateTypes.remove(updateType);
+      updateTypes.add(updateType);
+    }
+  }
 }
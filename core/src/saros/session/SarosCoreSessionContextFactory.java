@@ -1,5 +1,6 @@
 package saros.session;
 
+import saros.communication.extensions.ActivitiesExtension;
 import saros.concurrent.management.ConcurrentDocumentClient;
 import saros.concurrent.management.ConcurrentDocumentServer;
 import saros.concurrent.management.HeartbeatDispatcher;
@@ -52,6 +53,8 @@ public class SarosCoreSessionContextFactory implements ISarosSessionContextFacto
     } else container.addComponent(ConsistencyWatchdogClient.class);
 
     // Session-dependent XStream Converter
+    container.addComponent(
+        ActivitiesExtension.Provider.class, ActivitiesExtension.Provider.createSessionProvider());
     container.addComponent(SPathConverter.class);
     container.addComponent(UserConverter.class);
 
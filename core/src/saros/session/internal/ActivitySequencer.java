@@ -44,6 +44,7 @@ import saros.net.xmpp.JID;
 import saros.repackaged.picocontainer.Startable;
 import saros.session.ISarosSession;
 import saros.session.User;
+import saros.session.internal.IncomingSequenceTracker.Result;
 import saros.util.ThreadUtils;
 
 /**
@@ -181,9 +182,11 @@ public class ActivitySequencer implements Startable {
 
   private final IReceiver receiver;
 
+  private final ActivitiesExtension.Provider provider;
+
   private final DispatchThreadContext dispatchThread;
 
-  private final Map<JID, ActivityBuffer<IActivity>> bufferedIncomingActivities;
+  private final IncomingSequenceTracker incomingSequences;
 
   private final Map<JID, ActivityBuffer<IActivity>> bufferedOutgoingActivities;
 
@@ -191,15 +194,17 @@ public class ActivitySequencer implements Startable {
       final ISarosSession sarosSession,
       final ITransmitter transmitter,
       final IReceiver receiver,
+      final ActivitiesExtension.Provider provider,
       final DispatchThreadContext threadContext) {
 
     this.dispatchThread = threadContext;
     this.sarosSession = sarosSession;
     this.transmitter = transmitter;
     this.receiver = receiver;
+    this.provider = provider;
     this.currentSessionID = sarosSession.getID();
 
-    this.bufferedIncomingActivities = new HashMap<JID, ActivityBuffer<IActivity>>();
+    this.incomingSequences = new IncomingSequenceTracker();
     this.bufferedOutgoingActivities = new HashMap<JID, ActivityBuffer<IActivity>>();
   }
 
@@ -246,8 +251,12 @@ public class ActivitySequencer implements Startable {
      * application. Please do not do that, you were warned here !
      */
 
+    // the activities are parsed with the converters of this session
+    receiver.addPacketExtensionProvider(
+        provider.getElementName(), provider.getNamespace(), provider);
+
     receiver.addPacketListener(
-        activitiesPacketListener, ActivitiesExtension.PROVIDER.getPacketFilter(currentSessionID));
+        activitiesPacketListener, provider.getPacketFilter(currentSessionID));
 
     activitySendThread = ThreadUtils.runSafeAsync("activity-sender", LOG, activitySender);
   }
@@ -271,6 +280,8 @@ public class ActivitySequencer implements Startable {
     }
 
     receiver.removePacketListener(activitiesPacketListener);
+    receiver.removePacketExtensionProvider(
+        provider.getElementName(), provider.getNamespace(), provider);
 
     synchronized (bufferedOutgoingActivities) {
       stopSending = true;
@@ -296,9 +307,7 @@ public class ActivitySequencer implements Startable {
       bufferedOutgoingActivities.notifyAll();
     }
 
-    synchronized (bufferedIncomingActivities) {
-      bufferedIncomingActivities.clear();
-    }
+    incomingSequences.unregisterAll();
 
     activitySendThread = null;
 
@@ -310,32 +319,25 @@ public class ActivitySequencer implements Startable {
   }
 
   private void executeActivities(
-      final JID sender, final List<IActivity> activities, final int sequenceNumber) {
-
-    boolean transmissionError = false;
+      final String sender, final List<IActivity> activities, final int sequenceNumber) {
 
-    synchronized (bufferedIncomingActivities) {
-      ActivityBuffer<IActivity> buffer = bufferedIncomingActivities.get(sender);
-
-      if (buffer == null) {
-        LOG.warn(
-            "dropping received activity from "
-                + sender
-                + " because it is currently not registers, dropping activities: "
-                + activities);
-        return;
-      }
+    final Result result =
+        incomingSequences.advance(
+            incomingSequences.lookup(sender), sequenceNumber, activities.size());
 
-      if (buffer.nextSequenceNumber != sequenceNumber) {
-        transmissionError = true;
-      } else {
-        buffer.nextSequenceNumber += activities.size();
-      }
+    if (result == Result.NOT_REGISTERED) {
+      LOG.warn(
+          "dropping received activity from "
+              + sender
+              + " because it is currently not registers, dropping activities: "
+              + activities);
+      return;
     }
 
-    if (transmissionError) {
-      unregisterUser(sender);
-      notifyTransmissionError(sender);
+    if (result == Result.OUT_OF_SEQUENCE) {
+      final JID jid = new JID(sender);
+      unregisterUser(jid);
+      notifyTransmissionError(jid);
       return;
     }
 
@@ -400,11 +402,7 @@ public class ActivitySequencer implements Startable {
             user.getJID(), new ActivityBuffer<IActivity>(FIRST_SEQUENCE_NUMBER));
     }
 
-    synchronized (bufferedIncomingActivities) {
-      if (bufferedIncomingActivities.get(user.getJID()) == null)
-        bufferedIncomingActivities.put(
-            user.getJID(), new ActivityBuffer<IActivity>(FIRST_SEQUENCE_NUMBER));
-    }
+    incomingSequences.register(user.getJID(), FIRST_SEQUENCE_NUMBER);
   }
 
   /**
@@ -453,9 +451,7 @@ public class ActivitySequencer implements Startable {
       bufferedOutgoingActivities.notifyAll();
     }
 
-    synchronized (bufferedIncomingActivities) {
-      bufferedIncomingActivities.put(jid, null);
-    }
+    incomingSequences.unregister(jid);
   }
 
   private void sendActivities(JID recipient, List<IActivity> activities, int sequenceNumber) {
@@ -500,7 +496,7 @@ public class ActivitySequencer implements Startable {
       if (it.hasNext() && currentFileActivitySize < maxFileActivitySize) continue;
 
       final PacketExtension activityPacketExtension =
-          ActivitiesExtension.PROVIDER.create(
+          provider.create(
               new ActivitiesExtension(currentSessionID, activitiesToMarshall, sequenceNumber));
 
       if (LOG.isTraceEnabled()) {
@@ -556,14 +552,14 @@ public class ActivitySequencer implements Startable {
      * exceptions which may be hard to analyze.
      */
 
-    ActivitiesExtension payload = ActivitiesExtension.PROVIDER.getPayload(activityPacket);
+    ActivitiesExtension payload = provider.getPayload(activityPacket);
 
     if (payload == null) {
       LOG.warn("activity packet payload is corrupted");
       return;
     }
 
-    JID from = new JID(activityPacket.getFrom());
+    String from = activityPacket.getFrom();
 
     List<IActivity> activities = payload.getActivities();
 
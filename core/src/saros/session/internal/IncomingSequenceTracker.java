@@ -0,0 +1,128 @@
+package saros.session.internal;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import saros.net.xmpp.JID;
+
+/**
+ * Tracks the sequence numbers of the activities received from the registered peers of the {@link
+ * ActivitySequencer}.
+ *
+ * <p>Every peer is interned to a small integer id when it is registered for the first time. The id
+ * indexes the atomic counter that holds the next expected sequence number of the peer. Received
+ * packets are looked up by their raw sender address, so neither a {@link JID} has to be created nor
+ * its bare address has to be parsed and hashed for every packet.
+ *
+ * <p>Looking up and advancing sequence numbers is lock free. Only registering and unregistering
+ * peers is synchronized.
+ */
+final class IncomingSequenceTracker {
+
+  /** Result of {@link #advance(int, int, int)}. */
+  enum Result {
+    /** the sequence number was expected and the counter was advanced */
+    ACCEPTED,
+    /** the peer is currently not registered */
+    NOT_REGISTERED,
+    /** the sequence number was not expected */
+    OUT_OF_SEQUENCE
+  }
+
+  /** Value of a counter whose peer is currently not registered. */
+  private static final int UNREGISTERED = Integer.MIN_VALUE;
+
+  /** Returned by {@link #lookup(String)} for unknown peers. */
+  static final int UNKNOWN_PEER = -1;
+
+  private final ConcurrentMap<JID, Integer> ids = new ConcurrentHashMap<JID, Integer>();
+
+  /** cache of the raw addresses of received packets, every address maps to a known id */
+  private final ConcurrentMap<String, Integer> addressIds =
+      new ConcurrentHashMap<String, Integer>();
+
+  /**
+   * Counters indexed by the id of the peer. The array is replaced when it has to grow, the counters
+   * themselves are never replaced so no update can get lost.
+   */
+  private volatile AtomicInteger[] counters = new AtomicInteger[4];
+
+  private int nextId;
+
+  /**
+   * Registers the given peer. If the peer is not currently registered its next expected sequence
+   * number is set to the given one, otherwise this method does nothing.
+   */
+  synchronized void register(final JID jid, final int firstSequenceNumber) {
+    Integer id = ids.get(jid);
+
+    if (id == null) {
+      id = Integer.valueOf(nextId++);
+
+      if (id >= counters.length) counters = Arrays.copyOf(counters, counters.length * 2);
+
+      counters[id] = new AtomicInteger(UNREGISTERED);
+
+      ids.put(jid, id);
+    }
+
+    counters[id].compareAndSet(UNREGISTERED, firstSequenceNumber);
+  }
+
+  /** Unregisters the given peer. Its id remains valid for a later registration. */
+  synchronized void unregister(final JID jid) {
+    final Integer id = ids.get(jid);
+
+    if (id != null) counters[id].set(UNREGISTERED);
+  }
+
+  /** Unregisters all peers. */
+  synchronized void unregisterAll() {
+    for (int id = 0; id < nextId; id++) counters[id].set(UNREGISTERED);
+  }
+
+  /**
+   * Returns the id of the peer with the given address.
+   *
+   * @param address the raw address of a received packet
+   * @return the id of the peer or {@link #UNKNOWN_PEER} if the peer was never registered
+   */
+  int lookup(final String address) {
+    Integer id = addressIds.get(address);
+
+    if (id != null) return id;
+
+    id = ids.get(new JID(address));
+
+    if (id == null) return UNKNOWN_PEER;
+
+    addressIds.putIfAbsent(address, id);
+
+    return id;
+  }
+
+  /**
+   * Advances the next expected sequence number of the given peer by the given count if the given
+   * sequence number is the expected one.
+   *
+   * @param id the id of the peer as returned by {@link #lookup(String)}
+   * @param sequenceNumber the sequence number of the first received activity
+   * @param count the number of received activities
+   */
+  Result advance(final int id, final int sequenceNumber, final int count) {
+    if (id == UNKNOWN_PEER) return Result.NOT_REGISTERED;
+
+    final AtomicInteger counter = counters[id];
+
+    while (true) {
+      final int expected = counter.get();
+
+      if (expected == UNREGISTERED) return Result.NOT_REGISTERED;
+
+      if (expected != sequenceNumber) return Result.OUT_OF_SEQUENCE;
+
+      if (counter.compareAndSet(expected, expected + count)) return Result.ACCEPTED;
+    }
+  }
+}
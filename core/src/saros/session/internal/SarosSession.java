@@ -280,21 +280,29 @@ public final class SarosSession implements ISarosSession {
    *
    * @param resource of type {@link IResource#FOLDER} or {@link IResource#FILE}
    */
-  private List<IResource> getAllNonSharedChildren(IResource resource) {
-    List<IResource> list = new ArrayList<IResource>();
+  private List<IResource> getAllNonSharedChildren(final IResource resource) {
+    final List<IResource> list = new ArrayList<IResource>();
 
     if (isShared(resource)) return list;
 
     list.add(resource);
 
-    if (resource.getType() == IResource.FOLDER) {
-      try {
-        IResource[] members = resource.adaptTo(IFolder.class).members();
+    if (resource.getType() != IResource.FOLDER) return list;
 
-        for (int i = 0; i < members.length; i++) list.addAll(getAllNonSharedChildren(members[i]));
-      } catch (IOException e) {
-        log.error("Can't get children of folder " + resource, e);
-      }
+    try {
+      resource
+          .adaptTo(IFolder.class)
+          .accept(
+              (member) -> {
+                if (member.equals(resource)) return true;
+
+                if (isShared(member)) return false;
+
+                list.add(member);
+                return true;
+              });
+    } catch (IOException e) {
+      log.error("Can't get children of folder " + resource, e);
     }
 
     return list;
@@ -0,0 +1,91 @@
+package saros.activities;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.replay;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import saros.benchmark.EditTrace;
+import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.TransformationException;
+import saros.concurrent.jupiter.test.util.PathFake;
+import saros.filesystem.IProject;
+import saros.session.User;
+
+/**
+ * Optimizes a batch of the activities a user produces while editing: text edits of the {@link
+ * EditTrace}, each followed by a selection change, and a viewport change every few edits. The user
+ * switches between the editors of several files now and then.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActivityOptimizerBenchmark {
+
+  private static final int FILES = 4;
+
+  /** The number of activities in a batch. */
+  @Param({"16", "256"})
+  public int batchSize;
+
+  private List<IActivity> activities;
+
+  @Setup
+  public void setUp() throws TransformationException {
+    final EditTrace trace = EditTrace.generate(1, batchSize, 1, 42);
+
+    final User user = trace.getUsers()[0];
+
+    final IProject project = createNiceMock(IProject.class);
+    replay(project);
+
+    final SPath[] paths = new SPath[FILES];
+
+    paths[0] = trace.getPath();
+
+    for (int i = 1; i < FILES; i++) paths[i] = new SPath(project, new PathFake("src/File" + i));
+
+    activities = new ArrayList<IActivity>(batchSize);
+
+    int edit = 0;
+
+    for (final Operation operation : trace.getOperations(0)) {
+      final SPath path = paths[(edit / 32) % FILES];
+
+      for (final TextEditActivity activity : operation.toTextEdit(path, user)) {
+        activities.add(activity);
+        activities.add(
+            new TextSelectionActivity(
+                user, activity.getOffset() + activity.getText().length(), 0, path));
+      }
+
+      if (edit % 8 == 0) activities.add(new ViewportActivity(user, edit / 8, 40, path));
+
+      if (activities.size() >= batchSize) break;
+
+      edit++;
+    }
+
+    activities = activities.subList(0, batchSize);
+  }
+
+  @Benchmark
+  public List<IActivity> optimize() {
+    return ActivityOptimizer.optimize(activities);
+  }
+}
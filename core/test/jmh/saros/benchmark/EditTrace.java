@@ -0,0 +1,241 @@
+package saros.benchmark;
+
+import static org.easymock.EasyMock.createNiceMock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.easymock.EasyMock;
+import saros.activities.SPath;
+import saros.activities.TextEditActivity;
+import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.TransformationException;
+import saros.concurrent.jupiter.internal.text.DeleteOperation;
+import saros.concurrent.jupiter.internal.text.InsertOperation;
+import saros.concurrent.jupiter.test.util.PathFake;
+import saros.filesystem.IProject;
+import saros.net.xmpp.JID;
+import saros.session.User;
+
+/**
+ * A synthetic trace of several users editing the same document at the same time. Every user types
+ * at its own cursor, corrects typos with backspace, pastes text now and then and sometimes jumps to
+ * another position of the document, possibly into the region another user is working on.
+ *
+ * <p>The trace is recorded while it is generated: every user only creates operations that are valid
+ * for the document as the user sees it. Replaying the trace with a {@link JupiterSession} therefore
+ * performs exactly the transformations a real session would perform for these edits.
+ */
+public final class EditTrace {
+
+  private static final int INITIAL_LENGTH = 4096;
+
+  private static final String PASTE = "System.out.println(value);";
+
+  private final User[] users;
+
+  private final SPath path;
+
+  private final String initialText;
+
+  private final int editsPerRound;
+
+  /** The local operations per round and user. */
+  private final List<Operation[][]> rounds;
+
+  private String result;
+
+  private EditTrace(User[] users, SPath path, String initialText, int editsPerRound) {
+    this.users = users;
+    this.path = path;
+    this.initialText = initialText;
+    this.editsPerRound = editsPerRound;
+    this.rounds = new ArrayList<Operation[][]>();
+  }
+
+  /**
+   * Generates a trace. All users perform the given number of edits in every round, the edits of the
+   * same round are concurrent.
+   *
+   * @param userCount the number of users editing the document
+   * @param roundCount the number of rounds
+   * @param editsPerRound the number of edits of every user per round
+   * @param seed the seed of the generator, the same seed generates the same trace
+   */
+  public static EditTrace generate(int userCount, int roundCount, int editsPerRound, long seed)
+      throws TransformationException {
+
+    final Random random = new Random(seed);
+
+    final User[] users = new User[userCount];
+
+    for (int i = 0; i < userCount; i++)
+      users[i] = new User(new JID("user" + i + "@saros-benchmark/Saros"), i == 0, false, null);
+
+    final IProject project = createNiceMock(IProject.class);
+    EasyMock.replay(project);
+
+    final SPath path = new SPath(project, new PathFake("src/Main.java"));
+
+    final String initialText = createText(random, INITIAL_LENGTH);
+
+    final EditTrace trace = new EditTrace(users, path, initialText, editsPerRound);
+
+    final StringBuilder[] documents = new StringBuilder[userCount];
+    final int[] cursors = new int[userCount];
+
+    for (int i = 0; i < userCount; i++) {
+      documents[i] = new StringBuilder(initialText);
+      cursors[i] = INITIAL_LENGTH * (2 * i + 1) / (2 * userCount);
+    }
+
+    final JupiterSession session = new JupiterSession(users, path);
+
+    for (int round = 0; round < roundCount; round++) {
+      final Operation[][] operations = new Operation[userCount][editsPerRound];
+
+      for (int user = 0; user < userCount; user++) {
+        for (int edit = 0; edit < editsPerRound; edit++) {
+          final Operation operation = nextEdit(random, documents[user], cursors, user);
+
+          apply(documents[user], operation, path, users[user], cursors, user, true);
+          session.submit(user, operation);
+
+          operations[user][edit] = operation;
+        }
+      }
+
+      session.deliver(
+          (user, operation) ->
+              apply(documents[user], operation, path, users[user], cursors, user, false));
+
+      trace.rounds.add(operations);
+    }
+
+    for (int i = 1; i < userCount; i++) {
+      if (!documents[i].toString().equals(documents[0].toString()))
+        throw new IllegalStateException("documents of the generated trace did not converge");
+    }
+
+    trace.result = documents[0].toString();
+
+    return trace;
+  }
+
+  /**
+   * Replays the trace through the given session.
+   *
+   * @param session a new session of the {@link #getUsers() users} of this trace
+   * @return the number of operations the users received
+   */
+  public int replay(JupiterSession session) throws TransformationException {
+    int received = 0;
+
+    for (final Operation[][] operations : rounds) {
+      for (int user = 0; user < operations.length; user++) {
+        for (final Operation operation : operations[user]) session.submit(user, operation);
+      }
+
+      received += session.deliver(null);
+    }
+
+    return received;
+  }
+
+  public User[] getUsers() {
+    return users.clone();
+  }
+
+  public SPath getPath() {
+    return path;
+  }
+
+  public String getInitialText() {
+    return initialText;
+  }
+
+  /** Returns the content of the document after all edits of the trace were performed. */
+  public String getResult() {
+    return result;
+  }
+
+  /** Returns the number of local operations of all users. */
+  public int size() {
+    return rounds.size() * users.length * editsPerRound;
+  }
+
+  /** Returns the local operations of the given user in the order the user performed them. */
+  public List<Operation> getOperations(int user) {
+    final List<Operation> operations = new ArrayList<Operation>();
+
+    for (final Operation[][] round : rounds) Collections.addAll(operations, round[user]);
+
+    return operations;
+  }
+
+  private static Operation nextEdit(
+      final Random random, final StringBuilder document, final int[] cursors, final int user) {
+
+    final int action = random.nextInt(100);
+
+    if (action < 3) cursors[user] = random.nextInt(document.length() + 1);
+
+    final int cursor = cursors[user];
+
+    if (action < 12 && cursor > 0) {
+      final int length = Math.min(cursor, 1 + random.nextInt(3));
+      return new DeleteOperation(cursor - length, document.substring(cursor - length, cursor));
+    }
+
+    if (action < 14) return new InsertOperation(cursor, PASTE);
+
+    return new InsertOperation(cursor, String.valueOf((char) ('a' + random.nextInt(26))));
+  }
+
+  /**
+   * Applies the operation to the document of the given user and updates the user's cursor.
+   *
+   * @param owner the user owning the document
+   * @param local <code>true</code> if the operation was performed by the user, <code>false</code>
+   *     if it was received from another user
+   */
+  private static void apply(
+      final StringBuilder document,
+      final Operation operation,
+      final SPath path,
+      final User owner,
+      final int[] cursors,
+      final int user,
+      final boolean local) {
+
+    for (final TextEditActivity edit : operation.toTextEdit(path, owner)) {
+      final int offset = edit.getOffset();
+      final int end = offset + edit.getReplacedText().length();
+
+      if (!document.substring(offset, end).equals(edit.getReplacedText()))
+        throw new IllegalStateException("replaced text does not match: " + edit);
+
+      document.replace(offset, end, edit.getText());
+
+      if (local) cursors[user] = offset + edit.getText().length();
+      else if (cursors[user] > offset)
+        cursors[user] = Math.max(offset, cursors[user] + edit.getText().length() - (end - offset));
+    }
+  }
+
+  /** Creates source code like text. */
+  private static String createText(final Random random, final int length) {
+    final StringBuilder builder = new StringBuilder(length + 16);
+
+    while (builder.length() < length) {
+      final int wordLength = 2 + random.nextInt(10);
+
+      for (int c = 0; c < wordLength; c++) builder.append((char) ('a' + random.nextInt(26)));
+
+      builder.append(random.nextInt(8) == 0 ? ";\n  " : " ");
+    }
+
+    return builder.substring(0, length);
+  }
+}
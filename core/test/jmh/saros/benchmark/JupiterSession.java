@@ -0,0 +1,98 @@
+package saros.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import saros.activities.JupiterActivity;
+import saros.activities.SPath;
+import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.TransformationException;
+import saros.concurrent.jupiter.internal.Jupiter;
+import saros.concurrent.jupiter.internal.JupiterDocumentServer;
+import saros.session.User;
+
+/**
+ * A session editing a single document: one client side {@link Jupiter} instance per user and a
+ * {@link JupiterDocumentServer} at the host that forwards the operations of every user to all other
+ * users. Messages are not delivered on submission but in rounds, so all operations submitted in the
+ * same round are concurrent to each other.
+ *
+ * <p>This class is not thread safe.
+ */
+public final class JupiterSession {
+
+  /** Callback for operations that were transformed and received by a user. */
+  public interface Receiver {
+    void receive(int user, Operation operation);
+  }
+
+  private final User[] users;
+
+  private final SPath path;
+
+  private final Jupiter[] clients;
+
+  private final JupiterDocumentServer server;
+
+  private final Map<User, Integer> indices = new HashMap<User, Integer>();
+
+  private final List<JupiterActivity> serverInbox = new ArrayList<JupiterActivity>();
+
+  private final List<List<JupiterActivity>> clientInboxes = new ArrayList<List<JupiterActivity>>();
+
+  public JupiterSession(User[] users, SPath path) {
+    this.users = users;
+    this.path = path;
+
+    clients = new Jupiter[users.length];
+    server = new JupiterDocumentServer(path);
+
+    for (int i = 0; i < users.length; i++) {
+      clients[i] = new Jupiter(true);
+      server.addProxyClient(users[i]);
+      indices.put(users[i], i);
+      clientInboxes.add(new ArrayList<JupiterActivity>());
+    }
+  }
+
+  /** Submits a local operation of the given user that is delivered in the next round. */
+  public void submit(int user, Operation operation) {
+    serverInbox.add(clients[user].generateJupiterActivity(operation, users[user], path));
+  }
+
+  /**
+   * Transforms all submitted operations at the host and delivers them to the other users.
+   *
+   * @param receiver receives the transformed operations, may be <code>null</code>
+   * @return the number of operations the users received
+   */
+  public int deliver(Receiver receiver) throws TransformationException {
+    int received = 0;
+
+    for (final JupiterActivity activity : serverInbox) {
+      for (final Entry<User, JupiterActivity> entry :
+          server.transformJupiterActivity(activity).entrySet())
+        clientInboxes.get(indices.get(entry.getKey())).add(entry.getValue());
+    }
+
+    serverInbox.clear();
+
+    for (int user = 0; user < clients.length; user++) {
+      final List<JupiterActivity> inbox = clientInboxes.get(user);
+
+      for (final JupiterActivity activity : inbox) {
+        final Operation operation = clients[user].receiveJupiterActivity(activity);
+
+        if (receiver != null) receiver.receive(user, operation);
+
+        received++;
+      }
+
+      inbox.clear();
+    }
+
+    return received;
+  }
+}
@@ -0,0 +1,116 @@
+package saros.communication.extensions;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import saros.activities.IActivity;
+import saros.activities.SPath;
+import saros.benchmark.EditTrace;
+import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.TransformationException;
+import saros.concurrent.jupiter.internal.Jupiter;
+import saros.filesystem.IPathFactory;
+import saros.misc.xstream.SPathConverter;
+import saros.misc.xstream.UserConverter;
+import saros.net.xmpp.JID;
+import saros.session.ISarosSession;
+import saros.session.User;
+
+/**
+ * Marshals and unmarshals {@link ActivitiesExtension}s containing the Jupiter activities a user
+ * sends while editing, using the converters a running session registers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActivitiesExtensionBenchmark {
+
+  private static final String PROJECT_ID = "0123456789";
+
+  private static final String PATH = "src/Main.java";
+
+  /** The number of activities in an extension. */
+  @Param({"1", "32"})
+  public int activities;
+
+  private ActivitiesExtension extension;
+
+  private String xml;
+
+  private UserConverter userConverter;
+
+  private SPathConverter pathConverter;
+
+  @Setup
+  public void setUp() throws TransformationException {
+    final EditTrace trace = EditTrace.generate(1, activities, 1, 42);
+
+    final User user = trace.getUsers()[0];
+    final SPath path = trace.getPath();
+
+    final ISarosSession session = createNiceMock(ISarosSession.class);
+    expect(session.getUser(anyObject(JID.class))).andStubReturn(user);
+    expect(session.getProjectID(path.getProject())).andStubReturn(PROJECT_ID);
+    expect(session.getProject(PROJECT_ID)).andStubReturn(path.getProject());
+
+    final IPathFactory pathFactory = createNiceMock(IPathFactory.class);
+    expect(pathFactory.fromPath(path.getProjectRelativePath())).andStubReturn(PATH);
+    expect(pathFactory.fromString(PATH)).andStubReturn(path.getProjectRelativePath());
+
+    replay(session, pathFactory);
+
+    userConverter = new UserConverter(session, ActivitiesExtension.PROVIDER);
+    pathConverter = new SPathConverter(session, pathFactory, ActivitiesExtension.PROVIDER);
+
+    userConverter.start();
+    pathConverter.start();
+
+    final Jupiter jupiter = new Jupiter(true);
+
+    final List<IActivity> batch = new ArrayList<IActivity>(activities);
+
+    for (final Operation operation : trace.getOperations(0))
+      batch.add(jupiter.generateJupiterActivity(operation, user, path));
+
+    extension = new ActivitiesExtension("benchmark-session", batch, 0);
+
+    xml = marshal();
+  }
+
+  @TearDown
+  public void tearDown() {
+    pathConverter.stop();
+    userConverter.stop();
+  }
+
+  @Benchmark
+  public String marshal() {
+    return ActivitiesExtension.PROVIDER.create(extension).toXML();
+  }
+
+  @Benchmark
+  public ActivitiesExtension unmarshal() throws IOException {
+    return ActivitiesExtension.PROVIDER.parseString(xml);
+  }
+}
@@ -0,0 +1,53 @@
+package saros.concurrent.jupiter.internal;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import saros.benchmark.EditTrace;
+import saros.benchmark.JupiterSession;
+import saros.concurrent.jupiter.TransformationException;
+
+/**
+ * Replays a multi-user {@link EditTrace} through the client and server side {@link Jupiter}
+ * instances of a session. One operation is one local edit of a user, including its transformation
+ * at the host and at all other users.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JupiterBenchmark {
+
+  private static final int EDITS = 1024;
+
+  private static final int EDITS_PER_ROUND = 8;
+
+  /** The number of users editing the document. */
+  @Param({"2", "4", "8"})
+  public int users;
+
+  private EditTrace trace;
+
+  @Setup
+  public void setUp() throws TransformationException {
+    trace = EditTrace.generate(users, EDITS / (users * EDITS_PER_ROUND), EDITS_PER_ROUND, 42);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EDITS)
+  public int replay() throws TransformationException {
+    return trace.replay(new JupiterSession(trace.getUsers(), trace.getPath()));
+  }
+}
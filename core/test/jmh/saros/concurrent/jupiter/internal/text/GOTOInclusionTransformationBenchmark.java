@@ -0,0 +1,100 @@
+package saros.concurrent.jupiter.internal.text;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import saros.concurrent.jupiter.Operation;
+
+/**
+ * Measures single transformations of the {@link GOTOInclusionTransformation}: concurrent inserts at
+ * the same position, overlapping deletes and a burst of typed characters that is transformed
+ * against a concurrent insert in its middle. The burst is transformed both as a {@link
+ * CompoundOperation} and as the equivalent chain of nested {@link SplitOperation}s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GOTOInclusionTransformationBenchmark {
+
+  @State(Scope.Thread)
+  public static class SingleOperations {
+    final GOTOInclusionTransformation inclusion = new GOTOInclusionTransformation();
+
+    final Operation insert1 = new InsertOperation(100, "a");
+    final Operation insert2 = new InsertOperation(100, "b");
+
+    final Operation delete1 = new DeleteOperation(100, "abcdef");
+    final Operation delete2 = new DeleteOperation(102, "cdefgh");
+  }
+
+  @State(Scope.Thread)
+  public static class Burst {
+    final GOTOInclusionTransformation inclusion = new GOTOInclusionTransformation();
+
+    /** The number of typed characters. */
+    @Param({"16", "256"})
+    public int length;
+
+    Operation compound;
+
+    Operation split;
+
+    Operation insert;
+
+    @Setup
+    public void setUp() {
+      final Operation[] typed = new Operation[length];
+
+      for (int i = 0; i < length; i++) typed[i] = new InsertOperation(100 + i, "x");
+
+      compound = CompoundOperation.of(typed);
+
+      split = typed[0];
+
+      for (int i = 1; i < length; i++) split = new SplitOperation(split, typed[i]);
+
+      insert = new InsertOperation(100 + length / 2, "y");
+    }
+  }
+
+  @Benchmark
+  public Operation insertInsert(SingleOperations state) {
+    return state.inclusion.transform(state.insert1, state.insert2, Boolean.TRUE);
+  }
+
+  @Benchmark
+  public Operation overlappingDeletes(SingleOperations state) {
+    return state.inclusion.transform(state.delete1, state.delete2, Boolean.FALSE);
+  }
+
+  @Benchmark
+  public Operation compoundAgainstInsert(Burst state) {
+    return state.inclusion.transform(state.compound, state.insert, Boolean.FALSE);
+  }
+
+  @Benchmark
+  public Operation insertAgainstCompound(Burst state) {
+    return state.inclusion.transform(state.insert, state.compound, Boolean.TRUE);
+  }
+
+  @Benchmark
+  public Operation splitAgainstInsert(Burst state) {
+    return state.inclusion.transform(state.split, state.insert, Boolean.FALSE);
+  }
+
+  @Benchmark
+  public Operation insertAgainstSplit(Burst state) {
+    return state.inclusion.transform(state.insert, state.split, Boolean.TRUE);
+  }
+}
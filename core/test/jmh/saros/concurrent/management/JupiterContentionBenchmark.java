@@ -0,0 +1,218 @@
+package saros.concurrent.management;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import saros.activities.ChecksumActivity;
+import saros.activities.JupiterActivity;
+import saros.activities.SPath;
+import saros.activities.TextEditActivity;
+import saros.concurrent.jupiter.TransformationException;
+import saros.concurrent.jupiter.internal.Jupiter;
+import saros.concurrent.jupiter.internal.text.InsertOperation;
+import saros.concurrent.jupiter.internal.text.NoOperation;
+import saros.concurrent.jupiter.test.util.PathFake;
+import saros.filesystem.IProject;
+import saros.net.xmpp.JID;
+import saros.session.ISarosSession;
+import saros.session.User;
+
+/**
+ * Several threads using the same {@link JupiterClient} or {@link JupiterServer} at the same time,
+ * every thread working on its own document. The group <code>client</code> generates local edits,
+ * receives remote edits and checks checksums in parallel, the group <code>server</code> transforms
+ * the edits of two documents in parallel. Every thread acknowledges the operations it receives, so
+ * the state of the documents does not grow during the benchmark.
+ *
+ * <p>With <code>globalLock=true</code> every call holds the monitor of the whole manager, like the
+ * managers did before they locked the documents separately.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class JupiterContentionBenchmark {
+
+  /** Number of received operations after which they are acknowledged. */
+  private static final int ACKNOWLEDGE_EVERY = 16;
+
+  @Param({"false", "true"})
+  public boolean globalLock;
+
+  private User host;
+
+  private User user;
+
+  private JupiterClient client;
+
+  private JupiterServer server;
+
+  private SPath editPath;
+
+  private Jupiter editProxy;
+
+  private int editCount;
+
+  private SPath receivePath;
+
+  private Jupiter receiveProxy;
+
+  private int receiveCount;
+
+  private ChecksumActivity checksum;
+
+  private ServerDocument serverDocumentA;
+
+  private ServerDocument serverDocumentB;
+
+  @Setup
+  public void setUp() throws TransformationException {
+    host = new User(new JID("host@saros-benchmark/Saros"), true, false, null);
+    user = new User(new JID("user@saros-benchmark/Saros"), false, false, null);
+
+    final IProject project = createNiceMock(IProject.class);
+    final ISarosSession session = createNiceMock(ISarosSession.class);
+
+    expect(session.getHost()).andStubReturn(host);
+    expect(session.getLocalUser()).andStubReturn(user);
+    expect(session.userHasProject(anyObject(User.class), anyObject(IProject.class)))
+        .andStubReturn(true);
+
+    replay(project, session);
+
+    client = new JupiterClient(session);
+    server = new JupiterServer(session);
+    server.addUser(user);
+
+    editPath = new SPath(project, new PathFake("src/Edit.java"));
+    editProxy = new Jupiter(false);
+
+    receivePath = new SPath(project, new PathFake("src/Receive.java"));
+    receiveProxy = new Jupiter(false);
+
+    checksum =
+        client.withTimestamp(
+            new ChecksumActivity(
+                host, new SPath(project, new PathFake("src/Checksum.java")), 0, 0, null));
+
+    serverDocumentA = new ServerDocument(new SPath(project, new PathFake("src/A.java")));
+    serverDocumentB = new ServerDocument(new SPath(project, new PathFake("src/B.java")));
+  }
+
+  /** Generates a local edit, the host acknowledges every 16th edit. */
+  @Benchmark
+  @Group("client")
+  @GroupThreads(1)
+  public void clientEdit() throws TransformationException {
+    final TextEditActivity edit = new TextEditActivity(user, 0, "x", "", editPath);
+
+    editProxy.receiveJupiterActivity(call(client, () -> client.generate(edit)));
+
+    if (++editCount % ACKNOWLEDGE_EVERY != 0) return;
+
+    final JupiterActivity acknowledgement =
+        editProxy.generateJupiterActivity(new NoOperation(), host, editPath);
+
+    call(client, () -> client.receive(acknowledgement));
+  }
+
+  /** Receives a remote edit, every 16th edit is acknowledged with a heartbeat. */
+  @Benchmark
+  @Group("client")
+  @GroupThreads(1)
+  public void clientReceive() throws TransformationException {
+    final JupiterActivity activity =
+        receiveProxy.generateJupiterActivity(new InsertOperation(0, "x"), host, receivePath);
+
+    call(client, () -> client.receive(activity));
+
+    if (++receiveCount % ACKNOWLEDGE_EVERY != 0) return;
+
+    receiveProxy.receiveJupiterActivity(call(client, () -> client.generateHeartbeat(receivePath)));
+  }
+
+  @Benchmark
+  @Group("client")
+  @GroupThreads(1)
+  public boolean clientChecksum() throws TransformationException {
+    return call(client, () -> client.isCurrent(checksum));
+  }
+
+  @Benchmark
+  @Group("server")
+  @GroupThreads(1)
+  public void serverA() throws TransformationException {
+    serverDocumentA.edit();
+  }
+
+  @Benchmark
+  @Group("server")
+  @GroupThreads(1)
+  public void serverB() throws TransformationException {
+    serverDocumentB.edit();
+  }
+
+  private <T> T call(Object manager, Call<T> call) throws TransformationException {
+    if (!globalLock) return call.call();
+
+    synchronized (manager) {
+      return call.call();
+    }
+  }
+
+  private interface Call<T> {
+    T call() throws TransformationException;
+  }
+
+  /**
+   * A document edited by the user, whose edits are transformed by the server and received by the
+   * host. The host acknowledges every 16th edit.
+   */
+  private final class ServerDocument {
+
+    private final SPath path;
+
+    private final Jupiter userClient = new Jupiter(true);
+
+    private final Jupiter hostClient = new Jupiter(true);
+
+    private int count;
+
+    private ServerDocument(SPath path) {
+      this.path = path;
+    }
+
+    private void edit() throws TransformationException {
+      final JupiterActivity activity =
+          userClient.generateJupiterActivity(new InsertOperation(0, "x"), user, path);
+
+      hostClient.receiveJupiterActivity(call(server, () -> server.transform(activity)).get(host));
+
+      if (++count % ACKNOWLEDGE_EVERY != 0) return;
+
+      final JupiterActivity acknowledgement =
+          hostClient.generateJupiterActivity(new NoOperation(), host, path);
+
+      userClient.receiveJupiterActivity(
+          call(server, () -> server.transform(acknowledgement)).get(user));
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package saros.net.internal;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import saros.net.stream.StreamMode;
+import saros.net.stream.TCPByteStream;
+import saros.net.xmpp.JID;
+
+/**
+ * Sends packets between two {@link BinaryChannelConnection}s over a loopback TCP connection. The
+ * round trip benchmark sends a single packet and waits until it was decoded by the receiver, the
+ * stream benchmark sends a series of packets before it waits for all of them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BinaryChannelConnectionBenchmark {
+
+  private static final int STREAMED_PACKETS = 32;
+
+  private static final JID ALICE = new JID("alice@saros-benchmark/Saros");
+
+  private static final JID BOB = new JID("bob@saros-benchmark/Saros");
+
+  private static final IByteStreamConnectionListener LISTENER =
+      new IByteStreamConnectionListener() {
+
+        @Override
+        public void connectionClosed(
+            String connectionIdentifier, IByteStreamConnection connection) {
+          // NOP
+        }
+
+        @Override
+        public void connectionChanged(
+            String connectionIdentifier,
+            IByteStreamConnection connection,
+            boolean incomingRequest) {
+          // NOP
+        }
+      };
+
+  /** The size of a packet in bytes. */
+  @Param({"256", "4096", "65536"})
+  public int packetSize;
+
+  private final BlockingQueue<BinaryXMPPExtension> received =
+      new LinkedBlockingQueue<BinaryXMPPExtension>();
+
+  private BinaryChannelConnection alice;
+
+  private BinaryChannelConnection bob;
+
+  private TransferDescription description;
+
+  private byte[] payload;
+
+  @Setup
+  public void setUp() throws IOException {
+    final SocketChannel[] channels = openChannelPair();
+
+    alice =
+        new BinaryChannelConnection(
+            ALICE,
+            BOB,
+            "benchmark",
+            new TCPByteStream(channels[0].socket()),
+            StreamMode.TCP,
+            LISTENER);
+
+    bob =
+        new BinaryChannelConnection(
+            BOB,
+            ALICE,
+            "benchmark",
+            new TCPByteStream(channels[1].socket()),
+            StreamMode.TCP,
+            LISTENER);
+
+    bob.setBinaryXMPPExtensionReceiver(received::add);
+
+    alice.initialize();
+    bob.initialize();
+
+    description =
+        TransferDescription.newDescription()
+            .setNamespace("saros")
+            .setElementName("ados")
+            .setSender(ALICE)
+            .setRecipient(BOB);
+
+    payload = new byte[packetSize];
+
+    for (int i = 0; i < payload.length; i++) payload[i] = (byte) (i * 31);
+  }
+
+  @TearDown
+  public void tearDown() {
+    alice.close();
+    bob.close();
+  }
+
+  @Benchmark
+  public BinaryXMPPExtension roundTrip() throws IOException, InterruptedException {
+    alice.send(description, payload);
+    return received.take();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(STREAMED_PACKETS)
+  public BinaryXMPPExtension stream() throws IOException, InterruptedException {
+    for (int i = 0; i < STREAMED_PACKETS; i++) alice.send(description, payload);
+
+    BinaryXMPPExtension extension = null;
+
+    for (int i = 0; i < STREAMED_PACKETS; i++) extension = received.take();
+
+    return extension;
+  }
+
+  private static SocketChannel[] openChannelPair() throws IOException {
+    try (ServerSocketChannel server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+      final SocketChannel[] channels = {
+        SocketChannel.open(server.getLocalAddress()), server.accept()
+      };
+
+      // as done by the TCP and SOCKS5 stream services
+      for (final SocketChannel channel : channels) channel.socket().setTcpNoDelay(true);
+
+      return channels;
+    }
+  }
+}
@@ -0,0 +1,279 @@
+package saros.net.internal;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isNull;
+import static org.easymock.EasyMock.replay;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import org.jivesoftware.smack.Connection;
+import org.jivesoftware.smack.packet.PacketExtension;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import saros.misc.xstream.XStreamExtensionProvider;
+import saros.net.ConnectionState;
+import saros.net.DispatchThreadContext;
+import saros.net.stream.StreamMode;
+import saros.net.xmpp.JID;
+import saros.net.xmpp.XMPPConnectionService;
+
+/**
+ * Compresses packet extensions in the {@link XMPPTransmitter} and decompresses them in the {@link
+ * XMPPReceiver}. The network is not involved, the transmitter passes the compressed payload to a
+ * connection that discards it and the receiver is fed with prepared chunks.
+ *
+ * <p>For comparison <code>deflatePerPacket</code> compresses with a new {@link Deflater}, a new
+ * buffer and a final copy of the output per packet, as done before the compressors were pooled.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+
+  private static final int CHUNKSIZE = 32 * 1024 - 1;
+
+  private static final String NAMESPACE = "saros.net.internal.CompressionBenchmark";
+
+  private static final String ELEMENT_NAME = "text";
+
+  private static final JID ALICE = new JID("alice@saros-benchmark/Saros");
+
+  private static final JID BOB = new JID("bob@saros-benchmark/Saros");
+
+  @XStreamAlias("benchmarkText")
+  private static class Text {
+    private final String text;
+
+    private Text(String text) {
+      this.text = text;
+    }
+  }
+
+  /** A packet extension with a fixed XML representation. */
+  private static class FixedPacketExtension implements PacketExtension {
+    private final String xml;
+
+    private FixedPacketExtension(String xml) {
+      this.xml = xml;
+    }
+
+    @Override
+    public String getElementName() {
+      return ELEMENT_NAME;
+    }
+
+    @Override
+    public String getNamespace() {
+      return NAMESPACE;
+    }
+
+    @Override
+    public String toXML() {
+      return xml;
+    }
+  }
+
+  /** A connection that discards everything that is sent. */
+  private static class NullConnection implements IByteStreamConnection {
+
+    @Override
+    public JID getRemoteAddress() {
+      return BOB;
+    }
+
+    @Override
+    public void close() {
+      // NOP
+    }
+
+    @Override
+    public boolean isConnected() {
+      return true;
+    }
+
+    @Override
+    public void initialize() {
+      // NOP
+    }
+
+    @Override
+    public void send(TransferDescription data, byte[] content) throws IOException {
+      // NOP
+    }
+
+    @Override
+    public void send(TransferDescription data, byte[] content, int offset, int length) {
+      // NOP
+    }
+
+    @Override
+    public String getConnectionID() {
+      return null;
+    }
+
+    @Override
+    public StreamMode getMode() {
+      return StreamMode.SOCKS5_DIRECT;
+    }
+
+    @Override
+    public void setBinaryXMPPExtensionReceiver(IBinaryXMPPExtensionReceiver receiver) {
+      // NOP
+    }
+  }
+
+  /** The size of the XML text of a packet extension before it is compressed, in characters. */
+  @Param({"256", "4096", "65536"})
+  public int packetSize;
+
+  private final XStreamExtensionProvider<Text> provider =
+      new XStreamExtensionProvider<Text>(NAMESPACE, ELEMENT_NAME, Text.class);
+
+  private XMPPTransmitter transmitter;
+
+  private XMPPReceiver receiver;
+
+  private PacketExtension extension;
+
+  private BinaryXMPPExtension compressed;
+
+  private Text received;
+
+  @Setup
+  public void setUp() throws IOException {
+    final XMPPConnectionService connectionService = createNiceMock(XMPPConnectionService.class);
+
+    final DataTransferManager dataTransferManager = createNiceMock(DataTransferManager.class);
+    expect(dataTransferManager.getConnection(isNull(String.class), anyObject(JID.class)))
+        .andStubReturn(new NullConnection());
+
+    final Connection connection = createNiceMock(Connection.class);
+    expect(connection.getUser()).andStubReturn(ALICE.toString());
+
+    replay(connectionService, dataTransferManager, connection);
+
+    transmitter = new XMPPTransmitter(dataTransferManager, connectionService);
+    transmitter.connectionStateChanged(connection, ConnectionState.CONNECTING);
+    transmitter.connectionStateChanged(connection, ConnectionState.CONNECTED);
+
+    final DispatchThreadContext dispatchThreadContext =
+        new DispatchThreadContext() {
+          @Override
+          public void executeAsDispatch(Runnable runnable) {
+            runnable.run();
+          }
+        };
+
+    // decode on the benchmark thread, so -prof gc includes the allocations of the decoding
+    System.setProperty("saros.net.DECODER_THREADS", "0");
+
+    receiver = new XMPPReceiver(dispatchThreadContext, connectionService, dataTransferManager);
+    receiver.addPacketListener((packet) -> received = provider.getPayload(packet), null);
+
+    dispatchThreadContext.dispose();
+
+    final String xml = provider.create(new Text(createText(packetSize))).toXML();
+
+    extension = new FixedPacketExtension(xml);
+    compressed = createExtension(deflatePerPacket(xml.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Benchmark
+  public void send() throws IOException {
+    transmitter.send(BOB, extension);
+  }
+
+  @Benchmark
+  public byte[] deflatePerPacket() {
+    return deflatePerPacket(extension.toXML().getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Benchmark
+  public Object receive() {
+    received = null;
+    receiver.receive(compressed);
+
+    if (received == null) throw new IllegalStateException("nothing received");
+
+    return received;
+  }
+
+  private static BinaryXMPPExtension createExtension(final byte[] payload) {
+    final TransferDescription description =
+        TransferDescription.newDescription()
+            .setNamespace(NAMESPACE)
+            .setElementName(ELEMENT_NAME)
+            .setSender(ALICE)
+            .setRecipient(BOB)
+            .setCompressContent(true);
+
+    final BinaryXMPPExtension extension =
+        new BinaryXMPPExtension(
+            StreamMode.SOCKS5_DIRECT, description, ((payload.length - 1) / CHUNKSIZE) + 1);
+
+    for (int offset = 0; offset < payload.length; offset += CHUNKSIZE) {
+      extension.addChunk(
+          Arrays.copyOfRange(payload, offset, Math.min(payload.length, offset + CHUNKSIZE)));
+      extension.isLastChunk();
+    }
+
+    return extension;
+  }
+
+  /** The compression of the transmitter before the compressors were pooled. */
+  private static byte[] deflatePerPacket(final byte[] input) {
+    final Deflater compressor = new Deflater(Deflater.DEFLATED);
+    compressor.setInput(input);
+    compressor.finish();
+
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream(input.length);
+
+    final byte[] buf = new byte[16 * 1024];
+
+    while (!compressor.finished()) {
+      final int count = compressor.deflate(buf);
+      bos.write(buf, 0, count);
+    }
+
+    compressor.end();
+
+    return bos.toByteArray();
+  }
+
+  /** Creates source code like text that compresses about as well as real edits. */
+  private static String createText(final int size) {
+    final Random random = new Random(size);
+
+    final StringBuilder builder = new StringBuilder(size + 16);
+
+    while (builder.length() < size) {
+      final int length = 2 + random.nextInt(10);
+
+      for (int c = 0; c < length; c++) builder.append((char) ('a' + random.nextInt(26)));
+
+      builder.append(random.nextInt(8) == 0 ? ";\n  " : " ");
+    }
+
+    return builder.substring(0, size);
+  }
+}
@@ -0,0 +1,241 @@
+package saros.net.internal;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.replay;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import com.thoughtworks.xstream.io.xml.XppReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.mxp1.MXParser;
+import saros.misc.xstream.XStreamExtensionProvider;
+import saros.misc.xstream.XStreamExtensionProvider.XStreamPacketExtension;
+import saros.misc.xstream.XStreamFactory;
+import saros.net.DispatchThreadContext;
+import saros.net.stream.StreamMode;
+import saros.net.xmpp.JID;
+import saros.net.xmpp.XMPPConnectionService;
+
+/**
+ * Deserializes a received packet extension that contains the content of a file, e.g a <code>
+ * FileActivity</code>, in the {@link XMPPReceiver}. The received chunks are prepared in advance, as
+ * they are allocated by the network layer.
+ *
+ * <p>For comparison <code>assembled</code> concatenates the chunks, inflates the payload into a
+ * byte array and decodes the content with the default XStream converter, as done before the payload
+ * was streamed. Run it with <code>-prof gc</code> to compare the bytes allocated per received file.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReceiveAllocationBenchmark {
+
+  private static final int CHUNKSIZE = 32 * 1024 - 1;
+
+  private static final String NAMESPACE = "saros.net.internal.ReceiveAllocationBenchmark";
+
+  private static final String ELEMENT_NAME = "file";
+
+  @XStreamAlias("benchmarkFile")
+  private static class FileContent {
+    private final String path;
+    private final byte[] content;
+
+    private FileContent(String path, byte[] content) {
+      this.path = path;
+      this.content = content;
+    }
+  }
+
+  /** The size of the file content in bytes. */
+  @Param({"65536", "1048576", "8388608"})
+  public int fileSize;
+
+  private final XStreamExtensionProvider<FileContent> provider =
+      new XStreamExtensionProvider<FileContent>(NAMESPACE, ELEMENT_NAME, FileContent.class);
+
+  private final XStream defaultXStream = XStreamFactory.getSecureXStream();
+
+  /** reused like the parser of the receiver */
+  private final MXParser assembledParser = new MXParser();
+
+  private XMPPReceiver receiver;
+
+  private byte[] content;
+
+  private BinaryXMPPExtension extension;
+
+  private FileContent received;
+
+  @Setup
+  public void setUp() {
+    final DispatchThreadContext dispatchThreadContext =
+        new DispatchThreadContext() {
+          @Override
+          public void executeAsDispatch(Runnable runnable) {
+            runnable.run();
+          }
+        };
+
+    final XMPPConnectionService connectionService = createNiceMock(XMPPConnectionService.class);
+    final DataTransferManager dataTransferManager = createNiceMock(DataTransferManager.class);
+    replay(connectionService, dataTransferManager);
+
+    // decode on the benchmark thread, so -prof gc includes the allocations of the decoding
+    System.setProperty("saros.net.DECODER_THREADS", "0");
+
+    receiver = new XMPPReceiver(dispatchThreadContext, connectionService, dataTransferManager);
+    receiver.addPacketListener((packet) -> received = provider.getPayload(packet), null);
+
+    defaultXStream.processAnnotations(XStreamPacketExtension.class);
+    defaultXStream.processAnnotations(FileContent.class);
+    defaultXStream.alias(ELEMENT_NAME, XStreamPacketExtension.class);
+
+    dispatchThreadContext.dispose();
+
+    content = createContent(fileSize);
+
+    extension =
+        createExtension(
+            deflate(provider.create(new FileContent("src/File.java", content)).toXML()));
+  }
+
+  @Benchmark
+  public Object streamed() {
+    received = null;
+    receiver.receive(extension);
+
+    return check(received);
+  }
+
+  /** The receive path before the payload was streamed. */
+  @Benchmark
+  @SuppressWarnings("unchecked")
+  public Object assembled() throws IOException, DataFormatException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(CHUNKSIZE * 2);
+
+    for (byte[] chunk : extension.getChunks()) out.write(chunk);
+
+    byte[] payload = out.toByteArray();
+
+    Inflater inflater = new Inflater();
+    inflater.setInput(payload);
+
+    out = new ByteArrayOutputStream(payload.length);
+
+    byte[] buffer = new byte[16 * 1024];
+
+    while (!inflater.finished()) out.write(buffer, 0, inflater.inflate(buffer));
+
+    inflater.end();
+
+    payload = out.toByteArray();
+
+    XStreamPacketExtension<FileContent> packetExtension =
+        (XStreamPacketExtension<FileContent>)
+            defaultXStream.unmarshal(
+                new XppReader(
+                    new InputStreamReader(
+                        new ByteArrayInputStream(payload), StandardCharsets.UTF_8),
+                    assembledParser));
+
+    return check(packetExtension.getPayload());
+  }
+
+  private FileContent check(FileContent actual) {
+    if (actual == null || actual.content.length != content.length)
+      throw new IllegalStateException("received content differs");
+
+    return actual;
+  }
+
+  private static BinaryXMPPExtension createExtension(byte[] payload) {
+    TransferDescription description =
+        TransferDescription.newDescription()
+            .setNamespace(NAMESPACE)
+            .setElementName(ELEMENT_NAME)
+            .setSender(new JID("alice@saros-benchmark"))
+            .setRecipient(new JID("bob@saros-benchmark"))
+            .setCompressContent(true);
+
+    int chunks = ((payload.length - 1) / CHUNKSIZE) + 1;
+
+    BinaryXMPPExtension extension =
+        new BinaryXMPPExtension(StreamMode.SOCKS5_DIRECT, description, chunks);
+
+    for (int offset = 0; offset < payload.length; offset += CHUNKSIZE) {
+      extension.addChunk(
+          Arrays.copyOfRange(payload, offset, Math.min(payload.length, offset + CHUNKSIZE)));
+      extension.isLastChunk();
+    }
+
+    return extension;
+  }
+
+  /** Creates source code like content that compresses about as well as real source files. */
+  private static byte[] createContent(int size) {
+    Random random = new Random(size);
+
+    List<String> words = new ArrayList<String>();
+
+    for (int i = 0; i < 200; i++) {
+      char[] word = new char[2 + random.nextInt(10)];
+
+      for (int c = 0; c < word.length; c++) word[c] = (char) ('a' + random.nextInt(26));
+
+      words.add(new String(word));
+    }
+
+    StringBuilder builder = new StringBuilder(size + 16);
+
+    while (builder.length() < size) {
+      builder.append(words.get(random.nextInt(words.size())));
+      builder.append(random.nextInt(8) == 0 ? ";\n  " : " ");
+    }
+
+    return Arrays.copyOf(builder.toString().getBytes(StandardCharsets.US_ASCII), size);
+  }
+
+  private static byte[] deflate(String xml) {
+    byte[] input = xml.getBytes(StandardCharsets.UTF_8);
+
+    Deflater deflater = new Deflater(Deflater.DEFLATED);
+    deflater.setInput(input);
+    deflater.finish();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream(input.length);
+    byte[] buffer = new byte[16 * 1024];
+
+    while (!deflater.finished()) out.write(buffer, 0, deflater.deflate(buffer));
+
+    deflater.end();
+
+    return out.toByteArray();
+  }
+}
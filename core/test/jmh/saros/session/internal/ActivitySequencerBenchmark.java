@@ -0,0 +1,261 @@
+package saros.session.internal;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import saros.activities.IActivity;
+import saros.activities.SPath;
+import saros.benchmark.EditTrace;
+import saros.communication.extensions.ActivitiesExtension;
+import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.internal.Jupiter;
+import saros.filesystem.IPathFactory;
+import saros.misc.xstream.SPathConverter;
+import saros.misc.xstream.UserConverter;
+import saros.net.DispatchThreadContext;
+import saros.net.IConnectionManager;
+import saros.net.internal.DataTransferManager;
+import saros.net.internal.XMPPReceiver;
+import saros.net.internal.XMPPTransmitter;
+import saros.net.xmpp.JID;
+import saros.net.xmpp.XMPPConnectionService;
+import saros.session.ISarosSession;
+import saros.session.User;
+import saros.test.fakes.net.LocalConnection;
+import saros.test.fakes.net.LocalXMPPRouter;
+import saros.test.fakes.net.LoopbackStreamService;
+
+/**
+ * Sends Jupiter activities from one {@link ActivitySequencer} to another through the complete
+ * network stack of Saros: the activities are marshalled to an {@link
+ * saros.communication.extensions.ActivitiesExtension}, sent by the {@link XMPPTransmitter} over a
+ * {@link saros.net.internal.BinaryChannelConnection} and dispatched by the {@link XMPPReceiver}.
+ *
+ * <p>The two users are connected by a {@link LocalXMPPRouter} and the {@link
+ * LoopbackStreamService}, so the benchmark does neither need a XMPP server nor the network stack of
+ * the machine. The link between the users has a fixed latency and bandwidth.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActivitySequencerBenchmark {
+
+  private static final int STREAMED_ACTIVITIES = 32;
+
+  private static final String SESSION_ID = "benchmark-session";
+
+  private static final String PROJECT_ID = "0123456789";
+
+  private static final String PATH = "src/Main.java";
+
+  /** The latency of the link between the users in milliseconds. */
+  @Param({"0", "20"})
+  public long latency;
+
+  /** The bandwidth of the link in bytes per second, <code>0</code> for an unlimited bandwidth. */
+  @Param({"0", "131072"})
+  public long bandwidth;
+
+  private final BlockingQueue<IActivity> received = new LinkedBlockingQueue<IActivity>();
+
+  private Peer alice;
+
+  private Peer bob;
+
+  private User bobInAliceSession;
+
+  private List<IActivity> activities;
+
+  private int next;
+
+  private UserConverter userConverter;
+
+  private SPathConverter pathConverter;
+
+  private ActivitiesExtension.Provider provider;
+
+  @Setup
+  public void setUp() throws Exception {
+    final EditTrace trace = EditTrace.generate(2, 256, 1, 42);
+
+    final User aliceUser = trace.getUsers()[0];
+    final User bobUser = trace.getUsers()[1];
+    final SPath path = trace.getPath();
+
+    /*
+     * both users share the provider and its converters, which is fine as the
+     * users of both sessions have the same JIDs
+     */
+    provider = ActivitiesExtension.Provider.createSessionProvider();
+
+    final ISarosSession converterSession = createNiceMock(ISarosSession.class);
+    expect(converterSession.getUser(anyObject(JID.class))).andStubReturn(aliceUser);
+    expect(converterSession.getProjectID(path.getProject())).andStubReturn(PROJECT_ID);
+    expect(converterSession.getProject(PROJECT_ID)).andStubReturn(path.getProject());
+
+    final IPathFactory pathFactory = createNiceMock(IPathFactory.class);
+    expect(pathFactory.fromPath(path.getProjectRelativePath())).andStubReturn(PATH);
+    expect(pathFactory.fromString(PATH)).andStubReturn(path.getProjectRelativePath());
+
+    replay(converterSession, pathFactory);
+
+    userConverter = new UserConverter(converterSession, provider);
+    pathConverter = new SPathConverter(converterSession, pathFactory, provider);
+
+    userConverter.start();
+    pathConverter.start();
+
+    final Jupiter jupiter = new Jupiter(true);
+
+    activities = new ArrayList<IActivity>();
+
+    for (final Operation operation : trace.getOperations(0))
+      activities.add(jupiter.generateJupiterActivity(operation, aliceUser, path));
+
+    final LocalXMPPRouter router = new LocalXMPPRouter(aliceUser.getJID().getDomain());
+    router.setLink(latency, bandwidth);
+
+    bobInAliceSession = new User(bobUser.getJID(), false, false, null);
+
+    alice = new Peer(router, provider, aliceUser, bobInAliceSession, null);
+    bob =
+        new Peer(
+            router, provider, bobUser, new User(aliceUser.getJID(), true, false, null), received);
+
+    // like the session negotiation establish the connection before the activities are sent
+    alice.dataTransferManager.connect(ISarosSession.SESSION_CONNECTION_ID, bobUser.getJID());
+
+    roundTrip();
+  }
+
+  @TearDown
+  public void tearDown() {
+    alice.close();
+    bob.close();
+
+    pathConverter.stop();
+    userConverter.stop();
+  }
+
+  @Benchmark
+  public IActivity roundTrip() throws InterruptedException {
+    alice.sequencer.sendActivity(Arrays.asList(bobInAliceSession), nextActivity());
+    return received.take();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(STREAMED_ACTIVITIES)
+  public IActivity stream() throws InterruptedException {
+    final List<User> recipients = Arrays.asList(bobInAliceSession);
+
+    for (int i = 0; i < STREAMED_ACTIVITIES; i++)
+      alice.sequencer.sendActivity(recipients, nextActivity());
+
+    IActivity activity = null;
+
+    for (int i = 0; i < STREAMED_ACTIVITIES; i++) activity = received.take();
+
+    return activity;
+  }
+
+  private IActivity nextActivity() {
+    final IActivity activity = activities.get(next);
+    next = (next + 1) % activities.size();
+    return activity;
+  }
+
+  /** The network components and the sequencer of one user. */
+  private static final class Peer {
+
+    private final XMPPConnectionService connectionService;
+
+    private final DispatchThreadContext dispatchThreadContext;
+
+    private final DataTransferManager dataTransferManager;
+
+    private final ActivitySequencer sequencer;
+
+    private Peer(
+        LocalXMPPRouter router,
+        ActivitiesExtension.Provider provider,
+        User localUser,
+        User remoteUser,
+        BlockingQueue<IActivity> received)
+        throws Exception {
+
+      final JID jid = localUser.getJID();
+
+      router.addAccount(jid.getName());
+
+      connectionService = new XMPPConnectionService(null, null);
+      connectionService.configure(
+          jid.getResource(), false, false, 0, null, null, false, null, 0, false);
+
+      dispatchThreadContext = new DispatchThreadContext();
+
+      dataTransferManager =
+          new DataTransferManager(connectionService, new LoopbackStreamService(), null, null);
+
+      dataTransferManager.setServices(IConnectionManager.TCP_SERVICE);
+
+      final XMPPTransmitter transmitter =
+          new XMPPTransmitter(dataTransferManager, connectionService);
+
+      final XMPPReceiver receiver =
+          new XMPPReceiver(dispatchThreadContext, connectionService, dataTransferManager);
+
+      connectionService.connect(new LocalConnection(router), jid.getName(), "benchmark");
+
+      final ISarosSession session = EasyMock.createMock(ISarosSession.class);
+
+      expect(session.getID()).andStubReturn(SESSION_ID);
+      expect(session.getLocalUser()).andStubReturn(localUser);
+      expect(session.getUsers()).andStubReturn(Arrays.asList(localUser, remoteUser));
+
+      final Capture<List<IActivity>> capture = Capture.newInstance();
+
+      session.exec(EasyMock.capture(capture));
+      expectLastCall().andAnswer(() -> received.addAll(capture.getValue())).anyTimes();
+
+      replay(session);
+
+      sequencer =
+          new ActivitySequencer(session, transmitter, receiver, provider, dispatchThreadContext);
+      sequencer.start();
+      sequencer.registerUser(remoteUser);
+    }
+
+    private void close() {
+      sequencer.stop();
+      connectionService.disconnect();
+      dispatchThreadContext.dispose();
+    }
+  }
+}
@@ -10,6 +10,8 @@ import org.junit.runners.Suite;
   saros.communication.extensions.TestSuite.class,
   saros.concurrent.TestSuite.class,
   saros.concurrent.jupiter.test.puzzles.TestSuite.class,
+  saros.concurrent.management.TestSuite.class,
+  saros.concurrent.watchdog.TestSuite.class,
   saros.editor.colorstorage.TestSuite.class,
   saros.editor.remote.TestSuite.class,
   saros.filesystem.TestSuite.class,
@@ -18,6 +20,8 @@ import org.junit.runners.Suite;
   saros.negotiation.TestSuite.class,
   saros.net.TestSuite.class,
   saros.net.internal.TestSuite.class,
+  saros.net.stream.TestSuite.class,
+  saros.net.xmpp.contact.TestSuite.class,
   saros.preferences.TestSuite.class,
   saros.session.TestSuite.class,
   saros.session.internal.TestSuite.class,
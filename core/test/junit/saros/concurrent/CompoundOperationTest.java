@@ -0,0 +1,152 @@
+package saros.concurrent;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import saros.activities.SPath;
+import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.internal.text.CompoundOperation;
+import saros.concurrent.jupiter.internal.text.DeleteOperation;
+import saros.concurrent.jupiter.internal.text.InsertOperation;
+import saros.concurrent.jupiter.internal.text.NoOperation;
+import saros.concurrent.jupiter.internal.text.SplitOperation;
+import saros.concurrent.jupiter.test.util.JupiterTestCase;
+import saros.concurrent.jupiter.test.util.PathFake;
+import saros.filesystem.IProject;
+import saros.session.User;
+
+/** testing CompoundOperation normalization and CompoundOperation.toTextEdit() */
+public class CompoundOperationTest {
+
+  protected IProject project;
+
+  protected SPath path;
+  protected User source = JupiterTestCase.createUser("source");
+
+  public static Operation S(Operation one, Operation two) {
+    return new SplitOperation(one, two);
+  }
+
+  public static Operation C(Operation... operations) {
+    return CompoundOperation.of(operations);
+  }
+
+  public static Operation I(int i, String s) {
+    return new InsertOperation(i, s);
+  }
+
+  public static Operation D(int i, String s) {
+    return new DeleteOperation(i, s);
+  }
+
+  public static Operation nop() {
+    return new NoOperation();
+  }
+
+  @Before
+  public void setUp() {
+    project = createMock(IProject.class);
+    replay(project);
+    path = new SPath(project, new PathFake("path"));
+  }
+
+  @Test
+  public void testNormalization() {
+    assertEquals(nop(), C());
+    assertEquals(nop(), C(nop(), nop()));
+    assertEquals(I(3, "a"), C(nop(), I(3, "a")));
+    assertEquals(I(3, "a"), C(S(nop(), I(3, "a"))));
+
+    Operation flat = C(I(1, "a"), D(2, "b"), I(3, "c"), D(4, "d"));
+
+    assertEquals(flat, C(S(I(1, "a"), D(2, "b")), nop(), C(I(3, "c"), D(4, "d"))));
+    assertEquals(flat, C(C(I(1, "a"), C(D(2, "b"), I(3, "c"))), D(4, "d")));
+    assertEquals(4, ((CompoundOperation) flat).size());
+  }
+
+  @Test
+  public void testInvert() {
+    Operation compound = C(I(1, "a"), D(2, "b"), I(3, "c"));
+
+    assertEquals(C(D(3, "c"), I(2, "b"), D(1, "a")), compound.invert());
+    assertEquals(compound, compound.invert().invert());
+  }
+
+  @Test
+  public void testTextEditsEqualSplitOperation() {
+    Operation[][] sequences = {
+      {I(4, "0ab"), I(7, "cd")},
+      {I(4, "ab"), I(2, "cd")},
+      {D(5, "ab"), D(5, "cde")},
+      {D(8, "c"), D(6, "ab")},
+      {D(8, "abc"), I(8, "ghijk")},
+      {I(5, "ab"), D(5, "abcd")},
+      {I(5, "abcd"), D(5, "ab")},
+      {I(5, "ab"), D(5, "ab")},
+      {D(8, "abc"), I(8, "ghijk"), I(13, "l"), D(2, "x"), D(2, "y")},
+      {I(1, "a"), D(10, "b"), I(2, "c"), D(9, "d")}
+    };
+
+    for (Operation[] sequence : sequences) assertSameTextEdits(sequence);
+  }
+
+  @Test
+  public void testTextEditsEqualSplitOperationRandom() {
+    Random random = new Random(42);
+
+    for (int run = 0; run < 500; run++) {
+      Operation[] sequence = new Operation[2 + random.nextInt(8)];
+
+      for (int i = 0; i < sequence.length; i++) {
+        int position = random.nextInt(6);
+        String text = "abc".substring(0, 1 + random.nextInt(3));
+
+        sequence[i] = random.nextBoolean() ? I(position, text) : D(position, text);
+      }
+
+      assertSameTextEdits(sequence);
+    }
+  }
+
+  @Test
+  public void testSplitOperationRoundTrip() {
+    CompoundOperation compound =
+        (CompoundOperation) C(I(1, "a"), D(2, "b"), I(3, "c"), D(4, "d"), I(5, "e"));
+
+    SplitOperation split = compound.toSplitOperation();
+
+    assertEquals(S(S(I(1, "a"), D(2, "b")), S(I(3, "c"), S(D(4, "d"), I(5, "e")))), split);
+    assertEquals(compound, C(split));
+    assertEquals(compound.toTextEdit(path, source), split.toTextEdit(path, source));
+  }
+
+  @Test
+  public void testLongCompound() {
+    final int count = 100000;
+
+    Operation[] inserts = new Operation[count];
+
+    for (int i = 0; i < count; i++) inserts[i] = I(i, "x");
+
+    Operation compound = C(inserts);
+
+    assertEquals(count, compound.getTextOperations().size());
+    assertEquals(1, compound.toTextEdit(path, source).size());
+    assertTrue(compound.invert() instanceof CompoundOperation);
+    assertEquals(compound, C(((CompoundOperation) compound).toSplitOperation()));
+  }
+
+  private void assertSameTextEdits(Operation[] sequence) {
+    Operation split = sequence[0];
+
+    for (int i = 1; i < sequence.length; i++) split = S(split, sequence[i]);
+
+    assertEquals(
+        split.toString(), split.toTextEdit(path, source), C(sequence).toTextEdit(path, source));
+  }
+}
@@ -1,6 +1,7 @@
 package saros.concurrent.jupiter.test.puzzles;
 
 import org.junit.Test;
+import saros.concurrent.jupiter.internal.text.CompoundOperation;
 import saros.concurrent.jupiter.internal.text.DeleteOperation;
 import saros.concurrent.jupiter.internal.text.InsertOperation;
 import saros.concurrent.jupiter.test.util.ClientSynchronizedDocument;
@@ -46,4 +47,41 @@ public class ConvergenceProblemTest extends JupiterTestCase {
 
     assertEqualDocs("acxx", c);
   }
+
+  /** Scenario in fig. 3 with the operations of the first site sent as one compound operation. */
+  @Test
+  public void testC2PuzzleP1WithCompoundOperation() throws Exception {
+
+    ClientSynchronizedDocument[] c = setUp(3, "core");
+
+    c[0].sendOperation(
+        CompoundOperation.of(new InsertOperation(3, "f"), new InsertOperation(0, "s")), 100);
+    c[1].sendOperation(new DeleteOperation(2, "r"), 300);
+    c[2].sendOperation(
+        CompoundOperation.of(new InsertOperation(2, "f"), new DeleteOperation(0, "c")), 500);
+
+    network.execute(500);
+
+    assertEqualDocs("soffe", c);
+  }
+
+  /** Scenario in fig. 5 with concurrent compound operations of all sites. */
+  @Test
+  public void testC2PuzzleP2WithCompoundOperations() throws Exception {
+
+    ClientSynchronizedDocument[] c = setUp(5, "abcd");
+
+    c[0].sendOperation(
+        CompoundOperation.of(new DeleteOperation(1, "b"), new InsertOperation(1, "B")), 100);
+    c[3].sendOperation(
+        CompoundOperation.of(new InsertOperation(3, "x"), new DeleteOperation(0, "a")), 300);
+    c[4].sendOperation(
+        CompoundOperation.of(new DeleteOperation(3, "d"), new InsertOperation(3, "D")), 500);
+    c[1].sendOperation(
+        CompoundOperation.of(new DeleteOperation(0, "ab"), new InsertOperation(0, "AB")), 600);
+    c[0].sendOperation(new InsertOperation(3, "x"), 700);
+    network.execute(700);
+
+    assertEqualDocs(c[0].getDocument(), c);
+  }
 }
@@ -5,6 +5,7 @@ import static org.junit.Assert.assertEquals;
 import org.junit.Before;
 import org.junit.Test;
 import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.internal.text.CompoundOperation;
 import saros.concurrent.jupiter.internal.text.DeleteOperation;
 import saros.concurrent.jupiter.internal.text.InsertOperation;
 import saros.concurrent.jupiter.internal.text.SplitOperation;
@@ -24,6 +25,10 @@ public class InclusionTransformationTest extends JupiterTestCase {
     return new SplitOperation(one, two);
   }
 
+  public static Operation C(Operation... operations) {
+    return CompoundOperation.of(operations);
+  }
+
   public static Operation I(int i, String s) {
     return new InsertOperation(i, s);
   }
@@ -293,6 +298,59 @@ public class InclusionTransformationTest extends JupiterTestCase {
     assertEqualDocs("abcd123456789lmnopqrstuvwxyz", client, server);
   }
 
+  @Test
+  public void compoundOperations() throws Exception {
+
+    // ----01234567890123456789012345
+    setUp("abcdefghijklmnopqrstuvwxyz");
+
+    client.sendOperation(C(D(4, "efg"), I(4, "123")), 100);
+    client.sendOperation(C(D(8, "ijk"), I(8, "789")), 200);
+    server.sendOperation(C(D(6, "ghi"), I(6, "456")), 300);
+
+    network.execute(300);
+
+    assertEqualDocs("abcd123456789lmnopqrstuvwxyz", client, server);
+  }
+
+  @Test
+  public void compoundAndSplitOperations() throws Exception {
+
+    // ----01234567890123456789012345
+    setUp("abcdefghijklmnopqrstuvwxyz");
+
+    client.sendOperation(C(D(4, "efg"), I(4, "123")), 100);
+    client.sendOperation(S(D(8, "ijk"), I(8, "789")), 200);
+    server.sendOperation(C(S(D(6, "ghi"), I(6, "456")), D(0, "a")), 300);
+
+    network.execute(300);
+
+    assertEqualDocs("bcd123456789lmnopqrstuvwxyz", client, server);
+  }
+
+  @Test
+  public void longCompoundOperations() throws Exception {
+
+    // ----01234567890123456789012345
+    setUp("abcdefghijklmnopqrstuvwxyz");
+
+    // deletes every second character: bdfhjlnprtvxz
+    final Operation[] clientOps = new Operation[13];
+    for (int i = 0; i < clientOps.length; i++)
+      clientOps[i] = D(i, String.valueOf((char) ('a' + 2 * i)));
+
+    // inserts a digit in front of every character
+    final Operation[] serverOps = new Operation[26];
+    for (int i = 0; i < serverOps.length; i++) serverOps[i] = I(2 * i, String.valueOf(i % 10));
+
+    client.sendOperation(C(clientOps), 100);
+    server.sendOperation(C(serverOps), 200);
+
+    network.execute(200);
+
+    assertEqualDocs("01b23d45f67h89j01l23n45p67r89t01v23x45z", client, server);
+  }
+
   @Test
   public void deleteOperations() throws Exception {
 
@@ -382,6 +440,19 @@ public class InclusionTransformationTest extends JupiterTestCase {
     assertEqualDocs("abcd12ijklmnopqrstuvwxyz", client, server);
   }
 
+  @Test
+  public void nestedCompoundOperation() throws Exception {
+
+    // ----01234567890123456789012345
+    setUp("abcdefghijklmnopqrstuvwxyz");
+
+    client.sendOperation((C(D(8, "ijk"), C(D(3, "def"), I(3, "replaced")))), 100);
+    server.sendOperation(C(D(4, "efgh"), I(0, "_")), 200);
+    network.execute();
+
+    assertEqualDocs("_abcreplacedlmnopqrstuvwxyz", client, server);
+  }
+
   @Test
   public void nestedSplitOperation() throws Exception {
 
@@ -0,0 +1,152 @@
+package saros.concurrent.management;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import saros.activities.JupiterActivity;
+import saros.activities.SPath;
+import saros.concurrent.jupiter.internal.Jupiter;
+import saros.concurrent.jupiter.internal.text.InsertOperation;
+import saros.concurrent.jupiter.internal.text.NoOperation;
+import saros.concurrent.jupiter.test.util.JupiterTestCase;
+import saros.concurrent.jupiter.test.util.PathFake;
+import saros.filesystem.IProject;
+import saros.session.ISarosSession;
+import saros.session.User;
+
+public class HeartbeatDispatcherTest {
+
+  private final User host = JupiterTestCase.createUser("host");
+  private final User alice = JupiterTestCase.createUser("alice");
+
+  private SPath path;
+
+  private JupiterClient client;
+
+  /** The Jupiter proxy of alice on the host. */
+  private Jupiter proxy;
+
+  @Before
+  public void setUp() {
+    final IProject project = createMock(IProject.class);
+    replay(project);
+
+    path = new SPath(project, new PathFake("path"));
+
+    final ISarosSession session = createMock(ISarosSession.class);
+    expect(session.getLocalUser()).andStubReturn(alice);
+    replay(session);
+
+    client = new JupiterClient(session);
+    proxy = new Jupiter(false);
+  }
+
+  @Test
+  public void testHeartbeatDelay() {
+    assertEquals(
+        HeartbeatDispatcher.MAX_HEARTBEAT_DELAY, HeartbeatDispatcher.getHeartbeatDelay(0, -1));
+
+    assertEquals(
+        HeartbeatDispatcher.MAX_HEARTBEAT_DELAY / 2,
+        HeartbeatDispatcher.getHeartbeatDelay(HeartbeatDispatcher.HALVING_BACKLOG, -1));
+
+    assertEquals(
+        HeartbeatDispatcher.MIN_HEARTBEAT_DELAY, HeartbeatDispatcher.getHeartbeatDelay(100000, -1));
+
+    assertEquals(
+        HeartbeatDispatcher.MIN_ROUND_TRIPS * 2000,
+        HeartbeatDispatcher.getHeartbeatDelay(100000, 2000));
+
+    assertEquals(
+        HeartbeatDispatcher.MAX_HEARTBEAT_DELAY,
+        HeartbeatDispatcher.getHeartbeatDelay(100000, HeartbeatDispatcher.MAX_HEARTBEAT_DELAY));
+  }
+
+  @Test
+  public void testDelayDecreasesWithBacklog() {
+    long previous = Long.MAX_VALUE;
+
+    for (int backlog = 1; backlog < 1000; backlog *= 2) {
+      final long delay = HeartbeatDispatcher.getHeartbeatDelay(backlog, -1);
+
+      assertTrue("delay increased for backlog " + backlog, delay <= previous);
+      previous = delay;
+    }
+  }
+
+  @Test
+  public void testNoHeartbeatWithoutReceivedOperations() throws Exception {
+    assertNull(client.generateHeartbeat(path));
+
+    client.get(path);
+
+    assertNull(client.generateHeartbeat(path));
+  }
+
+  @Test
+  public void testHeartbeatAcknowledgesReceivedOperations() throws Exception {
+    client.receive(proxy.generateJupiterActivity(new InsertOperation(0, "a"), host, path));
+    client.receive(proxy.generateJupiterActivity(new InsertOperation(1, "b"), host, path));
+
+    assertEquals(2, client.getMetrics().get(path).getUnacknowledgedOperations());
+
+    final JupiterActivity heartbeat = client.generateHeartbeat(path);
+
+    assertNotNull(heartbeat);
+    assertTrue(heartbeat.getOperation() instanceof NoOperation);
+    assertEquals(0, client.getMetrics().get(path).getUnacknowledgedOperations());
+
+    assertNull("operations were acknowledged twice", client.generateHeartbeat(path));
+
+    proxy.receiveJupiterActivity(heartbeat);
+
+    assertEquals(0, proxy.getUnacknowledgedLocalOperationCount());
+  }
+
+  @Test
+  public void testAcknowledgementIsPiggyBackedOnEdits() throws Exception {
+    client.receive(proxy.generateJupiterActivity(new InsertOperation(0, "a"), host, path));
+
+    client.get(path).generateJupiterActivity(new InsertOperation(0, "b"), alice, path);
+
+    assertNull(client.generateHeartbeat(path));
+  }
+
+  @Test
+  public void testReceivedHeartbeatsAreNotAcknowledged() throws Exception {
+    client.receive(proxy.generateJupiterActivity(new NoOperation(), host, path));
+
+    assertEquals(0, client.getMetrics().get(path).getUnacknowledgedOperations());
+    assertNull(client.generateHeartbeat(path));
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    final Jupiter jupiter = client.get(path);
+
+    proxy.receiveJupiterActivity(
+        jupiter.generateJupiterActivity(new InsertOperation(0, "a"), alice, path));
+    proxy.receiveJupiterActivity(
+        jupiter.generateJupiterActivity(new InsertOperation(1, "b"), alice, path));
+
+    JupiterDocumentMetrics metrics = client.getMetrics().get(path);
+
+    assertEquals(2, metrics.getBacklog());
+    assertEquals(-1, metrics.getRoundTripTimeMillis());
+
+    client.receive(proxy.generateJupiterActivity(new InsertOperation(0, "c"), host, path));
+
+    metrics = client.getMetrics().get(path);
+
+    assertEquals(0, metrics.getBacklog());
+    assertEquals(1, metrics.getUnacknowledgedOperations());
+    assertTrue(metrics.getRoundTripTimeMillis() >= 0);
+  }
+}
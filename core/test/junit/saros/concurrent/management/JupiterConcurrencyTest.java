@@ -0,0 +1,325 @@
+package saros.concurrent.management;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import saros.activities.JupiterActivity;
+import saros.activities.SPath;
+import saros.activities.TextEditActivity;
+import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.internal.Jupiter;
+import saros.concurrent.jupiter.internal.JupiterVectorTime;
+import saros.concurrent.jupiter.internal.text.InsertOperation;
+import saros.concurrent.jupiter.test.util.Document;
+import saros.concurrent.jupiter.test.util.JupiterTestCase;
+import saros.concurrent.jupiter.test.util.PathFake;
+import saros.filesystem.IProject;
+import saros.session.ISarosSession;
+import saros.session.User;
+
+/**
+ * Several threads using the same {@link JupiterClient} or {@link JupiterServer} on two documents at
+ * the same time. The vector times of the generated activities show whether the operations on the
+ * same document were still serialized, the documents of all sites must converge afterwards.
+ */
+public class JupiterConcurrencyTest {
+
+  /** Number of operations per thread, the threads yield after every operation to interleave. */
+  private static final int OPERATIONS = 1000;
+
+  private final User host = JupiterTestCase.createUser("host");
+  private final User alice = JupiterTestCase.createUser("alice");
+  private final User bob = JupiterTestCase.createUser("bob");
+
+  private IProject project;
+
+  private SPath pathA;
+  private SPath pathB;
+
+  private ExecutorService executor;
+
+  /** A site editing a document: its Jupiter client and its copy of the document. */
+  private final class Site {
+    private final User user;
+    private final String text;
+    private final Jupiter jupiter = new Jupiter(true);
+    private final Document document;
+
+    private Site(User user, String text, SPath path) {
+      this.user = user;
+      this.text = text;
+      this.document = new Document("", project, path.getProjectRelativePath());
+    }
+  }
+
+  @Before
+  public void setUp() {
+    project = createMock(IProject.class);
+    replay(project);
+
+    pathA = new SPath(project, new PathFake("A"));
+    pathB = new SPath(project, new PathFake("B"));
+
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test(timeout = 60000)
+  public void testServerTransformsDocumentsConcurrently() throws Exception {
+    final ISarosSession session = createMock(ISarosSession.class);
+    expect(session.getHost()).andStubReturn(host);
+    expect(session.getLocalUser()).andStubReturn(host);
+    expect(session.userHasProject(anyObject(User.class), anyObject(IProject.class)))
+        .andStubReturn(true);
+    replay(session);
+
+    final JupiterServer server = new JupiterServer(session);
+    server.addUser(alice);
+    server.addUser(bob);
+
+    final List<SPath> paths = Arrays.asList(pathA, pathB);
+    final List<List<Site>> sites = new ArrayList<List<Site>>();
+    final List<Map<User, ConcurrentLinkedQueue<JupiterActivity>>> sent =
+        new ArrayList<Map<User, ConcurrentLinkedQueue<JupiterActivity>>>();
+
+    for (final SPath path : paths) {
+      sites.add(
+          Arrays.asList(
+              new Site(host, "h", path), new Site(alice, "a", path), new Site(bob, "b", path)));
+
+      final Map<User, ConcurrentLinkedQueue<JupiterActivity>> outgoing =
+          new HashMap<User, ConcurrentLinkedQueue<JupiterActivity>>();
+
+      for (final User user : Arrays.asList(host, alice, bob))
+        outgoing.put(user, new ConcurrentLinkedQueue<JupiterActivity>());
+
+      sent.add(outgoing);
+    }
+
+    final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+    // alice and bob edit both documents, the host only receives
+    for (int d = 0; d < paths.size(); d++) {
+      final SPath path = paths.get(d);
+      final Map<User, ConcurrentLinkedQueue<JupiterActivity>> outgoing = sent.get(d);
+
+      for (final Site site : sites.get(d).subList(1, 3)) {
+        tasks.add(
+            () -> {
+              for (int i = 0; i < OPERATIONS; i++) {
+                final Operation op = new InsertOperation(0, site.text);
+
+                site.document.execOperation(op);
+
+                final JupiterActivity activity =
+                    site.jupiter.generateJupiterActivity(op, site.user, path);
+
+                for (final Map.Entry<User, JupiterActivity> entry :
+                    server.transform(activity).entrySet())
+                  outgoing.get(entry.getKey()).add(entry.getValue());
+
+                Thread.yield();
+              }
+
+              return null;
+            });
+      }
+    }
+
+    runConcurrently(tasks);
+
+    for (int d = 0; d < paths.size(); d++) {
+      for (final Site site : sites.get(d)) {
+        final List<JupiterActivity> received = inServerOrder(sent.get(d).get(site.user));
+
+        // the host receives the operations of alice and bob, they those of each other
+        final int expected = site.user.equals(host) ? 2 * OPERATIONS : OPERATIONS;
+
+        assertEquals(expected, received.size());
+
+        for (final JupiterActivity activity : received)
+          site.document.execOperation(site.jupiter.receiveJupiterActivity(activity));
+
+        final int local = site.user.equals(host) ? 0 : OPERATIONS;
+
+        assertEquals(new JupiterVectorTime(local, expected), site.jupiter.getTimestamp());
+      }
+
+      final String expected = sites.get(d).get(0).document.getDocument();
+
+      assertEquals(2 * OPERATIONS, expected.length());
+
+      for (final Site site : sites.get(d))
+        assertEquals(
+            "document of " + site.user + " did not converge",
+            expected,
+            site.document.getDocument());
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testClientGeneratesAndReceivesConcurrently() throws Exception {
+    final ISarosSession session = createMock(ISarosSession.class);
+    expect(session.getLocalUser()).andStubReturn(alice);
+    replay(session);
+
+    final JupiterClient client = new JupiterClient(session);
+
+    final List<SPath> paths = Arrays.asList(pathA, pathB);
+    final List<Jupiter> proxies = new ArrayList<Jupiter>();
+    final List<Document> proxyDocuments = new ArrayList<Document>();
+    final List<List<JupiterActivity>> generated = new ArrayList<List<JupiterActivity>>();
+    final List<List<Operation>> received = new ArrayList<List<Operation>>();
+
+    final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+    // per document one thread edits locally while another one receives the edits of the host
+    for (final SPath path : paths) {
+      final Jupiter proxy = new Jupiter(false);
+      final Document proxyDocument = new Document("", project, path.getProjectRelativePath());
+      final List<JupiterActivity> localActivities = new ArrayList<JupiterActivity>();
+      final List<Operation> remoteOperations = new ArrayList<Operation>();
+
+      proxies.add(proxy);
+      proxyDocuments.add(proxyDocument);
+      generated.add(localActivities);
+      received.add(remoteOperations);
+
+      tasks.add(
+          () -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+              localActivities.add(client.generate(new TextEditActivity(alice, 0, "a", "", path)));
+
+              Thread.yield();
+            }
+
+            return null;
+          });
+
+      tasks.add(
+          () -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+              final Operation op = new InsertOperation(0, "h");
+
+              proxyDocument.execOperation(op);
+
+              remoteOperations.add(client.receive(proxy.generateJupiterActivity(op, host, path)));
+
+              Thread.yield();
+            }
+
+            return null;
+          });
+    }
+
+    runConcurrently(tasks);
+
+    for (int d = 0; d < paths.size(); d++) {
+      final SPath path = paths.get(d);
+      final List<JupiterActivity> localActivities = generated.get(d);
+      final List<Operation> remoteOperations = received.get(d);
+
+      assertEquals(new JupiterVectorTime(OPERATIONS, OPERATIONS), client.get(path).getTimestamp());
+
+      /*
+       * replay the edits of the client in the order they were applied, the
+       * remote count of a generated activity is the number of remote
+       * operations received before
+       */
+      final Document clientDocument = new Document("", project, path.getProjectRelativePath());
+
+      int r = 0;
+
+      for (int i = 0; i < OPERATIONS; i++) {
+        final JupiterVectorTime time = (JupiterVectorTime) localActivities.get(i).getTimestamp();
+
+        assertEquals(i, time.getLocalOperationCount());
+        assertTrue(
+            "operations of the same document interleaved", time.getRemoteOperationCount() >= r);
+
+        while (r < time.getRemoteOperationCount())
+          clientDocument.execOperation(remoteOperations.get(r++));
+
+        clientDocument.execOperation(localActivities.get(i).getOperation());
+      }
+
+      while (r < OPERATIONS) clientDocument.execOperation(remoteOperations.get(r++));
+
+      final Jupiter proxy = proxies.get(d);
+      final Document proxyDocument = proxyDocuments.get(d);
+
+      for (final JupiterActivity activity : localActivities)
+        proxyDocument.execOperation(proxy.receiveJupiterActivity(activity));
+
+      assertEquals(new JupiterVectorTime(OPERATIONS, OPERATIONS), proxy.getTimestamp());
+      assertEquals(2 * OPERATIONS, clientDocument.getDocument().length());
+      assertEquals(
+          "documents did not converge", proxyDocument.getDocument(), clientDocument.getDocument());
+    }
+  }
+
+  /** Starts the tasks at the same time and waits until all of them are done. */
+  private void runConcurrently(final List<Callable<Void>> tasks) throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+    for (final Callable<Void> task : tasks)
+      futures.add(
+          executor.submit(
+              () -> {
+                start.await();
+                return task.call();
+              }));
+
+    start.countDown();
+
+    for (final Future<Void> future : futures) future.get(30, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Returns the activities sent by the server to a site in the order the server generated them.
+   * Every operation count must occur exactly once, otherwise the transformations of the document
+   * were not serialized.
+   */
+  private static List<JupiterActivity> inServerOrder(
+      final ConcurrentLinkedQueue<JupiterActivity> activities) {
+
+    final List<JupiterActivity> result = new ArrayList<JupiterActivity>(activities);
+
+    result.sort(
+        Comparator.comparingInt(
+            (activity) -> ((JupiterVectorTime) activity.getTimestamp()).getLocalOperationCount()));
+
+    for (int i = 0; i < result.size(); i++)
+      assertEquals(
+          "operations of the same document interleaved",
+          i,
+          ((JupiterVectorTime) result.get(i).getTimestamp()).getLocalOperationCount());
+
+    return result;
+  }
+}
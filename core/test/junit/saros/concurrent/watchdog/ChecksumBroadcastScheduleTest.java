@@ -0,0 +1,133 @@
+package saros.concurrent.watchdog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import saros.net.xmpp.JID;
+import saros.session.User;
+
+public class ChecksumBroadcastScheduleTest {
+
+  private static final long MIN = 2000;
+  private static final long DEFAULT = 10000;
+  private static final long MAX = 60000;
+
+  private final User alice = new User(new JID("alice@junit"), true, true, null);
+  private final User bob = new User(new JID("bob@junit"), false, false, null);
+
+  private ChecksumBroadcastSchedule schedule;
+
+  @Before
+  public void setUp() {
+    schedule = new ChecksumBroadcastSchedule(null, 0, MIN, DEFAULT, MAX);
+  }
+
+  @Test
+  public void testNewScheduleIsDue() {
+    assertTrue(schedule.isDue(0));
+  }
+
+  @Test
+  public void testIdleDocumentBacksOff() {
+    long now = 0;
+
+    schedule.broadcasted(now);
+
+    long expected = DEFAULT * 2;
+
+    while (expected < MAX) {
+      assertEquals(expected, schedule.getInterval());
+      assertFalse(schedule.isDue(now + expected - 1));
+
+      now += expected;
+      assertTrue(schedule.isDue(now));
+      schedule.broadcasted(now);
+
+      expected *= 2;
+    }
+
+    assertEquals(MAX, schedule.getInterval());
+  }
+
+  @Test
+  public void testEditOfIdleDocumentIsBroadcastAfterDefaultInterval() {
+    schedule.broadcasted(0);
+    schedule.broadcasted(20000);
+    schedule.broadcasted(60000);
+
+    assertEquals(60000 + MAX, schedule.getNextBroadcast());
+
+    schedule.edited(alice, 70000);
+
+    assertEquals(70000 + DEFAULT, schedule.getNextBroadcast());
+  }
+
+  @Test
+  public void testConcurrentEditsTightenInterval() {
+    long now = 0;
+
+    schedule.broadcasted(now);
+
+    long expected = DEFAULT;
+
+    do {
+      schedule.edited(alice, now + 1);
+      schedule.edited(bob, now + 2);
+
+      now = schedule.getNextBroadcast();
+      schedule.broadcasted(now);
+
+      expected = Math.max(MIN, expected / 2);
+      assertEquals(expected, schedule.getInterval());
+    } while (expected > MIN);
+  }
+
+  @Test
+  public void testSingleUserEditsUseDefaultInterval() {
+    schedule.broadcasted(0);
+
+    schedule.edited(alice, 1);
+    schedule.edited(bob, 2);
+    schedule.broadcasted(DEFAULT);
+
+    assertEquals(DEFAULT / 2, schedule.getInterval());
+
+    schedule.edited(alice, DEFAULT + 1);
+    schedule.edited(alice, DEFAULT + 2);
+    schedule.broadcasted(DEFAULT + DEFAULT / 2);
+
+    assertEquals(DEFAULT, schedule.getInterval());
+  }
+
+  @Test
+  public void testSettlingBroadcastAfterEdits() {
+    schedule.broadcasted(0);
+
+    schedule.edited(alice, 1);
+    schedule.broadcasted(DEFAULT);
+
+    /* no edits since the last broadcast, but it must be broadcast once more */
+    assertEquals(DEFAULT, schedule.getInterval());
+    assertTrue(schedule.isDue(2 * DEFAULT));
+    schedule.broadcasted(2 * DEFAULT);
+
+    /* now the document is idle */
+    assertEquals(DEFAULT, schedule.getInterval());
+    schedule.broadcasted(3 * DEFAULT);
+    assertEquals(2 * DEFAULT, schedule.getInterval());
+  }
+
+  @Test
+  public void testBroadcastNow() {
+    schedule.broadcasted(0);
+
+    assertFalse(schedule.isDue(1));
+
+    schedule.broadcastNow(1);
+
+    assertTrue(schedule.isDue(1));
+  }
+}
@@ -2,6 +2,8 @@ package saros.misc.xstream;
 
 import static org.easymock.EasyMock.expect;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.io.xml.DomDriver;
@@ -9,6 +11,7 @@ import org.easymock.EasyMock;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import saros.activities.SPath;
+import saros.communication.extensions.ActivitiesExtension;
 import saros.filesystem.IPath;
 import saros.filesystem.IPathFactory;
 import saros.filesystem.IProject;
@@ -63,10 +66,12 @@ public class SPathConverterTest {
 
     /* XStream */
     XStream sender = XStreamFactory.getSecureXStream(new DomDriver());
-    sender.registerConverter(new SPathConverter(session, pathFactory));
+    sender.registerConverter(
+        new SPathConverter(session, pathFactory, ActivitiesExtension.PROVIDER));
 
     XStream receiver = XStreamFactory.getSecureXStream(new DomDriver());
-    receiver.registerConverter(new SPathConverter(session, pathFactory));
+    receiver.registerConverter(
+        new SPathConverter(session, pathFactory, ActivitiesExtension.PROVIDER));
 
     /* Test */
     SPath spath = new SPath(project, path);
@@ -77,6 +82,53 @@ public class SPathConverterTest {
     assertEquals(spath, copy2);
   }
 
+  @Test
+  public void conversionReturnsSameInstance() {
+    /* Mocks */
+    ISarosSession session = EasyMock.createMock(ISarosSession.class);
+    expect(session.getProjectID(project)).andStubReturn("ABC");
+    expect(session.getProject("ABC")).andStubReturn(project);
+
+    EasyMock.replay(session);
+
+    /* XStream */
+    XStream xstream = XStreamFactory.getSecureXStream(new DomDriver());
+    xstream.registerConverter(
+        new SPathConverter(session, pathFactory, ActivitiesExtension.PROVIDER));
+
+    /* Test */
+    String xml = xstream.toXML(new SPath(project, path));
+
+    assertSame(xstream.fromXML(xml), xstream.fromXML(xml));
+  }
+
+  @Test
+  public void conversionReplacedProject() {
+    IProject otherProject = EasyMock.createNiceMock(IProject.class);
+
+    /* Mocks */
+    ISarosSession session = EasyMock.createMock(ISarosSession.class);
+    expect(session.getProjectID(project)).andStubReturn("ABC");
+    expect(session.getProject("ABC")).andReturn(project);
+    expect(session.getProject("ABC")).andReturn(otherProject);
+
+    EasyMock.replay(session, otherProject);
+
+    /* XStream */
+    XStream xstream = XStreamFactory.getSecureXStream(new DomDriver());
+    xstream.registerConverter(
+        new SPathConverter(session, pathFactory, ActivitiesExtension.PROVIDER));
+
+    /* Test */
+    String xml = xstream.toXML(new SPath(project, path));
+
+    SPath copy = (SPath) xstream.fromXML(xml);
+    SPath copy2 = (SPath) xstream.fromXML(xml);
+
+    assertNotSame(copy, copy2);
+    assertSame(otherProject, copy2.getProject());
+  }
+
   @Test
   public void conversionLeavingReceiver() {
     /* Mocks */
@@ -94,10 +146,12 @@ public class SPathConverterTest {
 
     /* XStream */
     XStream sender = XStreamFactory.getSecureXStream(new DomDriver());
-    sender.registerConverter(new SPathConverter(senderSession, pathFactory));
+    sender.registerConverter(
+        new SPathConverter(senderSession, pathFactory, ActivitiesExtension.PROVIDER));
 
     XStream receiver = XStreamFactory.getSecureXStream(new DomDriver());
-    receiver.registerConverter(new SPathConverter(receiverSession, pathFactory));
+    receiver.registerConverter(
+        new SPathConverter(receiverSession, pathFactory, ActivitiesExtension.PROVIDER));
 
     /* Test */
     SPath spath = new SPath(project, path);
@@ -128,10 +182,12 @@ public class SPathConverterTest {
 
     /* XStream */
     XStream sender = XStreamFactory.getSecureXStream(new DomDriver());
-    sender.registerConverter(new SPathConverter(senderSession, pathFactory));
+    sender.registerConverter(
+        new SPathConverter(senderSession, pathFactory, ActivitiesExtension.PROVIDER));
 
     XStream receiver = XStreamFactory.getSecureXStream(new DomDriver());
-    receiver.registerConverter(new SPathConverter(receiverSession, pathFactory));
+    receiver.registerConverter(
+        new SPathConverter(receiverSession, pathFactory, ActivitiesExtension.PROVIDER));
 
     /* Test */
     Dummy dummy = new Dummy(new SPath(project, path));
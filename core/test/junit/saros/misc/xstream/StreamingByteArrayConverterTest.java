@@ -0,0 +1,122 @@
+package saros.misc.xstream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.Test;
+import org.xmlpull.mxp1.MXParser;
+import org.xmlpull.v1.XmlPullParser;
+
+public class StreamingByteArrayConverterTest {
+
+  @XStreamAlias("dummyPayload")
+  private static class Dummy {
+    @XStreamAsAttribute private String name;
+    private byte[] content;
+    private byte[] other;
+    private String trailer;
+
+    private Dummy(String name, byte[] content, byte[] other, String trailer) {
+      this.name = name;
+      this.content = content;
+      this.other = other;
+      this.trailer = trailer;
+    }
+  }
+
+  private static final XStreamExtensionProvider<Dummy> provider =
+      new XStreamExtensionProvider<Dummy>(
+          "saros.misc.xstream.StreamingByteArrayConverterTest", "extension", Dummy.class);
+
+  @Test
+  public void testLargeContent() throws Exception {
+    byte[] content = randomBytes(1024 * 1024 + 1);
+
+    Dummy dummy = parse(new Dummy("large", content, null, "end"));
+
+    assertEquals("large", dummy.name);
+    assertArrayEquals(content, dummy.content);
+    assertEquals("end", dummy.trailer);
+  }
+
+  @Test
+  public void testAllPaddingLengths() throws Exception {
+    for (int length = 0; length < 8; length++) {
+      byte[] content = randomBytes(length);
+
+      Dummy dummy = parse(new Dummy("padding", content, null, "end"));
+
+      assertArrayEquals("length: " + length, content, dummy.content);
+      assertEquals("end", dummy.trailer);
+    }
+  }
+
+  @Test
+  public void testEmptyContent() throws Exception {
+    Dummy dummy = parse(new Dummy("empty", new byte[0], null, "end"));
+
+    assertArrayEquals(new byte[0], dummy.content);
+    assertEquals("end", dummy.trailer);
+  }
+
+  @Test
+  public void testConsecutiveContents() throws Exception {
+    byte[] content = randomBytes(100);
+    byte[] other = randomBytes(5000);
+
+    Dummy dummy = parse(new Dummy("consecutive", content, other, "end"));
+
+    assertArrayEquals(content, dummy.content);
+    assertArrayEquals(other, dummy.other);
+    assertEquals("end", dummy.trailer);
+  }
+
+  @Test
+  public void testLineBreaksAreSkipped() throws Exception {
+    String xml =
+        "<extension xmlns=\"saros.misc.xstream.StreamingByteArrayConverterTest\">"
+            + "<payload class=\"dummyPayload\" name=\"breaks\">"
+            + "<content>SGVs\nbG8g&#xd;\nV29y bGQ=</content>"
+            + "<trailer>end</trailer></payload></extension>";
+
+    Dummy dummy = parse(xml);
+
+    assertArrayEquals("Hello World".getBytes(StandardCharsets.US_ASCII), dummy.content);
+    assertEquals("end", dummy.trailer);
+  }
+
+  @Test
+  public void testParseStringWithoutPullParser() throws Exception {
+    byte[] content = randomBytes(4096);
+
+    Dummy dummy =
+        provider.parseString(provider.create(new Dummy("string", content, null, "end")).toXML());
+
+    assertArrayEquals(content, dummy.content);
+    assertEquals("end", dummy.trailer);
+  }
+
+  private static Dummy parse(Dummy dummy) throws Exception {
+    return parse(provider.create(dummy).toXML());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Dummy parse(String xml) throws Exception {
+    XmlPullParser parser = new MXParser();
+    parser.setInput(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "UTF-8");
+    parser.next();
+
+    return provider.getPayload(provider.parseExtension(parser));
+  }
+
+  private static byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    new Random(length).nextBytes(bytes);
+    return bytes;
+  }
+}
@@ -1,12 +1,15 @@
 package saros.misc.xstream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.io.xml.DomDriver;
 import org.easymock.EasyMock;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import saros.communication.extensions.ActivitiesExtension;
 import saros.net.xmpp.JID;
 import saros.session.ISarosSession;
 import saros.session.User;
@@ -33,7 +36,7 @@ public class UserConverterTest {
 
     /* XStream */
     xstream = XStreamFactory.getSecureXStream(new DomDriver());
-    xstream.registerConverter(new UserConverter(session));
+    xstream.registerConverter(new UserConverter(session, ActivitiesExtension.PROVIDER));
   }
 
   @Test
@@ -42,6 +45,36 @@ public class UserConverterTest {
     checkConversion(bob);
   }
 
+  @Test
+  public void conversionReturnsSameInstance() {
+    String xml = xstream.toXML(bob);
+
+    assertSame(bob, xstream.fromXML(xml));
+    assertSame(bob, xstream.fromXML(xml));
+  }
+
+  @Test
+  public void conversionLeftUser() {
+    JID carlJid = new JID("carl@saros-con/Saros");
+    User carl = new User(carlJid, false, false, null);
+
+    /* Mocks */
+    ISarosSession session = EasyMock.createMock(ISarosSession.class);
+    EasyMock.expect(session.getUser(carlJid)).andReturn(carl);
+    EasyMock.expect(session.getUser(carlJid)).andStubReturn(null);
+    EasyMock.replay(session);
+
+    /* XStream */
+    XStream xstream = XStreamFactory.getSecureXStream(new DomDriver());
+    xstream.registerConverter(new UserConverter(session, ActivitiesExtension.PROVIDER));
+
+    /* Test */
+    String xml = xstream.toXML(carl);
+
+    assertSame(carl, xstream.fromXML(xml));
+    assertNull(xstream.fromXML(xml));
+  }
+
   private void checkConversion(User user) {
     User userCopy = (User) xstream.fromXML(xstream.toXML(user));
     assertEquals(user, userCopy);
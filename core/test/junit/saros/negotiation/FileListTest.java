@@ -22,11 +22,13 @@ import org.easymock.EasyMock;
 import org.easymock.IAnswer;
 import org.junit.Before;
 import org.junit.Test;
+import saros.filesystem.IContainer;
 import saros.filesystem.IFile;
 import saros.filesystem.IFolder;
 import saros.filesystem.IPath;
 import saros.filesystem.IProject;
 import saros.filesystem.IResource;
+import saros.filesystem.IResourceVisitor;
 import saros.misc.xstream.XStreamFactory;
 
 /*
@@ -124,12 +126,15 @@ public class FileListTest {
         createFolderMock(project, "foobar", new IResource[] {foobarfooFolder, foobarInfoTxtFile});
 
     EasyMock.expect(project.getName()).andStubReturn("foo");
+    EasyMock.expect(project.getType()).andStubReturn(IResource.PROJECT);
 
     try {
       EasyMock.expect(project.getDefaultCharset()).andStubReturn("UTF-16");
 
-      EasyMock.expect(project.members())
-          .andStubReturn(new IResource[] {barFolder, infoTxtFile, foobarFolder});
+      final IResource[] members = new IResource[] {barFolder, infoTxtFile, foobarFolder};
+
+      EasyMock.expect(project.members()).andStubReturn(members);
+      expectAccept(project, members);
     } catch (IOException e) {
       // cannot happen
     }
@@ -202,6 +207,7 @@ public class FileListTest {
 
     try {
       EasyMock.expect(folderMock.members()).andStubReturn(members);
+      expectAccept(folderMock, members);
     } catch (IOException e) {
       // cannot happen as the mock is in recording mode
     }
@@ -210,6 +216,32 @@ public class FileListTest {
     return folderMock;
   }
 
+  /** Lets the mock traverse the given members like the default implementation of accept. */
+  private static void expectAccept(final IContainer containerMock, final IResource[] members)
+      throws IOException {
+
+    containerMock.accept(EasyMock.anyObject(IResourceVisitor.class));
+
+    EasyMock.expectLastCall()
+        .andStubAnswer(
+            new IAnswer<Void>() {
+              @Override
+              public Void answer() throws Throwable {
+                final IResourceVisitor visitor =
+                    (IResourceVisitor) EasyMock.getCurrentArguments()[0];
+
+                if (!visitor.visit(containerMock)) return null;
+
+                for (final IResource member : members) {
+                  if (member.getType() == IResource.FILE) visitor.visit(member);
+                  else ((IContainer) member).accept(visitor);
+                }
+
+                return null;
+              }
+            });
+  }
+
   private static String toXML(FileList list) {
     StringWriter writer = new StringWriter(512 * 1024);
     xstream.marshal(list, new CompactWriter(writer));
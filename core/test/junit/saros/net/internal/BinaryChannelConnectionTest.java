@@ -2,6 +2,7 @@ package saros.net.internal;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -9,16 +10,30 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import saros.net.internal.BinaryChannelConnection.IDPool;
+import saros.net.internal.TransferDescription.Priority;
 import saros.net.stream.ByteStream;
 import saros.net.stream.StreamMode;
+import saros.net.stream.TCPByteStream;
 import saros.net.xmpp.JID;
 
 public class BinaryChannelConnectionTest {
@@ -235,6 +250,329 @@ public class BinaryChannelConnectionTest {
     assertArrayEquals("fragmentation error", bytesToSend, receivedBytes);
   }
 
+  @Test
+  public void testInteractiveDataOvertakesBulkData() throws Exception {
+
+    final List<String> received = new CopyOnWriteArrayList<String>();
+
+    final CountDownLatch receivedAll = new CountDownLatch(2);
+
+    final BinaryChannelConnection alice =
+        new BinaryChannelConnection(
+            aliceJID,
+            bobJID,
+            "junit",
+            aliceStream,
+            StreamMode.SOCKS5_DIRECT,
+            new StreamConnectionListener());
+
+    final BinaryChannelConnection bob =
+        new BinaryChannelConnection(
+            bobJID,
+            aliceJID,
+            "junit",
+            bobStream,
+            StreamMode.SOCKS5_DIRECT,
+            new StreamConnectionListener());
+
+    bob.setBinaryXMPPExtensionReceiver(
+        (e) -> {
+          received.add(e.getTransferDescription().getElementName());
+          receivedAll.countDown();
+        });
+
+    alice.initialize();
+
+    final TransferDescription bulk =
+        TransferDescription.newDescription()
+            .setNamespace("foo-namespace")
+            .setElementName("bulk")
+            .setPriority(Priority.BULK);
+
+    final TransferDescription interactive =
+        TransferDescription.newDescription()
+            .setNamespace("foo-namespace")
+            .setElementName("interactive")
+            .setPriority(Priority.INTERACTIVE);
+
+    final AtomicReference<Exception> error = new AtomicReference<Exception>();
+
+    final Thread bulkSender =
+        new Thread(
+            () -> {
+              try {
+                alice.send(bulk, new byte[4 * PIPE_BUFFER_SIZE]);
+              } catch (Exception e) {
+                error.set(e);
+              }
+            });
+
+    final Thread interactiveSender =
+        new Thread(
+            () -> {
+              try {
+                alice.send(interactive, new byte[64]);
+              } catch (Exception e) {
+                error.set(e);
+              }
+            });
+
+    try {
+      // bob is not reading yet, so the bulk sender blocks as soon as the pipe is full
+      bulkSender.start();
+
+      while (bobStream.getInputStream().available() < PIPE_BUFFER_SIZE) Thread.sleep(10);
+
+      interactiveSender.start();
+
+      while (interactiveSender.getState() != Thread.State.WAITING) Thread.sleep(10);
+
+      bob.initialize();
+
+      bulkSender.join(10000);
+      interactiveSender.join(10000);
+
+      receivedAll.await(10000, TimeUnit.MILLISECONDS);
+    } finally {
+      alice.close();
+      bob.close();
+    }
+
+    assertNull("send failed", error.get());
+    assertEquals(Arrays.asList("interactive", "bulk"), received);
+  }
+
+  @Test
+  public void testConcurrentTransfersOverNonBlockingChannels() throws Exception {
+    final SocketChannel[] channels = openChannelPair();
+
+    final BinaryChannelConnection alice =
+        new BinaryChannelConnection(
+            aliceJID,
+            bobJID,
+            "junit",
+            new TCPByteStream(channels[0].socket()),
+            StreamMode.TCP,
+            new StreamConnectionListener());
+
+    final BinaryChannelConnection bob =
+        new BinaryChannelConnection(
+            bobJID,
+            aliceJID,
+            "junit",
+            new TCPByteStream(channels[1].socket()),
+            StreamMode.TCP,
+            new StreamConnectionListener());
+
+    sendConcurrently(alice, bob, 8, 16, 256 * 1024);
+  }
+
+  @Test
+  public void testHundredsOfConcurrentSendersOverBlockingSockets() throws Exception {
+    /*
+     * the piped streams cannot be used here, they break as soon as the last
+     * thread that wrote to them terminates
+     */
+    final Socket aliceSocket;
+    final Socket bobSocket;
+
+    try (final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      aliceSocket = new Socket(server.getInetAddress(), server.getLocalPort());
+      bobSocket = server.accept();
+    }
+
+    final BinaryChannelConnection alice =
+        new BinaryChannelConnection(
+            aliceJID,
+            bobJID,
+            "junit",
+            new TCPByteStream(aliceSocket),
+            StreamMode.TCP,
+            new StreamConnectionListener());
+
+    final BinaryChannelConnection bob =
+        new BinaryChannelConnection(
+            bobJID,
+            aliceJID,
+            "junit",
+            new TCPByteStream(bobSocket),
+            StreamMode.TCP,
+            new StreamConnectionListener());
+
+    // more data than the credit window allows to be in transit at once
+    sendConcurrently(alice, bob, 400, 2, 64 * 1024);
+  }
+
+  @Test
+  public void testHundredsOfConcurrentSendersOverNonBlockingChannels() throws Exception {
+    final SocketChannel[] channels = openChannelPair();
+
+    final BinaryChannelConnection alice =
+        new BinaryChannelConnection(
+            aliceJID,
+            bobJID,
+            "junit",
+            new TCPByteStream(channels[0].socket()),
+            StreamMode.TCP,
+            new StreamConnectionListener());
+
+    final BinaryChannelConnection bob =
+        new BinaryChannelConnection(
+            bobJID,
+            aliceJID,
+            "junit",
+            new TCPByteStream(channels[1].socket()),
+            StreamMode.TCP,
+            new StreamConnectionListener());
+
+    sendConcurrently(alice, bob, 400, 2, 64 * 1024);
+  }
+
+  @Test
+  public void testSendFailsWhileWaitingForCreditsWhenConnectionIsClosed() throws Exception {
+    final SocketChannel[] channels = openChannelPair();
+
+    final BinaryChannelConnection alice =
+        new BinaryChannelConnection(
+            aliceJID,
+            bobJID,
+            "junit",
+            new TCPByteStream(channels[0].socket()),
+            StreamMode.TCP,
+            new StreamConnectionListener());
+
+    // nobody reads on the other side, so the channel runs full and the senders block
+    alice.initialize();
+
+    final int senders = 64;
+
+    final CountDownLatch finished = new CountDownLatch(senders);
+    final AtomicInteger failed = new AtomicInteger();
+
+    for (int i = 0; i < senders; i++) {
+      final Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  alice.send(
+                      TransferDescription.newDescription()
+                          .setNamespace("foo-namespace")
+                          .setElementName("bar"),
+                      new byte[1024 * 1024]);
+                } catch (IOException e) {
+                  failed.incrementAndGet();
+                } finally {
+                  finished.countDown();
+                }
+              });
+
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    Thread.sleep(500);
+
+    try {
+      alice.close();
+
+      assertTrue("blocked senders were not released", finished.await(10000, TimeUnit.MILLISECONDS));
+
+      // the socket buffers may take a few payloads, but never the whole credit window
+      assertTrue("blocked senders did not fail", failed.get() > senders / 2);
+    } finally {
+      channels[1].close();
+    }
+  }
+
+  private void sendConcurrently(
+      final BinaryChannelConnection alice,
+      final BinaryChannelConnection bob,
+      final int senders,
+      final int packetsPerSender,
+      final int maxPayloadSize)
+      throws Exception {
+
+    final Map<String, byte[]> received = new ConcurrentHashMap<String, byte[]>();
+
+    final CountDownLatch receivedAll = new CountDownLatch(senders * packetsPerSender);
+
+    bob.setBinaryXMPPExtensionReceiver(
+        (e) -> {
+          received.put(e.getTransferDescription().getElementName(), e.getPayload());
+          receivedAll.countDown();
+        });
+
+    alice.initialize();
+    bob.initialize();
+
+    final List<Thread> threads = new ArrayList<Thread>();
+    final AtomicReference<Exception> error = new AtomicReference<Exception>();
+
+    for (int i = 0; i < senders; i++) {
+      final int sender = i;
+
+      threads.add(
+          new Thread(
+              () -> {
+                try {
+                  for (int packet = 0; packet < packetsPerSender; packet++) {
+                    final TransferDescription description =
+                        TransferDescription.newDescription()
+                            .setNamespace("foo-namespace-" + sender % 8)
+                            .setElementName(sender + "-" + packet)
+                            .setPriority(
+                                Priority.values()[(sender + packet) % Priority.values().length]);
+
+                    alice.send(description, createPayload(sender, packet, maxPayloadSize));
+                  }
+                } catch (Exception e) {
+                  error.set(e);
+                }
+              }));
+    }
+
+    try {
+      for (final Thread thread : threads) thread.start();
+
+      for (final Thread thread : threads) thread.join(30000);
+
+      receivedAll.await(30000, TimeUnit.MILLISECONDS);
+    } finally {
+      alice.close();
+      bob.close();
+    }
+
+    assertNull("send failed", error.get());
+    assertEquals(senders * packetsPerSender, received.size());
+
+    for (int sender = 0; sender < senders; sender++) {
+      for (int packet = 0; packet < packetsPerSender; packet++) {
+        assertArrayEquals(
+            "payload " + sender + "-" + packet + " is corrupted",
+            createPayload(sender, packet, maxPayloadSize),
+            received.get(sender + "-" + packet));
+      }
+    }
+  }
+
+  private static SocketChannel[] openChannelPair() throws IOException {
+    try (final ServerSocketChannel server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+      final SocketChannel channel = SocketChannel.open(server.getLocalAddress());
+
+      return new SocketChannel[] {channel, server.accept()};
+    }
+  }
+
+  private static byte[] createPayload(final int sender, final int packet, final int maxSize) {
+    final byte[] payload = new byte[1 + (sender * 7919 + packet * 104729) % maxSize];
+
+    for (int i = 0; i < payload.length; i++) payload[i] = (byte) (i * 31 + sender + packet);
+
+    return payload;
+  }
+
   @Test
   @Ignore(
       "this test consumes much CPU resources and should only executed manually when making changes")
@@ -307,7 +645,7 @@ public class BinaryChannelConnectionTest {
 
     IDPool pool = new IDPool();
 
-    for (int i = 0; i < 32; i++) assertEquals(i, pool.nextID());
+    for (int i = 0; i < IDPool.MAX_ID; i++) assertEquals(i, pool.nextID());
 
     assertEquals(-1, pool.nextID());
 
@@ -318,4 +656,17 @@ public class BinaryChannelConnectionTest {
     assertEquals(31, pool.nextID());
     assertEquals(-1, pool.nextID());
   }
+
+  @Test
+  public void testIDPoolDoesNotReuseFreedIDsImmediately() {
+
+    IDPool pool = new IDPool();
+
+    assertEquals(0, pool.nextID());
+    assertEquals(1, pool.nextID());
+
+    pool.freeID(0);
+
+    assertEquals(2, pool.nextID());
+  }
 }
@@ -0,0 +1,95 @@
+package saros.net.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Inflater;
+import org.junit.Test;
+
+public class CompressionContextTest {
+
+  @Test
+  public void testDeflateAndInflate() throws Exception {
+    final CompressionContext context = CompressionContext.get();
+
+    for (final int size : new int[] {1, 1024, 100 * 1024}) {
+      final byte[] input = createInput(size);
+
+      final int length = context.deflate(input);
+
+      final byte[] compressed = Arrays.copyOf(context.getBuffer(), length);
+
+      context.releaseBuffer(false);
+
+      assertArrayEquals(input, inflate(context.getInflater(), compressed, size));
+    }
+  }
+
+  @Test
+  public void testIncompressibleInputGrowsBuffer() throws Exception {
+    final CompressionContext context = CompressionContext.get();
+
+    final byte[] input = new byte[256 * 1024];
+    new Random(42).nextBytes(input);
+
+    final int length = context.deflate(input);
+
+    assertArrayEquals(
+        input,
+        inflate(context.getInflater(), Arrays.copyOf(context.getBuffer(), length), input.length));
+
+    context.releaseBuffer(false);
+  }
+
+  @Test
+  public void testBufferIsReused() {
+    final CompressionContext context = CompressionContext.get();
+
+    context.deflate(createInput(1024));
+    final byte[] buffer = context.getBuffer();
+    context.releaseBuffer(false);
+
+    context.deflate(createInput(2048));
+    assertSame(buffer, context.getBuffer());
+    context.releaseBuffer(true);
+
+    assertNotSame(buffer, context.getBuffer());
+  }
+
+  @Test
+  public void testContextIsConfinedToThread() throws Exception {
+    final AtomicReference<CompressionContext> other = new AtomicReference<CompressionContext>();
+
+    final Thread thread = new Thread(() -> other.set(CompressionContext.get()));
+    thread.start();
+    thread.join();
+
+    assertSame(CompressionContext.get(), CompressionContext.get());
+    assertNotSame(CompressionContext.get(), other.get());
+  }
+
+  private static byte[] inflate(final Inflater inflater, final byte[] compressed, final int size)
+      throws Exception {
+    inflater.setInput(compressed);
+
+    final byte[] output = new byte[size];
+
+    int length = 0;
+
+    while (!inflater.finished()) length += inflater.inflate(output, length, size - length);
+
+    return output;
+  }
+
+  private static byte[] createInput(final int size) {
+    final byte[] input = new byte[size];
+
+    for (int i = 0; i < size; i++) input[i] = (byte) ('a' + (i * 7) % 13);
+
+    return input;
+  }
+}
@@ -0,0 +1,173 @@
+package saros.net.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.jivesoftware.smack.packet.Message;
+import org.jivesoftware.smack.packet.Packet;
+import org.junit.Test;
+import saros.net.stream.StreamMode;
+import saros.net.xmpp.JID;
+
+public class ExtensionDecoderTest {
+
+  private static final JID ALICE = new JID("alice@saros-con/Saros");
+
+  private static final JID BOB = new JID("bob@saros-con/Saros");
+
+  private final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+
+  private final CountDownLatch releaseSlowDecoding = new CountDownLatch(1);
+
+  private final CountDownLatch releaseBlockedConsumer = new CountDownLatch(1);
+
+  private final CountDownLatch delivered = new CountDownLatch(4);
+
+  @Test
+  public void testPacketsOfSenderAreDeliveredInOrder() throws Exception {
+    final ExtensionDecoder decoder = createDecoder(4);
+
+    decoder.submit(createExtension(ALICE, "slow"));
+    decoder.submit(createExtension(ALICE, "a2"));
+    decoder.submit(createExtension(BOB, "b1"));
+    decoder.submit(createExtension(ALICE, "a3"));
+
+    awaitReceived(Arrays.asList("b1"));
+
+    releaseSlowDecoding.countDown();
+
+    assertTrue(delivered.await(10, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("b1", "slow", "a2", "a3"), received);
+  }
+
+  @Test
+  public void testDroppedPacketDoesNotBlockSender() throws Exception {
+    final ExtensionDecoder decoder = createDecoder(2);
+
+    releaseSlowDecoding.countDown();
+
+    decoder.submit(createExtension(ALICE, "a1"));
+    decoder.submit(createExtension(ALICE, "drop"));
+    decoder.submit(createExtension(ALICE, "a2"));
+    decoder.submit(createExtension(BOB, "b1"));
+    decoder.submit(createExtension(ALICE, "a3"));
+
+    assertTrue(delivered.await(10, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("a1", "a2", "a3"), filter(ALICE));
+  }
+
+  @Test
+  public void testDecodingWithoutThreads() {
+    final ExtensionDecoder decoder = createDecoder(0);
+
+    releaseSlowDecoding.countDown();
+
+    decoder.submit(createExtension(ALICE, "a1"));
+    decoder.submit(createExtension(BOB, "b1"));
+
+    assertEquals(Arrays.asList("a1", "b1"), received);
+  }
+
+  @Test
+  public void testBlockedConsumerDoesNotBlockOtherSenders() throws Exception {
+    final ExtensionDecoder decoder = createDecoder(2);
+
+    releaseSlowDecoding.countDown();
+
+    decoder.submit(createExtension(ALICE, "a-blocking"));
+    decoder.submit(createExtension(ALICE, "a2"));
+    decoder.submit(createExtension(BOB, "b1"));
+    decoder.submit(createExtension(BOB, "b2"));
+
+    awaitReceived(Arrays.asList("b1", "b2"));
+
+    releaseBlockedConsumer.countDown();
+
+    assertTrue(delivered.await(10, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("a-blocking", "a2"), filter(ALICE));
+  }
+
+  @Test
+  public void testSubmittedExtensionsAreDecodedAfterShutdown() throws Exception {
+    final ExtensionDecoder decoder = createDecoder(2);
+
+    decoder.submit(createExtension(ALICE, "slow"));
+    decoder.submit(createExtension(ALICE, "a2"));
+
+    decoder.shutdown();
+
+    decoder.submit(createExtension(ALICE, "a3"));
+
+    releaseSlowDecoding.countDown();
+
+    awaitReceived(Arrays.asList("slow", "a2"));
+
+    Thread.sleep(100);
+
+    assertEquals(Arrays.asList("slow", "a2"), received);
+  }
+
+  private ExtensionDecoder createDecoder(final int threads) {
+    return new ExtensionDecoder(
+        (extension) -> {
+          final String name = extension.getTransferDescription().getElementName();
+
+          if (name.equals("drop")) return null;
+
+          if (name.equals("slow")) awaitQuietly(releaseSlowDecoding);
+
+          final Packet packet = new Message();
+          packet.setPacketID(name);
+          return packet;
+        },
+        (extension, packet) -> {
+          if (packet == null) return;
+
+          if (packet.getPacketID().equals("a-blocking")) awaitQuietly(releaseBlockedConsumer);
+
+          received.add(packet.getPacketID());
+          delivered.countDown();
+        },
+        threads);
+  }
+
+  private List<String> filter(final JID sender) {
+    final List<String> result = new ArrayList<String>();
+
+    synchronized (received) {
+      for (final String name : received)
+        if (name.charAt(0) == sender.getName().charAt(0)) result.add(name);
+    }
+
+    return result;
+  }
+
+  private void awaitReceived(final List<String> expected) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 10000;
+
+    while (!received.equals(expected) && System.currentTimeMillis() < deadline) Thread.sleep(10);
+
+    assertEquals(expected, received);
+  }
+
+  private static void awaitQuietly(final CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static BinaryXMPPExtension createExtension(final JID sender, final String name) {
+    return new BinaryXMPPExtension(
+        StreamMode.TCP,
+        TransferDescription.newDescription().setSender(sender).setElementName(name),
+        1);
+  }
+}
@@ -0,0 +1,156 @@
+package saros.net.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import saros.net.internal.FragmentScheduler.Fragment;
+import saros.net.internal.TransferDescription.Priority;
+
+public class FragmentSchedulerTest {
+
+  private static final int CHUNK_SIZE = 10;
+
+  private final FragmentScheduler scheduler = new FragmentScheduler(CHUNK_SIZE);
+
+  @Test
+  public void testSingleFragmentIsSplitIntoChunks() {
+    final Fragment fragment = new Fragment(Priority.NORMAL, 25);
+
+    scheduler.add(fragment);
+
+    assertSame(fragment, scheduler.next());
+    assertTrue(fragment.isFirstChunk());
+    assertEquals(0, fragment.getChunkOffset());
+    assertEquals(10, fragment.getChunkLength());
+
+    assertSame(fragment, scheduler.next());
+    assertFalse(fragment.isFirstChunk());
+    assertEquals(10, fragment.getChunkOffset());
+    assertEquals(10, fragment.getChunkLength());
+    assertFalse(fragment.isComplete());
+
+    assertSame(fragment, scheduler.next());
+    assertEquals(20, fragment.getChunkOffset());
+    assertEquals(5, fragment.getChunkLength());
+    assertTrue(fragment.isComplete());
+
+    assertTrue(scheduler.isEmpty());
+    assertNull(scheduler.next());
+  }
+
+  @Test
+  public void testFragmentsOfSamePriorityAreInterleaved() {
+    final Fragment large = new Fragment(Priority.BULK, 50);
+    final Fragment small = new Fragment(Priority.BULK, 5);
+
+    scheduler.add(large);
+    scheduler.add(small);
+
+    assertSame(large, scheduler.next());
+    assertSame(small, scheduler.next());
+    assertTrue(small.isComplete());
+
+    for (int i = 0; i < 4; i++) assertSame(large, scheduler.next());
+
+    assertTrue(large.isComplete());
+    assertTrue(scheduler.isEmpty());
+  }
+
+  @Test
+  public void testInteractiveFragmentIsNotDelayedByBulkData() {
+    final Fragment bulk = new Fragment(Priority.BULK, 1000 * CHUNK_SIZE);
+    final Fragment normal = new Fragment(Priority.NORMAL, 1000 * CHUNK_SIZE);
+
+    scheduler.add(bulk);
+    scheduler.add(normal);
+
+    for (int i = 0; i < 100; i++) scheduler.next();
+
+    final Fragment interactive = new Fragment(Priority.INTERACTIVE, 3 * CHUNK_SIZE);
+
+    scheduler.add(interactive);
+
+    int chunks = 0;
+
+    while (!interactive.isComplete()) {
+      scheduler.next();
+      chunks++;
+    }
+
+    // at most one round of the normal and bulk lanes plus the interactive chunks themselves
+    assertTrue("interactive fragment was delayed by " + chunks + " chunks", chunks <= 2 + 1 + 3);
+  }
+
+  @Test
+  public void testLanesAreServedByWeight() {
+    final Fragment bulk = new Fragment(Priority.BULK, 1000 * CHUNK_SIZE);
+    final Fragment normal = new Fragment(Priority.NORMAL, 1000 * CHUNK_SIZE);
+    final Fragment interactive = new Fragment(Priority.INTERACTIVE, 1000 * CHUNK_SIZE);
+
+    scheduler.add(bulk);
+    scheduler.add(normal);
+    scheduler.add(interactive);
+
+    int bulkChunks = 0;
+    int normalChunks = 0;
+    int interactiveChunks = 0;
+
+    for (int i = 0; i < 11 * 20; i++) {
+      final Fragment fragment = scheduler.next();
+
+      if (fragment == bulk) bulkChunks++;
+      else if (fragment == normal) normalChunks++;
+      else interactiveChunks++;
+    }
+
+    assertEquals(20, bulkChunks);
+    assertEquals(40, normalChunks);
+    assertEquals(160, interactiveChunks);
+  }
+
+  @Test
+  public void testEveryFragmentIsCompleted() {
+    final List<Fragment> fragments = new ArrayList<Fragment>();
+
+    int expectedChunks = 0;
+
+    for (int i = 1; i <= 30; i++) {
+      final Fragment fragment = new Fragment(Priority.values()[i % 3], i * 7);
+      fragments.add(fragment);
+      scheduler.add(fragment);
+      expectedChunks += (i * 7 - 1) / CHUNK_SIZE + 1;
+    }
+
+    int chunks = 0;
+
+    while (scheduler.next() != null) chunks++;
+
+    assertEquals(expectedChunks, chunks);
+
+    for (final Fragment fragment : fragments) assertTrue(fragment.isComplete());
+  }
+
+  @Test
+  public void testClear() {
+    final Fragment a = new Fragment(Priority.NORMAL, 30);
+    final Fragment b = new Fragment(Priority.BULK, 30);
+
+    scheduler.add(a);
+    scheduler.add(b);
+    scheduler.next();
+
+    final List<Fragment> cleared = scheduler.clear();
+
+    assertEquals(2, cleared.size());
+    assertTrue(cleared.contains(a));
+    assertTrue(cleared.contains(b));
+    assertTrue(scheduler.isEmpty());
+    assertNull(scheduler.next());
+  }
+}
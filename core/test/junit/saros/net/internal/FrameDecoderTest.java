@@ -0,0 +1,118 @@
+package saros.net.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import saros.net.internal.BinaryChannelConnection.Opcode;
+import saros.net.stream.StreamMode;
+import saros.net.xmpp.JID;
+
+public class FrameDecoderTest {
+
+  private static final int CHUNK_SIZE = 16;
+
+  private final FrameDecoder decoder =
+      new FrameDecoder(
+          new JID("alice@baumeister.de"), new JID("bob@baumeister.de"), StreamMode.TCP, CHUNK_SIZE);
+
+  @Test
+  public void testDecodeByteByByte() throws Exception {
+    final byte[] payload = new byte[40];
+
+    for (int i = 0; i < payload.length; i++) payload[i] = (byte) i;
+
+    final byte[] frames = createFrames(payload);
+
+    final ByteBuffer buffer = ByteBuffer.allocate(FrameDecoder.MAX_FRAME_SIZE);
+
+    BinaryXMPPExtension extension = null;
+
+    for (int i = 0; i < frames.length; i++) {
+      buffer.put(frames[i]);
+      buffer.flip();
+
+      extension = decoder.decode(buffer);
+
+      buffer.compact();
+
+      if (i < frames.length - 1) assertNull("extension completed too early", extension);
+    }
+
+    assertNotNull(extension);
+    assertEquals(0, buffer.position());
+    assertEquals("foo-namespace", extension.getTransferDescription().getNamespace());
+    assertEquals("bar", extension.getTransferDescription().getElementName());
+    assertArrayEquals(payload, extension.getPayload());
+  }
+
+  @Test
+  public void testDecodeAtOnce() throws Exception {
+    final byte[] payload = new byte[] {1, 2, 3};
+
+    final ByteBuffer buffer = ByteBuffer.wrap(createFrames(payload));
+
+    final BinaryXMPPExtension extension = decoder.decode(buffer);
+
+    assertNotNull(extension);
+    assertArrayEquals(payload, extension.getPayload());
+    assertEquals(0, buffer.remaining());
+  }
+
+  @Test(expected = ProtocolException.class)
+  public void testUnknownOpcode() throws Exception {
+    decoder.decode(ByteBuffer.wrap(new byte[] {0x01}));
+  }
+
+  @Test(expected = ProtocolException.class)
+  public void testCorruptedPayloadLength() throws Exception {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+
+    out.write(Opcode.DATA);
+    out.writeShort(0);
+    out.writeInt(CHUNK_SIZE + 1);
+
+    decoder.decode(ByteBuffer.wrap(bytes.toByteArray()));
+  }
+
+  private static byte[] createFrames(final byte[] payload) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+
+    out.write(Opcode.NAMESPACE_UPDATE);
+    out.write(3);
+    out.writeUTF("foo-namespace");
+
+    out.write(Opcode.ELEMENT_NAME_UPDATE);
+    out.writeShort(7);
+    out.writeUTF("bar");
+
+    final int chunks = (payload.length - 1) / CHUNK_SIZE + 1;
+
+    out.write(Opcode.TRANSFERDESCRIPTION);
+    out.writeShort(5);
+    out.writeInt(chunks);
+    out.write(3);
+    out.writeShort(7);
+    out.write(0);
+
+    for (int offset = 0; offset < payload.length; offset += CHUNK_SIZE) {
+      final int length = Math.min(CHUNK_SIZE, payload.length - offset);
+
+      out.write(Opcode.DATA);
+      out.writeShort(5);
+      out.writeInt(length);
+      out.write(payload, offset, length);
+    }
+
+    return bytes.toByteArray();
+  }
+}
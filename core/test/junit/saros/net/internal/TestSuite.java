@@ -6,8 +6,12 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
   BinaryChannelConnectionTest.class,
+  CompressionContextTest.class,
   ConnectionPoolTest.class,
-  DataTransferManagerTest.class
+  DataTransferManagerTest.class,
+  ExtensionDecoderTest.class,
+  FrameDecoderTest.class,
+  FragmentSchedulerTest.class
 })
 public class TestSuite {
   // the class remains completely empty,
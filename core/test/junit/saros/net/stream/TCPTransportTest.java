@@ -0,0 +1,290 @@
+package saros.net.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.easymock.EasyMock;
+import org.jivesoftware.smack.Connection;
+import org.jivesoftware.smackx.ServiceDiscoveryManager;
+import org.jivesoftware.smackx.packet.DataForm;
+import org.jivesoftware.smackx.packet.DiscoverInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import saros.net.internal.IByteStreamConnection;
+import saros.net.internal.IByteStreamConnectionListener;
+import saros.net.stream.TCPTransport.PeerInfo;
+import saros.net.xmpp.JID;
+
+public class TCPTransportTest {
+
+  private static class ConnectionListener implements IByteStreamConnectionListener {
+
+    private final CountDownLatch changed = new CountDownLatch(1);
+    private final AtomicReference<IByteStreamConnection> connection =
+        new AtomicReference<IByteStreamConnection>();
+    private volatile boolean incoming;
+
+    @Override
+    public void connectionClosed(String connectionIdentifier, IByteStreamConnection connection) {
+      // NOP
+    }
+
+    @Override
+    public void connectionChanged(
+        String connectionIdentifier, IByteStreamConnection connection, boolean incomingRequest) {
+      this.connection.set(connection);
+      incoming = incomingRequest;
+      connection.initialize();
+      changed.countDown();
+    }
+  }
+
+  private final JID aliceJID = new JID("alice@baumeister.de/Saros");
+
+  private final JID bobJID = new JID("bob@baumeister.de/Saros");
+
+  private final TCPTransport aliceTransport = new TCPTransport();
+
+  private final TCPTransport bobTransport = new TCPTransport();
+
+  private final ConnectionListener aliceListener = new ConnectionListener();
+
+  private final ConnectionListener bobListener = new ConnectionListener();
+
+  private Connection aliceConnection;
+
+  private Connection bobConnection;
+
+  @Before
+  public void setUp() {
+    aliceConnection = createConnection(aliceJID);
+    bobConnection = createConnection(bobJID);
+
+    aliceTransport.initialize(aliceConnection, aliceListener);
+    bobTransport.initialize(bobConnection, bobListener);
+  }
+
+  @After
+  public void tearDown() {
+    aliceTransport.uninitialize();
+    bobTransport.uninitialize();
+  }
+
+  @Test
+  public void testFormRoundTrip() {
+    final DataForm form = TCPTransport.createForm(4711);
+
+    final PeerInfo info = TCPTransport.parseForm(createDiscoverInfo(form));
+
+    assertNotNull(info);
+    assertEquals(4711, info.port);
+    assertTrue(info.addresses.contains(InetAddress.getLoopbackAddress()));
+  }
+
+  @Test
+  public void testParseFormWithoutTransportInformation() {
+    assertNull(TCPTransport.parseForm(new DiscoverInfo()));
+    assertNull(TCPTransport.parseForm(createDiscoverInfo(new DataForm("result"))));
+  }
+
+  @Test
+  public void testConnectViaLoopback() throws Exception {
+    final PeerInfo bobInfo = getPeerInfo(bobConnection);
+    final byte[] nonce = bobTransport.issueNonce(aliceJID, "junit");
+
+    final IByteStreamConnection aliceToBob =
+        aliceTransport.connect("junit", bobJID, bobInfo, nonce);
+
+    try {
+      aliceToBob.initialize();
+
+      assertTrue(
+          "bob did not announce the connection",
+          bobListener.changed.await(10000, TimeUnit.MILLISECONDS));
+
+      final IByteStreamConnection bobToAlice = bobListener.connection.get();
+
+      assertTrue(bobListener.incoming);
+      assertEquals("junit", bobToAlice.getConnectionID());
+      assertEquals(aliceJID, bobToAlice.getRemoteAddress());
+      assertEquals(StreamMode.TCP, aliceToBob.getMode());
+
+      assertTrue(aliceToBob.isConnected());
+      assertTrue(bobToAlice.isConnected());
+    } finally {
+      aliceToBob.close();
+    }
+  }
+
+  @Test
+  public void testConnectWithWrongNonce() throws Exception {
+    final PeerInfo bobInfo = getPeerInfo(bobConnection);
+    final byte[] nonce = bobTransport.issueNonce(aliceJID, "junit").clone();
+
+    nonce[0]++;
+
+    assertRejected(bobInfo, nonce);
+  }
+
+  @Test
+  public void testConnectWithNonceOfOtherPeer() throws Exception {
+    final PeerInfo bobInfo = getPeerInfo(bobConnection);
+
+    // carol got a nonce from bob and tries to connect as alice
+    final byte[] nonce = bobTransport.issueNonce(new JID("carol@baumeister.de/Saros"), "junit");
+
+    assertRejected(bobInfo, nonce);
+  }
+
+  @Test
+  public void testConnectWithNonceOfOtherConnection() throws Exception {
+    final PeerInfo bobInfo = getPeerInfo(bobConnection);
+    final byte[] nonce = bobTransport.issueNonce(aliceJID, "other");
+
+    assertRejected(bobInfo, nonce);
+  }
+
+  @Test
+  public void testNonceCanOnlyBeUsedOnce() throws Exception {
+    final PeerInfo bobInfo = getPeerInfo(bobConnection);
+    final byte[] nonce = bobTransport.issueNonce(aliceJID, "junit");
+
+    aliceTransport.connect("junit", bobJID, bobInfo, nonce).close();
+
+    try {
+      aliceTransport.connect("junit", bobJID, bobInfo, nonce);
+      fail("connection with a used nonce was established");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testExpiredNonceIsRejected() throws Exception {
+    final PeerInfo bobInfo = getPeerInfo(bobConnection);
+    final byte[] nonce = bobTransport.issueNonce(aliceJID, "junit", 0);
+
+    Thread.sleep(10);
+
+    assertRejected(bobInfo, nonce);
+  }
+
+  @Test
+  public void testOldestNonceOfPeerIsDropped() throws Exception {
+    final PeerInfo bobInfo = getPeerInfo(bobConnection);
+    final byte[] oldest = bobTransport.issueNonce(aliceJID, "junit");
+
+    for (int i = 0; i < TCPTransport.MAX_NONCES_PER_PEER; i++)
+      bobTransport.issueNonce(aliceJID, "junit-" + i);
+
+    // nonces of other peers do not count
+    bobTransport.issueNonce(new JID("carol@baumeister.de/Saros"), "junit");
+
+    assertRejected(bobInfo, oldest);
+
+    final byte[] newest = bobTransport.issueNonce(aliceJID, "junit");
+
+    aliceTransport.connect("junit", bobJID, bobInfo, newest).close();
+  }
+
+  @Test(timeout = 30000)
+  public void testPendingHandshakesAreLimitedAndTimedOut() throws Exception {
+    final PeerInfo bobInfo = getPeerInfo(bobConnection);
+    final List<Socket> pending = new ArrayList<Socket>();
+
+    try {
+      for (int i = 0; i < TCPTransport.MAX_PENDING_HANDSHAKES; i++) {
+        final Socket socket = new Socket(InetAddress.getLoopbackAddress(), bobInfo.port);
+        socket.setSoTimeout(TCPTransport.CONNECT_TIMEOUT * 3);
+        pending.add(socket);
+      }
+
+      // wait until bob accepted all of them
+      Thread.sleep(500);
+
+      try (final Socket rejected = new Socket(InetAddress.getLoopbackAddress(), bobInfo.port)) {
+        rejected.setSoTimeout(TCPTransport.CONNECT_TIMEOUT / 2);
+
+        assertEquals(
+            "connection exceeding the pending handshakes was not closed",
+            -1,
+            rejected.getInputStream().read());
+      }
+
+      // the peers never send the handshake, so bob closes the connections after the timeout
+      for (final Socket socket : pending) assertEquals(-1, socket.getInputStream().read());
+
+    } finally {
+      for (final Socket socket : pending) socket.close();
+    }
+
+    final byte[] nonce = bobTransport.issueNonce(aliceJID, "junit");
+
+    aliceTransport.connect("junit", bobJID, bobInfo, nonce).close();
+  }
+
+  @Test
+  public void testConnectWithUnreachableCandidates() throws Exception {
+    final PeerInfo bobInfo = getPeerInfo(bobConnection);
+    final byte[] nonce = bobTransport.issueNonce(aliceJID, "junit");
+
+    // nobody listens on this port of the test network address, only the loopback one works
+    final PeerInfo info =
+        new PeerInfo(
+            Arrays.asList(InetAddress.getByName("192.0.2.1"), InetAddress.getLoopbackAddress()),
+            bobInfo.port);
+
+    final IByteStreamConnection connection = aliceTransport.connect("junit", bobJID, info, nonce);
+
+    connection.close();
+  }
+
+  private void assertRejected(final PeerInfo bobInfo, final byte[] nonce)
+      throws InterruptedException {
+    try {
+      aliceTransport.connect("junit", bobJID, bobInfo, nonce);
+      fail("connection without a valid nonce was established");
+    } catch (IOException e) {
+      // expected
+    }
+
+    assertEquals(1, bobListener.changed.getCount());
+  }
+
+  private static PeerInfo getPeerInfo(final Connection connection) {
+    final PeerInfo info =
+        TCPTransport.parseForm(
+            createDiscoverInfo(
+                ServiceDiscoveryManager.getInstanceFor(connection).getExtendedInfo()));
+
+    assertNotNull("transport information is not advertised", info);
+
+    return info;
+  }
+
+  private static DiscoverInfo createDiscoverInfo(final DataForm form) {
+    final DiscoverInfo info = new DiscoverInfo();
+    info.addExtension(form);
+    return info;
+  }
+
+  private static Connection createConnection(final JID jid) {
+    final Connection connection = EasyMock.createNiceMock(Connection.class);
+    EasyMock.expect(connection.getUser()).andStubReturn(jid.toString());
+    EasyMock.replay(connection);
+    return connection;
+  }
+}
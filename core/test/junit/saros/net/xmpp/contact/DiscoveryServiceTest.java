@@ -0,0 +1,243 @@
+package saros.net.xmpp.contact;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.jivesoftware.smack.XMPPException;
+import org.jivesoftware.smackx.ServiceDiscoveryManager;
+import org.jivesoftware.smackx.entitycaps.EntityCapsManager;
+import org.jivesoftware.smackx.entitycaps.packet.CapsExtension;
+import org.jivesoftware.smackx.packet.DiscoverInfo;
+import org.junit.After;
+import org.junit.Test;
+import saros.net.ResourceFeature;
+import saros.net.xmpp.JID;
+
+public class DiscoveryServiceTest {
+
+  private static final JID ALICE = new JID("alice@saros-con/Saros");
+
+  private static final JID BOB = new JID("bob@saros-con/Saros");
+
+  private static final JID CARL = new JID("carl@saros-con/Saros");
+
+  private final DiscoveryService discoveryService = new DiscoveryService();
+
+  private final BlockingQueue<EnumSet<ResourceFeature>> results = new LinkedBlockingQueue<>();
+
+  private final Consumer<EnumSet<ResourceFeature>> callback = results::add;
+
+  private final CountDownLatch releaseQuery = new CountDownLatch(1);
+
+  private final CountDownLatch queryStarted = new CountDownLatch(1);
+
+  @After
+  public void tearDown() {
+    discoveryService.stop();
+  }
+
+  @Test
+  public void testQueriesForSameVersionAreCoalesced() throws Exception {
+    final DiscoverInfo info = createDiscoverInfo(ResourceFeature.SAROS.getIdentifier());
+    final CapsExtension caps = createCaps(info);
+
+    final ServiceDiscoveryManager discoveryManager = createMock(ServiceDiscoveryManager.class);
+
+    expect(discoveryManager.discoverInfo(ALICE.getRAW(), getNodeVer(caps)))
+        .andAnswer(() -> blockQuery(info))
+        .once();
+
+    replay(discoveryManager);
+
+    discoveryService.discoveryManagerChanged(discoveryManager);
+
+    discoveryService.queryFeatureSupport(ALICE, caps, callback);
+    assertTrue(queryStarted.await(10, TimeUnit.SECONDS));
+
+    discoveryService.queryFeatureSupport(BOB, caps, callback);
+
+    releaseQuery.countDown();
+
+    assertEquals(EnumSet.of(ResourceFeature.SAROS), poll());
+    assertEquals(EnumSet.of(ResourceFeature.SAROS), poll());
+
+    // resolved from the caps cache without another query
+    discoveryService.queryFeatureSupport(CARL, caps, callback);
+    assertEquals(EnumSet.of(ResourceFeature.SAROS), results.poll());
+
+    verify(discoveryManager);
+  }
+
+  @Test
+  public void testUnverifiedDiscoverInfoIsNotCachedByVersion() throws Exception {
+    final DiscoverInfo info = createDiscoverInfo(ResourceFeature.SAROS.getIdentifier());
+    final CapsExtension caps = createCaps(createDiscoverInfo("unverified"));
+
+    final ServiceDiscoveryManager discoveryManager = createMock(ServiceDiscoveryManager.class);
+
+    expect(discoveryManager.discoverInfo(eq(ALICE.getRAW()), eq(getNodeVer(caps)))).andReturn(info);
+
+    replay(discoveryManager);
+
+    discoveryService.discoveryManagerChanged(discoveryManager);
+    discoveryService.queryFeatureSupport(ALICE, caps, callback);
+
+    assertEquals(EnumSet.of(ResourceFeature.SAROS), poll());
+    assertNull(EntityCapsManager.getDiscoveryInfoByNodeVer(getNodeVer(caps)));
+
+    verify(discoveryManager);
+  }
+
+  @Test
+  public void testVerifiedDiscoverInfoIsCachedByVersion() throws Exception {
+    final DiscoverInfo info = createDiscoverInfo(ResourceFeature.SAROS_SERVER.getIdentifier());
+    final CapsExtension caps = createCaps(info);
+
+    final ServiceDiscoveryManager discoveryManager = createMock(ServiceDiscoveryManager.class);
+
+    expect(discoveryManager.discoverInfo(ALICE.getRAW(), getNodeVer(caps))).andReturn(info);
+
+    replay(discoveryManager);
+
+    discoveryService.discoveryManagerChanged(discoveryManager);
+    discoveryService.queryFeatureSupport(ALICE, caps, callback);
+
+    assertEquals(EnumSet.of(ResourceFeature.SAROS_SERVER), poll());
+    assertNotNull(EntityCapsManager.getDiscoveryInfoByNodeVer(getNodeVer(caps)));
+
+    verify(discoveryManager);
+  }
+
+  @Test
+  public void testFailedQueryIsNotCached() throws Exception {
+    final ServiceDiscoveryManager discoveryManager = createMock(ServiceDiscoveryManager.class);
+
+    expect(discoveryManager.discoverInfo(ALICE.getRAW()))
+        .andThrow(new XMPPException("timeout"))
+        .andReturn(createDiscoverInfo(ResourceFeature.SAROS.getIdentifier()));
+
+    replay(discoveryManager);
+
+    discoveryService.discoveryManagerChanged(discoveryManager);
+
+    discoveryService.queryFeatureSupport(ALICE, null, callback);
+    assertEquals(EnumSet.noneOf(ResourceFeature.class), poll());
+
+    discoveryService.queryFeatureSupport(ALICE, null, callback);
+    assertEquals(EnumSet.of(ResourceFeature.SAROS), poll());
+
+    // the successful result is cached
+    discoveryService.queryFeatureSupport(ALICE, null, callback);
+    assertEquals(EnumSet.of(ResourceFeature.SAROS), results.poll());
+
+    verify(discoveryManager);
+  }
+
+  @Test
+  public void testPendingQueriesAreDroppedOnConnectionChange() throws Exception {
+    final ServiceDiscoveryManager discoveryManager = createMock(ServiceDiscoveryManager.class);
+
+    expect(discoveryManager.discoverInfo(ALICE.getRAW()))
+        .andAnswer(() -> blockQuery(createDiscoverInfo(ResourceFeature.SAROS.getIdentifier())));
+
+    replay(discoveryManager);
+
+    final ServiceDiscoveryManager newDiscoveryManager = createMock(ServiceDiscoveryManager.class);
+
+    expect(newDiscoveryManager.discoverInfo(ALICE.getRAW()))
+        .andReturn(createDiscoverInfo(ResourceFeature.SAROS_SERVER.getIdentifier()));
+
+    replay(newDiscoveryManager);
+
+    discoveryService.discoveryManagerChanged(discoveryManager);
+    discoveryService.queryFeatureSupport(ALICE, null, callback);
+
+    assertTrue(queryStarted.await(10, TimeUnit.SECONDS));
+
+    discoveryService.discoveryManagerChanged(newDiscoveryManager);
+
+    releaseQuery.countDown();
+
+    // the result of the dropped query is neither passed on nor cached
+    assertNull(results.poll(500, TimeUnit.MILLISECONDS));
+
+    discoveryService.queryFeatureSupport(ALICE, null, callback);
+    assertEquals(EnumSet.of(ResourceFeature.SAROS_SERVER), poll());
+
+    verify(discoveryManager, newDiscoveryManager);
+  }
+
+  @Test
+  public void testWithoutConnectionNoFeaturesAreReported() {
+    discoveryService.queryFeatureSupport(ALICE, null, callback);
+    assertEquals(EnumSet.noneOf(ResourceFeature.class), results.poll());
+  }
+
+  private DiscoverInfo blockQuery(final DiscoverInfo result) throws InterruptedException {
+    queryStarted.countDown();
+    releaseQuery.await();
+    return result;
+  }
+
+  private EnumSet<ResourceFeature> poll() throws InterruptedException {
+    final EnumSet<ResourceFeature> result = results.poll(10, TimeUnit.SECONDS);
+    assertNotNull("no result received", result);
+    return result;
+  }
+
+  private static DiscoverInfo createDiscoverInfo(final String... features) {
+    final DiscoverInfo info = new DiscoverInfo();
+
+    for (final String feature : features) info.addFeature(feature);
+
+    return info;
+  }
+
+  /**
+   * Creates the capabilities of a client with the given features, see XEP-0115. Every call uses
+   * another node, as verified discovery information is cached by Smack for the whole process.
+   */
+  private static CapsExtension createCaps(final DiscoverInfo info) throws Exception {
+    final List<String> features = new ArrayList<>();
+
+    info.getFeatures().forEachRemaining((feature) -> features.add(feature.getVar()));
+
+    Collections.sort(features);
+
+    final StringBuilder verification = new StringBuilder();
+
+    for (final String feature : features) verification.append(feature).append('<');
+
+    final byte[] digest =
+        MessageDigest.getInstance("SHA-1")
+            .digest(verification.toString().getBytes(StandardCharsets.UTF_8));
+
+    final String node = "https://www.saros-project.org/" + UUID.randomUUID();
+
+    return new CapsExtension(node, Base64.getEncoder().encodeToString(digest), "sha-1");
+  }
+
+  private static String getNodeVer(final CapsExtension caps) {
+    return caps.getNode() + "#" + caps.getVer();
+  }
+}
@@ -0,0 +1,208 @@
+package saros.net.xmpp.contact;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.easymock.Capture;
+import org.jivesoftware.smack.Connection;
+import org.jivesoftware.smack.PacketCollector;
+import org.jivesoftware.smack.Roster;
+import org.jivesoftware.smack.RosterEntry;
+import org.jivesoftware.smack.RosterListener;
+import org.jivesoftware.smack.filter.PacketFilter;
+import org.jivesoftware.smack.packet.Presence;
+import org.jivesoftware.smack.packet.RosterPacket.ItemType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import saros.net.ConnectionState;
+import saros.net.xmpp.IConnectionListener;
+import saros.net.xmpp.XMPPConnectionService;
+import saros.net.xmpp.contact.IContactsUpdate.UpdateType;
+import saros.net.xmpp.subscription.SubscriptionHandler;
+
+public class XMPPContactsServiceTest {
+
+  private static final String ALICE = "alice@saros-con";
+
+  private static final String BOB = "bob@saros-con";
+
+  /** The received notifications, batches and single updates without a contact. */
+  private final BlockingQueue<Object> notifications = new LinkedBlockingQueue<>();
+
+  private final Capture<IConnectionListener> connectionListener = Capture.newInstance();
+
+  private final Capture<RosterListener> rosterListener = Capture.newInstance();
+
+  private Connection connection;
+
+  private XMPPContactsService contactsService;
+
+  @Before
+  public void setUp() throws Exception {
+    final Roster roster = createNiceMock(Roster.class);
+
+    expect(roster.getUnfiledEntries()).andStubReturn(Collections.emptyList());
+    expect(roster.getGroups()).andStubReturn(Collections.emptyList());
+    expect(roster.getEntry(ALICE)).andStubReturn(createEntry(ALICE, "Alice"));
+    expect(roster.getEntry(BOB)).andStubReturn(createEntry(BOB, null));
+
+    roster.addRosterListener(capture(rosterListener));
+    expectLastCall().anyTimes();
+
+    // feature discoveries get no response
+    final PacketCollector collector = createNiceMock(PacketCollector.class);
+
+    connection = createNiceMock(Connection.class);
+    expect(connection.getRoster()).andStubReturn(roster);
+    expect(connection.createPacketCollector(anyObject(PacketFilter.class)))
+        .andStubReturn(collector);
+
+    final XMPPConnectionService connectionService = createNiceMock(XMPPConnectionService.class);
+    connectionService.addListener(capture(connectionListener));
+
+    final SubscriptionHandler subscriptionHandler = createNiceMock(SubscriptionHandler.class);
+
+    replay(collector, roster, connection, connectionService, subscriptionHandler);
+
+    contactsService = new XMPPContactsService(connectionService, subscriptionHandler);
+
+    contactsService.addListener(
+        new IContactsUpdate() {
+          @Override
+          public void update(Optional<XMPPContact> contact, UpdateType updateType) {
+            notifications.add(updateType);
+          }
+
+          @Override
+          public void updateAll(Map<XMPPContact, List<UpdateType>> updates) {
+            notifications.add(updates);
+          }
+        });
+
+    changeConnectionState(ConnectionState.CONNECTING);
+    changeConnectionState(ConnectionState.CONNECTED);
+
+    assertEquals(UpdateType.CONNECTED, poll());
+  }
+
+  @After
+  public void tearDown() {
+    contactsService.dispose();
+  }
+
+  @Test
+  public void testUpdatesAreMergedInOrderOfOccurrence() throws Exception {
+    rosterListener.getValue().entriesAdded(Arrays.asList(ALICE, BOB));
+    rosterListener.getValue().presenceChanged(createPresence(ALICE));
+    rosterListener.getValue().entriesUpdated(Arrays.asList(ALICE));
+
+    final Map<XMPPContact, List<UpdateType>> updates = pollUpdates();
+
+    assertEquals(Arrays.asList(ALICE, BOB), getJids(updates));
+
+    final XMPPContact alice = contactsService.getContact(ALICE).get();
+
+    assertEquals(
+        Arrays.asList(UpdateType.ADDED, UpdateType.STATUS, UpdateType.NICKNAME_CHANGED),
+        updates.get(alice));
+
+    assertEquals(
+        Arrays.asList(UpdateType.ADDED), updates.get(contactsService.getContact(BOB).get()));
+
+    assertNull(
+        "updates were delivered more than once", notifications.poll(300, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testRemovedAndAddedContactIsDeliveredAsAdded() throws Exception {
+    rosterListener.getValue().entriesAdded(Arrays.asList(ALICE));
+    rosterListener.getValue().entriesDeleted(Arrays.asList(ALICE));
+    rosterListener.getValue().entriesAdded(Arrays.asList(ALICE));
+
+    final Map<XMPPContact, List<UpdateType>> updates = pollUpdates();
+
+    assertEquals(1, updates.size());
+
+    final XMPPContact delivered = updates.keySet().iterator().next();
+    final XMPPContact current = contactsService.getContact(ALICE).get();
+
+    assertEquals(Arrays.asList(UpdateType.REMOVED, UpdateType.ADDED), updates.get(delivered));
+    assertSame(current, delivered);
+  }
+
+  @Test
+  public void testPendingUpdatesAreDeliveredImmediatelyOnConnectionUpdate() throws Exception {
+    rosterListener.getValue().entriesAdded(Arrays.asList(ALICE));
+
+    changeConnectionState(ConnectionState.CONNECTED);
+
+    // delivered before the connection update instead of at the end of the update window
+    assertEquals(Arrays.asList(ALICE), getJids(pollUpdates()));
+    assertEquals(UpdateType.CONNECTED, poll());
+  }
+
+  private void changeConnectionState(final ConnectionState state) {
+    connectionListener.getValue().connectionStateChanged(connection, state);
+  }
+
+  /**
+   * Creates a roster entry that has no nickname when the contact is created and the given nickname
+   * afterwards.
+   */
+  private static RosterEntry createEntry(final String jid, final String nickname) {
+    final RosterEntry entry = createNiceMock(RosterEntry.class);
+
+    expect(entry.getUser()).andStubReturn(jid);
+    expect(entry.getType()).andStubReturn(ItemType.both);
+    expect(entry.getGroups()).andStubReturn(Collections.emptyList());
+    expect(entry.getName()).andReturn(null).once();
+    expect(entry.getName()).andStubReturn(nickname);
+
+    replay(entry);
+
+    return entry;
+  }
+
+  private static Presence createPresence(final String jid) {
+    final Presence presence = new Presence(Presence.Type.available);
+    presence.setFrom(jid + "/Saros");
+    return presence;
+  }
+
+  private Object poll() throws InterruptedException {
+    final Object notification = notifications.poll(10, TimeUnit.SECONDS);
+    assertNotNull("no notification received", notification);
+    return notification;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<XMPPContact, List<UpdateType>> pollUpdates() throws InterruptedException {
+    return (Map<XMPPContact, List<UpdateType>>) poll();
+  }
+
+  private static List<String> getJids(final Map<XMPPContact, List<UpdateType>> updates) {
+    return Arrays.asList(
+        updates
+            .keySet()
+            .stream()
+            .map(contact -> contact.getBareJid().getRAW())
+            .toArray(String[]::new));
+  }
+}
@@ -19,6 +19,7 @@ import org.junit.Before;
 import org.junit.Test;
 import saros.activities.IActivity;
 import saros.activities.NOPActivity;
+import saros.communication.extensions.ActivitiesExtension;
 import saros.net.IReceiver;
 import saros.net.ITransmitter;
 import saros.net.xmpp.JID;
@@ -96,7 +97,8 @@ public class ActivitySequencerTest {
   @Test(timeout = 30000)
   public void testStartAndStop() {
     ActivitySequencer sequencer =
-        new ActivitySequencer(sessionStubAlice, aliceTransmitter, aliceReceiver, null);
+        new ActivitySequencer(
+            sessionStubAlice, aliceTransmitter, aliceReceiver, ActivitiesExtension.PROVIDER, null);
 
     sequencer.start();
     sequencer.stop();
@@ -105,7 +107,8 @@ public class ActivitySequencerTest {
   @Test(timeout = 30000, expected = IllegalStateException.class)
   public void testMultipleStarts() {
     ActivitySequencer sequencer =
-        new ActivitySequencer(sessionStubAlice, aliceTransmitter, aliceReceiver, null);
+        new ActivitySequencer(
+            sessionStubAlice, aliceTransmitter, aliceReceiver, ActivitiesExtension.PROVIDER, null);
 
     for (int i = 0; i < Integer.MAX_VALUE; i++) sequencer.start();
   }
@@ -113,7 +116,8 @@ public class ActivitySequencerTest {
   @Test(timeout = 30000, expected = IllegalStateException.class)
   public void testStopWithoutStart() {
     ActivitySequencer sequencer =
-        new ActivitySequencer(sessionStubAlice, aliceTransmitter, aliceReceiver, null);
+        new ActivitySequencer(
+            sessionStubAlice, aliceTransmitter, aliceReceiver, ActivitiesExtension.PROVIDER, null);
 
     sequencer.stop();
   }
@@ -121,7 +125,8 @@ public class ActivitySequencerTest {
   @Test(timeout = 30000)
   public void testMultipleStops() {
     ActivitySequencer sequencer =
-        new ActivitySequencer(sessionStubAlice, aliceTransmitter, aliceReceiver, null);
+        new ActivitySequencer(
+            sessionStubAlice, aliceTransmitter, aliceReceiver, ActivitiesExtension.PROVIDER, null);
 
     sequencer.start();
     try {
@@ -152,7 +157,8 @@ public class ActivitySequencerTest {
     EasyMock.replay(brokenTransmitter);
 
     aliceSequencer =
-        new ActivitySequencer(sessionStubAlice, brokenTransmitter, aliceReceiver, null);
+        new ActivitySequencer(
+            sessionStubAlice, brokenTransmitter, aliceReceiver, ActivitiesExtension.PROVIDER, null);
 
     aliceSequencer.start();
 
@@ -174,9 +180,13 @@ public class ActivitySequencerTest {
 
     int activityCount = 1000;
 
-    aliceSequencer = new ActivitySequencer(sessionStubAlice, aliceTransmitter, aliceReceiver, null);
+    aliceSequencer =
+        new ActivitySequencer(
+            sessionStubAlice, aliceTransmitter, aliceReceiver, ActivitiesExtension.PROVIDER, null);
 
-    bobSequencer = new ActivitySequencer(sessionStubBob, bobTransmitter, bobReceiver, null);
+    bobSequencer =
+        new ActivitySequencer(
+            sessionStubBob, bobTransmitter, bobReceiver, ActivitiesExtension.PROVIDER, null);
 
     aliceSequencer.start();
     bobSequencer.start();
@@ -202,9 +212,13 @@ public class ActivitySequencerTest {
   @Test(timeout = 30000)
   public void testSendWithoutRegisteredUser() {
 
-    aliceSequencer = new ActivitySequencer(sessionStubAlice, aliceTransmitter, aliceReceiver, null);
+    aliceSequencer =
+        new ActivitySequencer(
+            sessionStubAlice, aliceTransmitter, aliceReceiver, ActivitiesExtension.PROVIDER, null);
 
-    bobSequencer = new ActivitySequencer(sessionStubBob, bobTransmitter, bobReceiver, null);
+    bobSequencer =
+        new ActivitySequencer(
+            sessionStubBob, bobTransmitter, bobReceiver, ActivitiesExtension.PROVIDER, null);
 
     aliceSequencer.start();
     bobSequencer.start();
@@ -226,9 +240,13 @@ public class ActivitySequencerTest {
   @Test(timeout = 30000)
   public void testReceiveWithoutRegisteredUser() {
 
-    aliceSequencer = new ActivitySequencer(sessionStubAlice, aliceTransmitter, aliceReceiver, null);
+    aliceSequencer =
+        new ActivitySequencer(
+            sessionStubAlice, aliceTransmitter, aliceReceiver, ActivitiesExtension.PROVIDER, null);
 
-    bobSequencer = new ActivitySequencer(sessionStubBob, bobTransmitter, bobReceiver, null);
+    bobSequencer =
+        new ActivitySequencer(
+            sessionStubBob, bobTransmitter, bobReceiver, ActivitiesExtension.PROVIDER, null);
 
     aliceSequencer.start();
     bobSequencer.start();
@@ -250,10 +268,14 @@ public class ActivitySequencerTest {
   @Test(timeout = 30000)
   public void testSendAndReceiveWithDifferendSessionIDs() {
 
-    aliceSequencer = new ActivitySequencer(sessionStubAlice, aliceTransmitter, aliceReceiver, null);
+    aliceSequencer =
+        new ActivitySequencer(
+            sessionStubAlice, aliceTransmitter, aliceReceiver, ActivitiesExtension.PROVIDER, null);
 
     bobSessionId.set("4711");
-    bobSequencer = new ActivitySequencer(sessionStubBob, bobTransmitter, bobReceiver, null);
+    bobSequencer =
+        new ActivitySequencer(
+            sessionStubBob, bobTransmitter, bobReceiver, ActivitiesExtension.PROVIDER, null);
 
     aliceSequencer.start();
     bobSequencer.start();
@@ -0,0 +1,227 @@
+package saros.session.internal;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import saros.activities.IActivity;
+import saros.activities.NOPActivity;
+import saros.communication.extensions.ActivitiesExtension;
+import saros.filesystem.IPathFactory;
+import saros.misc.xstream.SPathConverter;
+import saros.misc.xstream.UserConverter;
+import saros.net.DispatchThreadContext;
+import saros.net.IConnectionManager;
+import saros.net.internal.DataTransferManager;
+import saros.net.internal.XMPPReceiver;
+import saros.net.internal.XMPPTransmitter;
+import saros.net.xmpp.JID;
+import saros.net.xmpp.XMPPConnectionService;
+import saros.session.ISarosSession;
+import saros.session.User;
+import saros.test.fakes.net.LocalConnection;
+import saros.test.fakes.net.LocalXMPPRouter;
+import saros.test.fakes.net.LoopbackStreamService;
+
+/**
+ * Two sessions that are active in the same process at the same time, like the sessions of two
+ * tenants of a server, exchange activities through the complete network stack. Every session must
+ * unmarshal the received activities with its own converters, so the users of the activities are the
+ * users of the receiving session.
+ */
+public class ConcurrentSessionsTest {
+
+  private static final String DOMAIN = "saros-con.local";
+
+  private static final int ACTIVITIES = 200;
+
+  private final LocalXMPPRouter router = new LocalXMPPRouter(DOMAIN);
+
+  private final List<Peer> peers = new ArrayList<Peer>();
+
+  private Tenant alice;
+
+  private Tenant bob;
+
+  @Before
+  public void setUp() throws Exception {
+    alice = new Tenant("alice");
+    bob = new Tenant("bob");
+  }
+
+  @After
+  public void tearDown() {
+    for (final Peer peer : peers) peer.close();
+  }
+
+  @Test(timeout = 60000)
+  public void testSessionsUseTheirOwnConverters() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    try {
+      final Future<?> aliceSending = executor.submit(alice::sendToHost);
+      final Future<?> bobSending = executor.submit(bob::sendToHost);
+
+      aliceSending.get();
+      bobSending.get();
+    } finally {
+      executor.shutdownNow();
+    }
+
+    alice.assertReceivedByHost();
+    bob.assertReceivedByHost();
+  }
+
+  /** A host and a participant sharing a session. */
+  private final class Tenant {
+
+    private final Peer host;
+
+    private final Peer participant;
+
+    private Tenant(final String name) throws Exception {
+      final JID hostJID = new JID(name + "-host@" + DOMAIN + "/Saros");
+      final JID participantJID = new JID(name + "-user@" + DOMAIN + "/Saros");
+
+      final String sessionID = name + "-session";
+
+      host = new Peer(sessionID, hostJID, participantJID, true);
+      participant = new Peer(sessionID, participantJID, hostJID, false);
+
+      participant.dataTransferManager.connect(ISarosSession.SESSION_CONNECTION_ID, hostJID);
+    }
+
+    private Void sendToHost() {
+      final User target = participant.remoteUser;
+
+      for (int i = 0; i < ACTIVITIES; i++)
+        participant.sequencer.sendActivity(
+            Arrays.asList(target), new NOPActivity(participant.localUser, target, i));
+
+      return null;
+    }
+
+    private void assertReceivedByHost() throws InterruptedException {
+      for (int i = 0; i < ACTIVITIES; i++) {
+        final IActivity activity = host.received.poll(30, TimeUnit.SECONDS);
+
+        assertNotNull("host did not receive activity " + i, activity);
+
+        final NOPActivity nop = (NOPActivity) activity;
+
+        assertSame(host.remoteUser, nop.getSource());
+        assertSame(host.localUser, nop.getTarget());
+        assertEquals(i, nop.getID());
+      }
+    }
+  }
+
+  /** The network components, the session, its converters and the sequencer of one user. */
+  private final class Peer {
+
+    private final User localUser;
+
+    private final User remoteUser;
+
+    private final BlockingQueue<IActivity> received = new LinkedBlockingQueue<IActivity>();
+
+    private final XMPPConnectionService connectionService;
+
+    private final DispatchThreadContext dispatchThreadContext;
+
+    private final DataTransferManager dataTransferManager;
+
+    private final UserConverter userConverter;
+
+    private final SPathConverter pathConverter;
+
+    private final ActivitySequencer sequencer;
+
+    private Peer(
+        final String sessionID, final JID localJID, final JID remoteJID, final boolean isHost)
+        throws Exception {
+
+      localUser = new User(localJID, isHost, true, null);
+      remoteUser = new User(remoteJID, !isHost, false, null);
+
+      router.addAccount(localJID.getName());
+
+      connectionService = new XMPPConnectionService(null, null);
+      connectionService.configure(
+          localJID.getResource(), false, false, 0, null, null, false, null, 0, false);
+
+      dispatchThreadContext = new DispatchThreadContext();
+
+      dataTransferManager =
+          new DataTransferManager(connectionService, new LoopbackStreamService(), null, null);
+
+      dataTransferManager.setServices(IConnectionManager.TCP_SERVICE);
+
+      final XMPPTransmitter transmitter =
+          new XMPPTransmitter(dataTransferManager, connectionService);
+
+      final XMPPReceiver receiver =
+          new XMPPReceiver(dispatchThreadContext, connectionService, dataTransferManager);
+
+      connectionService.connect(new LocalConnection(router), localJID.getName(), "junit");
+
+      final ISarosSession session = EasyMock.createMock(ISarosSession.class);
+
+      expect(session.getID()).andStubReturn(sessionID);
+      expect(session.getLocalUser()).andStubReturn(localUser);
+      expect(session.getUsers()).andStubReturn(Arrays.asList(localUser, remoteUser));
+      expect(session.getUser(localJID)).andStubReturn(localUser);
+      expect(session.getUser(remoteJID)).andStubReturn(remoteUser);
+
+      final Capture<List<IActivity>> capture = Capture.newInstance();
+
+      session.exec(EasyMock.capture(capture));
+      expectLastCall().andAnswer(() -> received.addAll(capture.getValue())).anyTimes();
+
+      replay(session);
+
+      final ActivitiesExtension.Provider provider =
+          ActivitiesExtension.Provider.createSessionProvider();
+
+      userConverter = new UserConverter(session, provider);
+      pathConverter =
+          new SPathConverter(session, EasyMock.createMock(IPathFactory.class), provider);
+
+      userConverter.start();
+      pathConverter.start();
+
+      sequencer =
+          new ActivitySequencer(session, transmitter, receiver, provider, dispatchThreadContext);
+
+      sequencer.start();
+      sequencer.registerUser(remoteUser);
+
+      peers.add(this);
+    }
+
+    private void close() {
+      sequencer.stop();
+      pathConverter.stop();
+      userConverter.stop();
+      connectionService.disconnect();
+      dispatchThreadContext.dispose();
+    }
+  }
+}
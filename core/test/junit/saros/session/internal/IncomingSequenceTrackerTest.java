@@ -0,0 +1,151 @@
+package saros.session.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import saros.net.xmpp.JID;
+import saros.session.internal.IncomingSequenceTracker.Result;
+
+public class IncomingSequenceTrackerTest {
+
+  private static final JID ALICE = new JID("alice@test/Saros");
+  private static final JID BOB = new JID("bob@test/Saros");
+
+  private final IncomingSequenceTracker tracker = new IncomingSequenceTracker();
+
+  @Test
+  public void testUnknownPeer() {
+    int id = tracker.lookup(ALICE.toString());
+
+    assertEquals(IncomingSequenceTracker.UNKNOWN_PEER, id);
+    assertEquals(Result.NOT_REGISTERED, tracker.advance(id, 0, 1));
+  }
+
+  @Test
+  public void testAdvance() {
+    tracker.register(ALICE, 0);
+
+    int id = tracker.lookup(ALICE.toString());
+
+    assertEquals(Result.ACCEPTED, tracker.advance(id, 0, 3));
+    assertEquals(Result.ACCEPTED, tracker.advance(id, 3, 1));
+    assertEquals(Result.OUT_OF_SEQUENCE, tracker.advance(id, 3, 1));
+    assertEquals(Result.ACCEPTED, tracker.advance(id, 4, 1));
+  }
+
+  @Test
+  public void testPeersAreIndependent() {
+    tracker.register(ALICE, 0);
+    tracker.register(BOB, 0);
+
+    int alice = tracker.lookup(ALICE.toString());
+    int bob = tracker.lookup(BOB.toString());
+
+    assertNotEquals(alice, bob);
+
+    assertEquals(Result.ACCEPTED, tracker.advance(alice, 0, 5));
+    assertEquals(Result.ACCEPTED, tracker.advance(bob, 0, 2));
+    assertEquals(Result.ACCEPTED, tracker.advance(alice, 5, 1));
+    assertEquals(Result.ACCEPTED, tracker.advance(bob, 2, 1));
+  }
+
+  @Test
+  public void testLookupIgnoresResource() {
+    tracker.register(ALICE, 0);
+
+    assertEquals(tracker.lookup(ALICE.toString()), tracker.lookup("alice@test/Other"));
+    assertEquals(tracker.lookup(ALICE.toString()), tracker.lookup("alice@test"));
+  }
+
+  @Test
+  public void testRegisterTwiceKeepsSequence() {
+    tracker.register(ALICE, 0);
+
+    int id = tracker.lookup(ALICE.toString());
+
+    assertEquals(Result.ACCEPTED, tracker.advance(id, 0, 3));
+
+    tracker.register(ALICE, 0);
+
+    assertEquals(Result.ACCEPTED, tracker.advance(id, 3, 1));
+  }
+
+  @Test
+  public void testUnregisterAndRegisterAgain() {
+    tracker.register(ALICE, 0);
+
+    int id = tracker.lookup(ALICE.toString());
+
+    assertEquals(Result.ACCEPTED, tracker.advance(id, 0, 3));
+
+    tracker.unregister(ALICE);
+
+    assertEquals(Result.NOT_REGISTERED, tracker.advance(id, 3, 1));
+
+    tracker.register(ALICE, 0);
+
+    assertEquals(id, tracker.lookup(ALICE.toString()));
+    assertEquals(Result.ACCEPTED, tracker.advance(id, 0, 1));
+  }
+
+  @Test
+  public void testUnregisterAll() {
+    tracker.register(ALICE, 0);
+    tracker.register(BOB, 0);
+
+    tracker.unregisterAll();
+
+    assertEquals(Result.NOT_REGISTERED, tracker.advance(tracker.lookup(ALICE.toString()), 0, 1));
+    assertEquals(Result.NOT_REGISTERED, tracker.advance(tracker.lookup(BOB.toString()), 0, 1));
+  }
+
+  @Test(timeout = 30000)
+  public void testConcurrentPeersWhileRegistering() throws Exception {
+    final int peers = 64;
+    final int packets = 10000;
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    try {
+      List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+
+      for (int i = 0; i < peers; i++) {
+        final JID peer = new JID("peer" + i + "@test/Saros");
+
+        /* registering the next peers grows the counters while others are advanced */
+        tracker.register(peer, 0);
+
+        results.add(
+            executor.submit(
+                new Callable<Integer>() {
+                  @Override
+                  public Integer call() {
+                    int sequenceNumber = 0;
+
+                    for (int p = 0; p < packets; p++) {
+                      int id = tracker.lookup(peer.toString());
+
+                      if (tracker.advance(id, sequenceNumber, 2) != Result.ACCEPTED)
+                        return sequenceNumber;
+
+                      sequenceNumber += 2;
+                    }
+
+                    return sequenceNumber;
+                  }
+                }));
+      }
+
+      for (Future<Integer> result : results) assertEquals(packets * 2, result.get().intValue());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -8,6 +8,8 @@ import org.junit.runners.Suite;
   ActivityHandlerTest.class,
   ActivityQueuerTest.class,
   ActivitySequencerTest.class,
+  ConcurrentSessionsTest.class,
+  IncomingSequenceTrackerTest.class,
   SharedProjectMapperTest.class,
   UserInformationHandlerTest.class
 })
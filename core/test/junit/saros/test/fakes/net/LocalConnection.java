@@ -0,0 +1,377 @@
+package saros.test.fakes.net;
+
+import java.io.StringReader;
+import java.lang.reflect.Constructor;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+import org.jivesoftware.smack.Connection;
+import org.jivesoftware.smack.ConnectionConfiguration;
+import org.jivesoftware.smack.ConnectionCreationListener;
+import org.jivesoftware.smack.ConnectionListener;
+import org.jivesoftware.smack.PacketCollector;
+import org.jivesoftware.smack.Roster;
+import org.jivesoftware.smack.XMPPException;
+import org.jivesoftware.smack.filter.PacketFilter;
+import org.jivesoftware.smack.packet.IQ;
+import org.jivesoftware.smack.packet.Packet;
+import org.jivesoftware.smack.packet.Presence;
+import org.jivesoftware.smack.packet.RosterPacket;
+import org.jivesoftware.smack.packet.XMPPError;
+import org.jivesoftware.smack.util.PacketParserUtils;
+import org.jivesoftware.smack.util.StringUtils;
+import org.jivesoftware.smackx.packet.DiscoverInfo;
+import org.jivesoftware.smackx.packet.DiscoverItems;
+import org.xmlpull.mxp1.MXParser;
+import org.xmlpull.v1.XmlPullParser;
+
+/**
+ * A Smack connection to a {@link LocalXMPPRouter} in the same process. Stanzas are serialized to
+ * XML when they are sent and parsed again by the receiving connection, so packet extensions pass
+ * the same providers as with a real XMPP server.
+ *
+ * <p>The connection also plays the part of the server for stanzas that are addressed to the server:
+ * it answers the roster request with all other accounts of the router as contacts with mutual
+ * subscriptions, answers service discovery requests without any features and rejects all other
+ * requests. Requests to resources that are not connected are answered with an error as well.
+ *
+ * <p>Like the Smack <code>XMPPConnection</code> the connection delivers received stanzas to packet
+ * collectors on a reader thread and to packet listeners on a separate listener thread.
+ */
+public class LocalConnection extends Connection {
+
+  private static final Logger LOG = Logger.getLogger(LocalConnection.class);
+
+  private static final AtomicInteger CONNECTION_IDS = new AtomicInteger();
+
+  private static final Object STOP = new Object();
+
+  private final LocalXMPPRouter router;
+
+  private final String connectionID = "local-" + CONNECTION_IDS.incrementAndGet();
+
+  private final BlockingQueue<Object> incoming = new LinkedBlockingQueue<Object>();
+
+  private final BlockingQueue<Object> notifications = new LinkedBlockingQueue<Object>();
+
+  private volatile boolean connected;
+
+  private volatile boolean authenticated;
+
+  private volatile String user;
+
+  private Roster roster;
+
+  private boolean wasConnected;
+
+  /** A packet collector that can be fed by the connection. */
+  private static class Collector extends PacketCollector {
+    private Collector(Connection connection, PacketFilter filter) {
+      super(connection, filter);
+    }
+
+    private void deliver(Packet packet) {
+      processPacket(packet);
+    }
+  }
+
+  /** @param router the router to connect to */
+  public LocalConnection(LocalXMPPRouter router) {
+    super(new ConnectionConfiguration("localhost", 5222, router.getDomain()));
+    this.router = router;
+  }
+
+  /** Returns the router the connection is connected to. */
+  public LocalXMPPRouter getRouter() {
+    return router;
+  }
+
+  @Override
+  public String getUser() {
+    return user;
+  }
+
+  @Override
+  public String getConnectionID() {
+    return connected ? connectionID : null;
+  }
+
+  @Override
+  public boolean isConnected() {
+    return connected;
+  }
+
+  @Override
+  public boolean isAuthenticated() {
+    return authenticated;
+  }
+
+  @Override
+  public boolean isAnonymous() {
+    return false;
+  }
+
+  @Override
+  public boolean isSecureConnection() {
+    return false;
+  }
+
+  @Override
+  public boolean isUsingCompression() {
+    return false;
+  }
+
+  @Override
+  public synchronized void connect() throws XMPPException {
+    if (connected) return;
+
+    incoming.clear();
+    notifications.clear();
+
+    startThread("Reader", incoming);
+    startThread("Listener", notifications);
+
+    connected = true;
+
+    if (!wasConnected) {
+      for (final ConnectionCreationListener listener : getConnectionCreationListeners())
+        listener.connectionCreated(this);
+    }
+
+    wasConnected = true;
+  }
+
+  @Override
+  public synchronized void login(String username, String password, String resource)
+      throws XMPPException {
+
+    if (!connected) throw new IllegalStateException("Not connected to server.");
+
+    if (authenticated) throw new IllegalStateException("Already logged in to server.");
+
+    final String jid = username + "@" + getServiceName() + "/" + resource;
+
+    if (!router.getAccounts().contains(StringUtils.parseBareAddress(jid)))
+      throw new XMPPException(new XMPPError(XMPPError.Condition.not_authorized));
+
+    user = jid;
+
+    authenticated = true;
+
+    getRoster().reload();
+    awaitDelivery();
+
+    router.connect(jid, incoming::add);
+
+    sendPacket(new Presence(Presence.Type.available));
+  }
+
+  @Override
+  public void loginAnonymously() throws XMPPException {
+    throw new XMPPException(new XMPPError(XMPPError.Condition.not_allowed));
+  }
+
+  @Override
+  public void sendPacket(Packet packet) {
+    if (!connected) throw new IllegalStateException("Not connected to server.");
+
+    if (packet == null) throw new NullPointerException("Packet is null.");
+
+    firePacketInterceptors(packet);
+
+    packet.setFrom(user);
+
+    final String xml = packet.toXML();
+
+    firePacketSendingListeners(packet);
+
+    final String to = packet.getTo();
+
+    if (to == null || isServerAddress(to)) {
+      if (packet instanceof Presence) router.broadcastPresence(user, xml);
+      else if (packet instanceof IQ) answerServerRequest((IQ) packet);
+
+      return;
+    }
+
+    if (!router.route(to, xml) && isRequest(packet))
+      reply(
+          IQ.createErrorResponse(
+              (IQ) packet, createError(XMPPError.Condition.recipient_unavailable)));
+  }
+
+  @Override
+  public PacketCollector createPacketCollector(PacketFilter packetFilter) {
+    final PacketCollector collector = new Collector(this, packetFilter);
+    collectors.add(collector);
+    return collector;
+  }
+
+  @Override
+  public synchronized Roster getRoster() {
+    if (roster == null) roster = createRoster();
+
+    return roster;
+  }
+
+  @Override
+  public void disconnect(Presence unavailablePresence) {
+    synchronized (this) {
+      if (!connected) return;
+
+      if (authenticated) router.disconnect(user);
+
+      connected = false;
+      authenticated = false;
+
+      incoming.add(STOP);
+      notifications.add(STOP);
+    }
+
+    for (final ConnectionListener listener : getConnectionListeners()) {
+      try {
+        listener.connectionClosed();
+      } catch (RuntimeException e) {
+        LOG.error("internal error in connection listener: " + listener, e);
+      }
+    }
+  }
+
+  /**
+   * Waits until all stanzas that were received so far were delivered to the packet collectors and
+   * packet listeners.
+   */
+  public void awaitDelivery() {
+    final CountDownLatch delivered = new CountDownLatch(1);
+
+    incoming.add((Runnable) () -> notifications.add((Runnable) delivered::countDown));
+
+    try {
+      delivered.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private boolean isServerAddress(String jid) {
+    return jid.equals(getServiceName()) || jid.equals(StringUtils.parseBareAddress(user));
+  }
+
+  private static boolean isRequest(Packet packet) {
+    return packet instanceof IQ
+        && (((IQ) packet).getType() == IQ.Type.GET || ((IQ) packet).getType() == IQ.Type.SET);
+  }
+
+  /** Answers a request that is addressed to the server. */
+  private void answerServerRequest(IQ request) {
+    if (!isRequest(request)) return;
+
+    final IQ response;
+
+    if (request instanceof RosterPacket && request.getType() == IQ.Type.GET) {
+      final RosterPacket roster = new RosterPacket();
+
+      for (final String account : router.getAccounts()) {
+        if (account.equals(StringUtils.parseBareAddress(user))) continue;
+
+        final RosterPacket.Item item = new RosterPacket.Item(account, null);
+        item.setItemType(RosterPacket.ItemType.both);
+        roster.addRosterItem(item);
+      }
+
+      response = roster;
+    } else if (request instanceof DiscoverInfo && request.getType() == IQ.Type.GET) {
+      response = new DiscoverInfo();
+    } else if (request instanceof DiscoverItems && request.getType() == IQ.Type.GET) {
+      response = new DiscoverItems();
+    } else {
+      reply(IQ.createErrorResponse(request, createError(XMPPError.Condition.service_unavailable)));
+      return;
+    }
+
+    response.setType(IQ.Type.RESULT);
+    response.setPacketID(request.getPacketID());
+    response.setFrom(request.getTo());
+    response.setTo(user);
+
+    reply(response);
+  }
+
+  private static XMPPError createError(XMPPError.Condition condition) {
+    return new XMPPError(condition);
+  }
+
+  /** Delivers a response of the server to this connection. */
+  private void reply(IQ response) {
+    response.setTo(user);
+    incoming.add(response.toXML());
+  }
+
+  private Roster createRoster() {
+    try {
+      final Constructor<Roster> constructor = Roster.class.getDeclaredConstructor(Connection.class);
+      constructor.setAccessible(true);
+      return constructor.newInstance(this);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("could not create the roster", e);
+    }
+  }
+
+  private void startThread(String name, final BlockingQueue<Object> queue) {
+    final Thread thread =
+        new Thread(
+            () -> {
+              while (true) {
+                final Object item;
+
+                try {
+                  item = queue.take();
+                } catch (InterruptedException e) {
+                  return;
+                }
+
+                if (item == STOP) return;
+
+                try {
+                  if (item instanceof Runnable) ((Runnable) item).run();
+                  else processStanza((String) item);
+                } catch (Exception e) {
+                  LOG.error("failed to process stanza: " + item, e);
+                }
+              }
+            },
+            "LocalConnection-" + name + " " + connectionID);
+
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** Parses a received stanza and delivers it to the collectors and listeners. */
+  private void processStanza(String xml) throws Exception {
+    final XmlPullParser parser = new MXParser();
+    parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+    parser.setInput(new StringReader(xml));
+    parser.next();
+
+    final Packet packet;
+
+    if (parser.getName().equals("message")) packet = PacketParserUtils.parseMessage(parser);
+    else if (parser.getName().equals("iq")) packet = PacketParserUtils.parseIQ(parser, this);
+    else if (parser.getName().equals("presence")) packet = PacketParserUtils.parsePresence(parser);
+    else throw new IllegalArgumentException("unknown stanza: " + parser.getName());
+
+    if (packet == null) return;
+
+    for (final PacketCollector collector : getPacketCollectors())
+      if (collector instanceof Collector) ((Collector) collector).deliver(packet);
+
+    notifications.add(
+        (Runnable)
+            () -> {
+              for (final ListenerWrapper listener : getPacketListeners().values())
+                listener.notifyListener(packet);
+            });
+  }
+}
@@ -0,0 +1,497 @@
+package saros.test.fakes.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Routes XMPP stanzas between {@link LocalConnection local connections} of the same process, a
+ * stand-in for a XMPP server in tests and benchmarks. The router knows a fixed set of accounts, all
+ * of them are contacts of each other.
+ *
+ * <p>Besides stanzas the router connects byte streams between the resources, see {@link
+ * #openStream}. The streams simulate a network link with a configurable latency and bandwidth, so
+ * transfers between the resources take the same time on every run independent of the load of the
+ * machine's network stack.
+ *
+ * <p>The router only uses classes of the JDK and exchanges the stanzas as XML strings. So it can be
+ * shared by Saros instances that are loaded by different class loaders, each instance only parses
+ * the stanzas with its own classes.
+ */
+public final class LocalXMPPRouter {
+
+  /** Accepts the byte streams other resources open to a resource. */
+  public interface StreamAcceptor {
+
+    /**
+     * Called when a stream was opened to the resource. The call must not block.
+     *
+     * @param from the resource qualified JID of the resource that opened the stream
+     * @param streamID the ID the stream was opened with
+     * @param stream the local end of the stream
+     */
+    public void accept(String from, String streamID, Stream stream);
+  }
+
+  private final String domain;
+
+  private final Set<String> accounts = new LinkedHashSet<String>();
+
+  /** The inboxes of the connected resources by their resource qualified JIDs. */
+  private final Map<String, Consumer<String>> inboxes =
+      new LinkedHashMap<String, Consumer<String>>();
+
+  /** The last presence every connected resource broadcasted. */
+  private final Map<String, String> presences = new LinkedHashMap<String, String>();
+
+  /** The stream acceptors of the connected resources by their resource qualified JIDs. */
+  private final Map<String, StreamAcceptor> acceptors = new LinkedHashMap<String, StreamAcceptor>();
+
+  private long latencyNanos;
+
+  private long bytesPerSecond;
+
+  /** @param domain the domain of the accounts, i.e. the service name of the stand-in server */
+  public LocalXMPPRouter(String domain) {
+    this.domain = domain;
+  }
+
+  public String getDomain() {
+    return domain;
+  }
+
+  /**
+   * Adds an account to the router.
+   *
+   * @param username the name of the account without the domain
+   * @return the bare JID of the account
+   */
+  public synchronized String addAccount(String username) {
+    final String jid = username + "@" + domain;
+    accounts.add(jid);
+    return jid;
+  }
+
+  /** Returns the bare JIDs of all accounts. */
+  public synchronized List<String> getAccounts() {
+    return new ArrayList<String>(accounts);
+  }
+
+  /**
+   * Connects a resource. The inbox immediately receives the last presence of all other connected
+   * resources.
+   *
+   * @param jid the resource qualified JID
+   * @param inbox receives the stanzas addressed to the resource, it must not block
+   * @throws IllegalArgumentException if the account of the JID is unknown or the resource is
+   *     already connected
+   */
+  public synchronized void connect(String jid, Consumer<String> inbox) {
+    if (!accounts.contains(bare(jid)))
+      throw new IllegalArgumentException("unknown account: " + jid);
+
+    if (inboxes.containsKey(jid)) throw new IllegalArgumentException("already connected: " + jid);
+
+    inboxes.put(jid, inbox);
+
+    for (final String presence : presences.values()) inbox.accept(presence);
+  }
+
+  /**
+   * Disconnects a resource. All other connected resources receive an unavailable presence of the
+   * resource.
+   */
+  public synchronized void disconnect(String jid) {
+    acceptors.remove(jid);
+
+    if (inboxes.remove(jid) == null) return;
+
+    if (presences.remove(jid) != null)
+      broadcast(jid, "<presence type=\"unavailable\" from=\"" + escape(jid) + "\"/>");
+  }
+
+  /**
+   * Sends a presence of a resource to all other connected resources. The presence is also sent to
+   * resources that connect later on.
+   *
+   * @param from the resource qualified JID of the sender
+   * @param presence the XML of the presence stanza
+   */
+  public synchronized void broadcastPresence(String from, String presence) {
+    if (!inboxes.containsKey(from)) return;
+
+    presences.put(from, presence);
+    broadcast(from, presence);
+  }
+
+  /**
+   * Delivers a stanza. A stanza addressed to a bare JID is delivered to the first connected
+   * resource of the account.
+   *
+   * @param to the JID of the recipient
+   * @param stanza the XML of the stanza
+   * @return <code>true</code> if the stanza was delivered, <code>false</code> if the recipient is
+   *     not connected
+   */
+  public synchronized boolean route(String to, String stanza) {
+    Consumer<String> inbox = inboxes.get(to);
+
+    if (inbox == null && to.indexOf('/') == -1) {
+      for (final Map.Entry<String, Consumer<String>> entry : inboxes.entrySet()) {
+        if (bare(entry.getKey()).equals(to)) {
+          inbox = entry.getValue();
+          break;
+        }
+      }
+    }
+
+    if (inbox == null) return false;
+
+    inbox.accept(stanza);
+    return true;
+  }
+
+  /**
+   * Sets the properties of the links of the streams that are opened from now on. Every direction of
+   * a stream is an independent link.
+   *
+   * @param latency the time it takes to deliver a byte, in milliseconds
+   * @param bandwidth the number of bytes a link transfers per second or <code>0</code> for an
+   *     unlimited bandwidth
+   */
+  public synchronized void setLink(long latency, long bandwidth) {
+    if (latency < 0 || bandwidth < 0) throw new IllegalArgumentException("negative link property");
+
+    latencyNanos = TimeUnit.MILLISECONDS.toNanos(latency);
+    bytesPerSecond = bandwidth;
+  }
+
+  /**
+   * Registers the acceptor for the streams that are opened to a connected resource, replacing the
+   * current one. The acceptor is removed when the resource disconnects.
+   *
+   * @param jid the resource qualified JID
+   * @param acceptor the acceptor or <code>null</code> to refuse all streams
+   */
+  public synchronized void listen(String jid, StreamAcceptor acceptor) {
+    if (!inboxes.containsKey(jid)) throw new IllegalArgumentException("not connected: " + jid);
+
+    if (acceptor == null) acceptors.remove(jid);
+    else acceptors.put(jid, acceptor);
+  }
+
+  /**
+   * Opens a byte stream between two connected resources. The acceptor of the remote resource
+   * receives the remote end of the stream before this method returns.
+   *
+   * @param from the resource qualified JID of the resource that opens the stream
+   * @param to the resource qualified JID of the remote resource
+   * @param streamID an ID that identifies the stream for the remote resource
+   * @return the local end of the stream
+   * @throws IOException if one of the resources is not connected or the remote resource does not
+   *     accept streams
+   */
+  public Stream openStream(String from, String to, String streamID) throws IOException {
+    final StreamAcceptor acceptor;
+    final Link outgoing;
+    final Link incoming;
+
+    synchronized (this) {
+      if (!inboxes.containsKey(from)) throw new IOException("not connected: " + from);
+
+      acceptor = acceptors.get(to);
+
+      if (acceptor == null) throw new IOException("connection refused by " + to);
+
+      outgoing = new Link(latencyNanos, bytesPerSecond);
+      incoming = new Link(latencyNanos, bytesPerSecond);
+    }
+
+    acceptor.accept(from, streamID, new Stream(outgoing, incoming));
+
+    return new Stream(incoming, outgoing);
+  }
+
+  /** Returns the resource qualified JIDs of all connected resources. */
+  public synchronized Set<String> getConnected() {
+    return Collections.unmodifiableSet(new LinkedHashSet<String>(inboxes.keySet()));
+  }
+
+  private void broadcast(String from, String stanza) {
+    for (final Map.Entry<String, Consumer<String>> entry : inboxes.entrySet())
+      if (!entry.getKey().equals(from)) entry.getValue().accept(stanza);
+  }
+
+  private static String bare(String jid) {
+    final int index = jid.indexOf('/');
+    return index == -1 ? jid : jid.substring(0, index);
+  }
+
+  private static String escape(String value) {
+    return value.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;");
+  }
+
+  /** One end of a byte stream opened by the router. */
+  public static final class Stream {
+
+    private final Link in;
+
+    private final Link out;
+
+    private final InputStream inputStream;
+
+    private final OutputStream outputStream;
+
+    private volatile int readTimeout;
+
+    private Stream(Link in, Link out) {
+      this.in = in;
+      this.out = out;
+
+      inputStream =
+          new InputStream() {
+            @Override
+            public int read() throws IOException {
+              final byte[] buffer = new byte[1];
+              return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+              return Stream.this.in.read(buffer, offset, length, readTimeout);
+            }
+
+            @Override
+            public int available() {
+              return Stream.this.in.available();
+            }
+
+            @Override
+            public void close() {
+              Stream.this.in.closeReader();
+            }
+          };
+
+      outputStream =
+          new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+              write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+              Stream.this.out.write(buffer, offset, length);
+            }
+
+            @Override
+            public void close() {
+              Stream.this.out.closeWriter();
+            }
+          };
+    }
+
+    public InputStream getInputStream() {
+      return inputStream;
+    }
+
+    public OutputStream getOutputStream() {
+      return outputStream;
+    }
+
+    /** Returns the read timeout in milliseconds, <code>0</code> means no timeout. */
+    public int getReadTimeout() {
+      return readTimeout;
+    }
+
+    /** Sets the read timeout in milliseconds, <code>0</code> disables the timeout. */
+    public void setReadTimeout(int timeout) {
+      readTimeout = timeout;
+    }
+
+    /** Closes both directions of this end of the stream. */
+    public void close() {
+      in.closeReader();
+      out.closeWriter();
+    }
+  }
+
+  /**
+   * One direction of a stream. Like with a socket a closed stream raises a {@link SocketException}.
+   * Every write occupies the link for the time the bandwidth needs to transfer the bytes, the
+   * writer blocks until then. The bytes are readable once the latency has passed afterwards.
+   */
+  private static final class Link {
+
+    private final long latencyNanos;
+
+    private final long bytesPerSecond;
+
+    private final Deque<Chunk> chunks = new ArrayDeque<Chunk>();
+
+    /** The time the link finishes the transfer of the last written chunk. */
+    private long idleAt = System.nanoTime();
+
+    private boolean writerClosed;
+
+    private boolean readerClosed;
+
+    private Link(long latencyNanos, long bytesPerSecond) {
+      this.latencyNanos = latencyNanos;
+      this.bytesPerSecond = bytesPerSecond;
+    }
+
+    private void write(byte[] buffer, int offset, int length) throws IOException {
+      if (length == 0) return;
+
+      final long transferredAt;
+
+      synchronized (this) {
+        if (writerClosed) throw new SocketException("stream closed");
+
+        if (readerClosed) throw new SocketException("stream closed by peer");
+
+        final long now = System.nanoTime();
+
+        transferredAt =
+            bytesPerSecond == 0
+                ? now
+                : Math.max(now, idleAt) + length * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+
+        idleAt = transferredAt;
+
+        chunks.add(
+            new Chunk(
+                Arrays.copyOfRange(buffer, offset, offset + length), transferredAt + latencyNanos));
+
+        notifyAll();
+      }
+
+      sleepUntil(transferredAt);
+    }
+
+    private synchronized int read(byte[] buffer, int offset, int length, int timeout)
+        throws IOException {
+
+      if (length == 0) return 0;
+
+      final long deadline =
+          timeout == 0
+              ? Long.MAX_VALUE
+              : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+      try {
+        while (true) {
+          if (readerClosed) throw new SocketException("stream closed");
+
+          final Chunk chunk = chunks.peek();
+          final long now = System.nanoTime();
+
+          if (chunk != null && chunk.arrival <= now) break;
+
+          if (chunk == null && writerClosed) return -1;
+
+          if (now >= deadline) throw new SocketTimeoutException("read timed out");
+
+          final long wait =
+              Math.min(deadline, chunk == null ? Long.MAX_VALUE : chunk.arrival) - now;
+
+          TimeUnit.NANOSECONDS.timedWait(this, Math.min(wait, TimeUnit.SECONDS.toNanos(1)));
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+
+      int read = 0;
+
+      /*
+       * like a socket return all bytes that already arrived, but do not wait
+       * for chunks that are still in transit
+       */
+      while (read < length) {
+        final Chunk chunk = chunks.peek();
+
+        if (chunk == null || chunk.arrival > System.nanoTime()) break;
+
+        final int count = Math.min(length - read, chunk.data.length - chunk.position);
+
+        System.arraycopy(chunk.data, chunk.position, buffer, offset + read, count);
+
+        chunk.position += count;
+        read += count;
+
+        if (chunk.position == chunk.data.length) chunks.poll();
+      }
+
+      return read;
+    }
+
+    private synchronized int available() {
+      int available = 0;
+
+      final long now = System.nanoTime();
+
+      for (final Chunk chunk : chunks) {
+        if (chunk.arrival > now) break;
+
+        available += chunk.data.length - chunk.position;
+      }
+
+      return available;
+    }
+
+    private synchronized void closeWriter() {
+      writerClosed = true;
+      notifyAll();
+    }
+
+    private synchronized void closeReader() {
+      readerClosed = true;
+      chunks.clear();
+      notifyAll();
+    }
+
+    private static void sleepUntil(long time) throws InterruptedIOException {
+      long remaining;
+
+      while ((remaining = time - System.nanoTime()) > 0) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      }
+    }
+  }
+
+  private static final class Chunk {
+
+    private final byte[] data;
+
+    private final long arrival;
+
+    private int position;
+
+    private Chunk(byte[] data, long arrival) {
+      this.data = data;
+      this.arrival = arrival;
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package saros.test.fakes.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.apache.log4j.Logger;
+import org.jivesoftware.smack.Connection;
+import saros.net.internal.BinaryChannelConnection;
+import saros.net.internal.IByteStreamConnection;
+import saros.net.internal.IByteStreamConnectionListener;
+import saros.net.stream.ByteStream;
+import saros.net.stream.IStreamService;
+import saros.net.stream.StreamMode;
+import saros.net.xmpp.JID;
+
+/**
+ * A stream service that establishes connections through the byte streams of a {@link
+ * LocalXMPPRouter}. The service can only be initialized with a {@link LocalConnection}.
+ *
+ * <p>The latency and bandwidth of the connections are set on the router, see {@link
+ * LocalXMPPRouter#setLink}. The connections report {@link StreamMode#TCP} as their mode, so the
+ * rest of Saros treats them like direct connections.
+ */
+public class LoopbackStreamService implements IStreamService {
+
+  private static final Logger LOG = Logger.getLogger(LoopbackStreamService.class);
+
+  private volatile LocalXMPPRouter router;
+
+  private volatile IByteStreamConnectionListener connectionListener;
+
+  private volatile JID localAddress;
+
+  @Override
+  public IByteStreamConnection connect(String connectionID, JID remoteAddress)
+      throws IOException, InterruptedException {
+
+    if (connectionID == null) throw new NullPointerException("connectionID is null");
+
+    if (remoteAddress == null) throw new NullPointerException("remoteAddress is null");
+
+    if (connectionID.isEmpty())
+      throw new IllegalArgumentException("connectionID must not be empty");
+
+    if (connectionID.contains(String.valueOf(IStreamService.SESSION_ID_DELIMITER)))
+      throw new IllegalArgumentException(
+          "connectionID must not contain '" + IStreamService.SESSION_ID_DELIMITER + "'");
+
+    final LocalXMPPRouter currentRouter = router;
+    final IByteStreamConnectionListener currentConnectionListener = connectionListener;
+    final JID currentLocalAddress = localAddress;
+
+    if (currentRouter == null || currentConnectionListener == null)
+      throw new IOException(this + " is not initialized");
+
+    LOG.debug("establishing loopback stream to: " + remoteAddress);
+
+    final LocalXMPPRouter.Stream stream =
+        currentRouter.openStream(
+            currentLocalAddress.toString(), remoteAddress.toString(), connectionID);
+
+    return new BinaryChannelConnection(
+        currentLocalAddress,
+        remoteAddress,
+        connectionID,
+        new LoopbackByteStream(stream),
+        StreamMode.TCP,
+        currentConnectionListener);
+  }
+
+  @Override
+  public synchronized void initialize(
+      Connection connection, IByteStreamConnectionListener listener) {
+
+    if (!(connection instanceof LocalConnection))
+      throw new IllegalArgumentException("not a local connection: " + connection);
+
+    localAddress = new JID(connection.getUser());
+    connectionListener = listener;
+    router = ((LocalConnection) connection).getRouter();
+    router.listen(connection.getUser(), this::accept);
+  }
+
+  @Override
+  public synchronized void uninitialize() {
+    if (router == null) return;
+
+    try {
+      router.listen(localAddress.toString(), null);
+    } catch (IllegalArgumentException e) {
+      // already disconnected from the router
+    }
+
+    router = null;
+    connectionListener = null;
+  }
+
+  private void accept(String from, String connectionID, LocalXMPPRouter.Stream stream) {
+    final IByteStreamConnectionListener currentConnectionListener = connectionListener;
+
+    if (currentConnectionListener == null) {
+      LOG.warn(this + " is not initialized, rejecting connection...");
+      stream.close();
+      return;
+    }
+
+    LOG.debug("accepting loopback stream from: " + from);
+
+    final IByteStreamConnection connection;
+
+    try {
+      connection =
+          new BinaryChannelConnection(
+              localAddress,
+              new JID(from),
+              connectionID,
+              new LoopbackByteStream(stream),
+              StreamMode.TCP,
+              currentConnectionListener);
+    } catch (IOException e) {
+      LOG.error("failed to initialize connection for loopback stream", e);
+      stream.close();
+      return;
+    }
+
+    currentConnectionListener.connectionChanged(connectionID, connection, true);
+  }
+
+  @Override
+  public String toString() {
+    return "Loopback-Stream-Service";
+  }
+
+  private static final class LoopbackByteStream implements ByteStream {
+
+    private final LocalXMPPRouter.Stream stream;
+
+    private LoopbackByteStream(LocalXMPPRouter.Stream stream) {
+      this.stream = stream;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return stream.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return stream.getOutputStream();
+    }
+
+    @Override
+    public void close() {
+      stream.close();
+    }
+
+    @Override
+    public int getReadTimeout() {
+      return stream.getReadTimeout();
+    }
+
+    @Override
+    public void setReadTimeout(int timeout) {
+      stream.setReadTimeout(timeout);
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package saros.test.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A class loader that loads its own copy of all classes of the class path instead of delegating to
+ * its parent first. Several Saros instances can be started in the same process this way without
+ * sharing static state like the converters of the XStream providers, the Smack configuration or the
+ * {@link saros.SarosPluginContext}.
+ *
+ * <p>Classes of the JDK and the classes that are explicitly shared are loaded by the parent class
+ * loader, so objects of these classes can be passed between the instances and the code that created
+ * them.
+ */
+public class IsolatingClassLoader extends URLClassLoader {
+
+  static {
+    ClassLoader.registerAsParallelCapable();
+  }
+
+  private final List<String> shared;
+
+  /**
+   * Creates a class loader for the class path of the current process.
+   *
+   * @param parent the parent class loader, usually the class loader of the calling code
+   * @param shared the names of classes (including their nested classes) or packages (ending with a
+   *     dot) that are loaded by the parent class loader
+   */
+  public IsolatingClassLoader(ClassLoader parent, String... shared) {
+    super(getClassPath(), parent);
+    this.shared = new ArrayList<String>(Arrays.asList(shared));
+  }
+
+  @Override
+  protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+    synchronized (getClassLoadingLock(name)) {
+      Class<?> clazz = findLoadedClass(name);
+
+      if (clazz == null && !isShared(name)) {
+        try {
+          clazz = findClass(name);
+        } catch (ClassNotFoundException e) {
+          // not on the class path, e.g. a class of the JDK
+        }
+      }
+
+      if (clazz == null) clazz = getParent().loadClass(name);
+
+      if (resolve) resolveClass(clazz);
+
+      return clazz;
+    }
+  }
+
+  @Override
+  public URL getResource(String name) {
+    final URL url = findResource(name);
+    return url != null ? url : super.getResource(name);
+  }
+
+  private boolean isShared(String name) {
+    if (name.startsWith("java.")) return true;
+
+    for (final String prefix : shared) {
+      if (prefix.endsWith(".") ? name.startsWith(prefix) : isClassOrNestedClass(name, prefix))
+        return true;
+    }
+
+    return false;
+  }
+
+  private static boolean isClassOrNestedClass(String name, String className) {
+    return name.equals(className) || name.startsWith(className + "$");
+  }
+
+  private static URL[] getClassPath() {
+    final String[] entries = System.getProperty("java.class.path").split(File.pathSeparator);
+
+    final URL[] urls = new URL[entries.length];
+
+    try {
+      for (int i = 0; i < entries.length; i++) urls[i] = new File(entries[i]).toURI().toURL();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return urls;
+  }
+}
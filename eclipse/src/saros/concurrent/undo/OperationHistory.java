@@ -1,15 +1,22 @@
 package saros.concurrent.undo;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import saros.activities.SPath;
+import saros.concurrent.jupiter.InclusionTransformation;
 import saros.concurrent.jupiter.Operation;
 
 /**
  * The Operation History is the data structure for saving operations to calculate undo and redo
  * operations. It contains histories for each editor.
+ *
+ * <p>The history of an editor is stored in a ring buffer. The positions of the local and redoable
+ * operations are indexed, so the latest operation of these types is found without walking the
+ * history. In addition the inverse of the latest local and the latest redoable operation is kept
+ * transformed against all newer operations while operations are added. Calculating the undo or redo
+ * operation therefore does not depend on the number of operations that were added since.
  */
 public class OperationHistory {
 
@@ -17,8 +24,12 @@ public class OperationHistory {
   // TODO: has to be dependent on the Eclipse properties
   public final int MAX_SIZE = 1000;
 
-  protected HashMap<SPath, LinkedList<EditorHistoryEntry>> history =
-      new HashMap<SPath, LinkedList<EditorHistoryEntry>>();
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final HashMap<SPath, EditorHistory> history = new HashMap<SPath, EditorHistory>();
+
+  /** transformation used to include newer operations into inverted operations */
+  protected final InclusionTransformation transformation;
 
   /**
    * An operation can have three types. A local operation can be undone. A remote operation is not
@@ -35,6 +46,12 @@ public class OperationHistory {
     protected final Type type;
     protected final Operation operation;
 
+    /** the inverted operation transformed against all entries before {@link #transformedUpTo} */
+    private Operation transformedInverse;
+
+    /** sequence number of the first entry not yet included into {@link #transformedInverse} */
+    private long transformedUpTo;
+
     public EditorHistoryEntry(Type type, Operation operation) {
       this.type = type;
       this.operation = operation;
@@ -74,6 +91,183 @@ public class OperationHistory {
     }
   }
 
+  /**
+   * The history of a single editor. Every entry gets a sequence number, the entry with the sequence
+   * number <code>s</code> is stored at index <code>s % entries.length</code>.
+   */
+  private final class EditorHistory {
+    private EditorHistoryEntry[] entries = new EditorHistoryEntry[INITIAL_CAPACITY];
+
+    /** sequence number of the oldest entry */
+    private long first;
+
+    /** sequence number the next entry will get */
+    private long next;
+
+    private final SequenceIndex locals = new SequenceIndex();
+    private final SequenceIndex redoables = new SequenceIndex();
+
+    private void add(final EditorHistoryEntry entry) {
+      // history shouldn't overflow, remove too old elements
+      while (next - first >= MAX_SIZE) removeOldest();
+
+      if (next - first == entries.length) grow();
+
+      final long latestLocal = locals.last();
+      final long latestRedoable = redoables.last();
+
+      set(next, entry);
+
+      final SequenceIndex index = indexOf(entry.type);
+
+      if (index != null) index.add(next);
+
+      next++;
+
+      /*
+       * keep the inverses of the operations that are undone or redone next
+       * up to date, this way the transformation effort is spread over the
+       * incoming operations instead of being spent at once on an undo
+       */
+      if (latestLocal != -1) includeNewer(latestLocal, next);
+      if (latestRedoable != -1) includeNewer(latestRedoable, next);
+    }
+
+    private void removeOldest() {
+      locals.removeIfFirst(first);
+      redoables.removeIfFirst(first);
+      set(first, null);
+      first++;
+    }
+
+    private void grow() {
+      final EditorHistoryEntry[] grown =
+          new EditorHistoryEntry[Math.min(entries.length * 2, MAX_SIZE)];
+
+      for (long seq = first; seq < next; seq++) grown[(int) (seq % grown.length)] = get(seq);
+
+      entries = grown;
+    }
+
+    private EditorHistoryEntry get(final long seq) {
+      return entries[(int) (seq % entries.length)];
+    }
+
+    private void set(final long seq, final EditorHistoryEntry entry) {
+      entries[(int) (seq % entries.length)] = entry;
+    }
+
+    private SequenceIndex indexOf(final Type type) {
+      switch (type) {
+        case LOCAL:
+          return locals;
+        case REDOABLE:
+          return redoables;
+        default:
+          return null;
+      }
+    }
+
+    /** @return the sequence number of the latest entry of the given type, -1 if there is none */
+    private long latest(final Type type) {
+      final SequenceIndex index = indexOf(type);
+
+      if (index != null) return index.last();
+
+      for (long seq = next - 1; seq >= first; seq--) if (get(seq).type == type) return seq;
+
+      return -1;
+    }
+
+    /**
+     * Includes all entries between the already included ones and the given sequence number
+     * (exclusive) into the transformed inverse of the entry with the given sequence number.
+     */
+    private Operation includeNewer(final long seq, final long upTo) {
+      final EditorHistoryEntry entry = get(seq);
+
+      if (entry.transformedInverse == null) {
+        entry.transformedInverse = entry.operation.invert();
+        entry.transformedUpTo = seq + 1;
+      }
+
+      Operation inverse = entry.transformedInverse;
+
+      for (long current = entry.transformedUpTo; current < upTo; current++)
+        inverse = transformation.transform(inverse, get(current).operation, Boolean.TRUE);
+
+      entry.transformedInverse = inverse;
+      entry.transformedUpTo = upTo;
+
+      return inverse;
+    }
+
+    private void replace(final long seq, final EditorHistoryEntry entry) {
+      final EditorHistoryEntry oldEntry = get(seq);
+
+      final SequenceIndex oldIndex = indexOf(oldEntry.type);
+      final SequenceIndex newIndex = indexOf(entry.type);
+
+      if (oldIndex != null) oldIndex.remove(seq);
+      if (newIndex != null) newIndex.add(seq);
+
+      entry.transformedInverse = oldEntry.transformedInverse;
+      entry.transformedUpTo = oldEntry.transformedUpTo;
+
+      set(seq, entry);
+    }
+  }
+
+  /** Sorted sequence numbers of the entries of one type. */
+  private static final class SequenceIndex {
+    private long[] seqs = new long[INITIAL_CAPACITY];
+    private int start;
+    private int end;
+
+    private long last() {
+      return start == end ? -1 : seqs[end - 1];
+    }
+
+    private void add(final long seq) {
+      if (end == seqs.length) {
+        if (start > seqs.length / 2) {
+          System.arraycopy(seqs, start, seqs, 0, end - start);
+        } else {
+          seqs = Arrays.copyOfRange(seqs, start, start + seqs.length * 2);
+        }
+
+        end -= start;
+        start = 0;
+      }
+
+      // entries are usually added in order, types may be replaced in the middle
+      int idx = end;
+
+      while (idx > start && seqs[idx - 1] > seq) idx--;
+
+      System.arraycopy(seqs, idx, seqs, idx + 1, end - idx);
+      seqs[idx] = seq;
+      end++;
+    }
+
+    private void remove(final long seq) {
+      final int idx = Arrays.binarySearch(seqs, start, end, seq);
+
+      if (idx < 0) return;
+
+      System.arraycopy(seqs, idx + 1, seqs, idx, end - idx - 1);
+      end--;
+    }
+
+    private void removeIfFirst(final long seq) {
+      if (start != end && seqs[start] == seq) start++;
+    }
+  }
+
+  public OperationHistory(InclusionTransformation transformation) {
+    this.transformation = transformation;
+  }
+
   /**
    * Adds an Operation to the history. Too old elements are removed if the list is full.
    *
@@ -81,20 +275,14 @@ public class OperationHistory {
    */
   public void add(SPath editor, Type type, Operation operation) {
 
-    LinkedList<EditorHistoryEntry> editorHistory = history.get(editor);
+    EditorHistory editorHistory = history.get(editor);
 
     if (editorHistory == null) {
-      editorHistory = new LinkedList<EditorHistoryEntry>();
+      editorHistory = new EditorHistory();
       history.put(editor, editorHistory);
     }
 
-    // history shouldn't overflow, remove too old elements
-    for (int i = editorHistory.size(); i >= MAX_SIZE; i--) {
-      editorHistory.removeLast();
-    }
-
-    EditorHistoryEntry entry = new EditorHistoryEntry(type, operation);
-    editorHistory.add(0, entry);
+    editorHistory.add(new EditorHistoryEntry(type, operation));
   }
 
   /** @return the latest local Operation in the editor's history, null if there is none */
@@ -113,13 +301,43 @@ public class OperationHistory {
 
   protected Operation getLatestOfType(Type type, SPath editor) {
 
-    List<EditorHistoryEntry> editorHistory = history.get(editor);
+    EditorHistory editorHistory = history.get(editor);
     if (editorHistory == null) return null;
 
-    for (EditorHistoryEntry entry : editorHistory) {
-      if (entry.getType() == type) return entry.getOperation();
-    }
-    return null;
+    long seq = editorHistory.latest(type);
+
+    return seq == -1 ? null : editorHistory.get(seq).getOperation();
+  }
+
+  /**
+   * @return the inverse of the latest local Operation transformed against all newer entries, null
+   *     if there is none
+   */
+  public Operation getTransformedInverseOfLatestLocal(SPath editor) {
+    return getTransformedInverseOfLatest(Type.LOCAL, editor);
+  }
+
+  /**
+   * @return the inverse of the latest redoable Operation transformed against all newer entries,
+   *     null if there is none
+   */
+  public Operation getTransformedInverseOfLatestRedoable(SPath editor) {
+    return getTransformedInverseOfLatest(Type.REDOABLE, editor);
+  }
+
+  /**
+   * @return the inverse of the latest Operation of the given type transformed against all newer
+   *     entries, null if there is none
+   */
+  protected Operation getTransformedInverseOfLatest(Type type, SPath editor) {
+
+    EditorHistory editorHistory = history.get(editor);
+    if (editorHistory == null) return null;
+
+    long seq = editorHistory.latest(type);
+    if (seq == -1) return null;
+
+    return editorHistory.includeNewer(seq, editorHistory.next);
   }
 
   /**
@@ -144,18 +362,17 @@ public class OperationHistory {
    */
   protected List<EditorHistoryEntry> entriesToLatestOfType(Type type, SPath editor) {
 
-    List<EditorHistoryEntry> result = new LinkedList<EditorHistoryEntry>();
+    EditorHistory editorHistory = history.get(editor);
+    if (editorHistory == null) return new ArrayList<EditorHistoryEntry>(0);
 
-    List<EditorHistoryEntry> editorHistory = history.get(editor);
-    if (editorHistory == null) return result;
+    long seq = editorHistory.latest(type);
+    long from = seq == -1 ? editorHistory.first : seq + 1;
+
+    List<EditorHistoryEntry> result =
+        new ArrayList<EditorHistoryEntry>((int) (editorHistory.next - from));
+
+    for (; from < editorHistory.next; from++) result.add(editorHistory.get(from));
 
-    for (EditorHistoryEntry entry : editorHistory) {
-      if (entry.getType() != type) {
-        result.add(0, entry);
-      } else {
-        return result;
-      }
-    }
     return result;
   }
 
@@ -164,17 +381,23 @@ public class OperationHistory {
     EditorHistoryEntry oldEntry = new EditorHistoryEntry(oldType, operation);
     EditorHistoryEntry newEntry = new EditorHistoryEntry(newType, operation);
 
-    LinkedList<EditorHistoryEntry> editorHistory = history.get(editor);
+    EditorHistory editorHistory = history.get(editor);
 
     if (editorHistory == null)
       throw new IllegalArgumentException(
           "Cannot replace type of " + operation + ", history empty for editor " + editor);
 
-    ListIterator<EditorHistoryEntry> it = editorHistory.listIterator(0);
+    // usually the latest entry of the old type is replaced
+    long latest = editorHistory.latest(oldType);
 
-    while (it.hasNext()) {
-      if (it.next().equals(oldEntry)) {
-        it.set(newEntry);
+    if (latest != -1 && editorHistory.get(latest).equals(oldEntry)) {
+      editorHistory.replace(latest, newEntry);
+      return;
+    }
+
+    for (long seq = editorHistory.next - 1; seq >= editorHistory.first; seq--) {
+      if (editorHistory.get(seq).equals(oldEntry)) {
+        editorHistory.replace(seq, newEntry);
         return;
       }
     }
@@ -190,10 +413,18 @@ public class OperationHistory {
     history.clear();
   }
 
+  /** @return all entries of the editor's history (newest first) */
   public List<EditorHistoryEntry> getAllEntries(SPath editor) {
-    return (history.get(editor) != null)
-        ? history.get(editor)
-        : new LinkedList<EditorHistoryEntry>();
+    EditorHistory editorHistory = history.get(editor);
+    if (editorHistory == null) return new ArrayList<EditorHistoryEntry>(0);
+
+    List<EditorHistoryEntry> result =
+        new ArrayList<EditorHistoryEntry>((int) (editorHistory.next - editorHistory.first));
+
+    for (long seq = editorHistory.next - 1; seq >= editorHistory.first; seq--)
+      result.add(editorHistory.get(seq));
+
+    return result;
   }
 
   public boolean canUndo(SPath editor) {
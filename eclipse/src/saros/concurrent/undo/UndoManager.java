@@ -35,7 +35,6 @@ import saros.concurrent.jupiter.internal.text.ITextOperation;
 import saros.concurrent.jupiter.internal.text.InsertOperation;
 import saros.concurrent.jupiter.internal.text.NoOperation;
 import saros.concurrent.jupiter.internal.text.SplitOperation;
-import saros.concurrent.undo.OperationHistory.EditorHistoryEntry;
 import saros.concurrent.undo.OperationHistory.Type;
 import saros.editor.EditorManager;
 import saros.editor.ISharedEditorListener;
@@ -86,7 +85,7 @@ public class UndoManager extends AbstractActivityConsumer implements Disposable
   protected InclusionTransformation transformation = new GOTOInclusionTransformation();
 
   /** The concurrent OperationHistory */
-  protected OperationHistory undoHistory = new OperationHistory();
+  protected OperationHistory undoHistory = new OperationHistory(transformation);
 
   protected IOperationHistory eclipseHistory = OperationHistoryFactory.getOperationHistory();
 
@@ -399,16 +398,9 @@ public class UndoManager extends AbstractActivityConsumer implements Disposable
 
     assert lastLocal != null;
 
-    Operation undoOperation = lastLocal.invert();
+    Operation undoOperation = undoHistory.getTransformedInverseOfLatestLocal(editor);
 
-    for (EditorHistoryEntry entry : undoHistory.entriesToLatestLocal(editor)) {
-
-      Operation operation = entry.getOperation();
-
-      undoOperation = transformation.transform(undoOperation, operation, Boolean.TRUE);
-
-      log.debug("transformed undo: " + undoOperation);
-    }
+    log.debug("transformed undo: " + undoOperation);
 
     undoHistory.replaceType(editor, lastLocal, Type.LOCAL, Type.REMOTE);
     // it is not relevant any more, so it is set remote
@@ -427,12 +419,8 @@ public class UndoManager extends AbstractActivityConsumer implements Disposable
 
     assert lastUndo != null;
 
-    Operation redoOperation = lastUndo.invert();
-
-    for (EditorHistoryEntry entry : undoHistory.entriesToLatestRedoable(editor)) {
+    Operation redoOperation = undoHistory.getTransformedInverseOfLatestRedoable(editor);
 
-      redoOperation = transformation.transform(redoOperation, entry.getOperation(), Boolean.TRUE);
-    }
     undoHistory.replaceType(editor, lastUndo, Type.REDOABLE, Type.REMOTE);
     // it is not relevant any more, so it is set remote
 
@@ -4,21 +4,21 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
-import java.util.Set;
 import org.apache.log4j.Logger;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.AnnotationModelEvent;
 import org.eclipse.jface.text.source.IAnnotationModel;
+import org.eclipse.jface.text.source.IAnnotationModelListener;
+import org.eclipse.jface.text.source.IAnnotationModelListenerExtension;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
 import saros.editor.annotations.ContributionAnnotation;
+import saros.editor.internal.ContributionAnnotationStore.Contribution;
+import saros.editor.internal.ContributionAnnotationStore.Entry;
 import saros.preferences.EclipsePreferenceConstants;
 import saros.session.ISarosSession;
 import saros.session.ISessionListener;
@@ -30,35 +30,34 @@ import saros.ui.util.SWTUtils;
  * session participants. Additions and changes are represented by {@link ContributionAnnotation}s
  * and distinguished by authors (deletions are not highlighted). The Annotations are added in
  * real-time along with the application of the textual changes and are removed when the characters
- * they belong to are deleted, the session ends, or their respective author leaves the session. To
- * avoid cluttering the editors, only the last {@value #MAX_HISTORY_LENGTH} changes are annotated.
+ * they belong to are deleted, the session ends, or their respective author leaves the session.
+ * Consecutive changes of an author are merged into one annotation. To avoid cluttering the editors,
+ * only the last {@link #MAX_HISTORY_LENGTH} changes per author and at most {@link #MAX_ANNOTATIONS}
+ * annotations overall are kept, older ones are removed first.
  *
  * <p>This class takes care of managing the annotations for session participants which involves
- * adding, removing, and splitting of Annotations.
+ * adding, removing, merging, and splitting of Annotations. The annotations are tracked in a {@link
+ * ContributionAnnotationStore} so that the annotation models do not have to be scanned on every
+ * text change.
  */
 // <p>TODO Move responsibilities from EditorManager to here
 public class ContributionAnnotationManager {
 
-  private static final class History {
-    private final LinkedList<HistoryEntry> entries = new LinkedList<>();
-    private int currentInsertStamp = 0;
-  }
+  private static final Logger log = Logger.getLogger(ContributionAnnotationManager.class);
 
-  private static final class HistoryEntry {
-    private ContributionAnnotation annotation;
-    private int insertStamp;
+  /** The maximum number of contributions that are annotated per user. */
+  static final int MAX_HISTORY_LENGTH =
+      Integer.getInteger("saros.eclipse.MAX_CONTRIBUTION_HISTORY_LENGTH", 20);
 
-    private HistoryEntry(final ContributionAnnotation annotation, final int insertStamp) {
-      this.annotation = annotation;
-      this.insertStamp = insertStamp;
-    }
-  }
+  /** The maximum number of contribution annotations over all users and annotation models. */
+  static final int MAX_ANNOTATIONS =
+      Integer.getInteger("saros.eclipse.MAX_CONTRIBUTION_ANNOTATIONS", 500);
 
-  private static final Logger log = Logger.getLogger(ContributionAnnotationManager.class);
+  private final ContributionAnnotationStore store = new ContributionAnnotationStore();
 
-  static final int MAX_HISTORY_LENGTH = 20;
+  private final int maxHistoryLength;
 
-  private final Map<User, History> sourceToHistory = new HashMap<>();
+  private final int maxAnnotations;
 
   private final ISarosSession sarosSession;
 
@@ -99,11 +98,31 @@ public class ContributionAnnotationManager {
         }
       };
 
+  /**
+   * Keeps the store in sync with annotation models that remove contribution annotations on their
+   * own, e.g. because the annotated text was deleted.
+   */
+  private final IAnnotationModelListener annotationModelListener = new AnnotationModelListener();
+
   public ContributionAnnotationManager(
       ISarosSession sarosSession, IPreferenceStore preferenceStore) {
+    this(sarosSession, preferenceStore, MAX_HISTORY_LENGTH, MAX_ANNOTATIONS);
+  }
+
+  /**
+   * @param maxHistoryLength the maximum number of contributions that are annotated per user
+   * @param maxAnnotations the maximum number of contribution annotations over all users
+   */
+  ContributionAnnotationManager(
+      ISarosSession sarosSession,
+      IPreferenceStore preferenceStore,
+      int maxHistoryLength,
+      int maxAnnotations) {
 
     this.sarosSession = sarosSession;
     this.preferenceStore = preferenceStore;
+    this.maxHistoryLength = Math.max(1, maxHistoryLength);
+    this.maxAnnotations = Math.max(1, maxAnnotations);
     this.preferenceStore.addPropertyChangeListener(propertyChangeListener);
     this.sarosSession.addListener(sessionListener);
 
@@ -113,7 +132,9 @@ public class ContributionAnnotationManager {
 
   /**
    * Inserts a contribution annotation to given model if there is not already a contribution
-   * annotation at given position. This method should be called after the text has changed.
+   * annotation at given position. If the inserted text directly borders on a contribution
+   * annotation of the same user, that annotation is extended instead. This method should be called
+   * after the text has changed.
    *
    * @param model to add the annotation to.
    * @param offset start of the annotation to add.
@@ -128,12 +149,14 @@ public class ContributionAnnotationManager {
     return;
 
     /* Return early if there already is an annotation at that offset */
-    for (Iterator<Annotation> it = model.getAnnotationIterator(); it.hasNext(); ) {
-      Annotation annotation = it.next();
+    if (store.findEntry(model, source, offset) != null) return;
+
+    if (length > 0) {
+      final Entry preceding = store.findEntryEndingAt(model, source, offset);
+      final Entry following = store.findEntryStartingAt(model, source, offset + length);
 
-      if (annotation instanceof ContributionAnnotation
-          && model.getPosition(annotation).includes(offset)
-          && ((ContributionAnnotation) annotation).getSource().equals(source)) {
+      if (preceding != null || following != null) {
+        mergeContributionAnnotations(model, preceding, following, offset, length);
         return;
       }
     }
@@ -153,41 +176,42 @@ public class ContributionAnnotationManager {
 
     if (!contribtionAnnotationsEnabled) return;
 
-    final List<ContributionAnnotation> annotationsToRemove =
-        new ArrayList<ContributionAnnotation>();
+    List<ContributionAnnotation> annotationsToRemove = null;
+    Map<ContributionAnnotation, Position> annotationsToAdd = null;
 
-    final Map<ContributionAnnotation, Position> annotationsToAdd =
-        new HashMap<ContributionAnnotation, Position>();
+    for (final User source : store.getSources(model)) {
 
-    for (Iterator<Annotation> it = model.getAnnotationIterator(); it.hasNext(); ) {
+      final Entry entry = store.findEntry(model, source, offset);
 
-      final Annotation annotation = it.next();
+      if (entry == null) continue;
 
-      if (!(annotation instanceof ContributionAnnotation)) continue;
+      final Position pos = entry.getPosition();
 
-      final ContributionAnnotation contributionAnnotation = (ContributionAnnotation) annotation;
-      final User source = contributionAnnotation.getSource();
+      if (offset <= pos.offset) continue;
 
-      final Position pos = model.getPosition(contributionAnnotation);
-
-      if ((offset > pos.offset) && (offset < pos.offset + pos.length)) {
+      if (annotationsToRemove == null) {
+        annotationsToRemove = new ArrayList<>();
+        annotationsToAdd = new HashMap<>();
+      }
 
-        final Position before = new Position(pos.offset, offset - pos.offset);
+      final Position before = new Position(pos.offset, offset - pos.offset);
 
-        final Position after = new Position(offset, pos.length - (offset - pos.offset));
+      final Position after = new Position(offset, pos.length - (offset - pos.offset));
 
-        annotationsToRemove.add(contributionAnnotation);
+      annotationsToRemove.add(entry.getAnnotation());
 
-        final ContributionAnnotation beforeAnnotation = new ContributionAnnotation(source, model);
-        final ContributionAnnotation afterAnnotation = new ContributionAnnotation(source, model);
+      final ContributionAnnotation beforeAnnotation = new ContributionAnnotation(source, model);
+      final ContributionAnnotation afterAnnotation = new ContributionAnnotation(source, model);
 
-        annotationsToAdd.put(beforeAnnotation, before);
-        annotationsToAdd.put(afterAnnotation, after);
+      annotationsToAdd.put(beforeAnnotation, before);
+      annotationsToAdd.put(afterAnnotation, after);
 
-        replaceInHistory(contributionAnnotation, beforeAnnotation, afterAnnotation);
-      }
+      store.replace(entry, beforeAnnotation, before);
+      store.add(entry.getContribution(), afterAnnotation, after);
     }
 
+    if (annotationsToRemove == null) return;
+
     annotationModelHelper.replaceAnnotationsInModel(model, annotationsToRemove, annotationsToAdd);
   }
 
@@ -201,16 +225,15 @@ public class ContributionAnnotationManager {
     List<Annotation> annotationsToRemove = new ArrayList<Annotation>();
     Map<Annotation, Position> annotationsToAdd = new HashMap<Annotation, Position>();
 
-    for (Iterator<Annotation> it = model.getAnnotationIterator(); it.hasNext(); ) {
+    for (final Entry entry : store.getEntries(model)) {
 
-      Annotation annotation = it.next();
-
-      if (!(annotation instanceof ContributionAnnotation)) continue;
+      final ContributionAnnotation annotation = entry.getAnnotation();
 
       Position position = model.getPosition(annotation);
 
       if (position == null) {
         log.warn("annotation could not be found in the current model: " + annotation);
+        store.remove(entry);
         continue;
       }
 
@@ -223,11 +246,11 @@ public class ContributionAnnotationManager {
       annotationsToRemove.add(annotation);
 
       ContributionAnnotation annotationToAdd =
-          new ContributionAnnotation(((ContributionAnnotation) annotation).getSource(), model);
+          new ContributionAnnotation(annotation.getSource(), model);
 
       annotationsToAdd.put(annotationToAdd, position);
 
-      replaceInHistory((ContributionAnnotation) annotation, annotationToAdd);
+      store.replace(entry, annotationToAdd, position);
     }
 
     if (annotationsToRemove.isEmpty()) return;
@@ -241,108 +264,113 @@ public class ContributionAnnotationManager {
     removeAllAnnotations();
   }
 
-  /** Get the history of the given user. If no history is available a new one is created. */
-  private History getHistory(final User user) {
-    return sourceToHistory.computeIfAbsent(user, u -> new History());
-  }
-
   /**
-   * Add a contribution annotation to the annotation model and store it into the history of the
-   * associated user. Old entries are removed from the history and the annotation model.
+   * Add a contribution annotation to the annotation model and store it as the latest contribution
+   * of the associated user. Old contributions are removed from the store and the annotation model.
    */
   private void addContributionAnnotation(
       final ContributionAnnotation annotation, final Position position) {
 
-    final History history = getHistory(annotation.getSource());
-
-    final List<HistoryEntry> removedEntries = removeHistoryEntries(history);
+    final IAnnotationModel model = annotation.getModel();
 
-    final HistoryEntry newEntry = new HistoryEntry(annotation, history.currentInsertStamp);
+    final boolean isNewModel = !store.getModels().contains(model);
 
-    history.currentInsertStamp = (history.currentInsertStamp + 1) % MAX_HISTORY_LENGTH;
+    store.add(annotation, position);
 
-    history.entries.add(newEntry);
+    model.addAnnotation(annotation, position);
 
-    if (removedEntries.isEmpty()) {
-      annotation.getModel().addAnnotation(annotation, position);
-      return;
-    }
-
-    // TODO OPTIMIZE it is usually 2 annotations after the queue is full
-    annotation.getModel().addAnnotation(annotation, position);
+    /*
+     * register after the annotation was added, the model notifies new
+     * listeners immediately with a world change event
+     */
+    if (isNewModel) model.addAnnotationModelListener(annotationModelListener);
 
-    for (final HistoryEntry entry : removedEntries)
-      entry.annotation.getModel().removeAnnotation(entry.annotation);
+    removeExceedingContributions(annotation.getSource());
   }
 
   /**
-   * Removes entries from the history based on the history current insert stamp. This method <b>DOES
-   * NOT</b> alter the annotation model the removed annotations in the history belong to!
+   * Merges the given text region into the adjacent annotations of the same user. If the region
+   * fills the gap between two annotations, both annotations are merged into one. The resulting
+   * contribution becomes the latest contribution of the user.
    */
-  private List<HistoryEntry> removeHistoryEntries(final History history) {
-
-    final List<HistoryEntry> removedEntries = new ArrayList<>();
-
-    final int insertStampToRemove = history.currentInsertStamp;
-
-    /* the logic assumes that the entry order does not change during lifetime
-     * i.e if we have a history of size 4 the list must look like this regarding the insert stamps
-     * 0 0 0 1 2 3 3 3 0 1 1 1 2 2 2 2 3 0 1 1 1 1 1 2 3 ... and so on
-     */
+  private void mergeContributionAnnotations(
+      final IAnnotationModel model,
+      final Entry preceding,
+      final Entry following,
+      final int offset,
+      final int length) {
+
+    if (preceding == null) {
+      final Position pos = following.getPosition();
+
+      modifyAnnotationPosition(model, following, offset, pos.offset + pos.length - offset);
+      store.touch(following.getContribution());
+      return;
+    }
 
-    final Iterator<HistoryEntry> it = history.entries.iterator();
+    int end = offset + length;
 
-    while (it.hasNext()) {
-      final HistoryEntry entry = it.next();
+    if (following != null) {
+      final Position pos = following.getPosition();
 
-      if (entry.insertStamp != insertStampToRemove) break;
+      end = pos.offset + pos.length;
 
-      removedEntries.add(entry);
-      it.remove();
+      store.remove(following);
+      model.removeAnnotation(following.getAnnotation());
     }
 
-    return removedEntries;
+    final int start = preceding.getPosition().offset;
+
+    modifyAnnotationPosition(model, preceding, start, end - start);
+    store.touch(preceding.getContribution());
   }
 
   /**
-   * Replaces an existing annotation in the current history with new annotations. This method
-   * <b>DOES NOT</b> alter the annotation model!
+   * Replaces the annotation of the given entry by an annotation at the given position. The
+   * annotation is replaced instead of moved as moving requires the model to be connected to a
+   * document.
    */
-  private void replaceInHistory(
-      final ContributionAnnotation oldAnnotation, final ContributionAnnotation... newAnnotations) {
+  private void modifyAnnotationPosition(
+      final IAnnotationModel model, final Entry entry, final int offset, final int length) {
 
-    final User user = oldAnnotation.getSource();
+    final ContributionAnnotation annotation = entry.getAnnotation();
 
-    final History history = getHistory(user);
+    final ContributionAnnotation annotationToAdd =
+        new ContributionAnnotation(annotation.getSource(), model);
 
-    /* update the history entry, e.g we want to modify annotation D
-     * pre: A, B, C, D, E, F, G
-     * post: A, B, C, D_0, D_1, ..., D_N, E, F, G
-     *
-     */
-    for (final ListIterator<HistoryEntry> lit = history.entries.listIterator(); lit.hasNext(); ) {
+    final Position position = new Position(offset, length);
 
-      final HistoryEntry entry = lit.next();
+    store.replace(entry, annotationToAdd, position);
 
-      if (entry.annotation.equals(oldAnnotation)) {
+    annotationModelHelper.replaceAnnotationsInModel(
+        model,
+        Collections.singletonList(annotation),
+        Collections.singletonMap(annotationToAdd, position));
+  }
 
-        // see JavaDoc remove must be called BEFORE add
-        lit.remove();
+  /**
+   * Removes the oldest contributions of the given user from the store and the annotation models
+   * until the history length and the overall number of annotations are within their bounds.
+   */
+  private void removeExceedingContributions(final User source) {
+    while (store.getContributionCount(source) > maxHistoryLength)
+      removeContribution(store.getOldestContribution(source));
 
-        for (int i = 0; i < newAnnotations.length; i++) {
-          assert oldAnnotation.getSource().equals(newAnnotations[i].getSource());
-          lit.add(new HistoryEntry(newAnnotations[i], entry.insertStamp));
-        }
+    while (store.getAnnotationCount() > maxAnnotations)
+      removeContribution(store.getOldestContribution());
+  }
 
-        return;
-      }
-    }
+  /** Removes all annotations of the given contribution from the store and its annotation model. */
+  private void removeContribution(final Contribution contribution) {
+    final List<Entry> removedEntries = store.remove(contribution);
+
+    final IAnnotationModel model = contribution.getModel();
 
-    log.warn(
-        "could not find annotation "
-            + oldAnnotation
-            + " in the current history for user: "
-            + oldAnnotation.getSource());
+    if (removedEntries.size() == 1) model.removeAnnotation(removedEntries.get(0).getAnnotation());
+    else removeFromAnnotationModel(model, removedEntries);
+
+    if (!store.getModels().contains(model))
+      model.removeAnnotationModelListener(annotationModelListener);
   }
 
   /**
@@ -350,7 +378,7 @@ public class ContributionAnnotationManager {
    * all users.
    */
   private void removeAllAnnotations() {
-    removeFromHistoryAndAnnotationModel(sourceToHistory.values());
+    removeFromAnnotationModels(store.removeAll());
   }
 
   /**
@@ -358,35 +386,83 @@ public class ContributionAnnotationManager {
    * the given user. The entries of the history are removed as well.
    */
   private void removeAnnotationsForUser(final User user) {
-    final History history = sourceToHistory.get(user);
+    removeFromAnnotationModels(store.removeAll(user));
+  }
+
+  /**
+   * Removes the annotations of the given (already removed) entries from their annotation models.
+   */
+  private void removeFromAnnotationModels(final Collection<Entry> entries) {
+
+    final Map<IAnnotationModel, List<Entry>> entriesPerModel = new HashMap<>();
+
+    for (final Entry entry : entries)
+      entriesPerModel
+          .computeIfAbsent(entry.getContribution().getModel(), m -> new ArrayList<>())
+          .add(entry);
+
+    for (final Map.Entry<IAnnotationModel, List<Entry>> modelEntries : entriesPerModel.entrySet()) {
 
-    if (history != null) removeFromHistoryAndAnnotationModel(Collections.singletonList(history));
+      final IAnnotationModel model = modelEntries.getKey();
+
+      removeFromAnnotationModel(model, modelEntries.getValue());
+
+      if (!store.getModels().contains(model))
+        model.removeAnnotationModelListener(annotationModelListener);
+    }
+  }
+
+  private void removeFromAnnotationModel(
+      final IAnnotationModel model, final Collection<Entry> entries) {
+
+    final List<Annotation> annotationsToRemove = new ArrayList<>(entries.size());
+
+    for (final Entry entry : entries) annotationsToRemove.add(entry.getAnnotation());
+
+    annotationModelHelper.replaceAnnotationsInModel(
+        model, annotationsToRemove, Collections.<Annotation, Position>emptyMap());
   }
 
   /**
-   * Removes all annotations from all annotation models of the given histories. The entries of the
-   * histories are removed as well.
+   * Removes the annotations of the given model from the store that are no longer part of the model.
    */
-  private void removeFromHistoryAndAnnotationModel(final Collection<History> histories) {
+  private void removeStaleEntries(final IAnnotationModel model) {
+    for (final Entry entry : store.getEntries(model)) {
+      if (model.getPosition(entry.getAnnotation()) == null) store.remove(entry);
+    }
+  }
+
+  private final class AnnotationModelListener
+      implements IAnnotationModelListener, IAnnotationModelListenerExtension {
+
+    @Override
+    public void modelChanged(final IAnnotationModel model) {
+      // only called by models that do not support the extension
+      removeStaleEntries(model);
+      unregisterIfUnused(model);
+    }
 
-    final Set<IAnnotationModel> annotationModels = new HashSet<>();
-    final Set<User> users = new HashSet<>();
+    @Override
+    public void modelChanged(final AnnotationModelEvent event) {
+      final IAnnotationModel model = event.getAnnotationModel();
 
-    for (final History history : histories) {
-      while (!history.entries.isEmpty()) {
+      if (event.isWorldChange()) {
+        removeStaleEntries(model);
+      } else {
+        for (final Annotation annotation : event.getRemovedAnnotations()) {
+          if (!(annotation instanceof ContributionAnnotation)) continue;
 
-        final HistoryEntry entry = history.entries.poll();
+          final Entry entry = store.getEntry((ContributionAnnotation) annotation);
 
-        annotationModels.add(entry.annotation.getModel());
-        users.add(entry.annotation.getSource());
+          if (entry != null) store.remove(entry);
+        }
       }
+
+      unregisterIfUnused(model);
     }
 
-    for (final IAnnotationModel annotationModel : annotationModels)
-      annotationModelHelper.removeAnnotationsFromModel(
-          annotationModel,
-          (a) ->
-              a instanceof ContributionAnnotation
-                  && users.contains(((ContributionAnnotation) (a)).getSource()));
+    private void unregisterIfUnused(final IAnnotationModel model) {
+      if (!store.getModels().contains(model)) model.removeAnnotationModelListener(this);
+    }
   }
 }
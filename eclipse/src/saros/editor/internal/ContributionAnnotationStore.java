@@ -0,0 +1,400 @@
+package saros.editor.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.IAnnotationModel;
+import saros.editor.annotations.ContributionAnnotation;
+import saros.session.User;
+
+/**
+ * Index of the {@link ContributionAnnotation}s managed by the {@link
+ * ContributionAnnotationManager}.
+ *
+ * <p>The annotations of a user are kept per annotation model ordered by their position. The
+ * positions are updated in place by the document the annotation model is connected to. As the
+ * annotations of one user never overlap, these updates never change their relative order. The
+ * annotation at a given offset can therefore be found by a binary search instead of iterating over
+ * all annotations of the model.
+ *
+ * <p>All annotations that originate from the same insertion (e.g. the parts of a split annotation)
+ * form one {@link Contribution}. Contributions are kept in the order they were last touched, per
+ * user and over all users, so that the oldest ones can be evicted first.
+ *
+ * <p>This class <b>DOES NOT</b> alter any annotation model and is not thread safe.
+ */
+final class ContributionAnnotationStore {
+
+  /** A single annotated region. */
+  static final class Entry {
+    private final Contribution contribution;
+    private ContributionAnnotation annotation;
+    private Position position;
+
+    private Entry(
+        final Contribution contribution,
+        final ContributionAnnotation annotation,
+        final Position position) {
+      this.contribution = contribution;
+      this.annotation = annotation;
+      this.position = position;
+    }
+
+    Contribution getContribution() {
+      return contribution;
+    }
+
+    ContributionAnnotation getAnnotation() {
+      return annotation;
+    }
+
+    Position getPosition() {
+      return position;
+    }
+  }
+
+  /** All annotated regions that originate from the same insertion of a user. */
+  static final class Contribution {
+    private final User source;
+    private final IAnnotationModel model;
+    private final List<Entry> entries = new ArrayList<>(2);
+
+    private Contribution(final User source, final IAnnotationModel model) {
+      this.source = source;
+      this.model = model;
+    }
+
+    User getSource() {
+      return source;
+    }
+
+    IAnnotationModel getModel() {
+      return model;
+    }
+  }
+
+  private final Map<IAnnotationModel, Map<User, List<Entry>>> modelIndex = new HashMap<>();
+
+  private final Map<ContributionAnnotation, Entry> annotationIndex = new HashMap<>();
+
+  private final Map<User, LinkedHashSet<Contribution>> histories = new HashMap<>();
+
+  private final LinkedHashSet<Contribution> contributions = new LinkedHashSet<>();
+
+  /**
+   * Adds the given annotation as a new contribution. The contribution becomes the latest
+   * contribution of its source.
+   */
+  Entry add(final ContributionAnnotation annotation, final Position position) {
+    final User source = annotation.getSource();
+    final Contribution contribution = new Contribution(source, annotation.getModel());
+
+    histories.computeIfAbsent(source, u -> new LinkedHashSet<>()).add(contribution);
+    contributions.add(contribution);
+
+    return add(contribution, annotation, position);
+  }
+
+  /**
+   * Adds the given annotation to an existing contribution. This does not change the age of the
+   * contribution.
+   */
+  Entry add(
+      final Contribution contribution,
+      final ContributionAnnotation annotation,
+      final Position position) {
+
+    assert contribution.source.equals(annotation.getSource());
+    assert contribution.model == annotation.getModel();
+
+    final Entry entry = new Entry(contribution, annotation, position);
+
+    final List<Entry> entries =
+        modelIndex
+            .computeIfAbsent(contribution.model, m -> new HashMap<>())
+            .computeIfAbsent(contribution.source, u -> new ArrayList<>());
+
+    entries.add(upperBound(entries, position.offset), entry);
+    contribution.entries.add(entry);
+    annotationIndex.put(annotation, entry);
+
+    return entry;
+  }
+
+  /**
+   * Replaces the annotation and position of the given entry. The new position must not change the
+   * order of the annotations of the user.
+   */
+  void replace(
+      final Entry entry, final ContributionAnnotation annotation, final Position position) {
+
+    assert entry.annotation.getSource().equals(annotation.getSource());
+
+    annotationIndex.remove(entry.annotation);
+    annotationIndex.put(annotation, entry);
+
+    entry.annotation = annotation;
+    entry.position = position;
+  }
+
+  /**
+   * Removes the given entry. The contribution of the entry is removed as well if it has no entries
+   * left.
+   */
+  void remove(final Entry entry) {
+    if (annotationIndex.remove(entry.annotation) == null) return;
+
+    final Contribution contribution = entry.contribution;
+
+    final Map<User, List<Entry>> userIndex = modelIndex.get(contribution.model);
+    final List<Entry> entries = userIndex.get(contribution.source);
+
+    entries.remove(indexOf(entries, entry));
+
+    if (entries.isEmpty()) {
+      userIndex.remove(contribution.source);
+
+      if (userIndex.isEmpty()) modelIndex.remove(contribution.model);
+    }
+
+    contribution.entries.remove(entry);
+
+    if (contribution.entries.isEmpty()) removeFromHistory(contribution);
+  }
+
+  /** Removes all entries of the given contribution and returns them. */
+  List<Entry> remove(final Contribution contribution) {
+    final List<Entry> entries = new ArrayList<>(contribution.entries);
+
+    for (final Entry entry : entries) remove(entry);
+
+    return entries;
+  }
+
+  /** Removes all entries of the given user and returns them. */
+  List<Entry> removeAll(final User source) {
+    final LinkedHashSet<Contribution> history = histories.get(source);
+
+    if (history == null) return Collections.emptyList();
+
+    final List<Entry> entries = new ArrayList<>();
+
+    for (final Contribution contribution : new ArrayList<>(history))
+      entries.addAll(remove(contribution));
+
+    return entries;
+  }
+
+  /** Removes all entries and returns them. */
+  List<Entry> removeAll() {
+    final List<Entry> entries = new ArrayList<>(annotationIndex.values());
+
+    modelIndex.clear();
+    annotationIndex.clear();
+    histories.clear();
+    contributions.clear();
+
+    return entries;
+  }
+
+  /** Marks the given contribution as the latest contribution of its source. */
+  void touch(final Contribution contribution) {
+    final LinkedHashSet<Contribution> history = histories.get(contribution.source);
+
+    if (history == null || !history.remove(contribution)) return;
+
+    history.add(contribution);
+    contributions.remove(contribution);
+    contributions.add(contribution);
+  }
+
+  /** Returns the entry of the given annotation or <code>null</code> if it is not stored. */
+  Entry getEntry(final ContributionAnnotation annotation) {
+    return annotationIndex.get(annotation);
+  }
+
+  /** Returns all entries of the given annotation model ordered by position per user. */
+  List<Entry> getEntries(final IAnnotationModel model) {
+    final Map<User, List<Entry>> userIndex = modelIndex.get(model);
+
+    if (userIndex == null) return Collections.emptyList();
+
+    final List<Entry> entries = new ArrayList<>();
+
+    for (final List<Entry> userEntries : userIndex.values()) entries.addAll(userEntries);
+
+    return entries;
+  }
+
+  /** Returns the users that have entries in the given annotation model. */
+  Collection<User> getSources(final IAnnotationModel model) {
+    final Map<User, List<Entry>> userIndex = modelIndex.get(model);
+
+    if (userIndex == null) return Collections.emptySet();
+
+    return Collections.unmodifiableSet(userIndex.keySet());
+  }
+
+  /** Returns all annotation models that currently contain entries. */
+  Collection<IAnnotationModel> getModels() {
+    return Collections.unmodifiableSet(modelIndex.keySet());
+  }
+
+  /**
+   * Returns the entry of the given user whose position includes the given offset or <code>null
+   * </code> if there is no such entry.
+   */
+  Entry findEntry(final IAnnotationModel model, final User source, final int offset) {
+    final List<Entry> entries = getEntries(model, source);
+
+    final int idx = upperBound(entries, offset) - 1;
+
+    if (idx < 0) return null;
+
+    final Entry entry = entries.get(idx);
+
+    return entry.position.includes(offset) ? entry : null;
+  }
+
+  /**
+   * Returns the non empty entry of the given user whose position ends at the given offset or <code>
+   * null</code> if there is no such entry.
+   */
+  Entry findEntryEndingAt(final IAnnotationModel model, final User source, final int offset) {
+    final List<Entry> entries = getEntries(model, source);
+
+    final int idx = lowerBound(entries, offset) - 1;
+
+    if (idx < 0) return null;
+
+    final Entry entry = entries.get(idx);
+
+    return entry.position.offset + entry.position.length == offset ? entry : null;
+  }
+
+  /**
+   * Returns the non empty entry of the given user whose position starts at the given offset or
+   * <code>null</code> if there is no such entry.
+   */
+  Entry findEntryStartingAt(final IAnnotationModel model, final User source, final int offset) {
+    final List<Entry> entries = getEntries(model, source);
+
+    for (int idx = lowerBound(entries, offset); idx < entries.size(); idx++) {
+      final Entry entry = entries.get(idx);
+
+      if (entry.position.offset != offset) break;
+
+      if (entry.position.length > 0) return entry;
+    }
+
+    return null;
+  }
+
+  /** Returns the number of contributions of the given user. */
+  int getContributionCount(final User source) {
+    final LinkedHashSet<Contribution> history = histories.get(source);
+
+    return history == null ? 0 : history.size();
+  }
+
+  /** Returns the number of stored annotations. */
+  int getAnnotationCount() {
+    return annotationIndex.size();
+  }
+
+  /**
+   * Returns the contribution of the given user that was not touched for the longest time or <code>
+   * null</code> if the user has no contributions.
+   */
+  Contribution getOldestContribution(final User source) {
+    final LinkedHashSet<Contribution> history = histories.get(source);
+
+    return history == null ? null : first(history);
+  }
+
+  /**
+   * Returns the contribution that was not touched for the longest time or <code>null</code> if
+   * there are no contributions.
+   */
+  Contribution getOldestContribution() {
+    return first(contributions);
+  }
+
+  private void removeFromHistory(final Contribution contribution) {
+    final LinkedHashSet<Contribution> history = histories.get(contribution.source);
+
+    history.remove(contribution);
+
+    if (history.isEmpty()) histories.remove(contribution.source);
+
+    contributions.remove(contribution);
+  }
+
+  private List<Entry> getEntries(final IAnnotationModel model, final User source) {
+    final Map<User, List<Entry>> userIndex = modelIndex.get(model);
+
+    if (userIndex == null) return Collections.emptyList();
+
+    final List<Entry> entries = userIndex.get(source);
+
+    return entries == null ? Collections.<Entry>emptyList() : entries;
+  }
+
+  private static Contribution first(final Collection<Contribution> contributions) {
+    final Iterator<Contribution> it = contributions.iterator();
+
+    return it.hasNext() ? it.next() : null;
+  }
+
+  private static int indexOf(final List<Entry> entries, final Entry entry) {
+    for (int idx = lowerBound(entries, entry.position.offset); idx < entries.size(); idx++) {
+      final Entry current = entries.get(idx);
+
+      if (current == entry) return idx;
+
+      if (current.position.offset != entry.position.offset) break;
+    }
+
+    /*
+     * positions that were removed from their document without us being
+     * notified are no longer updated and may have broken the order
+     */
+    return entries.indexOf(entry);
+  }
+
+  /** Returns the index of the first entry whose offset is greater than or equal to the offset. */
+  private static int lowerBound(final List<Entry> entries, final int offset) {
+    int low = 0;
+    int high = entries.size();
+
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+
+      if (entries.get(mid).position.offset < offset) low = mid + 1;
+      else high = mid;
+    }
+
+    return low;
+  }
+
+  /** Returns the index of the first entry whose offset is greater than the offset. */
+  private static int upperBound(final List<Entry> entries, final int offset) {
+    int low = 0;
+    int high = entries.size();
+
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+
+      if (entries.get(mid).position.offset <= offset) low = mid + 1;
+      else high = mid;
+    }
+
+    return low;
+  }
+}
@@ -2,7 +2,6 @@ package saros.project;
 
 import java.io.ByteArrayInputStream;
 import java.nio.charset.Charset;
-import java.util.Arrays;
 import org.apache.log4j.Logger;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
@@ -157,11 +156,7 @@ public class FileActivityConsumer extends AbstractActivityConsumer implements St
     final String encoding = activity.getEncoding();
     final byte[] newContent = activity.getContent();
 
-    byte[] actualContent = null;
-
-    if (file.exists()) actualContent = FileUtils.getLocalFileContent(file);
-
-    if (!Arrays.equals(newContent, actualContent)) {
+    if (!file.exists() || !FileUtils.hasLocalFileContent(file, newContent)) {
       FileUtils.writeFile(new ByteArrayInputStream(newContent), file);
     } else {
       LOG.debug("FileActivity " + activity + " dropped (same content)");
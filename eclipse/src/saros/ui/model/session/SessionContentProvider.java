@@ -2,6 +2,8 @@ package saros.ui.model.session;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import org.eclipse.jface.viewers.Viewer;
 import saros.SarosPluginContext;
 import saros.activities.SPath;
@@ -12,6 +14,7 @@ import saros.editor.IFollowModeListener;
 import saros.editor.ISharedEditorListener;
 import saros.net.xmpp.contact.IContactsUpdate;
 import saros.net.xmpp.contact.IContactsUpdate.UpdateType;
+import saros.net.xmpp.contact.XMPPContact;
 import saros.net.xmpp.contact.XMPPContactsService;
 import saros.repackaged.picocontainer.annotations.Inject;
 import saros.session.ISarosSession;
@@ -98,9 +101,19 @@ public class SessionContentProvider extends TreeContentProvider {
 
   // TODO call update and not refresh
   private final IContactsUpdate contactsUpdate =
-      (contact, type) -> {
-        if (type == UpdateType.ADDED) ViewerUtils.expandAll(viewer);
-        ViewerUtils.refresh(viewer, true);
+      new IContactsUpdate() {
+        @Override
+        public void update(Optional<XMPPContact> contact, UpdateType type) {
+          if (type == UpdateType.ADDED) ViewerUtils.expandAll(viewer);
+          ViewerUtils.refresh(viewer, true);
+        }
+
+        @Override
+        public void updateAll(Map<XMPPContact, List<UpdateType>> updates) {
+          if (updates.values().stream().anyMatch(types -> types.contains(UpdateType.ADDED)))
+            ViewerUtils.expandAll(viewer);
+          ViewerUtils.refresh(viewer, true);
+        }
       };
 
   /*
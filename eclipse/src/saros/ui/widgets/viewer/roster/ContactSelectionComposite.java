@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.jface.viewers.CheckStateChangedEvent;
 import org.eclipse.jface.viewers.CheckboxTreeViewer;
@@ -21,6 +22,8 @@ import org.eclipse.swt.widgets.Tree;
 import saros.SarosPluginContext;
 import saros.net.xmpp.JID;
 import saros.net.xmpp.contact.IContactsUpdate;
+import saros.net.xmpp.contact.IContactsUpdate.UpdateType;
+import saros.net.xmpp.contact.XMPPContact;
 import saros.net.xmpp.contact.XMPPContactsService;
 import saros.repackaged.picocontainer.annotations.Inject;
 import saros.ui.model.ITreeElement;
@@ -61,7 +64,17 @@ public class ContactSelectionComposite extends ViewerComposite<CheckboxTreeViewe
   @Inject private XMPPContactsService contactsService;
 
   private final IContactsUpdate contactsUpdate =
-      (contact, type) -> ViewerUtils.refresh(getViewer(), true);
+      new IContactsUpdate() {
+        @Override
+        public void update(Optional<XMPPContact> contact, UpdateType type) {
+          ViewerUtils.refresh(getViewer(), true);
+        }
+
+        @Override
+        public void updateAll(Map<XMPPContact, List<UpdateType>> updates) {
+          ViewerUtils.refresh(getViewer(), true);
+        }
+      };
 
   protected final ICheckStateListener checkStateListener =
       new ICheckStateListener() {
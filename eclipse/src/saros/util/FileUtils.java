@@ -194,4 +194,42 @@ public class FileUtils {
     }
     return content;
   }
+
+  /**
+   * Compares the content of a local file with the given content. The file is read in small blocks
+   * so its content is never stored as a whole.
+   *
+   * @param localFile
+   * @param content
+   * @return <code>true</code> if the file exists and has the given content, <code>false</code>
+   *     otherwise or if the file could not be read
+   */
+  public static boolean hasLocalFileContent(IFile localFile, byte[] content) {
+    InputStream in = null;
+    try {
+      in = localFile.getContents();
+
+      final byte[] buffer = new byte[(int) Math.min(content.length + 1L, 8192L)];
+
+      int offset = 0;
+      int read;
+
+      while ((read = in.read(buffer)) != -1) {
+        if (read > content.length - offset) return false;
+
+        for (int i = 0; i < read; i++) if (buffer[i] != content[offset + i]) return false;
+
+        offset += read;
+      }
+
+      return offset == content.length;
+    } catch (CoreException e) {
+      LOG.warn("could not get content of file " + localFile.getFullPath());
+    } catch (IOException e) {
+      LOG.warn("could not read file content (file: " + localFile.getFullPath() + ")");
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    return false;
+  }
 }
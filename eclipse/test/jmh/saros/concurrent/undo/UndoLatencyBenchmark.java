@@ -0,0 +1,134 @@
+package saros.concurrent.undo;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.replay;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.core.runtime.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import saros.activities.SPath;
+import saros.concurrent.jupiter.InclusionTransformation;
+import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.internal.text.DeleteOperation;
+import saros.concurrent.jupiter.internal.text.GOTOInclusionTransformation;
+import saros.concurrent.jupiter.internal.text.InsertOperation;
+import saros.concurrent.undo.OperationHistory.EditorHistoryEntry;
+import saros.concurrent.undo.OperationHistory.Type;
+import saros.filesystem.IProject;
+import saros.filesystem.ResourceAdapterFactory;
+
+/**
+ * Undoes the latest local operation of an editor whose history contains <code>depth</code>
+ * operations. The local operation is the oldest one the history still holds, all newer ones are
+ * remote operations. Above {@link OperationHistory#MAX_SIZE} operations the history is full, so the
+ * oldest entries were evicted while filling it and every further operation evicts another one.
+ *
+ * <p>For comparison <code>walkHistory</code> transforms the inverted operation against all newer
+ * entries at undo time, as done before the transformed inverse was kept up to date, and <code>
+ * addRemote</code> adds a single remote operation, which now includes updating the inverse.
+ *
+ * <p>The history is filled again before every invocation, as an undo changes it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UndoLatencyBenchmark {
+
+  private static final int DOCUMENT_LENGTH = 1000;
+
+  /** The number of operations added to the history of the editor. */
+  @Param({"10", "100", "500", "1000", "2000"})
+  public int depth;
+
+  private final InclusionTransformation transformation = new GOTOInclusionTransformation();
+
+  private final Random random = new Random(42);
+
+  private SPath path;
+
+  private UndoManager undoManager;
+
+  private OperationHistory history;
+
+  @Setup(Level.Trial)
+  public void setUpPath() {
+    final IProject project = createMock(IProject.class);
+    replay(project);
+    path = new SPath(project, ResourceAdapterFactory.create(new Path("benchmark")));
+  }
+
+  @Setup(Level.Invocation)
+  public void fillHistory() {
+    undoManager = new UndoManager();
+    history = undoManager.getHistory();
+
+    final int capacity = history.MAX_SIZE;
+
+    int length = DOCUMENT_LENGTH;
+
+    // evicted again by the newer operations
+    for (int i = 0; i < depth - capacity; i++) length = addRemote(length);
+
+    history.add(path, Type.LOCAL, new InsertOperation(length / 2, "local"));
+    length += 5;
+
+    for (int i = 0; i < Math.min(depth, capacity) - 1; i++) length = addRemote(length);
+  }
+
+  @Benchmark
+  public Operation undo() {
+    return undoManager.calcUndoOperation(path);
+  }
+
+  @Benchmark
+  public Operation walkHistory() {
+    Operation inverse = history.getLatestLocal(path).invert();
+
+    for (EditorHistoryEntry entry : history.entriesToLatestLocal(path))
+      inverse = transformation.transform(inverse, entry.getOperation(), Boolean.TRUE);
+
+    return inverse;
+  }
+
+  @Benchmark
+  public OperationHistory addRemote() {
+    history.add(path, Type.REMOTE, new InsertOperation(0, "x"));
+    return history;
+  }
+
+  /** @return the length of the document after the added operation */
+  private int addRemote(int length) {
+    final int position = random.nextInt(length);
+
+    if (random.nextBoolean() || length < 100) {
+      history.add(path, Type.REMOTE, new InsertOperation(position, "r"));
+      return length + 1;
+    }
+
+    final int deleted = Math.min(3, length - position);
+    history.add(path, Type.REMOTE, new DeleteOperation(position, text(deleted)));
+    return length - deleted;
+  }
+
+  private static String text(int length) {
+    final char[] chars = new char[length];
+    Arrays.fill(chars, 'd');
+    return new String(chars);
+  }
+}
@@ -9,10 +9,10 @@ import org.junit.Before;
 import org.junit.Test;
 import saros.activities.SPath;
 import saros.concurrent.jupiter.Operation;
+import saros.concurrent.jupiter.internal.text.CompoundOperation;
 import saros.concurrent.jupiter.internal.text.DeleteOperation;
 import saros.concurrent.jupiter.internal.text.InsertOperation;
 import saros.concurrent.jupiter.internal.text.NoOperation;
-import saros.concurrent.jupiter.internal.text.SplitOperation;
 import saros.concurrent.undo.OperationHistory.Type;
 import saros.filesystem.IProject;
 import saros.filesystem.ResourceAdapterFactory;
@@ -118,9 +118,8 @@ public class UndoTest {
     history.add(path2, Type.REMOTE, new DeleteOperation(5, "456")); // abcde
 
     Operation expected2 =
-        new SplitOperation(
-            new DeleteOperation(0, "a"),
-            new SplitOperation(new DeleteOperation(1, "c"), new DeleteOperation(2, "e")));
+        CompoundOperation.of(
+            new DeleteOperation(0, "a"), new DeleteOperation(1, "c"), new DeleteOperation(2, "e"));
 
     assertEquals(nop(), redo(path1));
     assertEquals(expected1, undo(path1));
@@ -213,6 +212,57 @@ public class UndoTest {
     assertEquals(expected, undo(path1));
   }
 
+  @Test
+  public void testUndoAfterManyRemotes() {
+    // Text: 0123456789
+    history.add(path1, Type.LOCAL, new InsertOperation(8, "first")); // 01234567first89
+
+    Operation expected = new DeleteOperation(8, "first");
+
+    for (int i = 0; i < 100; i++) {
+      history.add(path1, Type.REMOTE, new InsertOperation(0, "X"));
+      history.add(path1, Type.REMOTE, new DeleteOperation(0, "X"));
+    }
+
+    for (int i = 0; i < 100; i++) history.add(path2, Type.REMOTE, new InsertOperation(0, "Y"));
+
+    assertEquals(expected, undo(path1));
+    assertEquals(expected.invert(), redo(path1));
+  }
+
+  @Test
+  public void testLocalRemovedFromFullHistory() {
+    history.add(path1, Type.LOCAL, new InsertOperation(0, "abc"));
+
+    for (int i = 0; i < history.MAX_SIZE - 1; i++)
+      history.add(path1, Type.REMOTE, new InsertOperation(0, "X"));
+
+    assertEquals(new DeleteOperation(history.MAX_SIZE - 1, "abc"), undo(path1));
+    assertEquals(nop(), undo(path1));
+
+    redo(path1);
+
+    for (int i = 0; i < history.MAX_SIZE; i++)
+      history.add(path1, Type.REMOTE, new InsertOperation(0, "X"));
+
+    assertEquals(nop(), undo(path1));
+    assertEquals(nop(), redo(path1));
+    assertEquals(history.MAX_SIZE, history.getAllEntries(path1).size());
+  }
+
+  @Test
+  public void testReplaceTypeOfOlderEntry() {
+    Operation older = new InsertOperation(0, "abc");
+
+    history.add(path1, Type.LOCAL, older); // abc
+    history.add(path1, Type.LOCAL, new InsertOperation(3, "def")); // abcdef
+
+    history.replaceType(path1, older, Type.LOCAL, Type.REMOTE);
+
+    assertEquals(new DeleteOperation(3, "def"), undo(path1));
+    assertEquals(nop(), undo(path1));
+  }
+
   /**
    * This test currently fails, because the UndoManager is using GOTOTransform which swallows a
    * delete during undo.
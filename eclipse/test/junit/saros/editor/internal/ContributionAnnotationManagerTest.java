@@ -13,6 +13,7 @@ import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.preference.PreferenceStore;
+import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.source.Annotation;
 import org.eclipse.jface.text.source.AnnotationModel;
@@ -80,11 +81,12 @@ public class ContributionAnnotationManagerTest {
     AnnotationModel model = new AnnotationModel();
 
     for (int i = 0; i <= ContributionAnnotationManager.MAX_HISTORY_LENGTH; i++)
-      manager.insertAnnotation(model, i, 1, alice);
+      manager.insertAnnotation(model, i * 2, 1, alice);
 
     assertEquals(ContributionAnnotationManager.MAX_HISTORY_LENGTH, getAnnotationCount(model));
 
-    manager.insertAnnotation(model, ContributionAnnotationManager.MAX_HISTORY_LENGTH + 1, 1, alice);
+    manager.insertAnnotation(
+        model, (ContributionAnnotationManager.MAX_HISTORY_LENGTH + 1) * 2, 1, alice);
 
     assertEquals(ContributionAnnotationManager.MAX_HISTORY_LENGTH, getAnnotationCount(model));
 
@@ -100,11 +102,12 @@ public class ContributionAnnotationManagerTest {
     AnnotationModel model = new AnnotationModel();
 
     for (int i = 0; i <= ContributionAnnotationManager.MAX_HISTORY_LENGTH; i++)
-      manager.insertAnnotation(model, i, 1, alice);
+      manager.insertAnnotation(model, i * 2, 1, alice);
 
     manager.refreshAnnotations(model);
 
-    manager.insertAnnotation(model, ContributionAnnotationManager.MAX_HISTORY_LENGTH + 1, 1, alice);
+    manager.insertAnnotation(
+        model, (ContributionAnnotationManager.MAX_HISTORY_LENGTH + 1) * 2, 1, alice);
 
     assertFalse(
         "oldest annotation was not removed after refresh",
@@ -128,7 +131,7 @@ public class ContributionAnnotationManagerTest {
 
     int startIndex = 100;
 
-    for (int i = 0; i < ContributionAnnotationManager.MAX_HISTORY_LENGTH - 1; i++, startIndex++)
+    for (int i = 0; i < ContributionAnnotationManager.MAX_HISTORY_LENGTH - 1; i++, startIndex += 2)
       manager.insertAnnotation(model, startIndex, 1, alice);
 
     assertEquals(
@@ -136,14 +139,16 @@ public class ContributionAnnotationManagerTest {
         4 + ContributionAnnotationManager.MAX_HISTORY_LENGTH - 1,
         getAnnotationCount(model));
 
-    manager.insertAnnotation(model, startIndex++, 1, alice);
+    manager.insertAnnotation(model, startIndex, 1, alice);
+
+    startIndex += 2;
 
     assertEquals(
         "splitted annotions are not correctly removed from the history",
         4 + ContributionAnnotationManager.MAX_HISTORY_LENGTH - 1 - 1,
         getAnnotationCount(model));
 
-    for (int i = 0; i < ContributionAnnotationManager.MAX_HISTORY_LENGTH; i++, startIndex++)
+    for (int i = 0; i < ContributionAnnotationManager.MAX_HISTORY_LENGTH; i++, startIndex += 2)
       manager.insertAnnotation(model, startIndex, 1, bob);
 
     assertEquals(
@@ -195,7 +200,7 @@ public class ContributionAnnotationManagerTest {
     final AnnotationModel model = new AnnotationModel();
 
     for (final User user : users)
-      for (int i = 0; i < ContributionAnnotationManager.MAX_HISTORY_LENGTH; i++, idx++)
+      for (int i = 0; i < ContributionAnnotationManager.MAX_HISTORY_LENGTH; i++, idx += 2)
         manager.insertAnnotation(model, idx, 1, user);
 
     assertEquals(
@@ -219,7 +224,7 @@ public class ContributionAnnotationManagerTest {
     final AnnotationModel model = new AnnotationModel();
 
     for (final User user : users)
-      for (int i = 0; i < ContributionAnnotationManager.MAX_HISTORY_LENGTH; i++, idx++)
+      for (int i = 0; i < ContributionAnnotationManager.MAX_HISTORY_LENGTH; i++, idx += 2)
         manager.insertAnnotation(model, idx, 1, user);
 
     assertEquals(
@@ -263,7 +268,7 @@ public class ContributionAnnotationManagerTest {
     final AnnotationModel model = new AnnotationModel();
 
     for (final User user : users)
-      for (int i = 0; i < ContributionAnnotationManager.MAX_HISTORY_LENGTH; i++, idx++)
+      for (int i = 0; i < ContributionAnnotationManager.MAX_HISTORY_LENGTH; i++, idx += 2)
         manager.insertAnnotation(model, idx, 1, user);
 
     assertEquals(
@@ -274,6 +279,133 @@ public class ContributionAnnotationManagerTest {
     assertEquals(0, getAnnotationCount(model));
   }
 
+  @Test
+  public void testMergeAdjacentAnnotations() {
+
+    final User alice = new User(new JID("alice@test"), false, false, null);
+    final User bob = new User(new JID("bob@test"), false, false, null);
+
+    final AnnotationModel model = new AnnotationModel();
+
+    manager.insertAnnotation(model, 5, 2, alice);
+    manager.insertAnnotation(model, 7, 3, alice);
+    manager.insertAnnotation(model, 3, 2, alice);
+
+    assertEquals("adjacent annotations were not merged", 1, getAnnotationCount(model));
+    assertEquals(Arrays.asList(new Position(3, 7)), getAnnotationPositions(model));
+
+    manager.insertAnnotation(model, 10, 1, bob);
+
+    assertEquals("annotations of different users were merged", 2, getAnnotationCount(model));
+
+    manager.insertAnnotation(model, 12, 2, alice);
+    manager.insertAnnotation(model, 10, 2, alice);
+
+    final List<Position> positions = getAnnotationPositions(model);
+
+    assertEquals(2, positions.size());
+    assertTrue("gap was not merged", positions.contains(new Position(3, 11)));
+  }
+
+  @Test
+  public void testMergedAnnotationIsLatestContribution() {
+
+    final User alice = new User(new JID("alice@test"), false, false, null);
+
+    final AnnotationModel model = new AnnotationModel();
+
+    for (int i = 0; i < ContributionAnnotationManager.MAX_HISTORY_LENGTH; i++)
+      manager.insertAnnotation(model, i * 2, 1, alice);
+
+    // fills the gap between the two oldest contributions
+    manager.insertAnnotation(model, 1, 1, alice);
+
+    assertEquals(ContributionAnnotationManager.MAX_HISTORY_LENGTH - 1, getAnnotationCount(model));
+
+    manager.insertAnnotation(model, 1000, 1, alice);
+    manager.insertAnnotation(model, 1002, 1, alice);
+
+    final List<Position> positions = getAnnotationPositions(model);
+
+    assertEquals(ContributionAnnotationManager.MAX_HISTORY_LENGTH, positions.size());
+
+    assertTrue("merged contribution was removed", positions.contains(new Position(0, 3)));
+
+    assertFalse(
+        "oldest remaining contribution was not removed", positions.contains(new Position(4, 1)));
+  }
+
+  @Test
+  public void testAnnotationLimit() {
+    final int maxAnnotations = 5;
+
+    manager.dispose();
+    manager =
+        new ContributionAnnotationManager(
+            sessionMock, store, ContributionAnnotationManager.MAX_HISTORY_LENGTH, maxAnnotations);
+
+    final User alice = new User(new JID("alice@test"), false, false, null);
+    final User bob = new User(new JID("bob@test"), false, false, null);
+
+    final AnnotationModel model = new AnnotationModel();
+
+    for (int i = 0; i < maxAnnotations; i++) manager.insertAnnotation(model, i * 2, 1, alice);
+
+    manager.insertAnnotation(model, 100, 1, bob);
+
+    final List<Position> positions = getAnnotationPositions(model);
+
+    assertEquals(maxAnnotations, positions.size());
+    assertFalse("oldest annotation was not removed", positions.contains(new Position(0, 1)));
+    assertTrue(positions.contains(new Position(100, 1)));
+  }
+
+  @Test
+  public void testSplitAfterDocumentChange() throws Exception {
+
+    final User alice = new User(new JID("alice@test"), false, false, null);
+
+    final Document document = new Document("0123456789");
+    final AnnotationModel model = new AnnotationModel();
+
+    model.connect(document);
+
+    manager.insertAnnotation(model, 2, 2, alice);
+    manager.insertAnnotation(model, 6, 2, alice);
+
+    document.replace(0, 0, "abc");
+
+    manager.splitAnnotation(model, 10);
+
+    final List<Position> positions = getAnnotationPositions(model);
+
+    assertEquals(3, positions.size());
+    assertTrue(positions.contains(new Position(5, 2)));
+    assertTrue(positions.contains(new Position(9, 1)));
+    assertTrue(positions.contains(new Position(10, 1)));
+  }
+
+  @Test
+  public void testAnnotationRemovedByModel() throws Exception {
+
+    final User alice = new User(new JID("alice@test"), false, false, null);
+
+    final Document document = new Document("0123456789");
+    final AnnotationModel model = new AnnotationModel();
+
+    model.connect(document);
+
+    manager.insertAnnotation(model, 2, 2, alice);
+
+    document.replace(1, 4, "");
+
+    assertEquals("deleted annotation is still present", 0, getAnnotationCount(model));
+
+    manager.insertAnnotation(model, 1, 2, alice);
+
+    assertEquals(Arrays.asList(new Position(1, 2)), getAnnotationPositions(model));
+  }
+
   private int getAnnotationCount(IAnnotationModel model) {
     int count = 0;
 
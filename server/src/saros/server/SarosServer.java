@@ -1,26 +1,64 @@
 package saros.server;
 
+import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
 import saros.server.console.ServerConsole;
+import saros.server.filesystem.ServerFileWriter;
+import saros.server.filesystem.SharedChecksumCache;
+import saros.server.session.NegotiationHandler;
+import saros.util.NamedThreadFactory;
 
-/** The entry point for the Saros server. */
+/**
+ * The entry point for the Saros server.
+ *
+ * <p>The server hosts one session per {@link TenantConfig tenant}. Without a {@link
+ * ServerConfig#getTenantsFile() tenants file} this is a single session configured by the system
+ * properties. The sessions of all tenants are isolated from each other, each has its own context,
+ * XMPP connection and workspace, but they share the thread pools, buffer pools and the checksum
+ * cache of the process.
+ */
 public class SarosServer {
 
   private static final Logger log = Logger.getLogger(SarosServer.class);
   private static final String LOGGING_CONFIG_FILE = "/log4j.properties";
 
-  private ServerLifecycle lifecycle;
+  private final List<ServerLifecycle> lifecycles;
+
+  private ScheduledExecutorService metricsExecutor;
 
   /** The Saros version which is impersonated by the current server version. */
   // FIXME create a version handling that allows a separate server versioning
   // the current handling is tied to the current Saros/E versioning
   public static final String SAROS_VERSION = "15.0.0";
 
-  /** Initializes and starts a Saros server. */
+  /** Initializes a Saros server hosting the configured tenants. */
   public SarosServer() {
-    lifecycle = new ServerLifecycle();
+    this(loadTenants());
+  }
+
+  /**
+   * Initializes a Saros server hosting the given tenants.
+   *
+   * @param tenants the tenants, their names must be unique
+   */
+  public SarosServer(List<TenantConfig> tenants) {
+    final SharedChecksumCache sharedChecksumCache = new SharedChecksumCache();
+
+    final List<ServerLifecycle> lifecycles = new ArrayList<ServerLifecycle>();
+
+    for (final TenantConfig tenant : tenants)
+      lifecycles.add(new ServerLifecycle(tenant, sharedChecksumCache));
+
+    this.lifecycles = Collections.unmodifiableList(lifecycles);
   }
 
   public void start() {
@@ -30,12 +68,93 @@ public class SarosServer {
     PropertyConfigurator.configure(log4jProperties);
     log.info("Starting server...");
 
-    lifecycle.start();
+    for (final ServerLifecycle lifecycle : lifecycles) {
+      log.info("Starting session of tenant " + lifecycle.getTenant().getName());
+      lifecycle.start();
+    }
+
+    startMetricsLogging();
   }
 
   public void stop() {
     log.info("Stopping server...");
-    lifecycle.stop();
+
+    if (metricsExecutor != null) metricsExecutor.shutdownNow();
+
+    for (final ServerLifecycle lifecycle : lifecycles) {
+      try {
+        lifecycle.stop();
+      } catch (RuntimeException e) {
+        log.error("failed to stop session of tenant " + lifecycle.getTenant().getName(), e);
+      }
+    }
+  }
+
+  /** Logs the metrics of all tenants and the shared resources. */
+  private void logMetrics() {
+    for (final ServerLifecycle lifecycle : lifecycles) {
+      final NegotiationHandler handler;
+
+      try {
+        handler = lifecycle.getSarosContext().getComponent(NegotiationHandler.class);
+      } catch (IllegalStateException e) {
+        // not started or already stopped
+        continue;
+      }
+
+      final String tenant = lifecycle.getTenant().getName();
+
+      log.info(
+          "tenant "
+              + tenant
+              + " session negotiations ["
+              + handler.getSessionNegotiationStatistics()
+              + "], project negotiations ["
+              + handler.getProjectNegotiationStatistics()
+              + "]");
+    }
+
+    final double[] latencies = ServerFileWriter.getDefault().getLatencyPercentiles(50, 90, 99, 100);
+
+    log.info(
+        String.format(
+            "file write latency (all tenants): p50=%.2f ms, p90=%.2f ms, p99=%.2f ms, max=%.2f ms",
+            latencies[0], latencies[1], latencies[2], latencies[3]));
+  }
+
+  private void startMetricsLogging() {
+    final int interval = ServerConfig.getMetricsInterval();
+
+    if (interval == 0) return;
+
+    metricsExecutor =
+        Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("ServerMetrics", false));
+
+    metricsExecutor.scheduleWithFixedDelay(
+        () -> {
+          try {
+            logMetrics();
+          } catch (RuntimeException e) {
+            log.error("failed to log metrics", e);
+          }
+        },
+        interval,
+        interval,
+        TimeUnit.SECONDS);
+  }
+
+  private static List<TenantConfig> loadTenants() {
+    final String tenantsFile = ServerConfig.getTenantsFile();
+
+    if (tenantsFile == null) return Collections.singletonList(TenantConfig.fromServerConfig());
+
+    try {
+      return TenantConfig.load(Paths.get(tenantsFile));
+    } catch (IOException | IllegalArgumentException e) {
+      log.fatal("could not load the tenants file " + tenantsFile + ": " + e.getMessage(), e);
+      System.exit(1);
+      return null;
+    }
   }
 
   /**
@@ -59,7 +178,12 @@ public class SarosServer {
     server.start();
 
     if (ServerConfig.isInteractive()) {
-      server.lifecycle.getSarosContext().getComponent(ServerConsole.class).run();
+      if (ServerConfig.getTenantsFile() != null) {
+        log.warn("the interactive console is not available if the server hosts tenants");
+        return;
+      }
+
+      server.lifecycles.get(0).getSarosContext().getComponent(ServerConsole.class).run();
       System.exit(0);
     }
   }
@@ -1,5 +1,8 @@
 package saros.server;
 
+import java.util.Locale;
+import saros.server.filesystem.ServerFileWriter;
+
 /**
  * A facade for accessing the configuration properties that were passed to the Saros server on
  * startup.
@@ -10,6 +13,15 @@ public class ServerConfig {
   private static final String PASSWORD_KEY = "saros.server.password";
   private static final String WORKSPACE_PATH_KEY = "saros.server.workspace";
   private static final String INTERACTIVE_KEY = "saros.server.interactive";
+  private static final String WRITE_DURABILITY_KEY = "saros.server.filesystem.durability";
+  private static final String MAX_SESSION_NEGOTIATIONS_KEY =
+      "saros.server.negotiation.maxSessionNegotiations";
+  private static final String MAX_PROJECT_NEGOTIATIONS_KEY =
+      "saros.server.negotiation.maxProjectNegotiations";
+  private static final String MAX_NEGOTIATIONS_PER_PEER_KEY =
+      "saros.server.negotiation.maxNegotiationsPerPeer";
+  private static final String TENANTS_KEY = "saros.server.tenants";
+  private static final String METRICS_INTERVAL_KEY = "saros.server.metrics.interval";
 
   /**
    * Returns the JID that the Saros server should use to connect to the XMPP network.
@@ -52,4 +64,68 @@ public class ServerConfig {
         || value.equalsIgnoreCase("yes")
         || value.equalsIgnoreCase("y");
   }
+
+  /**
+   * Returns when the server forces written files to the storage device. Valid values are <code>
+   * none</code> (the default), <code>sync</code> and <code>batched</code>.
+   *
+   * @return the durability mode of file writes
+   */
+  public static ServerFileWriter.Durability getWriteDurability() {
+    final String value = System.getProperty(WRITE_DURABILITY_KEY, "none");
+
+    try {
+      return ServerFileWriter.Durability.valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+    } catch (IllegalArgumentException e) {
+      return ServerFileWriter.Durability.NONE;
+    }
+  }
+
+  /**
+   * Returns the maximum number of session negotiations that the server runs at the same time.
+   *
+   * @return the maximum number of concurrent session negotiations, at least 1
+   */
+  public static int getMaxSessionNegotiations() {
+    return Math.max(1, Integer.getInteger(MAX_SESSION_NEGOTIATIONS_KEY, 4));
+  }
+
+  /**
+   * Returns the maximum number of project negotiations that the server runs at the same time.
+   *
+   * @return the maximum number of concurrent project negotiations, at least 1
+   */
+  public static int getMaxProjectNegotiations() {
+    return Math.max(1, Integer.getInteger(MAX_PROJECT_NEGOTIATIONS_KEY, 10));
+  }
+
+  /**
+   * Returns the maximum number of session or project negotiations that the server runs at the same
+   * time with a single peer. Further negotiations with the peer are queued, so a peer cannot occupy
+   * all negotiation slots.
+   *
+   * @return the maximum number of concurrent negotiations per peer, at least 1
+   */
+  public static int getMaxNegotiationsPerPeer() {
+    return Math.max(1, Integer.getInteger(MAX_NEGOTIATIONS_PER_PEER_KEY, 2));
+  }
+
+  /**
+   * Returns the path of the file that configures the tenants of a multi-tenant server. If set, the
+   * server hosts one isolated session per tenant in the same process, see {@link TenantConfig}.
+   *
+   * @return the path of the tenants file, or <code>null</code> if the server hosts a single session
+   */
+  public static String getTenantsFile() {
+    return System.getProperty(TENANTS_KEY);
+  }
+
+  /**
+   * Returns the interval in seconds in which the metrics of the hosted sessions are logged.
+   *
+   * @return the interval in seconds, or 0 if no metrics should be logged
+   */
+  public static int getMetricsInterval() {
+    return Math.max(0, Integer.getInteger(METRICS_INTERVAL_KEY, 60));
+  }
 }
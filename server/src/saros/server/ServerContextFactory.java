@@ -10,10 +10,10 @@ import saros.communication.connection.NullProxyResolver;
 import saros.context.AbstractContextFactory;
 import saros.context.IContextKeyBindings;
 import saros.filesystem.IChecksumCache;
+import saros.filesystem.IFileContentChangedNotifier;
 import saros.filesystem.IPath;
 import saros.filesystem.IPathFactory;
 import saros.filesystem.IWorkspace;
-import saros.filesystem.NullChecksumCache;
 import saros.monitoring.remote.IRemoteProgressIndicatorFactory;
 import saros.preferences.IPreferenceStore;
 import saros.preferences.Preferences;
@@ -23,9 +23,12 @@ import saros.server.console.InviteCommand;
 import saros.server.console.ServerConsole;
 import saros.server.console.ShareCommand;
 import saros.server.dummies.NullRemoteProgressIndicatorFactory;
+import saros.server.filesystem.ServerFileContentNotifier;
 import saros.server.filesystem.ServerPathFactoryImpl;
 import saros.server.filesystem.ServerPathImpl;
 import saros.server.filesystem.ServerWorkspaceImpl;
+import saros.server.filesystem.SharedChecksumCache;
+import saros.server.filesystem.TenantChecksumCache;
 import saros.server.net.ServerFeatureAdvertiser;
 import saros.server.net.SubscriptionAuthorizer;
 import saros.server.preferences.PersistencePreferenceStore;
@@ -41,14 +44,38 @@ import saros.synchronize.UISynchronizer;
  * Server implementation of {@link saros.context.IContextFactory}. In addition to the core
  * components configured in {@link saros.context.CoreContextFactory}, this class adds the
  * server-specific components such as implementations of unimplemented core interfaces.
+ *
+ * <p>Each factory creates the components of a single {@link TenantConfig tenant}. Components that
+ * are shared by all tenants of the server, like the checksum cache, are passed in.
  */
 public class ServerContextFactory extends AbstractContextFactory {
 
   private static final Logger LOG = Logger.getLogger(ServerContextFactory.class);
 
+  private final TenantConfig tenant;
+
+  private final SharedChecksumCache sharedChecksumCache;
+
+  /**
+   * Creates the factory of a server that hosts a single tenant configured by {@link ServerConfig}.
+   */
+  public ServerContextFactory() {
+    this(TenantConfig.fromServerConfig(), new SharedChecksumCache());
+  }
+
+  /**
+   * @param tenant the tenant to create the components for
+   * @param sharedChecksumCache the checksum cache shared by all tenants of the server
+   */
+  public ServerContextFactory(TenantConfig tenant, SharedChecksumCache sharedChecksumCache) {
+    this.tenant = tenant;
+    this.sharedChecksumCache = sharedChecksumCache;
+  }
+
   @Override
   public void createComponents(MutablePicoContainer c) {
     addVersionString(c);
+    addTenantComponents(c);
     addCoreInterfaceImplementations(c);
     addOptionalCoreInterfaceImplementations(c);
     addAdditionalComponents(c);
@@ -60,10 +87,17 @@ public class ServerContextFactory extends AbstractContextFactory {
         SarosServer.SAROS_VERSION);
   }
 
+  private void addTenantComponents(MutablePicoContainer c) {
+    c.addComponent(TenantConfig.class, tenant);
+    c.addComponent(SharedChecksumCache.class, sharedChecksumCache);
+  }
+
   private void addCoreInterfaceImplementations(MutablePicoContainer c) {
     // File System
     c.addComponent(IPathFactory.class, ServerPathFactoryImpl.class);
     c.addComponent(IWorkspace.class, createWorkspace());
+    c.addComponent(IFileContentChangedNotifier.class, ServerFileContentNotifier.class);
+    c.addComponent(IChecksumCache.class, TenantChecksumCache.class);
 
     // Preferences
     c.addComponent(IPreferenceStore.class, PersistencePreferenceStore.class);
@@ -84,7 +118,6 @@ public class ServerContextFactory extends AbstractContextFactory {
    */
   private void addOptionalCoreInterfaceImplementations(MutablePicoContainer c) {
     c.addComponent(IProxyResolver.class, NullProxyResolver.class);
-    c.addComponent(IChecksumCache.class, NullChecksumCache.class);
   }
 
   private void addAdditionalComponents(MutablePicoContainer c) {
@@ -92,7 +125,8 @@ public class ServerContextFactory extends AbstractContextFactory {
     c.addComponent(NegotiationHandler.class);
     c.addComponent(JoinSessionRequestHandler.class);
     c.addComponent(ServerFeatureAdvertiser.class);
-    if (ServerConfig.isInteractive()) {
+    // the console can only control a single session
+    if (ServerConfig.isInteractive() && ServerConfig.getTenantsFile() == null) {
       c.addComponent(new ServerConsole(System.in, System.out));
       c.addComponent(InviteCommand.class);
       c.addComponent(ShareCommand.class);
@@ -100,7 +134,7 @@ public class ServerContextFactory extends AbstractContextFactory {
   }
 
   private IWorkspace createWorkspace() {
-    String pathString = ServerConfig.getWorkspacePath();
+    String pathString = tenant.getWorkspacePath();
 
     if (pathString == null) {
       pathString = createTemporaryWorkspaceFolder();
@@ -114,7 +148,7 @@ public class ServerContextFactory extends AbstractContextFactory {
     final Path folderPath;
 
     try {
-      folderPath = Files.createTempDirectory("saros-server-workspace");
+      folderPath = Files.createTempDirectory("saros-server-workspace-" + tenant.getName());
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
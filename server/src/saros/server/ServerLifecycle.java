@@ -14,6 +14,7 @@ import saros.context.IContextFactory;
 import saros.filesystem.IProject;
 import saros.filesystem.IResource;
 import saros.net.xmpp.JID;
+import saros.server.filesystem.SharedChecksumCache;
 import saros.session.ISarosSessionManager;
 import saros.session.SessionEndReason;
 
@@ -21,10 +22,36 @@ public class ServerLifecycle extends AbstractContextLifecycle {
 
   private static final Logger log = Logger.getLogger(ServerLifecycle.class);
 
+  private final TenantConfig tenant;
+
+  private final SharedChecksumCache sharedChecksumCache;
+
+  /**
+   * Creates the lifecycle of a server that hosts a single tenant configured by {@link
+   * ServerConfig}.
+   */
+  public ServerLifecycle() {
+    this(TenantConfig.fromServerConfig(), new SharedChecksumCache());
+  }
+
+  /**
+   * @param tenant the tenant whose session is managed by this lifecycle
+   * @param sharedChecksumCache the checksum cache shared by all tenants of the server
+   */
+  public ServerLifecycle(TenantConfig tenant, SharedChecksumCache sharedChecksumCache) {
+    this.tenant = tenant;
+    this.sharedChecksumCache = sharedChecksumCache;
+  }
+
+  /** Returns the tenant whose session is managed by this lifecycle. */
+  public TenantConfig getTenant() {
+    return tenant;
+  }
+
   @Override
   protected Collection<IContextFactory> additionalContextFactories() {
     List<IContextFactory> factories = new ArrayList<IContextFactory>();
-    factories.add(new ServerContextFactory());
+    factories.add(new ServerContextFactory(tenant, sharedChecksumCache));
     return factories;
   }
 
@@ -48,8 +75,8 @@ public class ServerLifecycle extends AbstractContextLifecycle {
    * the XMPP server and never gets disconnected. Of course this is unrealistic !
    */
   private void connectToXMPPServer(final ContainerContext context) {
-    String jidString = ServerConfig.getJID();
-    String password = ServerConfig.getPassword();
+    String jidString = tenant.getJID();
+    String password = tenant.getPassword();
 
     if (jidString == null || password == null) {
       log.fatal(
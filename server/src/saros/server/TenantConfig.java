@@ -0,0 +1,229 @@
+package saros.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The configuration of a single session hosted by the server. A server that is started without a
+ * tenants file hosts exactly one tenant, which is configured by the {@link ServerConfig system
+ * properties}.
+ *
+ * <p>A tenants file is a properties file that lists the tenant names under the key <code>tenants
+ * </code> and configures every tenant with keys that are prefixed by its name:
+ *
+ * <pre>
+ * tenants = alice, bob
+ * alice.jid = alice@example.org/Saros
+ * alice.password = secret
+ * alice.workspace = /srv/saros/alice
+ * alice.maxSessionNegotiations = 2
+ * alice.maxProjectNegotiations = 4
+ * alice.maxNegotiationsPerPeer = 1
+ * </pre>
+ *
+ * Only the JID and the password are mandatory, the limits default to the values of {@link
+ * ServerConfig}.
+ */
+public final class TenantConfig {
+
+  /** Name of the tenant of a server that hosts a single session. */
+  public static final String DEFAULT_NAME = "default";
+
+  private static final String TENANTS_KEY = "tenants";
+
+  private final String name;
+  private final String jid;
+  private final String password;
+  private final String workspacePath;
+  private final int maxSessionNegotiations;
+  private final int maxProjectNegotiations;
+  private final int maxNegotiationsPerPeer;
+
+  public TenantConfig(
+      String name,
+      String jid,
+      String password,
+      String workspacePath,
+      int maxSessionNegotiations,
+      int maxProjectNegotiations,
+      int maxNegotiationsPerPeer) {
+
+    if (!isValidName(name)) throw new IllegalArgumentException("invalid tenant name: " + name);
+
+    this.name = name;
+    this.jid = jid;
+    this.password = password;
+    this.workspacePath = workspacePath;
+    this.maxSessionNegotiations = Math.max(1, maxSessionNegotiations);
+    this.maxProjectNegotiations = Math.max(1, maxProjectNegotiations);
+    this.maxNegotiationsPerPeer = Math.max(1, maxNegotiationsPerPeer);
+  }
+
+  /**
+   * Returns the configuration of the single tenant of a server that is configured by the system
+   * properties only.
+   */
+  public static TenantConfig fromServerConfig() {
+    return new TenantConfig(
+        DEFAULT_NAME,
+        ServerConfig.getJID(),
+        ServerConfig.getPassword(),
+        ServerConfig.getWorkspacePath(),
+        ServerConfig.getMaxSessionNegotiations(),
+        ServerConfig.getMaxProjectNegotiations(),
+        ServerConfig.getMaxNegotiationsPerPeer());
+  }
+
+  /**
+   * Loads the tenants of the given tenants file.
+   *
+   * @param file the tenants file
+   * @return the tenants in the order they are listed in the file
+   * @throws IOException if the file could not be read
+   * @throws IllegalArgumentException if the file does not contain a valid configuration
+   */
+  public static List<TenantConfig> load(Path file) throws IOException {
+    final Properties properties = new Properties();
+
+    try (InputStream in = Files.newInputStream(file)) {
+      properties.load(in);
+    }
+
+    return parse(properties);
+  }
+
+  /**
+   * Parses the tenants of the given tenants file content.
+   *
+   * @param properties the content of a tenants file
+   * @return the tenants in the order they are listed
+   * @throws IllegalArgumentException if the properties do not contain a valid configuration
+   */
+  public static List<TenantConfig> parse(Properties properties) {
+    final String tenants = properties.getProperty(TENANTS_KEY);
+
+    if (tenants == null || tenants.trim().isEmpty())
+      throw new IllegalArgumentException("no tenants configured, missing key: " + TENANTS_KEY);
+
+    final Set<String> names = new LinkedHashSet<String>();
+
+    for (String name : tenants.split(",")) {
+      name = name.trim();
+
+      if (!name.isEmpty() && !names.add(name))
+        throw new IllegalArgumentException("tenant is configured twice: " + name);
+    }
+
+    final List<TenantConfig> configs = new ArrayList<TenantConfig>();
+
+    for (final String name : names) {
+      final String jid = properties.getProperty(name + ".jid");
+      final String password = properties.getProperty(name + ".password");
+
+      if (jid == null || password == null)
+        throw new IllegalArgumentException("XMPP credentials of tenant " + name + " are missing");
+
+      String workspacePath = properties.getProperty(name + ".workspace");
+
+      if (workspacePath != null) workspacePath = Paths.get(workspacePath.trim()).toString();
+
+      configs.add(
+          new TenantConfig(
+              name,
+              jid.trim(),
+              password,
+              workspacePath,
+              getInt(
+                  properties,
+                  name + ".maxSessionNegotiations",
+                  ServerConfig.getMaxSessionNegotiations()),
+              getInt(
+                  properties,
+                  name + ".maxProjectNegotiations",
+                  ServerConfig.getMaxProjectNegotiations()),
+              getInt(
+                  properties,
+                  name + ".maxNegotiationsPerPeer",
+                  ServerConfig.getMaxNegotiationsPerPeer())));
+    }
+
+    return configs;
+  }
+
+  /** Returns the name of the tenant, it is unique within the server. */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the JID the tenant's session uses to connect to the XMPP network.
+   *
+   * @return JID to use, or <code>null</code> if not specified
+   */
+  public String getJID() {
+    return jid;
+  }
+
+  /**
+   * Returns the password the tenant's session uses to authenticate with the XMPP server.
+   *
+   * @return password to use, or <code>null</code> if not specified
+   */
+  public String getPassword() {
+    return password;
+  }
+
+  /**
+   * Returns the path of the workspace directory of the tenant.
+   *
+   * @return the path of the workspace directory to use, or <code>null</code> if a temporary
+   *     directory should be used
+   */
+  public String getWorkspacePath() {
+    return workspacePath;
+  }
+
+  /** Returns the maximum number of session negotiations the tenant runs at the same time. */
+  public int getMaxSessionNegotiations() {
+    return maxSessionNegotiations;
+  }
+
+  /** Returns the maximum number of project negotiations the tenant runs at the same time. */
+  public int getMaxProjectNegotiations() {
+    return maxProjectNegotiations;
+  }
+
+  /** Returns the maximum number of negotiations the tenant runs at the same time per peer. */
+  public int getMaxNegotiationsPerPeer() {
+    return maxNegotiationsPerPeer;
+  }
+
+  @Override
+  public String toString() {
+    return "TenantConfig [name=" + name + ", jid=" + jid + ", workspace=" + workspacePath + "]";
+  }
+
+  private static boolean isValidName(String name) {
+    return name != null && name.matches("[A-Za-z0-9_.-]+") && !name.matches("\\.+");
+  }
+
+  private static int getInt(Properties properties, String key, int defaultValue) {
+    final String value = properties.getProperty(key);
+
+    if (value == null) return defaultValue;
+
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("invalid value for " + key + ": " + value, e);
+    }
+  }
+}
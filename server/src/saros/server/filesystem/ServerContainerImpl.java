@@ -2,13 +2,24 @@ package saros.server.filesystem;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
 import java.util.List;
 import org.apache.commons.io.FileUtils;
 import saros.filesystem.IContainer;
 import saros.filesystem.IPath;
 import saros.filesystem.IResource;
+import saros.filesystem.IResourceVisitor;
 import saros.filesystem.IWorkspace;
 
 /**
@@ -29,7 +40,14 @@ public abstract class ServerContainerImpl extends ServerResourceImpl implements
 
   @Override
   public void delete(int updateFlags) throws IOException {
-    FileUtils.deleteDirectory(getLocation().toFile());
+    final List<Path> files = listFiles(toNioPath());
+
+    try {
+      FileUtils.deleteDirectory(getLocation().toFile());
+    } finally {
+      // some files may have been deleted even if the deletion failed
+      for (final Path file : files) fireFileChanged(file);
+    }
   }
 
   @Override
@@ -40,7 +58,42 @@ public abstract class ServerContainerImpl extends ServerResourceImpl implements
             : getLocation().removeLastSegments(1);
 
     IPath absoluteDestination = destinationBase.append(destination);
-    FileUtils.moveDirectory(getLocation().toFile(), absoluteDestination.toFile());
+
+    final Path source = toNioPath();
+    final Path target = ((ServerPathImpl) absoluteDestination).getDelegate();
+    final List<Path> files = listFiles(source);
+
+    FileUtils.moveDirectory(source.toFile(), target.toFile());
+
+    for (final Path file : files) {
+      fireFileChanged(file);
+      fireFileChanged(target.resolve(source.relativize(file)));
+    }
+  }
+
+  /** Returns the locations of all files in the given directory tree. */
+  private static List<Path> listFiles(final Path directory) throws IOException {
+    final List<Path> files = new ArrayList<Path>();
+
+    if (!Files.isDirectory(directory)) return files;
+
+    Files.walkFileTree(
+        directory,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            files.add(file);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException e) {
+            // deleted concurrently
+            return FileVisitResult.CONTINUE;
+          }
+        });
+
+    return files;
   }
 
   @Override
@@ -68,6 +121,80 @@ public abstract class ServerContainerImpl extends ServerResourceImpl implements
     return members.toArray(new IResource[members.size()]);
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The traversal is a single {@link Files#walkFileTree file tree walk}. The type of every
+   * resource is taken from the attributes the walk has already read, so no further file system
+   * access is needed per resource. Symbolic links are followed like in {@link #members()}.
+   */
+  @Override
+  public void accept(final IResourceVisitor visitor) throws IOException {
+    final Path root = toNioPath();
+
+    // full paths of the directories that are currently walked
+    final Deque<IPath> directories = new ArrayDeque<IPath>();
+
+    Files.walkFileTree(
+        root,
+        EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+        Integer.MAX_VALUE,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+              throws IOException {
+
+            final IResource resource;
+            final IPath path;
+
+            if (directories.isEmpty()) {
+              resource = ServerContainerImpl.this;
+              path = getFullPath();
+            } else {
+              path = directories.peek().append(dir.getFileName().toString());
+              resource = new ServerFolderImpl(getWorkspace(), path);
+            }
+
+            if (!visitor.visit(resource)) return FileVisitResult.SKIP_SUBTREE;
+
+            directories.push(path);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+
+            if (directories.isEmpty()) throw new NotDirectoryException(file.toString());
+
+            final IPath path = directories.peek().append(file.getFileName().toString());
+
+            visitor.visit(
+                attrs.isDirectory()
+                    ? new ServerFolderImpl(getWorkspace(), path)
+                    : new ServerFileImpl(getWorkspace(), path));
+
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+            if (directories.isEmpty()) throw e;
+
+            // deleted concurrently or a cyclic link, neither can be visited
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+            if (e != null) throw e;
+
+            directories.pop();
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
   @Override
   public IResource[] members(int memberFlags) throws IOException {
     return members();
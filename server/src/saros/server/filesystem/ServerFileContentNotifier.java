@@ -0,0 +1,434 @@
+package saros.server.filesystem;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.apache.log4j.Logger;
+import saros.filesystem.IFile;
+import saros.filesystem.IFileContentChangedListener;
+import saros.filesystem.IFileContentChangedNotifier;
+import saros.filesystem.IPath;
+import saros.filesystem.IWorkspace;
+import saros.repackaged.picocontainer.Startable;
+import saros.util.NamedThreadFactory;
+
+/**
+ * Server implementation of the {@link IFileContentChangedNotifier} interface. It watches the
+ * workspace directory tree with a {@link WatchService} and reports every file that was created,
+ * modified or deleted, no matter whether the change was made by Saros or by another process.
+ *
+ * <p>Events usually come in bursts, e.g. when a project is copied into the workspace. They are
+ * therefore collected until no new event arrived for {@link #BATCH_DELAY} milliseconds (but at most
+ * for {@link #MAX_BATCH_DELAY} milliseconds) and every affected file is reported once per batch.
+ *
+ * <p>Directories that cannot be watched, e.g. because the limit of inotify watches of the system is
+ * reached, are polled instead by comparing the modification time and size of their files every
+ * {@link #POLL_INTERVAL} milliseconds.
+ *
+ * <p>Files that are written, deleted or moved through the resources of a {@link
+ * ServerWorkspaceImpl} are reported synchronously by the thread that changed them, so a checksum
+ * that is read right after the change is never stale. The watcher only needs to detect the changes
+ * of other processes; it reports the changes made by Saros a second time, which is harmless.
+ */
+public class ServerFileContentNotifier implements IFileContentChangedNotifier, Startable {
+
+  private static final Logger log = Logger.getLogger(ServerFileContentNotifier.class);
+
+  /** Quiet period in milliseconds after which the collected events are reported. */
+  static final long BATCH_DELAY = Long.getLong("saros.server.filesystem.watch.BATCH_DELAY", 100);
+
+  /** Maximum time in milliseconds an event is held back while events keep coming in. */
+  static final long MAX_BATCH_DELAY =
+      Long.getLong("saros.server.filesystem.watch.MAX_BATCH_DELAY", 1000);
+
+  /** Interval in milliseconds in which directories that cannot be watched are polled. */
+  static final long POLL_INTERVAL =
+      Long.getLong("saros.server.filesystem.watch.POLL_INTERVAL", 2000);
+
+  /** Modification time and size of a file in a polled directory. */
+  private static final class FileState {
+    private final long lastModified;
+    private final long size;
+
+    private FileState(long lastModified, long size) {
+      this.lastModified = lastModified;
+      this.size = size;
+    }
+
+    private FileState(BasicFileAttributes attributes) {
+      this(attributes.lastModifiedTime().toMillis(), attributes.size());
+    }
+
+    private boolean isSame(FileState other) {
+      return other != null && lastModified == other.lastModified && size == other.size;
+    }
+  }
+
+  private final CopyOnWriteArrayList<IFileContentChangedListener> listeners =
+      new CopyOnWriteArrayList<IFileContentChangedListener>();
+
+  private final IWorkspace workspace;
+
+  private final Path root;
+
+  private final boolean useWatchService;
+
+  private final long pollInterval;
+
+  private final Map<WatchKey, Path> watchedDirectories = new HashMap<WatchKey, Path>();
+
+  private final Map<Path, WatchKey> watchKeys = new HashMap<Path, WatchKey>();
+
+  private final Map<Path, Map<Path, FileState>> polledDirectories =
+      new HashMap<Path, Map<Path, FileState>>();
+
+  /** Files and directories that changed since the last batch was reported. */
+  private final Set<Path> pendingChanges = new LinkedHashSet<Path>();
+
+  private WatchService watchService;
+
+  private Thread watcherThread;
+
+  private volatile boolean running;
+
+  private final Consumer<Path> fileChangeListener = this::fireFileContentChanged;
+
+  /**
+   * Creates a notifier for the given workspace. It starts watching the workspace when the context
+   * is started.
+   *
+   * @param workspace the server workspace
+   */
+  public ServerFileContentNotifier(IWorkspace workspace) {
+    this(workspace, true, POLL_INTERVAL);
+  }
+
+  /**
+   * @param useWatchService if <code>false</code> all directories are polled
+   * @param pollInterval the interval in milliseconds in which directories are polled
+   */
+  ServerFileContentNotifier(IWorkspace workspace, boolean useWatchService, long pollInterval) {
+    this.workspace = workspace;
+    this.root = ((ServerPathImpl) workspace.getLocation()).getDelegate();
+    this.useWatchService = useWatchService;
+    this.pollInterval = pollInterval;
+  }
+
+  @Override
+  public void addFileContentChangedListener(IFileContentChangedListener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void removeFileContentChangedListener(IFileContentChangedListener listener) {
+    listeners.remove(listener);
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) return;
+
+    if (useWatchService) {
+      try {
+        watchService = root.getFileSystem().newWatchService();
+      } catch (IOException | UnsupportedOperationException e) {
+        log.warn("file system cannot be watched, falling back to polling: " + root, e);
+      }
+    }
+
+    running = true;
+
+    if (workspace instanceof ServerWorkspaceImpl)
+      ((ServerWorkspaceImpl) workspace).addFileChangeListener(fileChangeListener);
+
+    watcherThread = new NamedThreadFactory("ServerFileWatcher", false).newThread(this::run);
+    watcherThread.setDaemon(true);
+    watcherThread.start();
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (!running) return;
+
+    running = false;
+
+    if (workspace instanceof ServerWorkspaceImpl)
+      ((ServerWorkspaceImpl) workspace).removeFileChangeListener(fileChangeListener);
+
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException e) {
+        log.warn("failed to close watch service", e);
+      }
+    }
+
+    watcherThread.interrupt();
+
+    try {
+      watcherThread.join(5000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    watcherThread = null;
+    watchService = null;
+  }
+
+  private void run() {
+    register(root, false);
+
+    long nextPoll = System.currentTimeMillis() + pollInterval;
+    long batchStart = 0;
+
+    while (running) {
+      try {
+        final long now = System.currentTimeMillis();
+
+        long timeout = nextPoll - now;
+
+        if (!pendingChanges.isEmpty())
+          timeout = Math.min(timeout, Math.min(BATCH_DELAY, batchStart + MAX_BATCH_DELAY - now));
+
+        final WatchKey key = waitForKey(Math.max(1, timeout));
+
+        if (key != null) {
+          if (pendingChanges.isEmpty()) batchStart = System.currentTimeMillis();
+
+          collectEvents(key);
+        }
+
+        if (!pendingChanges.isEmpty()
+            && (key == null || System.currentTimeMillis() - batchStart >= MAX_BATCH_DELAY))
+          reportPendingChanges();
+
+        if (System.currentTimeMillis() >= nextPoll) {
+          poll();
+          reportPendingChanges();
+          nextPoll = System.currentTimeMillis() + pollInterval;
+        }
+
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        break;
+      } catch (RuntimeException e) {
+        log.error("internal error while watching workspace " + root, e);
+      }
+    }
+  }
+
+  private WatchKey waitForKey(final long timeout) throws InterruptedException {
+    if (watchService != null) return watchService.poll(timeout, TimeUnit.MILLISECONDS);
+
+    Thread.sleep(timeout);
+    return null;
+  }
+
+  private void collectEvents(final WatchKey key) {
+    final Path directory = watchedDirectories.get(key);
+
+    for (final WatchEvent<?> event : key.pollEvents()) {
+      if (directory == null) continue;
+
+      if (event.kind() == OVERFLOW) {
+        // the changes of the directory are lost, report everything in it
+        pendingChanges.add(directory);
+        continue;
+      }
+
+      pendingChanges.add(directory.resolve((Path) event.context()));
+    }
+
+    if (!key.reset()) unwatch(key);
+  }
+
+  /** Reports all files that are affected by the pending changes. */
+  private void reportPendingChanges() {
+    for (final Path path : pendingChanges) {
+      if (!Files.isDirectory(path)) {
+        fireFileContentChanged(path);
+        continue;
+      }
+
+      /*
+       * a new directory may already contain files before it is watched, so
+       * all of them are reported
+       */
+      register(path, true);
+    }
+
+    pendingChanges.clear();
+  }
+
+  /**
+   * Watches the given directory and all its sub directories. Directories that cannot be watched are
+   * polled instead.
+   *
+   * @param report whether all files in the directory tree should be reported as changed
+   */
+  private void register(final Path directory, final boolean report) {
+    try {
+      Files.walkFileTree(
+          directory,
+          new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+              watch(dir);
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+              if (report) fireFileContentChanged(file);
+
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+              log.debug("cannot access " + file, e);
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    } catch (IOException e) {
+      log.warn("failed to watch directory " + directory, e);
+    }
+  }
+
+  private void watch(final Path directory) {
+    if (polledDirectories.containsKey(directory)) return;
+
+    final WatchKey existingKey = watchKeys.get(directory);
+
+    if (existingKey != null) {
+      // the key of a directory that was deleted and created again is no longer valid
+      if (existingKey.isValid()) return;
+
+      unwatch(existingKey);
+    }
+
+    if (watchService != null) {
+      try {
+        final WatchKey key =
+            directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+
+        watchedDirectories.put(key, directory);
+        watchKeys.put(directory, key);
+        return;
+      } catch (IOException e) {
+        log.warn(
+            "cannot watch directory " + directory + ", falling back to polling: " + e.getMessage());
+      }
+    }
+
+    polledDirectories.put(directory, snapshot(directory));
+  }
+
+  private void unwatch(final WatchKey key) {
+    final Path directory = watchedDirectories.remove(key);
+
+    if (directory != null && watchKeys.get(directory) == key) watchKeys.remove(directory);
+  }
+
+  /** Compares the files of all polled directories with their last known state. */
+  private void poll() {
+    for (final Path directory : new ArrayList<Path>(polledDirectories.keySet())) {
+      final Map<Path, FileState> oldState = polledDirectories.get(directory);
+
+      if (!Files.isDirectory(directory)) {
+        polledDirectories.remove(directory);
+        pendingChanges.addAll(oldState.keySet());
+        continue;
+      }
+      final Map<Path, FileState> newState = snapshot(directory);
+
+      for (final Map.Entry<Path, FileState> file : newState.entrySet()) {
+        if (!file.getValue().isSame(oldState.remove(file.getKey())))
+          pendingChanges.add(file.getKey());
+      }
+
+      // files that no longer exist
+      pendingChanges.addAll(oldState.keySet());
+
+      polledDirectories.put(directory, newState);
+    }
+  }
+
+  /**
+   * Returns the state of all entries of the given directory. Sub directories are included with the
+   * state of the directory entry, so that new sub directories are detected.
+   */
+  private static Map<Path, FileState> snapshot(final Path directory) {
+    final Map<Path, FileState> state = new HashMap<Path, FileState>();
+
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (final Path entry : stream) {
+        try {
+          final BasicFileAttributes attributes =
+              Files.readAttributes(entry, BasicFileAttributes.class);
+
+          /*
+           * the state of a known sub directory must never change, otherwise
+           * it is reported as new again
+           */
+          state.put(
+              entry, attributes.isDirectory() ? new FileState(0, 0) : new FileState(attributes));
+        } catch (IOException e) {
+          // deleted concurrently
+        }
+      }
+    } catch (IOException e) {
+      log.debug("cannot list directory " + directory, e);
+    }
+
+    return state;
+  }
+
+  private void fireFileContentChanged(final Path file) {
+    final Path relativePath;
+
+    try {
+      relativePath = root.relativize(file);
+    } catch (IllegalArgumentException e) {
+      return;
+    }
+
+    // files that do not belong to a project are of no interest
+    if (relativePath.getNameCount() < 2) return;
+
+    if (file.getFileName().toString().endsWith(ServerFileWriter.TEMP_FILE_SUFFIX)) return;
+
+    final IPath path = ServerPathImpl.fromString(relativePath.toString());
+    final IFile serverFile = new ServerFileImpl(workspace, path);
+
+    if (log.isTraceEnabled()) log.trace("file content changed: " + path);
+
+    for (final IFileContentChangedListener listener : listeners) {
+      try {
+        listener.fileContentChanged(serverFile);
+      } catch (RuntimeException e) {
+        log.error("internal error in listener " + listener, e);
+      }
+    }
+  }
+}
@@ -2,11 +2,9 @@ package saros.server.filesystem;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import org.apache.log4j.Logger;
 import saros.filesystem.IFile;
 import saros.filesystem.IPath;
@@ -56,7 +54,10 @@ public class ServerFileImpl extends ServerResourceImpl implements IFile {
       Files.delete(toNioPath());
     } catch (NoSuchFileException e) {
       LOG.debug("Could not delete " + getFullPath() + " because it doesn't exist (ignoring)", e);
+      return;
     }
+
+    fireFileChanged(toNioPath());
   }
 
   @Override
@@ -70,17 +71,29 @@ public class ServerFileImpl extends ServerResourceImpl implements IFile {
     Path nioDestination = ((ServerPathImpl) absoluteDestination).getDelegate();
 
     Files.move(toNioPath(), nioDestination);
+
+    fireFileChanged(toNioPath());
+    fireFileChanged(nioDestination);
   }
 
   @Override
   public void create(InputStream input, boolean force) throws IOException {
-    Path nioPath = toNioPath();
-
-    Files.createDirectories(nioPath.getParent());
-    Files.createFile(nioPath);
+    createEmptyFile();
     setContents(input, force, false);
   }
 
+  /**
+   * Creates this file with the given content. Unlike {@link #create(InputStream, boolean)} the
+   * content is written without copying it.
+   *
+   * @param content the content of the file
+   * @throws IOException if the file already exists or could not be written
+   */
+  public void create(byte[] content) throws IOException {
+    createEmptyFile();
+    setContents(content);
+  }
+
   @Override
   public InputStream getContents() throws IOException {
     return Files.newInputStream(toNioPath());
@@ -101,22 +114,29 @@ public class ServerFileImpl extends ServerResourceImpl implements IFile {
      * On Windows, this technique has the additional benefit of not having
      * to open the "real" file, thus not locking it during the write.
      */
+    ServerFileWriter.getDefault().write(toNioPath(), input);
+
+    fireFileChanged(toNioPath());
+  }
 
-    Path tempFilePath = Files.createTempFile(getName(), null);
+  /**
+   * Replaces the content of this file with the given content. The write is as atomic as {@link
+   * #setContents(InputStream, boolean, boolean)} but the content is written without copying it.
+   *
+   * @param content the new content
+   * @throws IOException if the content could not be written
+   */
+  public void setContents(byte[] content) throws IOException {
+    ServerFileWriter.getDefault().write(toNioPath(), content);
 
-    if (input != null) {
-      Files.copy(input, tempFilePath, StandardCopyOption.REPLACE_EXISTING);
-    }
+    fireFileChanged(toNioPath());
+  }
 
-    try {
-      Files.move(
-          tempFilePath,
-          toNioPath(),
-          StandardCopyOption.ATOMIC_MOVE,
-          StandardCopyOption.REPLACE_EXISTING);
-    } catch (AtomicMoveNotSupportedException e) {
-      Files.move(tempFilePath, toNioPath(), StandardCopyOption.REPLACE_EXISTING);
-    }
+  private void createEmptyFile() throws IOException {
+    Path nioPath = toNioPath();
+
+    Files.createDirectories(nioPath.getParent());
+    Files.createFile(nioPath);
   }
 
   @Override
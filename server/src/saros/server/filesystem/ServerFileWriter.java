@@ -0,0 +1,308 @@
+package saros.server.filesystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+import saros.server.ServerConfig;
+import saros.util.NamedThreadFactory;
+
+/**
+ * Writes file contents atomically. The content is written to a temporary file in the directory of
+ * the target file, which is then moved over the target. As both files are on the same file system
+ * the move is a cheap rename.
+ *
+ * <p>How durable the written data is depends on the {@link Durability} mode that is configured with
+ * {@link ServerConfig#getWriteDurability()}.
+ *
+ * <p>The writer records the latency of the last {@value #LATENCY_SAMPLES} writes, see {@link
+ * #getLatencyPercentiles(double...)}.
+ *
+ * <p>This class is thread safe.
+ */
+public final class ServerFileWriter {
+
+  private static final Logger LOG = Logger.getLogger(ServerFileWriter.class);
+
+  /** Determines when written data is forced to the storage device. */
+  public enum Durability {
+    /** Data is not forced, it is written whenever the operating system decides to. */
+    NONE,
+    /** Every write forces the data to the storage device before it returns. */
+    SYNC,
+    /**
+     * Writes return immediately and are forced in batches, every file and directory once per batch.
+     */
+    BATCHED
+  }
+
+  /** Delay in milliseconds after which the files of a batch are forced. */
+  private static final long BATCH_DELAY =
+      Long.getLong("saros.server.filesystem.durability.BATCH_DELAY", 50);
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final int MAX_POOLED_BUFFERS = 8;
+
+  static final int LATENCY_SAMPLES = 1024;
+
+  /** Suffix of the temporary files, such files are only of interest to this class. */
+  static final String TEMP_FILE_SUFFIX = ".saros-tmp";
+
+  private static class DefaultWriterHolder {
+    private static final ServerFileWriter INSTANCE =
+        new ServerFileWriter(ServerConfig.getWriteDurability());
+  }
+
+  private final Durability durability;
+
+  private final ArrayBlockingQueue<ByteBuffer> buffers =
+      new ArrayBlockingQueue<ByteBuffer>(MAX_POOLED_BUFFERS);
+
+  /** Files and directories that must be forced with the next batch. */
+  private final Set<Path> pendingFiles = new LinkedHashSet<Path>();
+
+  private final Set<Path> pendingDirectories = new LinkedHashSet<Path>();
+
+  private ScheduledExecutorService batchExecutor;
+
+  private final long[] latencies = new long[LATENCY_SAMPLES];
+
+  private long writes;
+
+  ServerFileWriter(final Durability durability) {
+    this.durability = durability;
+  }
+
+  /** Returns the writer that is used by all {@link ServerFileImpl server files}. */
+  public static ServerFileWriter getDefault() {
+    return DefaultWriterHolder.INSTANCE;
+  }
+
+  /**
+   * Replaces the content of the given file with the given bytes.
+   *
+   * @param target the file to write
+   * @param content the new content
+   * @throws IOException if the content could not be written, the file is left unchanged then
+   */
+  public void write(final Path target, final byte[] content) throws IOException {
+    final long start = System.nanoTime();
+
+    final Path tempFile = createTempFile(target);
+
+    try {
+      try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+        final ByteBuffer buffer = ByteBuffer.wrap(content);
+
+        while (buffer.hasRemaining()) channel.write(buffer);
+
+        if (durability == Durability.SYNC) channel.force(true);
+      }
+
+      replace(tempFile, target);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+
+    recordLatency(System.nanoTime() - start);
+  }
+
+  /**
+   * Replaces the content of the given file with the content of the given stream. The stream is not
+   * closed.
+   *
+   * @param target the file to write
+   * @param input the new content or <code>null</code> to truncate the file
+   * @throws IOException if the content could not be written, the file is left unchanged then
+   */
+  public void write(final Path target, final InputStream input) throws IOException {
+    final long start = System.nanoTime();
+
+    final Path tempFile = createTempFile(target);
+
+    try {
+      try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+        if (input != null) transfer(input, channel);
+
+        if (durability == Durability.SYNC) channel.force(true);
+      }
+
+      replace(tempFile, target);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+
+    recordLatency(System.nanoTime() - start);
+  }
+
+  /** Forces all pending writes of the current batch to the storage device. */
+  public void flush() {
+    final Path[] files;
+    final Path[] directories;
+
+    synchronized (pendingFiles) {
+      files = pendingFiles.toArray(new Path[0]);
+      directories = pendingDirectories.toArray(new Path[0]);
+      pendingFiles.clear();
+      pendingDirectories.clear();
+    }
+
+    for (final Path file : files) force(file);
+
+    for (final Path directory : directories) force(directory);
+  }
+
+  /**
+   * Returns the write latencies in milliseconds at the given percentiles of the recently recorded
+   * writes.
+   *
+   * @param percentiles the percentiles, each in the range [0, 100]
+   * @return the latencies in the order of the percentiles, all 0 if nothing was written yet
+   */
+  public double[] getLatencyPercentiles(final double... percentiles) {
+    final long[] samples;
+
+    synchronized (latencies) {
+      samples = Arrays.copyOf(latencies, (int) Math.min(writes, LATENCY_SAMPLES));
+    }
+
+    final double[] result = new double[percentiles.length];
+
+    if (samples.length == 0) return result;
+
+    Arrays.sort(samples);
+
+    for (int i = 0; i < percentiles.length; i++) {
+      final int index = (int) Math.ceil(percentiles[i] / 100 * samples.length) - 1;
+
+      result[i] = samples[Math.max(0, Math.min(samples.length - 1, index))] / 1e6;
+    }
+
+    return result;
+  }
+
+  private void transfer(final InputStream input, final FileChannel channel) throws IOException {
+    ByteBuffer buffer = buffers.poll();
+
+    if (buffer == null) buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    try {
+      int read;
+
+      while ((read = input.read(buffer.array())) != -1) {
+        buffer.limit(read);
+
+        while (buffer.hasRemaining()) channel.write(buffer);
+
+        buffer.clear();
+      }
+    } finally {
+      buffer.clear();
+      buffers.offer(buffer);
+    }
+  }
+
+  private Path createTempFile(final Path target) throws IOException {
+    final Path directory = target.toAbsolutePath().getParent();
+
+    /*
+     * the temporary file must be in the same directory, only then the move
+     * is a rename and never a copy across file systems
+     */
+    return Files.createTempFile(directory, "." + target.getFileName(), TEMP_FILE_SUFFIX);
+  }
+
+  private void replace(final Path tempFile, final Path target) throws IOException {
+    try {
+      Files.move(
+          tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    final Path directory = target.toAbsolutePath().getParent();
+
+    switch (durability) {
+      case SYNC:
+        // the rename is only durable once the directory is forced
+        force(directory);
+        break;
+      case BATCHED:
+        scheduleForce(target, directory);
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void scheduleForce(final Path file, final Path directory) {
+    synchronized (pendingFiles) {
+      final boolean startBatch = pendingFiles.isEmpty() && pendingDirectories.isEmpty();
+
+      pendingFiles.add(file);
+      pendingDirectories.add(directory);
+
+      if (!startBatch) return;
+
+      if (batchExecutor == null)
+        batchExecutor =
+            Executors.newSingleThreadScheduledExecutor(
+                runnable -> {
+                  final Thread thread =
+                      new NamedThreadFactory("ServerFileWriter-Flush", false).newThread(runnable);
+                  thread.setDaemon(true);
+                  return thread;
+                });
+
+      batchExecutor.schedule(this::flush, BATCH_DELAY, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** Forces the given file or directory, failures are logged only. */
+  private static void force(final Path path) {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // directories cannot be opened on some platforms, deleted files cannot be forced anymore
+      LOG.debug("could not force " + path + " to the storage device", e);
+    }
+  }
+
+  private void recordLatency(final long nanos) {
+    final long count;
+
+    synchronized (latencies) {
+      latencies[(int) (writes % LATENCY_SAMPLES)] = nanos;
+      count = ++writes;
+    }
+
+    if (count % LATENCY_SAMPLES != 0 || !LOG.isDebugEnabled()) return;
+
+    final double[] percentiles = getLatencyPercentiles(50, 90, 99, 100);
+
+    LOG.debug(
+        String.format(
+            "write latency of the last %d writes [%s]: p50=%.2f ms, p90=%.2f ms, p99=%.2f ms,"
+                + " max=%.2f ms",
+            LATENCY_SAMPLES,
+            durability,
+            percentiles[0],
+            percentiles[1],
+            percentiles[2],
+            percentiles[3]));
+  }
+}
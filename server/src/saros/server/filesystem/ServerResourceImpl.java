@@ -77,7 +77,8 @@ public abstract class ServerResourceImpl implements IResource {
 
   @Override
   public boolean isIgnored() {
-    return false;
+    // files that are currently written by the ServerFileWriter
+    return getName().endsWith(ServerFileWriter.TEMP_FILE_SUFFIX);
   }
 
   @Override
@@ -118,4 +119,15 @@ public abstract class ServerResourceImpl implements IResource {
   Path toNioPath() {
     return ((ServerPathImpl) getLocation()).getDelegate();
   }
+
+  /**
+   * Notifies the listeners of the workspace that the file at the given location was changed.
+   *
+   * @param file the absolute location of the file
+   * @see ServerWorkspaceImpl#addFileChangeListener
+   */
+  void fireFileChanged(Path file) {
+    if (workspace instanceof ServerWorkspaceImpl)
+      ((ServerWorkspaceImpl) workspace).fireFileChanged(file);
+  }
 }
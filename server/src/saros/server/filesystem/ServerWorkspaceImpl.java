@@ -1,6 +1,9 @@
 package saros.server.filesystem;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import saros.exceptions.OperationCanceledException;
 import saros.filesystem.IPath;
 import saros.filesystem.IProject;
@@ -14,6 +17,10 @@ public class ServerWorkspaceImpl implements IWorkspace {
 
   private IPath location;
 
+  /** Listeners notified of the files that are changed through this workspace. */
+  private final CopyOnWriteArrayList<Consumer<Path>> fileChangeListeners =
+      new CopyOnWriteArrayList<Consumer<Path>>();
+
   /**
    * Creates a ServerWorkspaceImpl.
    *
@@ -37,6 +44,35 @@ public class ServerWorkspaceImpl implements IWorkspace {
     return new ServerProjectImpl(this, name);
   }
 
+  /**
+   * Adds a listener that is called synchronously with the location of every file whose content is
+   * written, that is deleted or moved through the {@linkplain ServerFileImpl files} and {@linkplain
+   * ServerContainerImpl containers} of this workspace.
+   *
+   * @param listener the listener to add
+   */
+  void addFileChangeListener(Consumer<Path> listener) {
+    fileChangeListeners.addIfAbsent(listener);
+  }
+
+  /**
+   * Removes a listener added with {@link #addFileChangeListener(Consumer)}.
+   *
+   * @param listener the listener to remove
+   */
+  void removeFileChangeListener(Consumer<Path> listener) {
+    fileChangeListeners.remove(listener);
+  }
+
+  /**
+   * Notifies the listeners that the file at the given location was changed through this workspace.
+   *
+   * @param file the absolute location of the file
+   */
+  void fireFileChanged(Path file) {
+    for (final Consumer<Path> listener : fileChangeListeners) listener.accept(file);
+  }
+
   @Override
   public void run(IWorkspaceRunnable runnable) throws IOException, OperationCanceledException {
 
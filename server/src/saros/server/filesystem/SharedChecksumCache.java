@@ -0,0 +1,108 @@
+package saros.server.filesystem;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import saros.filesystem.FileSystemChecksumCache;
+import saros.filesystem.IChecksumCache;
+import saros.filesystem.IFile;
+import saros.filesystem.IFileContentChangedListener;
+import saros.filesystem.IFileContentChangedNotifier;
+import saros.filesystem.IPath;
+import saros.filesystem.IWorkspace;
+
+/**
+ * A checksum cache that is shared by all sessions hosted by the server. Every tenant accesses the
+ * cache through its own {@link #createView view}, which keys the files of the tenant by the tenant
+ * name and its full path, so files of different tenants never share an entry even if their paths
+ * are equal. A view has to be {@link View#close closed} when its tenant is disposed.
+ *
+ * <p>This class is thread safe.
+ */
+public final class SharedChecksumCache {
+
+  private final CopyOnWriteArrayList<IFileContentChangedListener> listeners =
+      new CopyOnWriteArrayList<IFileContentChangedListener>();
+
+  /** Forwards the (already prefixed) file changes of all tenants to the shared cache. */
+  private final IFileContentChangedNotifier dispatcher =
+      new IFileContentChangedNotifier() {
+        @Override
+        public void addFileContentChangedListener(IFileContentChangedListener listener) {
+          listeners.addIfAbsent(listener);
+        }
+
+        @Override
+        public void removeFileContentChangedListener(IFileContentChangedListener listener) {
+          listeners.remove(listener);
+        }
+      };
+
+  private final FileSystemChecksumCache cache = new FileSystemChecksumCache(dispatcher);
+
+  /**
+   * Creates the view of the cache for the given tenant. Changes reported by the notifier of the
+   * tenant invalidate the entries of the tenant only.
+   *
+   * @param tenant the name of the tenant, must be unique within the server
+   * @param workspace the workspace of the tenant
+   * @param notifier the notifier reporting file changes in the workspace of the tenant
+   * @return the checksum cache to use for the tenant, must be closed when the tenant is disposed
+   */
+  public View createView(
+      final String tenant, final IWorkspace workspace, final IFileContentChangedNotifier notifier) {
+
+    final View view = new View(ServerPathImpl.fromString(tenant), workspace, notifier);
+
+    notifier.addFileContentChangedListener(view.notifierListener);
+
+    return view;
+  }
+
+  /** The view of the shared cache for a single tenant. */
+  public final class View implements IChecksumCache, AutoCloseable {
+
+    private final IPath prefix;
+    private final IWorkspace workspace;
+    private final IFileContentChangedNotifier notifier;
+
+    private final IFileContentChangedListener notifierListener =
+        (file) -> {
+          final IFile key = toKey(file);
+
+          for (final IFileContentChangedListener listener : listeners)
+            listener.fileContentChanged(key);
+        };
+
+    private View(
+        final IPath prefix,
+        final IWorkspace workspace,
+        final IFileContentChangedNotifier notifier) {
+      this.prefix = prefix;
+      this.workspace = workspace;
+      this.notifier = notifier;
+    }
+
+    /**
+     * Stops tracking the file changes of the tenant. The view must not be used afterwards as its
+     * entries are no longer invalidated.
+     */
+    @Override
+    public void close() {
+      notifier.removeFileContentChangedListener(notifierListener);
+    }
+
+    @Override
+    public Long getChecksum(final IFile file) {
+      return cache.getChecksum(toKey(file));
+    }
+
+    @Override
+    public boolean addChecksum(final IFile file, final long checksum) {
+      return cache.addChecksum(toKey(file), checksum);
+    }
+
+    /** Returns a file that is only used to identify the given file of the tenant in the cache. */
+    private IFile toKey(final IFile file) {
+      return new ServerFileImpl(workspace, prefix.append(file.getFullPath()));
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package saros.server.filesystem;
+
+import saros.filesystem.IChecksumCache;
+import saros.filesystem.IFile;
+import saros.filesystem.IFileContentChangedNotifier;
+import saros.filesystem.IWorkspace;
+import saros.repackaged.picocontainer.Disposable;
+import saros.server.TenantConfig;
+
+/**
+ * The checksum cache of a single tenant. It stores the checksums in the {@link SharedChecksumCache}
+ * of the server and releases its view of that cache when the context of the tenant is disposed.
+ */
+public final class TenantChecksumCache implements IChecksumCache, Disposable {
+
+  private final SharedChecksumCache.View delegate;
+
+  public TenantChecksumCache(
+      SharedChecksumCache sharedCache,
+      TenantConfig tenant,
+      IWorkspace workspace,
+      IFileContentChangedNotifier notifier) {
+    delegate = sharedCache.createView(tenant.getName(), workspace, notifier);
+  }
+
+  @Override
+  public Long getChecksum(IFile file) {
+    return delegate.getChecksum(file);
+  }
+
+  @Override
+  public boolean addChecksum(IFile file, long checksum) {
+    return delegate.addChecksum(file, checksum);
+  }
+
+  @Override
+  public void dispose() {
+    delegate.close();
+  }
+}
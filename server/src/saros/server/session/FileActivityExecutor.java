@@ -9,6 +9,8 @@ import saros.filesystem.IFile;
 import saros.filesystem.IResource;
 import saros.repackaged.picocontainer.Startable;
 import saros.server.editor.ServerEditorManager;
+import saros.server.filesystem.ServerFileImpl;
+import saros.server.filesystem.ServerFileWriter;
 import saros.session.AbstractActivityConsumer;
 import saros.session.ISarosSession;
 
@@ -40,6 +42,7 @@ public class FileActivityExecutor extends AbstractActivityConsumer implements St
   @Override
   public void stop() {
     session.removeActivityConsumer(this);
+    ServerFileWriter.getDefault().flush();
   }
 
   @Override
@@ -66,7 +69,10 @@ public class FileActivityExecutor extends AbstractActivityConsumer implements St
 
   private void executeFileCreation(FileActivity activity) throws IOException {
     IFile file = activity.getPath().getFile();
-    file.create(new ByteArrayInputStream(activity.getContent()), true);
+    ServerFileImpl serverFile = file.adaptTo(ServerFileImpl.class);
+
+    if (serverFile != null) serverFile.create(activity.getContent());
+    else file.create(new ByteArrayInputStream(activity.getContent()), true);
   }
 
   private void executeFileMove(FileActivity activity) throws IOException {
@@ -77,7 +83,10 @@ public class FileActivityExecutor extends AbstractActivityConsumer implements St
     oldFile.move(activity.getPath().getFullPath(), true);
     byte[] content = activity.getContent();
     if (content != null) {
-      newFile.setContents(new ByteArrayInputStream(content), true, true);
+      ServerFileImpl serverFile = newFile.adaptTo(ServerFileImpl.class);
+
+      if (serverFile != null) serverFile.setContents(content);
+      else newFile.setContents(new ByteArrayInputStream(content), true, true);
     }
     // only update if all previous operations are successful
     editorManager.updateMapping(oldPath, newPath);
@@ -3,9 +3,6 @@ package saros.server.session;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 import saros.filesystem.IProject;
 import saros.filesystem.IWorkspace;
@@ -20,11 +17,11 @@ import saros.negotiation.ProjectNegotiationData;
 import saros.negotiation.SessionNegotiation;
 import saros.net.xmpp.JID;
 import saros.server.ServerConfig;
+import saros.server.TenantConfig;
 import saros.server.filesystem.ServerProjectImpl;
 import saros.server.progress.ConsoleProgressIndicator;
 import saros.session.INegotiationHandler;
 import saros.session.ISarosSessionManager;
-import saros.util.NamedThreadFactory;
 
 public class NegotiationHandler implements INegotiationHandler {
 
@@ -32,33 +29,42 @@ public class NegotiationHandler implements INegotiationHandler {
 
   private final ISarosSessionManager sessionManager;
   private final IWorkspace workspace;
-  private final ThreadPoolExecutor sessionExecutor =
-      new ThreadPoolExecutor(
-          0,
-          4,
-          60,
-          TimeUnit.SECONDS,
-          new LinkedBlockingQueue<Runnable>(),
-          new NamedThreadFactory("ServerSessionNegotiation-"));
-  private final ThreadPoolExecutor projectExecutor =
-      new ThreadPoolExecutor(
-          0,
-          10,
-          60,
-          TimeUnit.SECONDS,
-          new LinkedBlockingQueue<Runnable>(),
-          new NamedThreadFactory("ServerProjectNegotiation-"));
-
-  public NegotiationHandler(ISarosSessionManager sessionManager, IWorkspace workspace) {
+  private final PeerFairExecutor sessionExecutor;
+  private final PeerFairExecutor projectExecutor;
+
+  public NegotiationHandler(
+      ISarosSessionManager sessionManager, IWorkspace workspace, TenantConfig tenant) {
     sessionManager.setNegotiationHandler(this);
     this.sessionManager = sessionManager;
     this.workspace = workspace;
+
+    sessionExecutor =
+        new PeerFairExecutor(
+            "Session Negotiation of " + tenant.getName(),
+            tenant.getMaxSessionNegotiations(),
+            tenant.getMaxNegotiationsPerPeer());
+    projectExecutor =
+        new PeerFairExecutor(
+            "Project Negotiation of " + tenant.getName(),
+            tenant.getMaxProjectNegotiations(),
+            tenant.getMaxNegotiationsPerPeer());
+  }
+
+  /** Returns a summary of the metrics of the session negotiations, used for logging. */
+  public String getSessionNegotiationStatistics() {
+    return sessionExecutor.getStatistics().toString();
+  }
+
+  /** Returns a summary of the metrics of the project negotiations, used for logging. */
+  public String getProjectNegotiationStatistics() {
+    return projectExecutor.getStatistics().toString();
   }
 
   @Override
   public void handleOutgoingSessionNegotiation(final OutgoingSessionNegotiation negotiation) {
 
     sessionExecutor.execute(
+        negotiation.getPeer(),
         new Runnable() {
           @Override
           public void run() {
@@ -100,6 +106,7 @@ public class NegotiationHandler implements INegotiationHandler {
   public void handleIncomingSessionNegotiation(final IncomingSessionNegotiation negotiation) {
 
     sessionExecutor.execute(
+        negotiation.getPeer(),
         new Runnable() {
           @Override
           public void run() {
@@ -116,6 +123,7 @@ public class NegotiationHandler implements INegotiationHandler {
       final AbstractOutgoingProjectNegotiation negotiation) {
 
     projectExecutor.execute(
+        negotiation.getPeer(),
         new Runnable() {
           @Override
           public void run() {
@@ -157,6 +165,7 @@ public class NegotiationHandler implements INegotiationHandler {
     }
 
     projectExecutor.execute(
+        negotiation.getPeer(),
         new Runnable() {
           @Override
           public void run() {
@@ -0,0 +1,300 @@
+package saros.server.session;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import saros.net.xmpp.JID;
+import saros.util.NamedThreadFactory;
+
+/**
+ * Executes tasks on behalf of peers. At most {@code maxConcurrent} tasks run at the same time and
+ * at most {@code maxPerPeer} of them for the same peer. Tasks that cannot run yet are queued per
+ * peer, and the queues are served round robin, so a peer that submits many tasks cannot delay the
+ * tasks of other peers.
+ *
+ * <p>All executors run their tasks on the same thread pool, the limits apply per executor.
+ *
+ * <p>The executor records how long tasks waited in the queue and how long they ran, see {@link
+ * #getStatistics()}.
+ *
+ * <p>This class is thread safe.
+ */
+class PeerFairExecutor {
+
+  private static final Logger log = Logger.getLogger(PeerFairExecutor.class);
+
+  /*
+   * the threads are shared by all executors of the process, i.e. by the
+   * sessions of all tenants. The limits are enforced by the executors which
+   * only hand over a task if there is a free slot, so the pool itself must not
+   * queue or reject, as the thread of a finishing task may still be busy when
+   * the next task is handed over
+   */
+  private static final Executor SHARED_POOL =
+      new ThreadPoolExecutor(
+          0,
+          Integer.MAX_VALUE,
+          60,
+          TimeUnit.SECONDS,
+          new SynchronousQueue<Runnable>(),
+          new NamedThreadFactory("ServerNegotiation-"));
+
+  /** A snapshot of the metrics of an executor. */
+  static final class Statistics {
+    final long completed;
+    final long queued;
+    final long running;
+    final long totalQueueWaitMillis;
+    final long maxQueueWaitMillis;
+    final long totalDurationMillis;
+    final long maxDurationMillis;
+
+    private Statistics(
+        long completed,
+        long queued,
+        long running,
+        long totalQueueWaitMillis,
+        long maxQueueWaitMillis,
+        long totalDurationMillis,
+        long maxDurationMillis) {
+      this.completed = completed;
+      this.queued = queued;
+      this.running = running;
+      this.totalQueueWaitMillis = totalQueueWaitMillis;
+      this.maxQueueWaitMillis = maxQueueWaitMillis;
+      this.totalDurationMillis = totalDurationMillis;
+      this.maxDurationMillis = maxDurationMillis;
+    }
+
+    @Override
+    public String toString() {
+      return "completed="
+          + completed
+          + ", queued="
+          + queued
+          + ", running="
+          + running
+          + ", avgQueueWait="
+          + (completed == 0 ? 0 : totalQueueWaitMillis / completed)
+          + " ms, maxQueueWait="
+          + maxQueueWaitMillis
+          + " ms, avgDuration="
+          + (completed == 0 ? 0 : totalDurationMillis / completed)
+          + " ms, maxDuration="
+          + maxDurationMillis
+          + " ms";
+    }
+  }
+
+  private final class Task implements Runnable {
+    private final JID peer;
+    private final Runnable runnable;
+    private final long submitted = System.nanoTime();
+
+    private Task(JID peer, Runnable runnable) {
+      this.peer = peer;
+      this.runnable = runnable;
+    }
+
+    @Override
+    public void run() {
+      final long started = System.nanoTime();
+      final long queueWait = TimeUnit.NANOSECONDS.toMillis(started - submitted);
+
+      try {
+        runnable.run();
+      } catch (RuntimeException e) {
+        log.error("internal error while running " + name + " with " + peer, e);
+      } finally {
+        final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        record(queueWait, duration);
+
+        log.info(
+            name
+                + " with "
+                + peer
+                + " finished after "
+                + duration
+                + " ms, waited "
+                + queueWait
+                + " ms in queue ["
+                + getStatistics()
+                + "]");
+
+        finished(this);
+      }
+    }
+  }
+
+  private final String name;
+
+  private final int maxConcurrent;
+
+  private final int maxPerPeer;
+
+  /** Queued tasks per peer, only contains peers with at least one queued task. */
+  private final Map<JID, Queue<Task>> queues = new HashMap<JID, Queue<Task>>();
+
+  /** Order in which the peers with queued tasks are served. */
+  private final Queue<JID> readyPeers = new ArrayDeque<JID>();
+
+  private final Map<JID, Integer> runningPerPeer = new HashMap<JID, Integer>();
+
+  private int running;
+
+  private int queued;
+
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong totalQueueWait = new AtomicLong();
+  private final AtomicLong maxQueueWait = new AtomicLong();
+  private final AtomicLong totalDuration = new AtomicLong();
+  private final AtomicLong maxDuration = new AtomicLong();
+
+  /**
+   * @param name the name of the executed tasks, used for logging
+   * @param maxConcurrent the maximum number of tasks that run at the same time
+   * @param maxPerPeer the maximum number of tasks of the same peer that run at the same time
+   */
+  PeerFairExecutor(final String name, final int maxConcurrent, final int maxPerPeer) {
+    if (maxConcurrent <= 0)
+      throw new IllegalArgumentException("maxConcurrent must be positive: " + maxConcurrent);
+
+    if (maxPerPeer <= 0)
+      throw new IllegalArgumentException("maxPerPeer must be positive: " + maxPerPeer);
+
+    this.name = name;
+    this.maxConcurrent = maxConcurrent;
+    this.maxPerPeer = maxPerPeer;
+  }
+
+  /**
+   * Executes the given task for the given peer as soon as the concurrency limits allow it.
+   *
+   * @param peer the peer the task is executed for
+   * @param task the task to execute
+   */
+  void execute(final JID peer, final Runnable task) {
+    synchronized (this) {
+      Queue<Task> queue = queues.get(peer);
+
+      if (queue == null) {
+        queue = new ArrayDeque<Task>();
+        queues.put(peer, queue);
+        readyPeers.add(peer);
+      }
+
+      queue.add(new Task(peer, task));
+      queued++;
+    }
+
+    dispatch();
+  }
+
+  /** Returns a snapshot of the current metrics. */
+  Statistics getStatistics() {
+    final long currentQueued;
+    final long currentRunning;
+
+    synchronized (this) {
+      currentQueued = queued;
+      currentRunning = running;
+    }
+
+    return new Statistics(
+        completed.get(),
+        currentQueued,
+        currentRunning,
+        totalQueueWait.get(),
+        maxQueueWait.get(),
+        totalDuration.get(),
+        maxDuration.get());
+  }
+
+  private void finished(final Task task) {
+    synchronized (this) {
+      running--;
+
+      final int peerRunning = runningPerPeer.get(task.peer) - 1;
+
+      if (peerRunning == 0) runningPerPeer.remove(task.peer);
+      else runningPerPeer.put(task.peer, peerRunning);
+    }
+
+    dispatch();
+  }
+
+  /** Hands over queued tasks to the pool as long as the limits allow it. */
+  private void dispatch() {
+    Task task;
+
+    while ((task = nextTask()) != null) {
+      try {
+        SHARED_POOL.execute(task);
+      } catch (RejectedExecutionException e) {
+        // should never happen, but the slot must not be lost
+        log.error("failed to execute " + name + " with " + task.peer, e);
+        finished(task);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Takes the next task that may run and reserves its slot.
+   *
+   * @return the task or <code>null</code> if no task may run currently
+   */
+  private synchronized Task nextTask() {
+    if (running >= maxConcurrent) return null;
+
+    for (int i = readyPeers.size(); i > 0; i--) {
+      final JID peer = readyPeers.poll();
+
+      final Integer peerRunning = runningPerPeer.get(peer);
+
+      if (peerRunning != null && peerRunning >= maxPerPeer) {
+        readyPeers.add(peer);
+        continue;
+      }
+
+      final Queue<Task> queue = queues.get(peer);
+      final Task task = queue.poll();
+
+      if (queue.isEmpty()) queues.remove(peer);
+      else readyPeers.add(peer);
+
+      queued--;
+      running++;
+      runningPerPeer.put(peer, peerRunning == null ? 1 : peerRunning + 1);
+
+      return task;
+    }
+
+    return null;
+  }
+
+  private void record(final long queueWait, final long duration) {
+    totalQueueWait.addAndGet(queueWait);
+    totalDuration.addAndGet(duration);
+    updateMax(maxQueueWait, queueWait);
+    updateMax(maxDuration, duration);
+    completed.incrementAndGet();
+  }
+
+  private static void updateMax(final AtomicLong max, final long value) {
+    long current;
+
+    while ((current = max.get()) < value && !max.compareAndSet(current, value)) {
+      // retry
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package saros.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Properties;
+import org.junit.Test;
+
+public class TenantConfigTest {
+
+  @Test
+  public void testParse() {
+    final Properties properties = new Properties();
+
+    properties.setProperty("tenants", " alice , bob ");
+    properties.setProperty("alice.jid", "alice@saros-con.imp.fu-berlin.de/Saros");
+    properties.setProperty("alice.password", "secret");
+    properties.setProperty("alice.workspace", "/srv/saros/alice");
+    properties.setProperty("alice.maxSessionNegotiations", "2");
+    properties.setProperty("alice.maxProjectNegotiations", "3");
+    properties.setProperty("alice.maxNegotiationsPerPeer", "0");
+    properties.setProperty("bob.jid", "bob@saros-con.imp.fu-berlin.de/Saros");
+    properties.setProperty("bob.password", "secret");
+
+    final List<TenantConfig> tenants = TenantConfig.parse(properties);
+
+    assertEquals(2, tenants.size());
+
+    final TenantConfig alice = tenants.get(0);
+
+    assertEquals("alice", alice.getName());
+    assertEquals("alice@saros-con.imp.fu-berlin.de/Saros", alice.getJID());
+    assertEquals("secret", alice.getPassword());
+    assertEquals(2, alice.getMaxSessionNegotiations());
+    assertEquals(3, alice.getMaxProjectNegotiations());
+    assertEquals(1, alice.getMaxNegotiationsPerPeer());
+
+    final TenantConfig bob = tenants.get(1);
+
+    assertEquals("bob", bob.getName());
+    assertNull(bob.getWorkspacePath());
+    assertEquals(ServerConfig.getMaxSessionNegotiations(), bob.getMaxSessionNegotiations());
+    assertEquals(ServerConfig.getMaxProjectNegotiations(), bob.getMaxProjectNegotiations());
+    assertEquals(ServerConfig.getMaxNegotiationsPerPeer(), bob.getMaxNegotiationsPerPeer());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseWithoutTenants() {
+    TenantConfig.parse(new Properties());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseWithMissingCredentials() {
+    final Properties properties = new Properties();
+
+    properties.setProperty("tenants", "alice");
+    properties.setProperty("alice.jid", "alice@saros-con.imp.fu-berlin.de/Saros");
+
+    TenantConfig.parse(properties);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseDuplicateTenant() {
+    final Properties properties = new Properties();
+
+    properties.setProperty("tenants", "alice,alice");
+    properties.setProperty("alice.jid", "alice@saros-con.imp.fu-berlin.de/Saros");
+    properties.setProperty("alice.password", "secret");
+
+    TenantConfig.parse(properties);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidName() {
+    new TenantConfig("../alice", "alice@saros-con.imp.fu-berlin.de/Saros", "secret", null, 1, 1, 1);
+  }
+}
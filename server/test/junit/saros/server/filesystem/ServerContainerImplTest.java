@@ -3,6 +3,8 @@ package saros.server.filesystem;
 import static org.easymock.EasyMock.expect;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static saros.server.filesystem.FileSystemTestUtils.absolutePath;
 import static saros.server.filesystem.FileSystemTestUtils.assertFileHasContent;
@@ -14,8 +16,12 @@ import static saros.server.filesystem.FileSystemTestUtils.createWorkspaceFolder;
 import static saros.server.filesystem.FileSystemTestUtils.path;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.apache.commons.io.FileUtils;
 import org.easymock.EasyMockSupport;
 import org.junit.After;
@@ -158,6 +164,68 @@ public class ServerContainerImplTest extends EasyMockSupport {
     container.members();
   }
 
+  @Test
+  public void accept() throws Exception {
+    createFolder(workspace, CONTAINER_PATH);
+    createFile(workspace, CONTAINER_PATH + "/file1");
+    createFolder(workspace, CONTAINER_PATH + "/subfolder");
+    createFile(workspace, CONTAINER_PATH + "/subfolder/file2");
+    createFolder(workspace, CONTAINER_PATH + "/subfolder/empty");
+
+    final Map<IPath, Integer> visited = new HashMap<IPath, Integer>();
+
+    container.accept(
+        (resource) -> {
+          assertNull("visited twice", visited.put(resource.getFullPath(), resource.getType()));
+          return true;
+        });
+
+    assertEquals(5, visited.size());
+    assertEquals(Integer.valueOf(IResource.FOLDER), visited.get(path(CONTAINER_PATH)));
+    assertEquals(Integer.valueOf(IResource.FILE), visited.get(path(CONTAINER_PATH + "/file1")));
+    assertEquals(
+        Integer.valueOf(IResource.FOLDER), visited.get(path(CONTAINER_PATH + "/subfolder")));
+    assertEquals(
+        Integer.valueOf(IResource.FILE), visited.get(path(CONTAINER_PATH + "/subfolder/file2")));
+    assertEquals(
+        Integer.valueOf(IResource.FOLDER), visited.get(path(CONTAINER_PATH + "/subfolder/empty")));
+  }
+
+  @Test
+  public void acceptVisitsContainerFirst() throws Exception {
+    createFile(workspace, CONTAINER_PATH + "/file");
+
+    final List<IResource> visited = new ArrayList<IResource>();
+
+    container.accept(visited::add);
+
+    assertSame(container, visited.get(0));
+    assertEquals(2, visited.size());
+  }
+
+  @Test
+  public void acceptSkipsMembers() throws Exception {
+    createFile(workspace, CONTAINER_PATH + "/file1");
+    createFile(workspace, CONTAINER_PATH + "/subfolder/file2");
+
+    final List<IPath> visited = new ArrayList<IPath>();
+
+    container.accept(
+        (resource) -> {
+          visited.add(resource.getFullPath());
+          return !resource.getName().equals("subfolder");
+        });
+
+    assertEquals(3, visited.size());
+    assertFalse(visited.contains(path(CONTAINER_PATH + "/subfolder/file2")));
+  }
+
+  @Test(expected = IOException.class)
+  public void acceptNonExistent() throws Exception {
+    assertResourceNotExists(workspace, CONTAINER_PATH);
+    container.accept((resource) -> true);
+  }
+
   @Test
   public void existsChild() throws Exception {
     createFolder(workspace, CONTAINER_PATH);
@@ -0,0 +1,217 @@
+package saros.server.filesystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static saros.server.filesystem.FileSystemTestUtils.createFile;
+import static saros.server.filesystem.FileSystemTestUtils.createFolder;
+import static saros.server.filesystem.FileSystemTestUtils.createWorkspaceFolder;
+import static saros.server.filesystem.FileSystemTestUtils.path;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import saros.filesystem.FileSystemChecksumCache;
+import saros.filesystem.IFile;
+import saros.filesystem.IFolder;
+import saros.filesystem.IWorkspace;
+
+public class ServerFileContentNotifierTest {
+
+  private IWorkspace workspace;
+  private ServerFileContentNotifier notifier;
+
+  private final BlockingQueue<String> changedFiles = new LinkedBlockingQueue<String>();
+
+  @Before
+  public void setUp() throws Exception {
+    workspace = new ServerWorkspaceImpl(createWorkspaceFolder());
+    createFile(workspace, "project/file", "content");
+  }
+
+  @After
+  public void cleanUp() {
+    if (notifier != null) notifier.stop();
+
+    FileUtils.deleteQuietly(workspace.getLocation().toFile());
+  }
+
+  @Test
+  public void testModifiedFileIsReported() throws Exception {
+    startNotifier(true);
+
+    Files.write(location("project/file"), "new content".getBytes("UTF-8"));
+
+    assertEquals("project/file", nextChangedFile());
+  }
+
+  @Test
+  public void testFilesInNewFolderAreReported() throws Exception {
+    startNotifier(true);
+
+    createFile(workspace, "project/folder/subfolder/file", "content");
+
+    assertEquals("project/folder/subfolder/file", nextChangedFile());
+
+    // the new folder must be watched as well
+    Files.write(location("project/folder/subfolder/file"), "new content".getBytes("UTF-8"));
+
+    assertEquals("project/folder/subfolder/file", nextChangedFile());
+  }
+
+  @Test
+  public void testBurstIsBatched() throws Exception {
+    startNotifier(true);
+
+    final int writes = 100;
+
+    for (int i = 0; i < writes; i++)
+      Files.write(location("project/file"), ("content " + i).getBytes("UTF-8"));
+
+    assertEquals("project/file", nextChangedFile());
+
+    Thread.sleep(2 * ServerFileContentNotifier.MAX_BATCH_DELAY);
+
+    assertTrue("burst was not batched", changedFiles.size() < writes / 10);
+  }
+
+  @Test
+  public void testPollingDetectsChanges() throws Exception {
+    createFolder(workspace, "project/folder");
+
+    startNotifier(false);
+
+    // wait for the initial snapshot
+    Thread.sleep(200);
+
+    Files.write(location("project/file"), "changed content".getBytes("UTF-8"));
+
+    assertEquals("project/file", nextChangedFile());
+
+    createFile(workspace, "project/folder/file", "content");
+
+    assertEquals("project/folder/file", nextChangedFile());
+  }
+
+  @Test
+  public void testChecksumCacheIsInvalidated() throws Exception {
+    notifier = new ServerFileContentNotifier(workspace, true, 50);
+
+    // must be notified before the listener of the test
+    final FileSystemChecksumCache cache = new FileSystemChecksumCache(notifier);
+
+    startNotifier(true);
+
+    final IFile file = new ServerFileImpl(workspace, path("project/file"));
+
+    cache.addChecksum(file, 42);
+
+    assertEquals(Long.valueOf(42), cache.getChecksum(file));
+
+    Files.write(location("project/file"), "new content".getBytes("UTF-8"));
+
+    nextChangedFile();
+
+    assertNull(cache.getChecksum(file));
+  }
+
+  @Test
+  public void testChecksumIsInvalidatedWhenFileIsWritten() throws Exception {
+    final FileSystemChecksumCache cache = startNotifierWithoutWatcher();
+
+    final ServerFileImpl file = new ServerFileImpl(workspace, path("project/file"));
+
+    cache.addChecksum(file, 42);
+    file.setContents("new content".getBytes("UTF-8"));
+
+    assertNull(cache.getChecksum(file));
+
+    cache.addChecksum(file, 42);
+    file.setContents(new ByteArrayInputStream("newer content".getBytes("UTF-8")), true, false);
+
+    assertNull(cache.getChecksum(file));
+  }
+
+  @Test
+  public void testChecksumIsInvalidatedWhenFileIsDeletedOrMoved() throws Exception {
+    final FileSystemChecksumCache cache = startNotifierWithoutWatcher();
+
+    final IFile file = new ServerFileImpl(workspace, path("project/file"));
+    final IFile movedFile = new ServerFileImpl(workspace, path("project/moved"));
+
+    cache.addChecksum(file, 42);
+    cache.addChecksum(movedFile, 43);
+    file.move(path("moved"), false);
+
+    assertNull(cache.getChecksum(file));
+    assertNull(cache.getChecksum(movedFile));
+
+    cache.addChecksum(movedFile, 43);
+    movedFile.delete(0);
+
+    assertNull(cache.getChecksum(movedFile));
+  }
+
+  @Test
+  public void testChecksumsAreInvalidatedWhenFolderIsDeletedOrMoved() throws Exception {
+    createFile(workspace, "project/folder/file", "content");
+
+    final FileSystemChecksumCache cache = startNotifierWithoutWatcher();
+
+    final IFolder folder = new ServerFolderImpl(workspace, path("project/folder"));
+    final IFile file = new ServerFileImpl(workspace, path("project/folder/file"));
+    final IFile movedFile = new ServerFileImpl(workspace, path("project/moved/file"));
+
+    cache.addChecksum(file, 42);
+    cache.addChecksum(movedFile, 43);
+    folder.move(path("moved"), false);
+
+    assertNull(cache.getChecksum(file));
+    assertNull(cache.getChecksum(movedFile));
+
+    cache.addChecksum(movedFile, 43);
+    new ServerFolderImpl(workspace, path("project/moved")).delete(0);
+
+    assertNull(cache.getChecksum(movedFile));
+  }
+
+  /**
+   * Starts a notifier that polls the workspace so rarely that only the changes made through the
+   * workspace are reported during a test.
+   */
+  private FileSystemChecksumCache startNotifierWithoutWatcher() {
+    notifier = new ServerFileContentNotifier(workspace, false, TimeUnit.HOURS.toMillis(1));
+
+    final FileSystemChecksumCache cache = new FileSystemChecksumCache(notifier);
+
+    notifier.start();
+
+    return cache;
+  }
+
+  private void startNotifier(final boolean useWatchService) throws Exception {
+    if (notifier == null) notifier = new ServerFileContentNotifier(workspace, useWatchService, 50);
+
+    notifier.addFileContentChangedListener(
+        (file) -> changedFiles.add(file.getFullPath().toPortableString()));
+    notifier.start();
+
+    // the workspace is registered asynchronously
+    Thread.sleep(200);
+  }
+
+  private String nextChangedFile() throws InterruptedException {
+    return changedFiles.poll(10, TimeUnit.SECONDS);
+  }
+
+  private Path location(final String path) {
+    return ((ServerPathImpl) workspace.getLocation().append(path(path))).getDelegate();
+  }
+}
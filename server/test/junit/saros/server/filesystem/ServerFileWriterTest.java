@@ -0,0 +1,124 @@
+package saros.server.filesystem;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import saros.server.filesystem.ServerFileWriter.Durability;
+
+public class ServerFileWriterTest {
+
+  private Path directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("saros-test-writer");
+  }
+
+  @After
+  public void cleanUp() {
+    FileUtils.deleteQuietly(directory.toFile());
+  }
+
+  @Test
+  public void writeBytes() throws IOException {
+    final ServerFileWriter writer = new ServerFileWriter(Durability.NONE);
+    final Path file = directory.resolve("file");
+
+    writer.write(file, createContent(100 * 1024));
+
+    assertArrayEquals(createContent(100 * 1024), Files.readAllBytes(file));
+    assertEquals(1, listDirectory().size());
+  }
+
+  @Test
+  public void writeStreamReplacesContent() throws IOException {
+    final ServerFileWriter writer = new ServerFileWriter(Durability.SYNC);
+    final Path file = directory.resolve("file");
+
+    Files.write(file, createContent(1024 * 1024));
+
+    writer.write(file, new ByteArrayInputStream(createContent(200 * 1024)));
+
+    assertArrayEquals(createContent(200 * 1024), Files.readAllBytes(file));
+    assertEquals(1, listDirectory().size());
+  }
+
+  @Test
+  public void writeNullStreamTruncates() throws IOException {
+    final ServerFileWriter writer = new ServerFileWriter(Durability.NONE);
+    final Path file = directory.resolve("file");
+
+    Files.write(file, createContent(1024));
+
+    writer.write(file, (InputStream) null);
+
+    assertEquals(0, Files.size(file));
+  }
+
+  @Test
+  public void batchedWritesAreFlushed() throws IOException {
+    final ServerFileWriter writer = new ServerFileWriter(Durability.BATCHED);
+
+    for (int i = 0; i < 10; i++)
+      writer.write(directory.resolve("file" + (i % 3)), createContent(i * 1000));
+
+    writer.flush();
+
+    assertEquals(3, listDirectory().size());
+    assertArrayEquals(createContent(9000), Files.readAllBytes(directory.resolve("file0")));
+  }
+
+  @Test(expected = IOException.class)
+  public void writeToMissingDirectory() throws IOException {
+    final ServerFileWriter writer = new ServerFileWriter(Durability.NONE);
+
+    writer.write(directory.resolve("missing/file"), new byte[1]);
+  }
+
+  @Test
+  public void latencyPercentiles() throws IOException {
+    final ServerFileWriter writer = new ServerFileWriter(Durability.NONE);
+
+    assertArrayEquals(new double[] {0, 0}, writer.getLatencyPercentiles(50, 99), 0);
+
+    for (int i = 0; i < ServerFileWriter.LATENCY_SAMPLES + 10; i++)
+      writer.write(directory.resolve("file"), createContent(16));
+
+    final double[] percentiles = writer.getLatencyPercentiles(50, 99, 100);
+
+    assertTrue(percentiles[0] > 0);
+    assertTrue(percentiles[0] <= percentiles[1]);
+    assertTrue(percentiles[1] <= percentiles[2]);
+  }
+
+  private List<Path> listDirectory() throws IOException {
+    final List<Path> entries = new ArrayList<Path>();
+
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path entry : stream) entries.add(entry);
+    }
+
+    return entries;
+  }
+
+  private static byte[] createContent(final int length) {
+    final byte[] content = new byte[length];
+
+    for (int i = 0; i < length; i++) content[i] = (byte) (i * 7 + length);
+
+    return content;
+  }
+}
@@ -0,0 +1,109 @@
+package saros.server.filesystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static saros.server.filesystem.FileSystemTestUtils.path;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.Before;
+import org.junit.Test;
+import saros.filesystem.IFile;
+import saros.filesystem.IFileContentChangedListener;
+import saros.filesystem.IFileContentChangedNotifier;
+import saros.filesystem.IWorkspace;
+
+public class SharedChecksumCacheTest {
+
+  private static class TestNotifier implements IFileContentChangedNotifier {
+    private final List<IFileContentChangedListener> listeners =
+        new CopyOnWriteArrayList<IFileContentChangedListener>();
+
+    @Override
+    public void addFileContentChangedListener(IFileContentChangedListener listener) {
+      listeners.add(listener);
+    }
+
+    @Override
+    public void removeFileContentChangedListener(IFileContentChangedListener listener) {
+      listeners.remove(listener);
+    }
+
+    void fireFileContentChanged(IFile file) {
+      for (IFileContentChangedListener listener : listeners) listener.fileContentChanged(file);
+    }
+  }
+
+  private IWorkspace aliceWorkspace;
+  private IWorkspace bobWorkspace;
+
+  private TestNotifier aliceNotifier;
+  private TestNotifier bobNotifier;
+
+  private SharedChecksumCache.View aliceCache;
+  private SharedChecksumCache.View bobCache;
+
+  @Before
+  public void setUp() {
+    aliceWorkspace = new ServerWorkspaceImpl(ServerPathImpl.fromString("/tmp/alice"));
+    bobWorkspace = new ServerWorkspaceImpl(ServerPathImpl.fromString("/tmp/bob"));
+
+    aliceNotifier = new TestNotifier();
+    bobNotifier = new TestNotifier();
+
+    final SharedChecksumCache sharedCache = new SharedChecksumCache();
+
+    aliceCache = sharedCache.createView("alice", aliceWorkspace, aliceNotifier);
+    bobCache = sharedCache.createView("bob", bobWorkspace, bobNotifier);
+  }
+
+  @Test
+  public void testTenantsDoNotShareEntries() {
+    final IFile aliceFile = new ServerFileImpl(aliceWorkspace, path("project/file"));
+    final IFile bobFile = new ServerFileImpl(bobWorkspace, path("project/file"));
+
+    aliceCache.addChecksum(aliceFile, 42);
+
+    assertEquals(Long.valueOf(42), aliceCache.getChecksum(aliceFile));
+    assertNull(bobCache.getChecksum(bobFile));
+
+    bobCache.addChecksum(bobFile, 7);
+
+    assertEquals(Long.valueOf(42), aliceCache.getChecksum(aliceFile));
+    assertEquals(Long.valueOf(7), bobCache.getChecksum(bobFile));
+  }
+
+  @Test
+  public void testChangesInvalidateEntriesOfTheTenantOnly() {
+    final IFile aliceFile = new ServerFileImpl(aliceWorkspace, path("project/file"));
+    final IFile bobFile = new ServerFileImpl(bobWorkspace, path("project/file"));
+
+    aliceCache.addChecksum(aliceFile, 42);
+    bobCache.addChecksum(bobFile, 7);
+
+    aliceNotifier.fireFileContentChanged(aliceFile);
+
+    assertNull(aliceCache.getChecksum(aliceFile));
+    assertEquals(Long.valueOf(7), bobCache.getChecksum(bobFile));
+
+    assertTrue(aliceCache.addChecksum(aliceFile, 43));
+    assertEquals(Long.valueOf(43), aliceCache.getChecksum(aliceFile));
+  }
+
+  @Test
+  public void testClosedViewIsDeregistered() {
+    final IFile bobFile = new ServerFileImpl(bobWorkspace, path("project/file"));
+
+    bobCache.addChecksum(bobFile, 7);
+
+    aliceCache.close();
+
+    assertTrue(aliceNotifier.listeners.isEmpty());
+    assertEquals(1, bobNotifier.listeners.size());
+
+    bobNotifier.fireFileContentChanged(bobFile);
+
+    assertNull(bobCache.getChecksum(bobFile));
+  }
+}
@@ -0,0 +1,165 @@
+package saros.server.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import saros.net.xmpp.JID;
+
+public class PeerFairExecutorTest {
+
+  private static final JID ALICE = new JID("alice@saros-con.imp.fu-berlin.de/Saros");
+  private static final JID BOB = new JID("bob@saros-con.imp.fu-berlin.de/Saros");
+  private static final JID CARL = new JID("carl@saros-con.imp.fu-berlin.de/Saros");
+
+  @Test
+  public void testTasksOfDifferentPeersRunConcurrently() throws Exception {
+    final PeerFairExecutor executor = new PeerFairExecutor("Test", 3, 1);
+
+    final CountDownLatch allRunning = new CountDownLatch(3);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    for (final JID peer : Arrays.asList(ALICE, BOB, CARL))
+      executor.execute(peer, blockingTask(allRunning, release));
+
+    try {
+      assertTrue("tasks did not run concurrently", allRunning.await(10, TimeUnit.SECONDS));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void testLimitPerPeer() throws Exception {
+    final PeerFairExecutor executor = new PeerFairExecutor("Test", 2, 1);
+
+    final CountDownLatch aliceRunning = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch secondAliceTaskRunning = new CountDownLatch(1);
+    final CountDownLatch bobRunning = new CountDownLatch(1);
+
+    executor.execute(ALICE, blockingTask(aliceRunning, release));
+    executor.execute(ALICE, secondAliceTaskRunning::countDown);
+    executor.execute(BOB, bobRunning::countDown);
+
+    try {
+      assertTrue(aliceRunning.await(10, TimeUnit.SECONDS));
+      assertTrue("task of bob was blocked", bobRunning.await(10, TimeUnit.SECONDS));
+
+      assertFalse(
+          "limit per peer exceeded", secondAliceTaskRunning.await(200, TimeUnit.MILLISECONDS));
+
+      assertEquals(1, executor.getStatistics().queued);
+    } finally {
+      release.countDown();
+    }
+
+    assertTrue(secondAliceTaskRunning.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testPeersAreServedRoundRobin() throws Exception {
+    final PeerFairExecutor executor = new PeerFairExecutor("Test", 1, 1);
+
+    final List<String> order = new CopyOnWriteArrayList<String>();
+
+    final CountDownLatch running = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(4);
+
+    executor.execute(
+        ALICE,
+        () -> {
+          order.add("alice-1");
+          blockingTask(running, release).run();
+          done.countDown();
+        });
+
+    assertTrue(running.await(10, TimeUnit.SECONDS));
+
+    executor.execute(ALICE, recordingTask(order, "alice-2", done));
+    executor.execute(ALICE, recordingTask(order, "alice-3", done));
+    executor.execute(BOB, recordingTask(order, "bob-1", done));
+
+    release.countDown();
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("alice-1", "alice-2", "bob-1", "alice-3"), order);
+  }
+
+  @Test
+  public void testStatistics() throws Exception {
+    final PeerFairExecutor executor = new PeerFairExecutor("Test", 1, 1);
+
+    final CountDownLatch running = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(1);
+
+    executor.execute(ALICE, blockingTask(running, release));
+    executor.execute(BOB, done::countDown);
+
+    assertTrue(running.await(10, TimeUnit.SECONDS));
+
+    Thread.sleep(100);
+
+    release.countDown();
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+
+    // the statistics are recorded after the task has run
+    long deadline = System.currentTimeMillis() + 10000;
+
+    while (executor.getStatistics().completed < 2 && System.currentTimeMillis() < deadline)
+      Thread.sleep(10);
+
+    final PeerFairExecutor.Statistics statistics = executor.getStatistics();
+
+    assertEquals(2, statistics.completed);
+    assertEquals(0, statistics.queued);
+    assertTrue(statistics.maxQueueWaitMillis >= 100);
+    assertTrue(statistics.maxDurationMillis >= 100);
+  }
+
+  @Test
+  public void testFailingTaskReleasesItsSlot() throws Exception {
+    final PeerFairExecutor executor = new PeerFairExecutor("Test", 1, 1);
+
+    final CountDownLatch done = new CountDownLatch(1);
+
+    executor.execute(
+        ALICE,
+        () -> {
+          throw new IllegalStateException("expected by the test");
+        });
+
+    executor.execute(ALICE, done::countDown);
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+  }
+
+  private static Runnable blockingTask(final CountDownLatch running, final CountDownLatch release) {
+    return () -> {
+      running.countDown();
+
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    };
+  }
+
+  private static Runnable recordingTask(
+      final List<String> order, final String name, final CountDownLatch done) {
+    return () -> {
+      order.add(name);
+      done.countDown();
+    };
+  }
+}
@@ -0,0 +1,377 @@
+package saros.server.loadgen;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.ConsoleAppender;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import saros.test.fakes.net.LocalXMPPRouter;
+import saros.test.util.IsolatingClassLoader;
+
+/**
+ * Measures how the Saros server copes with a session of many simultaneous users. The load generator
+ * starts a host running the server components and a number of simulated participants in the same
+ * process, shares a project and lets the participants replay a typing workload (see {@link
+ * SimulatedUser}) at a configurable rate.
+ *
+ * <p>After the measurement the load generator reports the throughput, the latency of the text
+ * inserts from the participant to the host and from the participant to the other participants, the
+ * CPU time of the host and whether the documents of all users converged.
+ *
+ * <p>Every Saros instance runs in its own {@link IsolatingClassLoader} and the instances are
+ * connected by a {@link LocalXMPPRouter} instead of a XMPP server. The session itself uses the byte
+ * streams of the router with a configurable latency and bandwidth or direct TCP connections over
+ * the loopback interface. Usage:
+ *
+ * <pre>
+ * LoadGenerator [participants=4] [duration=30] [warmup=5] [typingRate=5] [cursorRate=1]
+ *   [fileRate=0.1] [documents=1] [documentSize=4096] [seed=42] [timeout=60]
+ *   [transport=loopback|tcp] [latency=0] [bandwidth=0]
+ * </pre>
+ */
+public class LoadGenerator {
+
+  private static final Logger LOG = Logger.getLogger(LoadGenerator.class);
+
+  private static final String DOMAIN = "loadgen.local";
+
+  private final Options options;
+
+  private final LocalXMPPRouter router = new LocalXMPPRouter(DOMAIN);
+
+  private final List<ClassLoader> classLoaders = new ArrayList<ClassLoader>();
+
+  private final List<LoadNode> nodes = new ArrayList<LoadNode>();
+
+  private LoadNode host;
+
+  private List<LoadNode> participants;
+
+  private LoadGenerator(Options options) {
+    this.options = options;
+    router.setLink(options.getLatency(), options.getBandwidth());
+  }
+
+  public static void main(String[] args) throws Exception {
+    final Options options;
+
+    try {
+      options = Options.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.exit(2);
+      return;
+    }
+
+    Logger.getRootLogger().removeAllAppenders();
+    Logger.getRootLogger().addAppender(new ConsoleAppender(new PatternLayout("%-5p %c{1}: %m%n")));
+    Logger.getRootLogger().setLevel(Level.WARN);
+
+    final LoadGenerator generator;
+
+    try {
+      // fail early on an unknown transport instead of in the class loader of a node
+      options.isLoopback();
+      generator = new LoadGenerator(options);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.exit(2);
+      return;
+    }
+
+    int exitCode;
+
+    try {
+      exitCode = generator.run() ? 0 : 1;
+    } catch (Exception e) {
+      LOG.error("load test failed", e);
+      exitCode = 1;
+    } finally {
+      generator.stop();
+    }
+
+    System.exit(exitCode);
+  }
+
+  /** Runs the load test and returns whether the documents converged. */
+  private boolean run() throws Exception {
+    System.out.println("options: " + options);
+
+    setUp();
+
+    final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    for (final LoadNode participant : participants) participant.startWorkload();
+
+    TimeUnit.SECONDS.sleep(options.getWarmup());
+
+    final long activitiesStart = getActivityCount();
+    final long hostCpuStart = getCpuTime(threads, classLoaders.get(0));
+    final long processCpuStart = getProcessCpuTime();
+    final long start = System.nanoTime();
+
+    TimeUnit.SECONDS.sleep(options.getDuration());
+
+    final long end = System.nanoTime();
+    final long activitiesEnd = getActivityCount();
+    final long hostCpuEnd = getCpuTime(threads, classLoaders.get(0));
+    final long processCpuEnd = getProcessCpuTime();
+
+    for (final LoadNode participant : participants) participant.stopWorkload();
+
+    final boolean delivered = awaitDelivery();
+
+    final double seconds = (end - start) / 1e9;
+
+    final Latencies toHost = new Latencies();
+    final Latencies endToEnd = new Latencies();
+
+    long edits = 0;
+
+    for (final LoadNode source : participants) {
+      final long[] sent = source.getInsertTimes();
+
+      for (final LoadNode receiver : nodes) {
+        if (receiver == source) continue;
+
+        final long[] received = receiver.getReceiveTimes(source.getJID());
+
+        for (int i = 0; i < Math.min(sent.length, received.length); i++) {
+          if (sent[i] < start || sent[i] >= end) continue;
+
+          if (receiver == host) {
+            toHost.add(received[i] - sent[i]);
+          } else {
+            endToEnd.add(received[i] - sent[i]);
+            edits++;
+          }
+        }
+      }
+    }
+
+    final boolean converged = checkConvergence();
+
+    System.out.printf(
+        "throughput: %.1f activities/s sent, %.1f inserts/s delivered to participants%n",
+        (activitiesEnd - activitiesStart) / seconds, edits / seconds);
+
+    System.out.println("latency participant -> host:        " + toHost);
+    System.out.println("latency participant -> participant: " + endToEnd);
+
+    System.out.printf(
+        "cpu: host %.1f%% of one core, process %.1f%% of one core%n",
+        (hostCpuEnd - hostCpuStart) * 100.0 / (end - start),
+        processCpuStart < 0
+            ? Double.NaN
+            : (processCpuEnd - processCpuStart) * 100.0 / (end - start));
+
+    System.out.println(
+        "delivery: " + (delivered ? "complete" : "INCOMPLETE after " + options.getTimeout() + "s"));
+    System.out.println("documents: " + (converged ? "converged" : "DIVERGED"));
+
+    return delivered && converged;
+  }
+
+  /** Starts all nodes and waits until every participant received the project. */
+  private void setUp() throws Exception {
+    final Properties properties = options.getProperties();
+
+    host = createNode("host", -1, properties);
+
+    participants = new ArrayList<LoadNode>();
+
+    for (int i = 0; i < options.getParticipants(); i++)
+      participants.add(createNode("user" + i, i, properties));
+
+    for (final LoadNode node : nodes) node.start();
+
+    final String[] jids = new String[participants.size()];
+
+    for (int i = 0; i < jids.length; i++) jids[i] = participants.get(i).getJID();
+
+    final long setUpStart = System.nanoTime();
+
+    host.share(jids);
+
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.getTimeout());
+
+    while (!isReady()) {
+      if (System.nanoTime() > deadline)
+        throw new IllegalStateException("session was not set up in " + options.getTimeout() + "s");
+
+      TimeUnit.MILLISECONDS.sleep(100);
+    }
+
+    System.out.printf(
+        "setup: %d participants joined in %.1f s%n",
+        participants.size(), (System.nanoTime() - setUpStart) / 1e9);
+  }
+
+  private LoadNode createNode(String name, int index, Properties properties) throws Exception {
+    router.addAccount(name);
+
+    final ClassLoader classLoader =
+        new IsolatingClassLoader(
+            LoadGenerator.class.getClassLoader(),
+            LocalXMPPRouter.class.getName(),
+            LoadNode.class.getName(),
+            "org.apache.log4j.");
+
+    final LoadNode node =
+        (LoadNode)
+            classLoader
+                .loadClass(SimulatedNode.class.getName())
+                .getConstructor(LocalXMPPRouter.class, String.class, int.class, Properties.class)
+                .newInstance(router, name, index, properties);
+
+    classLoaders.add(classLoader);
+    nodes.add(node);
+
+    return node;
+  }
+
+  private boolean isReady() throws Exception {
+    if (host.getReadyUsers() != participants.size()) return false;
+
+    for (final LoadNode participant : participants)
+      if (participant.getReadyUsers() != participants.size()) return false;
+
+    return true;
+  }
+
+  /** Waits until every user received all text inserts of the other users. */
+  private boolean awaitDelivery() throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.getTimeout());
+
+    while (System.nanoTime() < deadline) {
+      if (isDelivered()) return true;
+
+      TimeUnit.MILLISECONDS.sleep(100);
+    }
+
+    return false;
+  }
+
+  private boolean isDelivered() {
+    for (final LoadNode source : participants) {
+      final int sent = source.getInsertTimes().length;
+
+      for (final LoadNode receiver : nodes) {
+        if (receiver != source && receiver.getReceiveTimes(source.getJID()).length != sent)
+          return false;
+      }
+    }
+
+    return true;
+  }
+
+  private boolean checkConvergence() throws Exception {
+    boolean converged = true;
+
+    for (int i = 0; i < options.getDocuments(); i++) {
+      final String expected = host.getDocument(i);
+
+      for (final LoadNode participant : participants) {
+        if (!expected.equals(participant.getDocument(i))) {
+          LOG.warn(SimulatedNode.getDocumentName(i) + " of " + participant + " differs from host");
+          converged = false;
+        }
+      }
+    }
+
+    return converged;
+  }
+
+  private long getActivityCount() {
+    long count = 0;
+
+    for (final LoadNode participant : participants) count += participant.getActivityCount();
+
+    return count;
+  }
+
+  private void stop() {
+    for (final LoadNode node : nodes) {
+      try {
+        node.stop();
+      } catch (Exception e) {
+        LOG.warn("failed to stop " + node, e);
+      }
+    }
+  }
+
+  /**
+   * Returns the CPU time of all live threads belonging to the Saros instance with the given class
+   * loader. Threads inherit the context class loader of the thread that creates them, so these are
+   * the threads the instance started.
+   */
+  private static long getCpuTime(ThreadMXBean threads, ClassLoader classLoader) {
+    long time = 0;
+
+    for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getContextClassLoader() != classLoader) continue;
+
+      final long threadTime = threads.getThreadCpuTime(thread.getId());
+
+      if (threadTime > 0) time += threadTime;
+    }
+
+    return time;
+  }
+
+  /** Returns the CPU time of the process or <code>-1</code> if it is not available. */
+  private static long getProcessCpuTime() {
+    final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+
+    if (os instanceof com.sun.management.OperatingSystemMXBean)
+      return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+
+    return -1;
+  }
+
+  /** Collects latencies and summarizes them in milliseconds. */
+  private static final class Latencies {
+
+    private long[] values = new long[1024];
+
+    private int size;
+
+    private void add(long value) {
+      if (size == values.length) values = Arrays.copyOf(values, size * 2);
+
+      values[size++] = value;
+    }
+
+    @Override
+    public String toString() {
+      if (size == 0) return "no samples";
+
+      final long[] sorted = Arrays.copyOf(values, size);
+      Arrays.sort(sorted);
+
+      double sum = 0;
+
+      for (final long value : sorted) sum += value;
+
+      return String.format(
+          "mean %.2f ms, p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms (%d samples)",
+          sum / size / 1e6,
+          percentile(sorted, 0.5) / 1e6,
+          percentile(sorted, 0.9) / 1e6,
+          percentile(sorted, 0.99) / 1e6,
+          sorted[size - 1] / 1e6,
+          size);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+      return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+  }
+}
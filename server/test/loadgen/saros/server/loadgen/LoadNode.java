@@ -0,0 +1,53 @@
+package saros.server.loadgen;
+
+/**
+ * A Saros instance of a load test, either the host or a simulated participant. Every node runs in
+ * its own class loader, so the interface only uses classes of the JDK.
+ *
+ * @see SimulatedNode
+ */
+public interface LoadNode {
+
+  /** Returns the resource qualified JID of the node. */
+  public String getJID();
+
+  /** Starts the Saros context of the node and connects it to the router. */
+  public void start() throws Exception;
+
+  /**
+   * Starts a session, shares the test project and invites the given participants. Must only be
+   * called on the host.
+   */
+  public void share(String[] participants) throws Exception;
+
+  /**
+   * Returns the number of remote users the node can exchange activities with: for the host the
+   * number of participants that received the project, for a participant the number of other users
+   * in the session or <code>-1</code> if the project was not received yet.
+   */
+  public int getReadyUsers() throws Exception;
+
+  /** Starts to replay the workload. Must only be called on a participant. */
+  public void startWorkload() throws Exception;
+
+  /** Stops to replay the workload. */
+  public void stopWorkload() throws Exception;
+
+  /** Returns the number of activities the node created so far. */
+  public long getActivityCount();
+
+  /** Returns the times ({@link System#nanoTime()}) the node inserted text, in order. */
+  public long[] getInsertTimes();
+
+  /**
+   * Returns the times ({@link System#nanoTime()}) the node received text inserted by the given
+   * user, in order.
+   */
+  public long[] getReceiveTimes(String source);
+
+  /** Returns the current content of the given test document. */
+  public String getDocument(int index) throws Exception;
+
+  /** Stops the Saros context of the node. */
+  public void stop() throws Exception;
+}
@@ -0,0 +1,157 @@
+package saros.server.loadgen;
+
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * The options of a load test. The options are passed as <code>key=value</code> arguments to the
+ * {@link LoadGenerator} and as {@link Properties} to the nodes, since the nodes run in other class
+ * loaders.
+ */
+final class Options {
+
+  private static final Properties DEFAULTS = new Properties();
+
+  static {
+    DEFAULTS.setProperty("participants", "4");
+    DEFAULTS.setProperty("duration", "30");
+    DEFAULTS.setProperty("warmup", "5");
+    DEFAULTS.setProperty("typingRate", "5");
+    DEFAULTS.setProperty("cursorRate", "1");
+    DEFAULTS.setProperty("fileRate", "0.1");
+    DEFAULTS.setProperty("documents", "1");
+    DEFAULTS.setProperty("documentSize", "4096");
+    DEFAULTS.setProperty("seed", "42");
+    DEFAULTS.setProperty("timeout", "60");
+    DEFAULTS.setProperty("transport", "loopback");
+    DEFAULTS.setProperty("latency", "0");
+    DEFAULTS.setProperty("bandwidth", "0");
+  }
+
+  private final Properties properties;
+
+  Options(Properties properties) {
+    this.properties = properties;
+  }
+
+  /** Parses the given <code>key=value</code> arguments. */
+  static Options parse(String[] args) {
+    final Properties properties = new Properties();
+
+    for (final String arg : args) {
+      final int separator = arg.indexOf('=');
+
+      if (separator <= 0) throw new IllegalArgumentException("expected key=value: " + arg);
+
+      final String key = arg.substring(0, separator);
+
+      if (!DEFAULTS.containsKey(key)) throw new IllegalArgumentException("unknown option: " + key);
+
+      properties.setProperty(key, arg.substring(separator + 1));
+    }
+
+    return new Options(properties);
+  }
+
+  Properties getProperties() {
+    return properties;
+  }
+
+  /** The number of simulated participants besides the host. */
+  int getParticipants() {
+    return getInt("participants");
+  }
+
+  /** The seconds to measure. */
+  int getDuration() {
+    return getInt("duration");
+  }
+
+  /** The seconds to replay the workload before the measurement starts. */
+  int getWarmup() {
+    return getInt("warmup");
+  }
+
+  /** The edits per second of every participant. */
+  double getTypingRate() {
+    return getDouble("typingRate");
+  }
+
+  /** The cursor movements per second of every participant. */
+  double getCursorRate() {
+    return getDouble("cursorRate");
+  }
+
+  /** The file creations and deletions per second of every participant. */
+  double getFileRate() {
+    return getDouble("fileRate");
+  }
+
+  /** The number of shared documents, the participants are distributed evenly. */
+  int getDocuments() {
+    return Math.max(1, getInt("documents"));
+  }
+
+  /** The initial size of every document in characters. */
+  int getDocumentSize() {
+    return getInt("documentSize");
+  }
+
+  /** The seed of the random workload. */
+  long getSeed() {
+    return Long.parseLong(get("seed"));
+  }
+
+  /** The seconds to wait for the setup and for the delivery of all activities. */
+  int getTimeout() {
+    return getInt("timeout");
+  }
+
+  /**
+   * Whether the session uses the byte streams of the router (<code>transport=loopback</code>)
+   * instead of TCP connections over the loopback interface (<code>transport=tcp</code>).
+   */
+  boolean isLoopback() {
+    final String transport = get("transport");
+
+    if (!transport.equals("loopback") && !transport.equals("tcp"))
+      throw new IllegalArgumentException("unknown transport: " + transport);
+
+    return transport.equals("loopback");
+  }
+
+  /** The latency of the byte streams of the router in milliseconds. */
+  long getLatency() {
+    return Long.parseLong(get("latency"));
+  }
+
+  /** The bandwidth of the byte streams of the router in bytes per second, 0 for unlimited. */
+  long getBandwidth() {
+    return Long.parseLong(get("bandwidth"));
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder();
+
+    for (final String key : new TreeSet<String>(DEFAULTS.stringPropertyNames())) {
+      if (builder.length() > 0) builder.append(' ');
+
+      builder.append(key).append('=').append(get(key));
+    }
+
+    return builder.toString();
+  }
+
+  private String get(String key) {
+    return properties.getProperty(key, DEFAULTS.getProperty(key));
+  }
+
+  private int getInt(String key) {
+    return Integer.parseInt(get(key));
+  }
+
+  private double getDouble(String key) {
+    return Double.parseDouble(get(key));
+  }
+}
@@ -0,0 +1,496 @@
+package saros.server.loadgen;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.apache.log4j.Logger;
+import saros.SarosConstants;
+import saros.activities.SPath;
+import saros.activities.TextEditActivity;
+import saros.context.AbstractContextLifecycle;
+import saros.context.ContainerContext;
+import saros.context.IContextFactory;
+import saros.context.IContextKeyBindings.TCPStreamService;
+import saros.filesystem.IProject;
+import saros.filesystem.IResource;
+import saros.filesystem.IWorkspace;
+import saros.monitoring.NullProgressMonitor;
+import saros.negotiation.AbstractIncomingProjectNegotiation;
+import saros.negotiation.AbstractOutgoingProjectNegotiation;
+import saros.negotiation.IncomingSessionNegotiation;
+import saros.negotiation.OutgoingSessionNegotiation;
+import saros.negotiation.SessionNegotiation;
+import saros.net.IConnectionManager;
+import saros.net.stream.IStreamService;
+import saros.net.xmpp.JID;
+import saros.net.xmpp.XMPPConnectionService;
+import saros.repackaged.picocontainer.BindKey;
+import saros.server.ServerContextFactory;
+import saros.server.TenantConfig;
+import saros.server.editor.ServerEditorManager;
+import saros.server.filesystem.ServerProjectImpl;
+import saros.server.filesystem.SharedChecksumCache;
+import saros.server.session.NegotiationHandler;
+import saros.session.AbstractActivityConsumer;
+import saros.session.IActivityConsumer.Priority;
+import saros.session.INegotiationHandler;
+import saros.session.ISarosSession;
+import saros.session.ISarosSessionManager;
+import saros.session.ISessionLifecycleListener;
+import saros.session.SessionEndReason;
+import saros.session.User;
+import saros.synchronize.UISynchronizer;
+import saros.test.fakes.net.LocalConnection;
+import saros.test.fakes.net.LocalXMPPRouter;
+import saros.test.fakes.net.LoopbackStreamService;
+import saros.util.NamedThreadFactory;
+import saros.util.ThreadUtils;
+
+/**
+ * A Saros instance of a load test that runs the components of the Saros server. The instance is
+ * connected to a {@link LocalXMPPRouter} instead of a XMPP server. The session uses either the byte
+ * streams of the router or direct TCP connections over the loopback interface.
+ *
+ * <p>The host shares a project with the test documents and invites the participants. A participant
+ * accepts all invitations and replays the workload of a {@link SimulatedUser}. Every node records
+ * when it receives text inserted by the other users.
+ *
+ * <p>All methods of the node are executed by a thread of the node, so that the threads the node
+ * starts belong to the class loader of the node.
+ */
+public class SimulatedNode implements LoadNode {
+
+  private static final Logger LOG = Logger.getLogger(SimulatedNode.class);
+
+  static final String PROJECT_NAME = "loadgen";
+
+  private static final String PASSWORD = "loadgen";
+
+  private final LocalXMPPRouter router;
+
+  private final String name;
+
+  private final int index;
+
+  private final boolean isHost;
+
+  private final Options options;
+
+  private final ExecutorService control;
+
+  private final Map<String, TimeLog> receives = new ConcurrentHashMap<String, TimeLog>();
+
+  private AbstractContextLifecycle lifecycle;
+
+  private ISarosSessionManager sessionManager;
+
+  private volatile ISarosSession session;
+
+  private ScheduledExecutorService scheduler;
+
+  private SimulatedUser user;
+
+  /** Records the text inserts of other users. */
+  private final AbstractActivityConsumer recorder =
+      new AbstractActivityConsumer() {
+        @Override
+        public void receive(TextEditActivity activity) {
+          if (activity.getText().isEmpty() || !activity.getReplacedText().isEmpty()) return;
+
+          receives
+              .computeIfAbsent(activity.getSource().getJID().getBase(), source -> new TimeLog())
+              .add();
+        }
+      };
+
+  private final ISessionLifecycleListener sessionLifecycleListener =
+      new ISessionLifecycleListener() {
+        @Override
+        public void sessionStarting(ISarosSession newSession) {
+          newSession.addActivityConsumer(recorder, Priority.PASSIVE);
+          session = newSession;
+        }
+
+        @Override
+        public void sessionEnded(ISarosSession oldSession, SessionEndReason reason) {
+          oldSession.removeActivityConsumer(recorder);
+          session = null;
+        }
+      };
+
+  /**
+   * @param router the router to connect to, the account with the given name must exist
+   * @param name the name of the node's account
+   * @param index the index of the participant or <code>-1</code> for the host
+   * @param options the options of the load test, see {@link Options}
+   */
+  public SimulatedNode(LocalXMPPRouter router, String name, int index, Properties options) {
+    this.router = router;
+    this.name = name;
+    this.index = index;
+    this.isHost = index < 0;
+    this.options = new Options(options);
+
+    final ClassLoader classLoader = getClass().getClassLoader();
+
+    control =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              final Thread thread = new Thread(runnable, "LoadNode-" + name);
+              thread.setContextClassLoader(classLoader);
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  @Override
+  public String getJID() {
+    return name + "@" + router.getDomain() + "/" + SarosConstants.RESOURCE;
+  }
+
+  @Override
+  public void start() throws Exception {
+    call(
+        () -> {
+          final TenantConfig tenant =
+              new TenantConfig(
+                  name,
+                  getJID(),
+                  PASSWORD,
+                  null,
+                  options.getParticipants(),
+                  options.getParticipants(),
+                  1);
+
+          lifecycle = new NodeLifecycle(tenant, options.isLoopback());
+          lifecycle.start();
+
+          final ContainerContext context = lifecycle.getSarosContext();
+
+          sessionManager = context.getComponent(ISarosSessionManager.class);
+          sessionManager.addSessionLifecycleListener(sessionLifecycleListener);
+
+          if (!isHost) {
+            sessionManager.setNegotiationHandler(
+                new ParticipantNegotiationHandler(context.getComponent(NegotiationHandler.class)));
+          }
+
+          final XMPPConnectionService connectionService =
+              context.getComponent(XMPPConnectionService.class);
+
+          connectionService.configure(
+              SarosConstants.RESOURCE,
+              false,
+              true,
+              0,
+              Collections.singletonList("127.0.0.1"),
+              null,
+              false,
+              null,
+              0,
+              false);
+
+          context
+              .getComponent(IConnectionManager.class)
+              .setServices(IConnectionManager.TCP_SERVICE);
+
+          connectionService.connect(new LocalConnection(router), name, PASSWORD);
+          return null;
+        });
+  }
+
+  @Override
+  public void share(final String[] participants) throws Exception {
+    call(
+        () -> {
+          final IWorkspace workspace = lifecycle.getSarosContext().getComponent(IWorkspace.class);
+
+          final IProject project = workspace.getProject(PROJECT_NAME);
+          ((ServerProjectImpl) project).create();
+
+          final Random random = new Random(options.getSeed());
+
+          for (int i = 0; i < options.getDocuments(); i++) {
+            project
+                .getFile(getDocumentName(i))
+                .create(
+                    new ByteArrayInputStream(
+                        createText(random, options.getDocumentSize())
+                            .getBytes(StandardCharsets.UTF_8)),
+                    true);
+          }
+
+          final Map<IProject, List<IResource>> projects = new HashMap<IProject, List<IResource>>();
+          projects.put(project, null);
+
+          sessionManager.startSession(projects);
+
+          final List<JID> jids = new ArrayList<JID>();
+
+          for (final String participant : participants) jids.add(new JID(participant));
+
+          sessionManager.invite(jids, "Load test");
+          return null;
+        });
+  }
+
+  @Override
+  public int getReadyUsers() throws Exception {
+    return call(
+        () -> {
+          final ISarosSession currentSession = session;
+
+          if (currentSession == null) return -1;
+
+          final IProject project = getProject();
+
+          if (isHost) {
+            int ready = 0;
+
+            for (final User remoteUser : currentSession.getRemoteUsers())
+              if (currentSession.userHasProject(remoteUser, project)) ready++;
+
+            return ready;
+          }
+
+          if (!currentSession.getProjects().contains(project)) return -1;
+
+          for (int i = 0; i < options.getDocuments(); i++)
+            if (!project.getFile(getDocumentName(i)).exists()) return -1;
+
+          return currentSession.getRemoteUsers().size();
+        });
+  }
+
+  @Override
+  public void startWorkload() throws Exception {
+    call(
+        () -> {
+          final ISarosSession currentSession = session;
+
+          final SPath document =
+              new SPath(getProject().getFile(getDocumentName(index % options.getDocuments())));
+
+          scheduler =
+              Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(name + "-"));
+
+          user =
+              new SimulatedUser(
+                  currentSession,
+                  currentSession.getComponent(ServerEditorManager.class),
+                  lifecycle.getSarosContext().getComponent(UISynchronizer.class),
+                  document,
+                  new Random(options.getSeed() + index));
+
+          user.start(
+              scheduler, options.getTypingRate(), options.getCursorRate(), options.getFileRate());
+
+          return null;
+        });
+  }
+
+  @Override
+  public void stopWorkload() throws Exception {
+    call(
+        () -> {
+          if (user != null) user.stop();
+
+          if (scheduler != null) scheduler.shutdownNow();
+
+          scheduler = null;
+          return null;
+        });
+  }
+
+  @Override
+  public long getActivityCount() {
+    final SimulatedUser currentUser = user;
+    return currentUser == null ? 0 : currentUser.getActivityCount();
+  }
+
+  @Override
+  public long[] getInsertTimes() {
+    final SimulatedUser currentUser = user;
+    return currentUser == null ? new long[0] : currentUser.getInserts().toArray();
+  }
+
+  @Override
+  public long[] getReceiveTimes(String source) {
+    final TimeLog times = receives.get(new JID(source).getBase());
+    return times == null ? new long[0] : times.toArray();
+  }
+
+  @Override
+  public String getDocument(final int documentIndex) throws Exception {
+    return call(
+        () -> {
+          final ISarosSession currentSession = session;
+
+          final ServerEditorManager editorManager =
+              currentSession.getComponent(ServerEditorManager.class);
+
+          final SPath document = new SPath(getProject().getFile(getDocumentName(documentIndex)));
+
+          final String[] content = new String[1];
+
+          lifecycle
+              .getSarosContext()
+              .getComponent(UISynchronizer.class)
+              .syncExec(() -> content[0] = editorManager.getContent(document));
+
+          return content[0];
+        });
+  }
+
+  @Override
+  public void stop() throws Exception {
+    try {
+      call(
+          () -> {
+            if (lifecycle != null) lifecycle.stop();
+
+            return null;
+          });
+    } finally {
+      control.shutdown();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getJID();
+  }
+
+  /** Returns the name of the test document with the given index. */
+  static String getDocumentName(int index) {
+    return "Document" + index + ".java";
+  }
+
+  private IProject getProject() {
+    return lifecycle.getSarosContext().getComponent(IWorkspace.class).getProject(PROJECT_NAME);
+  }
+
+  /** Executes the callable on the thread of the node. */
+  private <T> T call(Callable<T> callable) throws Exception {
+    try {
+      return control.submit(callable).get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+
+      throw e;
+    }
+  }
+
+  /** Creates source code like text. */
+  private static String createText(final Random random, final int length) {
+    final StringBuilder builder = new StringBuilder(length + 16);
+
+    while (builder.length() < length) {
+      final int wordLength = 2 + random.nextInt(10);
+
+      for (int c = 0; c < wordLength; c++) builder.append((char) ('a' + random.nextInt(26)));
+
+      builder.append(random.nextInt(8) == 0 ? ";\n  " : " ");
+    }
+
+    return builder.substring(0, length);
+  }
+
+  /**
+   * The server lifecycle without the connection to a XMPP server and the automatic session.
+   * Optionally the direct TCP connections are replaced by the byte streams of the router.
+   */
+  private static final class NodeLifecycle extends AbstractContextLifecycle {
+
+    private final TenantConfig tenant;
+
+    private final boolean loopback;
+
+    private NodeLifecycle(TenantConfig tenant, boolean loopback) {
+      this.tenant = tenant;
+      this.loopback = loopback;
+    }
+
+    @Override
+    protected Collection<IContextFactory> additionalContextFactories() {
+      final List<IContextFactory> factories = new ArrayList<IContextFactory>();
+
+      factories.add(new ServerContextFactory(tenant, new SharedChecksumCache()));
+
+      if (loopback) {
+        factories.add(
+            container -> {
+              final BindKey<IStreamService> key =
+                  BindKey.bindKey(IStreamService.class, TCPStreamService.class);
+
+              container.removeComponent(key);
+              container.addComponent(key, LoopbackStreamService.class);
+            });
+      }
+
+      return factories;
+    }
+
+    @Override
+    protected void finalizeContext(ContainerContext context) {
+      context
+          .getComponent(ISarosSessionManager.class)
+          .stopSession(SessionEndReason.LOCAL_USER_LEFT);
+      context.getComponent(XMPPConnectionService.class).disconnect();
+    }
+  }
+
+  /**
+   * Accepts all session invitations and handles everything else like the negotiation handler of the
+   * server.
+   */
+  private static final class ParticipantNegotiationHandler implements INegotiationHandler {
+
+    private final INegotiationHandler serverHandler;
+
+    private ParticipantNegotiationHandler(INegotiationHandler serverHandler) {
+      this.serverHandler = serverHandler;
+    }
+
+    @Override
+    public void handleOutgoingSessionNegotiation(OutgoingSessionNegotiation negotiation) {
+      serverHandler.handleOutgoingSessionNegotiation(negotiation);
+    }
+
+    @Override
+    public void handleIncomingSessionNegotiation(final IncomingSessionNegotiation negotiation) {
+      ThreadUtils.runSafeAsync(
+          "LoadNode-Invitation",
+          LOG,
+          () -> {
+            final SessionNegotiation.Status status = negotiation.accept(new NullProgressMonitor());
+
+            if (status != SessionNegotiation.Status.OK)
+              LOG.error("session negotiation failed: " + negotiation.getErrorMessage());
+          });
+    }
+
+    @Override
+    public void handleOutgoingProjectNegotiation(AbstractOutgoingProjectNegotiation negotiation) {
+      serverHandler.handleOutgoingProjectNegotiation(negotiation);
+    }
+
+    @Override
+    public void handleIncomingProjectNegotiation(AbstractIncomingProjectNegotiation negotiation) {
+      serverHandler.handleIncomingProjectNegotiation(negotiation);
+    }
+  }
+}
@@ -0,0 +1,278 @@
+package saros.server.loadgen;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import saros.activities.EditorActivity;
+import saros.activities.FileActivity;
+import saros.activities.IActivity;
+import saros.activities.SPath;
+import saros.activities.TextEditActivity;
+import saros.activities.TextSelectionActivity;
+import saros.filesystem.IFile;
+import saros.filesystem.IResource;
+import saros.server.editor.ServerEditorManager;
+import saros.session.AbstractActivityConsumer;
+import saros.session.AbstractActivityProducer;
+import saros.session.IActivityConsumer;
+import saros.session.IActivityConsumer.Priority;
+import saros.session.ISarosSession;
+import saros.synchronize.UISynchronizer;
+import saros.util.ThreadUtils;
+
+/**
+ * A simulated participant that works on one of the shared documents. The user types at its cursor,
+ * corrects typos with backspace, pastes text now and then and sometimes jumps to another position
+ * of the document. Independent of typing the user moves the cursor and selects text, and creates
+ * and deletes scratch files in the project.
+ *
+ * <p>Every action is performed on the UI thread of the Saros instance, like the actions of the user
+ * of an IDE. The edits are applied to the local document before the activity is created.
+ */
+final class SimulatedUser extends AbstractActivityProducer {
+
+  private static final Logger LOG = Logger.getLogger(SimulatedUser.class);
+
+  private static final String PASTE = "System.out.println(value);";
+
+  private final ISarosSession session;
+
+  private final ServerEditorManager editorManager;
+
+  private final UISynchronizer synchronizer;
+
+  private final SPath document;
+
+  private final Random random;
+
+  private final TimeLog inserts = new TimeLog();
+
+  private final AtomicLong activities = new AtomicLong();
+
+  private final List<Future<?>> tasks = new ArrayList<Future<?>>();
+
+  private volatile boolean stopped;
+
+  /* accessed on the UI thread only */
+  private int cursor;
+
+  private IFile scratchFile;
+
+  private int scratchFileCount;
+
+  /** Keeps the cursor at its position in the text when other users edit the document. */
+  private final IActivityConsumer cursorTracker =
+      new AbstractActivityConsumer() {
+        @Override
+        public void receive(TextEditActivity activity) {
+          if (!activity.getPath().equals(document) || activity.getOffset() >= cursor) return;
+
+          cursor =
+              Math.max(
+                  activity.getOffset(),
+                  cursor + activity.getText().length() - activity.getReplacedText().length());
+        }
+      };
+
+  /**
+   * @param session the session of the user
+   * @param editorManager the editor manager of the user's Saros instance
+   * @param synchronizer the UI synchronizer of the user's Saros instance
+   * @param document the shared document the user works on
+   * @param random the source of the user's decisions
+   */
+  SimulatedUser(
+      ISarosSession session,
+      ServerEditorManager editorManager,
+      UISynchronizer synchronizer,
+      SPath document,
+      Random random) {
+
+    this.session = session;
+    this.editorManager = editorManager;
+    this.synchronizer = synchronizer;
+    this.document = document;
+    this.random = random;
+  }
+
+  /**
+   * Starts to act. A rate of zero disables the action.
+   *
+   * @param scheduler the scheduler to trigger the actions
+   * @param typingRate the number of edits per second
+   * @param cursorRate the number of cursor movements per second
+   * @param fileRate the number of file creations and deletions per second
+   */
+  void start(
+      ScheduledExecutorService scheduler, double typingRate, double cursorRate, double fileRate) {
+
+    session.addActivityProducer(this);
+    session.addActivityConsumer(cursorTracker, Priority.PASSIVE);
+
+    synchronizer.syncExec(
+        () -> {
+          cursor = random.nextInt(editorManager.getContent(document).length() + 1);
+          fire(new EditorActivity(session.getLocalUser(), EditorActivity.Type.ACTIVATED, document));
+        });
+
+    schedule(scheduler, typingRate, this::type);
+    schedule(scheduler, cursorRate, this::moveCursor);
+    schedule(scheduler, fileRate, this::changeFile);
+  }
+
+  /** Stops to act. Returns after the last action was performed. */
+  void stop() {
+    stopped = true;
+
+    for (final Future<?> task : tasks) task.cancel(false);
+
+    tasks.clear();
+
+    synchronizer.syncExec(() -> session.removeActivityProducer(this));
+    session.removeActivityConsumer(cursorTracker);
+  }
+
+  /** Returns the number of activities the user created. */
+  long getActivityCount() {
+    return activities.get();
+  }
+
+  /** Returns the times the user inserted text. */
+  TimeLog getInserts() {
+    return inserts;
+  }
+
+  private void schedule(ScheduledExecutorService scheduler, double rate, Runnable action) {
+    if (rate <= 0) return;
+
+    final long period = Math.round(1e9 / rate);
+
+    // start at a random offset so that the users do not act in lockstep
+    final long delay = (long) (random.nextDouble() * period);
+
+    final Runnable uiAction =
+        ThreadUtils.wrapSafe(
+            LOG,
+            () -> {
+              if (!stopped) action.run();
+            });
+
+    tasks.add(
+        scheduler.scheduleAtFixedRate(
+            () -> synchronizer.asyncExec(uiAction), delay, period, TimeUnit.NANOSECONDS));
+  }
+
+  private void type() {
+    final String content = editorManager.getContent(document);
+
+    final int action = random.nextInt(100);
+
+    if (action < 3) cursor = random.nextInt(content.length() + 1);
+
+    cursor = Math.min(cursor, content.length());
+
+    if (action < 12 && cursor > 0) {
+      final int length = Math.min(cursor, 1 + random.nextInt(3));
+
+      edit(cursor - length, "", content.substring(cursor - length, cursor));
+      cursor -= length;
+      return;
+    }
+
+    final String text = action < 14 ? PASTE : String.valueOf((char) ('a' + random.nextInt(26)));
+
+    edit(cursor, text, "");
+    cursor += text.length();
+  }
+
+  private void edit(int offset, String text, String replacedText) {
+    final TextEditActivity edit =
+        new TextEditActivity(session.getLocalUser(), offset, text, replacedText, document);
+
+    editorManager.applyTextEdit(edit);
+
+    if (replacedText.isEmpty()) inserts.add();
+
+    fire(edit);
+  }
+
+  private void moveCursor() {
+    final int length = editorManager.getContent(document).length();
+
+    cursor = Math.max(0, Math.min(length, cursor + random.nextInt(81) - 40));
+
+    final int selected =
+        random.nextInt(4) == 0 ? random.nextInt(Math.min(20, length - cursor) + 1) : 0;
+
+    fire(new TextSelectionActivity(session.getLocalUser(), cursor, selected, document));
+  }
+
+  private void changeFile() {
+    try {
+      if (scratchFile == null) {
+        final IFile file =
+            document
+                .getProject()
+                .getFile(
+                    "scratch-"
+                        + session.getLocalUser().getJID().getName()
+                        + "-"
+                        + scratchFileCount++
+                        + ".txt");
+
+        final byte[] content = createScratchContent();
+
+        file.create(new ByteArrayInputStream(content), true);
+        scratchFile = file;
+
+        fire(
+            new FileActivity(
+                session.getLocalUser(),
+                FileActivity.Type.CREATED,
+                FileActivity.Purpose.ACTIVITY,
+                new SPath(file),
+                null,
+                content,
+                StandardCharsets.UTF_8.name()));
+      } else {
+        final SPath path = new SPath(scratchFile);
+
+        scratchFile.delete(IResource.NONE);
+        scratchFile = null;
+
+        fire(
+            new FileActivity(
+                session.getLocalUser(),
+                FileActivity.Type.REMOVED,
+                FileActivity.Purpose.ACTIVITY,
+                path,
+                null,
+                null,
+                null));
+      }
+    } catch (IOException e) {
+      LOG.error("failed to change scratch file", e);
+    }
+  }
+
+  private byte[] createScratchContent() {
+    final StringBuilder builder = new StringBuilder(1024);
+
+    while (builder.length() < 1024) builder.append((char) ('a' + random.nextInt(26)));
+
+    return builder.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private void fire(IActivity activity) {
+    activities.incrementAndGet();
+    fireActivity(activity);
+  }
+}
@@ -0,0 +1,26 @@
+package saros.server.loadgen;
+
+import java.util.Arrays;
+
+/** A growing list of points in time, safe for use by multiple threads. */
+final class TimeLog {
+
+  private long[] times = new long[1024];
+
+  private int size;
+
+  /** Appends the current time ({@link System#nanoTime()}). */
+  synchronized void add() {
+    if (size == times.length) times = Arrays.copyOf(times, size * 2);
+
+    times[size++] = System.nanoTime();
+  }
+
+  synchronized int size() {
+    return size;
+  }
+
+  synchronized long[] toArray() {
+    return Arrays.copyOf(times, size);
+  }
+}